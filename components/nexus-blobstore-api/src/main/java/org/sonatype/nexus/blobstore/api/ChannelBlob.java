@@ -0,0 +1,34 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.api;
+
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A {@link Blob} whose content can also be read through a {@link SeekableByteChannel}, allowing positional and
+ * zero-copy reads.
+ *
+ * @since 3.1
+ */
+public interface ChannelBlob
+    extends Blob
+{
+  /**
+   * Opens a read-only channel to the blob's content. The channel's size is that of the content, even if the blob
+   * store keeps more data in the underlying file. The caller is responsible for closing the channel.
+   *
+   * @throws BlobStoreException may be thrown if the blob is {@link BlobStore#delete deleted} or
+   *                            {@link BlobStore#delete hard deleted}.
+   */
+  SeekableByteChannel openChannel();
+}
@@ -15,13 +15,33 @@ package org.sonatype.nexus.blobstore.file;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -37,18 +57,31 @@ import org.sonatype.nexus.blobstore.api.BlobStoreConfiguration;
 import org.sonatype.nexus.blobstore.api.BlobStoreException;
 import org.sonatype.nexus.blobstore.api.BlobStoreListener;
 import org.sonatype.nexus.blobstore.api.BlobStoreMetrics;
+import org.sonatype.nexus.blobstore.api.ChannelBlob;
 import org.sonatype.nexus.blobstore.file.FileOperations.StreamMetrics;
 import org.sonatype.nexus.blobstore.file.internal.BlobAttributes;
+import org.sonatype.nexus.blobstore.file.internal.BlobStoreMetricsCounters;
 import org.sonatype.nexus.blobstore.file.internal.BlobStoreMetricsStore;
+import org.sonatype.nexus.blobstore.file.internal.BlobTrailer;
+import org.sonatype.nexus.blobstore.file.internal.BlobUsage;
+import org.sonatype.nexus.blobstore.file.internal.BoundedSeekableByteChannel;
+import org.sonatype.nexus.blobstore.file.internal.CompactionProgress;
 import org.sonatype.nexus.common.app.ApplicationDirectories;
 import org.sonatype.nexus.common.collect.AutoClosableIterable;
 import org.sonatype.nexus.common.io.DirectoryHelper;
 import org.sonatype.nexus.common.property.PropertiesFile;
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
+import org.sonatype.nexus.thread.NexusThreadFactory;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.LoadingCache;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.squareup.tape.QueueFile;
 import org.joda.time.DateTime;
 
@@ -60,6 +93,11 @@ import static com.google.common.cache.CacheLoader.from;
 /**
  * A {@link BlobStore} that stores its content on the file system.
  *
+ * Blob attributes are kept in a {@code .properties} file next to each content file in {@link #TYPE_V1} stores, and in
+ * a binary {@link BlobTrailer} at the end of the content file itself in {@link #TYPE_V2} stores. Existing
+ * {@link #TYPE_V1} stores configured with the {@link #TYPE_V2} {@link #LAYOUT_KEY layout} are migrated in the
+ * background while remaining online.
+ *
  * @since 3.0
  */
 @Named(FileBlobStore.TYPE)
@@ -75,6 +113,8 @@ public class FileBlobStore
 
   public static final String BLOB_ATTRIBUTE_SUFFIX = ".properties";
 
+  private static final String MIGRATING_SUFFIX = ".migrating";
+
   @VisibleForTesting
   public static final String CONFIG_KEY = "file";
 
@@ -90,9 +130,61 @@ public class FileBlobStore
   @VisibleForTesting
   public static final String TYPE_V1 = "file/1";
 
+  /**
+   * @since 3.1
+   */
+  @VisibleForTesting
+  public static final String TYPE_V2 = "file/2";
+
+  /**
+   * Configuration attribute selecting the layout of new blob stores, and the layout existing stores are migrated to.
+   *
+   * @since 3.1
+   */
+  public static final String LAYOUT_KEY = "layout";
+
+  /**
+   * Metadata property recording that a {@link #TYPE_V1} to {@link #TYPE_V2} migration has not yet completed.
+   *
+   * @since 3.1
+   */
+  @VisibleForTesting
+  public static final String MIGRATING_KEY = "migrating";
+
   @VisibleForTesting
   public static final String DELETIONS_FILENAME = "deletions.index";
 
+  /**
+   * Holds the batch of deletions taken by a running {@link #compact()} until it has been processed, so the batch is
+   * returned to the deletions index rather than lost if the process dies mid-batch.
+   *
+   * @since 3.1
+   */
+  @VisibleForTesting
+  public static final String COMPACTING_FILENAME = "compacting.index";
+
+  /**
+   * Configuration attribute limiting the number of blobs hard-deleted per second by {@link #compact()}. Unlimited if
+   * absent or zero.
+   *
+   * @since 3.1
+   */
+  public static final String COMPACT_OPS_PER_SECOND_KEY = "compactOpsPerSecond";
+
+  /**
+   * Configuration attribute limiting the number of content bytes hard-deleted per second by {@link #compact()}.
+   * Unlimited if absent or zero.
+   *
+   * @since 3.1
+   */
+  public static final String COMPACT_BYTES_PER_SECOND_KEY = "compactBytesPerSecond";
+
+  private static final int COMPACT_THREADS = SystemPropertiesHelper.getInteger(
+      FileBlobStore.class.getName() + ".compactThreads", 4);
+
+  private static final int COMPACT_BATCH_SIZE = SystemPropertiesHelper.getInteger(
+      FileBlobStore.class.getName() + ".compactBatchSize", 1000);
+
   private Path contentDir;
 
   private final LocationStrategy locationStrategy;
@@ -105,22 +197,40 @@ public class FileBlobStore
 
   private final Path basedir;
 
+  private final MetricRegistry metricRegistry;
+
+  private final List<String> metricNames = new ArrayList<>();
+
   private BlobStoreMetricsStore storeMetrics;
 
   private LoadingCache<BlobId, FileBlob> liveBlobs;
 
   private QueueFile deletedBlobIndex;
 
+  private QueueFile compactingBlobIndex;
+
+  private volatile String layout = TYPE_V1;
+
+  private volatile boolean migrating;
+
+  private ExecutorService migrationExecutor;
+
+  private final AtomicBoolean compacting = new AtomicBoolean();
+
+  private volatile CompactionProgress compactionProgress;
+
   @Inject
   public FileBlobStore(final LocationStrategy locationStrategy,
                        final FileOperations fileOperations,
                        final ApplicationDirectories directories,
-                       final BlobStoreMetricsStore storeMetrics)
+                       final BlobStoreMetricsStore storeMetrics,
+                       final MetricRegistry metricRegistry)
   {
     this.locationStrategy = checkNotNull(locationStrategy);
     this.fileOperations = checkNotNull(fileOperations);
     this.basedir = directories.getWorkDirectory(BASEDIR).toPath();
     this.storeMetrics = checkNotNull(storeMetrics);
+    this.metricRegistry = checkNotNull(metricRegistry);
   }
 
   @VisibleForTesting
@@ -129,9 +239,10 @@ public class FileBlobStore
                        final FileOperations fileOperations,
                        final BlobStoreMetricsStore storeMetrics,
                        final BlobStoreConfiguration configuration,
-                       final ApplicationDirectories directories)
+                       final ApplicationDirectories directories,
+                       final MetricRegistry metricRegistry)
   {
-    this(locationStrategy, fileOperations, directories, storeMetrics);
+    this(locationStrategy, fileOperations, directories, storeMetrics, metricRegistry);
     this.contentDir = checkNotNull(contentDir);
     this.blobStoreConfiguration = checkNotNull(configuration);
   }
@@ -140,36 +251,111 @@ public class FileBlobStore
   protected void doStart() throws Exception {
     Path storageDir = getAbsoluteBlobDir();
 
+    String requestedLayout = blobStoreConfiguration.attributes(CONFIG_KEY).get(LAYOUT_KEY, String.class, TYPE_V1);
+    checkState(TYPE_V1.equals(requestedLayout) || TYPE_V2.equals(requestedLayout),
+        "Unsupported blob store layout: %s", requestedLayout);
+
     // ensure blobstore is supported
     PropertiesFile metadata = new PropertiesFile(storageDir.resolve(METADATA_FILENAME).toFile());
     if (metadata.getFile().exists()) {
       metadata.load();
       String type = metadata.getProperty(TYPE_KEY);
-      checkState(TYPE_V1.equals(type), "Unsupported blob store type/version: %s in %s", type, metadata.getFile());
+      checkState(TYPE_V1.equals(type) || TYPE_V2.equals(type), "Unsupported blob store type/version: %s in %s", type,
+          metadata.getFile());
+      if (TYPE_V1.equals(type) && TYPE_V2.equals(requestedLayout)) {
+        // new blobs are written in the new layout straight away, existing ones are migrated in the background
+        log.info("Migrating blob store {} from {} to {}", blobStoreConfiguration.getName(), TYPE_V1, TYPE_V2);
+        metadata.setProperty(TYPE_KEY, TYPE_V2);
+        metadata.setProperty(MIGRATING_KEY, Boolean.TRUE.toString());
+        metadata.store();
+        type = TYPE_V2;
+      }
+      else if (TYPE_V2.equals(type) && TYPE_V1.equals(requestedLayout)) {
+        log.warn("Blob store {} uses layout {}; migrating back to {} is not supported", blobStoreConfiguration.getName(),
+            TYPE_V2, TYPE_V1);
+      }
+      layout = type;
+      migrating = Boolean.parseBoolean(metadata.getProperty(MIGRATING_KEY));
     }
     else {
       // assumes new blobstore, write out type
-      metadata.setProperty(TYPE_KEY, TYPE_V1);
+      metadata.setProperty(TYPE_KEY, requestedLayout);
       metadata.store();
+      layout = requestedLayout;
+      migrating = false;
     }
     liveBlobs = CacheBuilder.newBuilder().weakValues().build(from(FileBlob::new));
     deletedBlobIndex = new QueueFile(storageDir.resolve(DELETIONS_FILENAME).toFile());
+    compactingBlobIndex = new QueueFile(storageDir.resolve(COMPACTING_FILENAME).toFile());
+    requeueCompacting();
     storeMetrics.setStorageDir(storageDir);
     storeMetrics.start();
+    registerCompactionMetrics();
+
+    if (migrating) {
+      migrationExecutor = Executors.newSingleThreadExecutor(
+          new NexusThreadFactory("file-blobstore-migration", "blobstore"));
+      migrationExecutor.execute(() -> migrate(metadata));
+    }
   }
 
   @Override
   protected void doStop() throws Exception {
+    if (migrationExecutor != null) {
+      migrationExecutor.shutdownNow();
+      if (!migrationExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+        log.warn("Failed to terminate blob store migration in allotted time");
+      }
+      migrationExecutor = null;
+    }
     liveBlobs = null;
     try {
       deletedBlobIndex.close();
+      compactingBlobIndex.close();
     }
     finally {
       deletedBlobIndex = null;
+      compactingBlobIndex = null;
       storeMetrics.stop();
+      removeCompactionMetrics();
     }
   }
 
+  /**
+   * Exports the progress of the current or most recent compaction run, see {@link #getCompactionProgress()}.
+   */
+  private void registerCompactionMetrics() {
+    String prefix = MetricRegistry.name(FileBlobStore.class, blobStoreConfiguration.getName(), "compaction");
+    registerCompactionGauge(MetricRegistry.name(prefix, "running"), () -> compacting.get() ? 1L : 0L);
+    registerCompactionGauge(MetricRegistry.name(prefix, "queued"), progressGauge(CompactionProgress::getQueued));
+    registerCompactionGauge(MetricRegistry.name(prefix, "processed"), progressGauge(CompactionProgress::getProcessed));
+    registerCompactionGauge(MetricRegistry.name(prefix, "deleted"), progressGauge(CompactionProgress::getDeleted));
+    registerCompactionGauge(MetricRegistry.name(prefix, "requeued"), progressGauge(CompactionProgress::getRequeued));
+    registerCompactionGauge(MetricRegistry.name(prefix, "failed"), progressGauge(CompactionProgress::getFailed));
+    registerCompactionGauge(MetricRegistry.name(prefix, "bytesReclaimed"),
+        progressGauge(CompactionProgress::getBytesReclaimed));
+  }
+
+  private Gauge<Long> progressGauge(final ToLongFunction<CompactionProgress> value) {
+    return () -> {
+      CompactionProgress progress = compactionProgress;
+      return progress == null ? 0L : value.applyAsLong(progress);
+    };
+  }
+
+  private void registerCompactionGauge(final String name, final Gauge<Long> gauge) {
+    metricRegistry.remove(name);
+    metricRegistry.register(name, gauge);
+    metricNames.add(name);
+  }
+
+  private void removeCompactionMetrics() {
+    for (String name : metricNames) {
+      metricRegistry.remove(name);
+    }
+    metricNames.clear();
+  }
+
   @Override
   public void setBlobStoreListener(@Nullable final BlobStoreListener listener) {
     this.listener = listener;
@@ -194,6 +380,26 @@ public class FileBlobStore
     return contentDir.resolve(location + BLOB_ATTRIBUTE_SUFFIX);
   }
 
+  /**
+   * Returns {@code true} if the attributes of the blob are kept in a separate {@code .properties} file. Must be called
+   * with the blob locked, since a migration may move them into the content file.
+   */
+  private boolean usesAttributeFile(final BlobId id) {
+    return TYPE_V1.equals(layout) || (migrating && fileOperations.exists(attributePath(id)));
+  }
+
+  /**
+   * Loads the blob's attributes from whichever layout it is stored in, or returns {@code null} if none are found.
+   */
+  @Nullable
+  private BlobAttributes loadAttributes(final BlobId id, final boolean attributeFile) throws IOException {
+    if (attributeFile) {
+      BlobAttributes blobAttributes = new BlobAttributes(attributePath(id));
+      return blobAttributes.load() ? blobAttributes : null;
+    }
+    return BlobTrailer.read(contentPath(id));
+  }
+
   @Override
   public Blob create(final InputStream blobData, final Map<String, String> headers) {
     checkNotNull(blobData);
@@ -206,6 +412,10 @@ public class FileBlobStore
     checkNotNull(sourceFile);
     checkArgument(Files.exists(sourceFile));
 
+    if (TYPE_V2.equals(layout)) {
+      // attributes are appended to the content file, which must therefore not be shared with the source
+      return create(headers, destination -> fileOperations.create(destination, Files.newInputStream(sourceFile)));
+    }
     return create(headers, destination -> {
       fileOperations.hardLink(sourceFile, destination);
       return fileOperations.computeMetrics(destination);
@@ -238,11 +448,16 @@ public class FileBlobStore
         listener.blobCreated(blob, "Blob: " + blobId + " written to: " + blobPath);
       }
 
-      // Write the blob attribute file
-      BlobAttributes blobAttributes = new BlobAttributes(attributePath, headers, metrics);
-      blobAttributes.store();
+      if (TYPE_V2.equals(layout)) {
+        BlobTrailer.append(blobPath, headers, metrics);
+      }
+      else {
+        // Write the blob attribute file
+        BlobAttributes blobAttributes = new BlobAttributes(attributePath, headers, metrics);
+        blobAttributes.store();
+      }
 
-      storeMetrics.recordAddition(blobAttributes.getMetrics().getContentSize());
+      storeMetrics.recordAddition(headers, metrics.getContentSize());
 
       return blob;
     }
@@ -268,9 +483,8 @@ public class FileBlobStore
       Lock lock = blob.lock();
       try {
         if (blob.isStale()) {
-          BlobAttributes blobAttributes = new BlobAttributes(attributePath(blobId));
-          boolean loaded = blobAttributes.load();
-          if (!loaded) {
+          BlobAttributes blobAttributes = loadAttributes(blobId, usesAttributeFile(blobId));
+          if (blobAttributes == null) {
             log.debug("Attempt to access non-existent blob {}", blobId);
             return null;
           }
@@ -307,11 +521,9 @@ public class FileBlobStore
 
     Lock lock = blob.lock();
     try {
-      Path attribPath = attributePath(blobId);
-      BlobAttributes blobAttributes = new BlobAttributes(attribPath);
-
-      boolean loaded = blobAttributes.load();
-      if (!loaded) {
+      boolean attributeFile = usesAttributeFile(blobId);
+      BlobAttributes blobAttributes = loadAttributes(blobId, attributeFile);
+      if (blobAttributes == null) {
         // This could happen under some concurrent situations (two threads try to delete the same blob)
         // but it can also occur if the deleted index refers to a manually-deleted blob.
         log.warn("Attempt to mark-for-delete non-existent blob {}", blobId);
@@ -322,15 +534,20 @@ public class FileBlobStore
         return false;
       }
 
-      blobAttributes.setDeleted(true);
-      blobAttributes.store();
+      if (attributeFile) {
+        blobAttributes.setDeleted(true);
+        blobAttributes.store();
+      }
+      else {
+        BlobTrailer.markDeleted(contentPath(blobId));
+      }
 
       // record blob for hard-deletion when the next compact task runs
       deletedBlobIndex.add(blobId.toString().getBytes(Charsets.UTF_8));
       blob.markStale();
 
       // TODO: should we only update the size when doing a hard delete?
-      storeMetrics.recordDeletion(blobAttributes.getMetrics().getContentSize());
+      storeMetrics.recordDeletion(blobAttributes.getHeaders(), blobAttributes.getMetrics().getContentSize());
 
       return true;
     }
@@ -346,8 +563,12 @@ public class FileBlobStore
   public boolean deleteHard(final BlobId blobId) {
     checkNotNull(blobId);
 
+    FileBlob blob = liveBlobs.getUnchecked(blobId);
+    Lock lock = blob.lock();
     try {
-      delete(attributePath(blobId));
+      if (usesAttributeFile(blobId)) {
+        delete(attributePath(blobId));
+      }
 
       Path blobPath = contentPath(blobId);
       boolean blobDeleted = delete(blobPath);
@@ -364,6 +585,7 @@ public class FileBlobStore
       throw new BlobStoreException(e, blobId);
     }
     finally {
+      lock.unlock();
       liveBlobs.invalidate(blobId);
     }
   }
@@ -373,36 +595,237 @@ public class FileBlobStore
     return storeMetrics.getMetrics();
   }
 
+  /**
+   * Returns the estimated number and size of blobs per repository.
+   *
+   * @since 3.1
+   */
+  public Map<String, BlobUsage> getRepositoryUsage() {
+    return storeMetrics.getRepositoryUsage();
+  }
+
+  /**
+   * Returns the estimated number and size of blobs per content type.
+   *
+   * @since 3.1
+   */
+  public Map<String, BlobUsage> getContentTypeUsage() {
+    return storeMetrics.getContentTypeUsage();
+  }
+
+  /**
+   * Recomputes the blob store metrics from the blobs on disk, replacing the current estimates. Soft-deleted blobs are
+   * not counted. Changes made while the walk is in progress may be reflected inaccurately.
+   *
+   * @since 3.1
+   */
+  public void reconcileMetrics() {
+    BlobStoreMetricsCounters counters = new BlobStoreMetricsCounters();
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      forEachBlobId(pool, blobId -> {
+        FileBlob blob = liveBlobs.getUnchecked(blobId);
+        Lock lock = blob.lock();
+        try {
+          BlobAttributes blobAttributes = loadAttributes(blobId, usesAttributeFile(blobId));
+          if (blobAttributes != null && !blobAttributes.isDeleted()) {
+            counters.add(blobAttributes.getHeaders(), blobAttributes.getMetrics().getContentSize());
+          }
+        }
+        catch (IOException e) {
+          log.warn("Unable to read attributes of blob {}, not counting it", blobId, e);
+        }
+        finally {
+          lock.unlock();
+        }
+      });
+    }
+    finally {
+      pool.shutdown();
+    }
+    log.info("Reconciled metrics of blob store {}: {}", blobStoreConfiguration.getName(), counters.getTotal());
+    storeMetrics.replace(counters);
+  }
+
+  /**
+   * Hard-deletes soft-deleted blobs which are no longer in use. The deletions queue is taken in batches which are
+   * processed on a bounded pool of worker threads, throttled by the {@link #COMPACT_OPS_PER_SECOND_KEY} and
+   * {@link #COMPACT_BYTES_PER_SECOND_KEY} configuration attributes. Foreground {@link #delete(BlobId)} calls are only
+   * held up while single entries are taken from the queue. Blocks until the run completes.
+   */
   @Override
   public void compact() {
+    if (!compacting.compareAndSet(false, true)) {
+      log.info("Compaction of blob store {} already in progress", blobStoreConfiguration.getName());
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(COMPACT_THREADS,
+        new NexusThreadFactory("file-blobstore-compact", "blobstore"));
+    AtomicBoolean cancelled = new AtomicBoolean();
     try {
-      // only process each blob once (in-use blobs may be re-added to the index)
-      for (int i = 0, numBlobs = deletedBlobIndex.size(); i < numBlobs; i++) {
-        synchronized (deletedBlobIndex) {
-          byte[] bytes = deletedBlobIndex.peek();
-          if (bytes == null) {
-            return;
-          }
-          deletedBlobIndex.remove();
-          BlobId blobId = new BlobId(new String(bytes, Charsets.UTF_8));
-          FileBlob blob = liveBlobs.getIfPresent(blobId);
-          if (blob == null || blob.isStale()) {
-            // not in use, so it's safe to delete the file
-            deleteHard(blobId);
+      RateLimiter opsLimiter = rateLimiter(COMPACT_OPS_PER_SECOND_KEY);
+      RateLimiter bytesLimiter = rateLimiter(COMPACT_BYTES_PER_SECOND_KEY);
+
+      // only process each blob once (in-use blobs are re-added to the index)
+      int remaining = deletedBlobIndex.size();
+      CompactionProgress progress = new CompactionProgress(remaining);
+      compactionProgress = progress;
+
+      while (remaining > 0) {
+        List<byte[]> batch = takeDeletions(Math.min(remaining, COMPACT_BATCH_SIZE));
+        if (batch.isEmpty()) {
+          break;
+        }
+        remaining -= batch.size();
+
+        List<Future<?>> futures = new ArrayList<>(batch.size());
+        for (byte[] bytes : batch) {
+          futures.add(executor.submit(() -> compactBlob(bytes, opsLimiter, bytesLimiter, progress, cancelled)));
+        }
+        try {
+          for (Future<?> future : futures) {
+            future.get();
           }
-          else {
-            // still in use, so move it to end of the queue
-            deletedBlobIndex.add(bytes);
+        }
+        catch (InterruptedException e) {
+          // entries already taken from the queue are put back rather than lost
+          cancelled.set(true);
+          for (Future<?> future : futures) {
+            Uninterruptibles.getUninterruptibly(future);
           }
+          throw e;
         }
+        finally {
+          // every entry of the batch has now been either deleted or re-added to the deletions index
+          compactingBlobIndex.clear();
+        }
+        log.debug("Compacting blob store {}: {}", blobStoreConfiguration.getName(), progress);
       }
+
+      progress.finish();
+      log.info("Compacted blob store {}: {}", blobStoreConfiguration.getName(), progress);
     }
     catch (IOException e) {
       log.warn("Problem maintaining deletions index for: {}", getConfiguredBlobStorePath());
       throw new BlobStoreException(e, null);
     }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BlobStoreException("Interrupted compacting " + getConfiguredBlobStorePath(), e, null);
+    }
+    catch (ExecutionException e) {
+      throw new BlobStoreException("Failed compacting " + getConfiguredBlobStorePath(), e.getCause(), null);
+    }
+    finally {
+      executor.shutdown();
+      compacting.set(false);
+    }
   }
 
+  /**
+   * Returns the progress of the current or most recent compaction run, or {@code null} if there has been none.
+   *
+   * @since 3.1
+   */
+  @Nullable
+  public CompactionProgress getCompactionProgress() {
+    return compactionProgress;
+  }
+
+  @Nullable
+  private RateLimiter rateLimiter(final String key) {
+    Number permitsPerSecond = blobStoreConfiguration.attributes(CONFIG_KEY).get(key, Number.class, 0);
+    return permitsPerSecond.doubleValue() > 0 ? RateLimiter.create(permitsPerSecond.doubleValue()) : null;
+  }
+
+  /**
+   * Takes up to the given number of entries from the head of the deletions index, holding its monitor only for one
+   * entry at a time. Each entry is recorded in the compacting index before it is removed from the deletions index.
+   */
+  private List<byte[]> takeDeletions(final int max) throws IOException {
+    List<byte[]> batch = new ArrayList<>(max);
+    while (batch.size() < max) {
+      synchronized (deletedBlobIndex) {
+        byte[] bytes = deletedBlobIndex.peek();
+        if (bytes == null) {
+          break;
+        }
+        compactingBlobIndex.add(bytes);
+        deletedBlobIndex.remove();
+        batch.add(bytes);
+      }
+    }
+    return batch;
+  }
+
+  /**
+   * Returns entries left in the compacting index by an interrupted run to the deletions index. Blobs that were already
+   * hard-deleted are simply skipped by the next run.
+   */
+  private void requeueCompacting() throws IOException {
+    if (compactingBlobIndex.isEmpty()) {
+      return;
+    }
+    log.info("Requeueing {} unfinished compaction entries of blob store {}", compactingBlobIndex.size(),
+        blobStoreConfiguration.getName());
+    compactingBlobIndex.forEach((in, length) -> {
+      byte[] bytes = new byte[length];
+      ByteStreams.readFully(in, bytes);
+      deletedBlobIndex.add(bytes);
+    });
+    compactingBlobIndex.clear();
+  }
+
+  private void compactBlob(final byte[] bytes,
+                           @Nullable final RateLimiter opsLimiter,
+                           @Nullable final RateLimiter bytesLimiter,
+                           final CompactionProgress progress,
+                           final AtomicBoolean cancelled)
+  {
+    BlobId blobId = new BlobId(new String(bytes, Charsets.UTF_8));
+    try {
+      FileBlob blob = liveBlobs.getIfPresent(blobId);
+      if (cancelled.get() || (blob != null && !blob.isStale())) {
+        // still in use, so move it to end of the queue
+        deletedBlobIndex.add(bytes);
+        progress.blobRequeued();
+        return;
+      }
+
+      long size = contentSize(blobId);
+      if (opsLimiter != null) {
+        opsLimiter.acquire();
+      }
+      if (bytesLimiter != null && size > 0) {
+        bytesLimiter.acquire((int) Math.min(size, Integer.MAX_VALUE));
+      }
+
+      // not in use, so it's safe to delete the file
+      deleteHard(blobId);
+      progress.blobDeleted(size);
+    }
+    catch (Exception e) {
+      log.warn("Failed to compact blob {}, it will be retried on the next run", blobId, e);
+      progress.blobFailed();
+      try {
+        deletedBlobIndex.add(bytes);
+      }
+      catch (IOException e1) {
+        log.warn("Problem maintaining deletions index for: {}", getConfiguredBlobStorePath(), e1);
+      }
+    }
+  }
+
+  private long contentSize(final BlobId blobId) {
+    try {
+      return Files.size(contentPath(blobId));
+    }
+    catch (IOException e) {
+      return 0L;
+    }
+  }
+
+
   @Override
   public BlobStoreConfiguration getBlobStoreConfiguration() {
     return this.blobStoreConfiguration;
@@ -424,9 +847,84 @@ public class FileBlobStore
     }
   }
 
+  /**
+   * Lazily walks the content directory tree, so only the directories currently being listed are held open. Each call
+   * to {@link Iterable#iterator()} starts a new walk, all of which are closed with the iterable.
+   * Soft-deleted blobs which have not yet been compacted are included.
+   */
   @Override
   public AutoClosableIterable<BlobId> iterator() {
-    throw new UnsupportedOperationException();
+    List<Stream<BlobId>> walks = new ArrayList<>();
+    return new AutoClosableIterable<BlobId>()
+    {
+      private boolean closed;
+
+      @Override
+      public synchronized Iterator<BlobId> iterator() {
+        checkState(!closed, "Already closed");
+        Stream<BlobId> blobIds = blobIds(contentDir);
+        walks.add(blobIds);
+        return blobIds.iterator();
+      }
+
+      @Override
+      public synchronized void close() {
+        closed = true;
+        walks.forEach(Stream::close);
+        walks.clear();
+      }
+    };
+  }
+
+  /**
+   * Passes the id of every blob in the store to the consumer, walking the volume directories in parallel on the given
+   * pool. The consumer must be thread-safe. Blocks until all volumes have been walked.
+   *
+   * @since 3.1
+   */
+  public void forEachBlobId(final ForkJoinPool pool, final Consumer<BlobId> consumer) {
+    checkNotNull(pool);
+    checkNotNull(consumer);
+    try {
+      List<Path> volumes;
+      try (Stream<Path> children = Files.list(contentDir)) {
+        volumes = children.filter(Files::isDirectory).collect(Collectors.toList());
+      }
+      // parallel streams run on the pool of the task which starts them
+      pool.submit(() -> volumes.parallelStream().forEach(volume -> {
+        try (Stream<BlobId> blobIds = blobIds(volume)) {
+          blobIds.forEach(consumer);
+        }
+      })).get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BlobStoreException("Interrupted walking " + contentDir, e, null);
+    }
+    catch (ExecutionException e) {
+      throw new BlobStoreException("Failed walking " + contentDir, e.getCause(), null);
+    }
+    catch (IOException e) {
+      throw new BlobStoreException(e, null);
+    }
+  }
+
+  /**
+   * Returns a lazy stream of the ids of all blobs below the given directory, which must be closed after use.
+   */
+  private Stream<BlobId> blobIds(final Path directory) {
+    try {
+      return Files.walk(directory)
+          .filter(path -> path.getFileName().toString().endsWith(BLOB_CONTENT_SUFFIX))
+          .filter(Files::isRegularFile)
+          .map(path -> {
+            String name = path.getFileName().toString();
+            return new BlobId(name.substring(0, name.length() - BLOB_CONTENT_SUFFIX.length()));
+          });
+    }
+    catch (IOException e) {
+      throw new BlobStoreException(e, null);
+    }
   }
 
   private void checkExists(final Path path, final BlobId blobId) throws IOException {
@@ -482,9 +980,10 @@ public class FileBlobStore
     try {
       Path blobDir = getAbsoluteBlobDir();
       if (fileOperations.deleteEmptyDirectory(contentDir)) {
-        deleteQuietly(blobDir.resolve("metrics.properties"));
+        storeMetrics.remove();
         deleteQuietly(blobDir.resolve("metadata.properties"));
         deleteQuietly(blobDir.resolve("deletions.index"));
+        deleteQuietly(blobDir.resolve(COMPACTING_FILENAME));
         if (!fileOperations.deleteEmptyDirectory(blobDir)) {
           log.warn("Unable to delete non-empty blob store directory {}", blobDir);
         }
@@ -529,8 +1028,88 @@ public class FileBlobStore
     return configurationPath;
   }
 
+  /**
+   * Moves the attributes of all {@link #TYPE_V1} blobs into trailers of their content files, then records the
+   * migration as complete. Interrupting the migration leaves it to be resumed on the next start.
+   */
+  @VisibleForTesting
+  void migrate(final PropertiesFile metadata) {
+    try {
+      Files.walkFileTree(contentDir, new SimpleFileVisitor<Path>()
+      {
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+          if (Thread.currentThread().isInterrupted()) {
+            return FileVisitResult.TERMINATE;
+          }
+          String name = file.getFileName().toString();
+          if (name.endsWith(BLOB_ATTRIBUTE_SUFFIX)) {
+            migrateBlob(new BlobId(name.substring(0, name.length() - BLOB_ATTRIBUTE_SUFFIX.length())));
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+
+      if (!Thread.currentThread().isInterrupted()) {
+        migrating = false;
+        metadata.remove(MIGRATING_KEY);
+        metadata.store();
+        log.info("Migrated blob store {} to {}", blobStoreConfiguration.getName(), TYPE_V2);
+      }
+      else {
+        log.info("Migration of blob store {} interrupted, it will resume on next start",
+            blobStoreConfiguration.getName());
+      }
+    }
+    catch (Exception e) {
+      log.error("Migration of blob store {} failed, it will resume on next start", blobStoreConfiguration.getName(), e);
+    }
+  }
+
+  private void migrateBlob(final BlobId blobId) throws IOException {
+    FileBlob blob = liveBlobs.getUnchecked(blobId);
+    Lock lock = blob.lock();
+    try {
+      Path attributePath = attributePath(blobId);
+      BlobAttributes blobAttributes = new BlobAttributes(attributePath);
+      if (!blobAttributes.load()) {
+        // hard deleted meanwhile
+        return;
+      }
+      Path blobPath = contentPath(blobId);
+      if (!fileOperations.exists(blobPath)) {
+        log.warn("Not migrating blob {} as file {} not found", blobId, blobPath);
+        return;
+      }
+      // the content file may be a hard link to a file outside the blob store (see create(Path, Map)), so the trailer
+      // is appended to a copy which then replaces it; the attribute file is only removed once that is done, so anything
+      // past the content size it records was appended by an interrupted attempt and is left out of the copy
+      long contentSize = blobAttributes.getMetrics().getContentSize();
+      Path migratingPath = blobPath.resolveSibling(blobPath.getFileName() + MIGRATING_SUFFIX);
+      try {
+        try (InputStream in = Files.newInputStream(blobPath);
+             OutputStream out = Files.newOutputStream(migratingPath)) {
+          ByteStreams.copy(ByteStreams.limit(in, contentSize), out);
+        }
+        BlobTrailer.append(migratingPath, blobAttributes.getHeaders(), blobAttributes.getMetrics());
+        if (blobAttributes.isDeleted()) {
+          BlobTrailer.markDeleted(migratingPath);
+        }
+        Files.move(migratingPath, blobPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        Files.deleteIfExists(migratingPath);
+      }
+      fileOperations.delete(attributePath);
+      log.debug("Migrated blob {}", blobId);
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
   class FileBlob
-      implements Blob
+      implements ChannelBlob
   {
     private final BlobId blobId;
 
@@ -577,7 +1156,29 @@ public class FileBlobStore
       Path contentPath = contentPath(blobId);
       try {
         checkExists(contentPath, blobId);
-        return new BufferedInputStream(fileOperations.openInputStream(contentPath));
+        InputStream input = new BufferedInputStream(fileOperations.openInputStream(contentPath));
+        if (TYPE_V2.equals(layout)) {
+          // content files carry a trailer after the content
+          return ByteStreams.limit(input, metrics.getContentSize());
+        }
+        return input;
+      }
+      catch (IOException e) {
+        throw new BlobStoreException(e, blobId);
+      }
+    }
+
+    @Override
+    public SeekableByteChannel openChannel() {
+      Path contentPath = contentPath(blobId);
+      try {
+        checkExists(contentPath, blobId);
+        SeekableByteChannel channel = fileOperations.openChannel(contentPath);
+        if (TYPE_V2.equals(layout)) {
+          // content files carry a trailer after the content
+          return new BoundedSeekableByteChannel(channel, metrics.getContentSize());
+        }
+        return channel;
       }
       catch (IOException e) {
         throw new BlobStoreException(e, blobId);
@@ -15,6 +15,7 @@ package org.sonatype.nexus.blobstore.file;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -24,12 +25,15 @@ import javax.inject.Named;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.blobstore.file.internal.MetricsInputStream;
+import org.sonatype.nexus.common.hash.MultiHashingInputStream;
 import org.sonatype.nexus.common.io.DirectoryHelper;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
 
 // TODO: Move this and MapdbBlobMetadataStore back into .internal, with a parameterizable provider
 
@@ -53,7 +57,7 @@ public class SimpleFileOperations
     checkNotNull(dir, "Null parent for path: %s", path);
     DirectoryHelper.mkdir(dir);
 
-    final MetricsInputStream input = new MetricsInputStream(data);
+    final MultiHashingInputStream input = sha1HashingStream(data);
     try {
       try (final OutputStream output = Files.newOutputStream(path, StandardOpenOption.CREATE_NEW)) {
         ByteStreams.copy(input, output);
@@ -64,7 +68,21 @@ public class SimpleFileOperations
       data.close();
     }
 
-    return input.getMetrics();
+    return new StreamMetrics(input.count(), input.hashes().get(SHA1).toString());
+  }
+
+  /**
+   * Reuses the given stream if it is already computing SHA-1 from its first byte, so each byte is only digested once;
+   * otherwise wraps it.
+   */
+  private static MultiHashingInputStream sha1HashingStream(final InputStream data) {
+    if (data instanceof MultiHashingInputStream) {
+      MultiHashingInputStream hashingStream = (MultiHashingInputStream) data;
+      if (hashingStream.count() == 0 && hashingStream.algorithms().contains(SHA1)) {
+        return hashingStream;
+      }
+    }
+    return new MultiHashingInputStream(ImmutableList.of(SHA1), data);
   }
 
   @Override
@@ -102,6 +120,12 @@ public class SimpleFileOperations
     return Files.newInputStream(path, StandardOpenOption.READ);
   }
 
+  @Override
+  public FileChannel openChannel(final Path path) throws IOException {
+    checkNotNull(path);
+    return FileChannel.open(path, StandardOpenOption.READ);
+  }
+
   @Override
   public boolean delete(final Path path) throws IOException {
     checkNotNull(path);
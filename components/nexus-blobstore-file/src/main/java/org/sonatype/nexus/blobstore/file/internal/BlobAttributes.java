@@ -26,9 +26,10 @@ import org.sonatype.nexus.common.property.PropertiesFile;
 import org.joda.time.DateTime;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 /**
- * A data holder for the content of each blob's .attribs file.
+ * A data holder for the content of each blob's .attribs file, or of the {@link BlobTrailer} of {@code file/2} blobs.
  *
  * @since 3.0
  */
@@ -64,6 +65,18 @@ public class BlobAttributes
     this.metrics = checkNotNull(metrics);
   }
 
+  /**
+   * Creates attributes which are not backed by a properties file and so can not be loaded or stored.
+   *
+   * @since 3.1
+   */
+  public BlobAttributes(final Map<String, String> headers, final BlobMetrics metrics, final boolean deleted) {
+    this.propertiesFile = null;
+    this.headers = checkNotNull(headers);
+    this.metrics = checkNotNull(metrics);
+    this.deleted = deleted;
+  }
+
   public Map<String, String> getHeaders() {
     return headers;
   }
@@ -84,6 +97,7 @@ public class BlobAttributes
    * Returns {@code false} if the attribute file is not found.
    */
   public boolean load() throws IOException {
+      checkState(propertiesFile != null, "Attributes are not backed by a file");
       if (!Files.exists(propertiesFile.getFile().toPath())) {
         return false;
       }
@@ -93,6 +107,7 @@ public class BlobAttributes
   }
 
   public void store() throws IOException {
+    checkState(propertiesFile != null, "Attributes are not backed by a file");
     writeTo(propertiesFile);
     propertiesFile.store();
   }
@@ -0,0 +1,175 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.file.internal;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.blobstore.api.BlobStore;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Blob count and size counters for a blob store, in total and broken down by repository and content type.
+ *
+ * Counters are striped {@link LongAdder}s so concurrent writers do not contend on a single value.
+ *
+ * @since 3.1
+ */
+public class BlobStoreMetricsCounters
+{
+  /**
+   * Blob header carrying the owning repository name, as set by the repository storage layer.
+   */
+  public static final String REPO_NAME_HEADER = "Bucket.repo-name";
+
+  static final String TOTAL_SIZE_PROP_NAME = "totalSize";
+
+  static final String BLOB_COUNT_PROP_NAME = "blobCount";
+
+  private static final String REPOSITORY_PREFIX = "repository.";
+
+  private static final String CONTENT_TYPE_PREFIX = "contentType.";
+
+  private static final String BLOB_COUNT_SUFFIX = "." + BLOB_COUNT_PROP_NAME;
+
+  private static final String TOTAL_SIZE_SUFFIX = "." + TOTAL_SIZE_PROP_NAME;
+
+  private final Counter total = new Counter();
+
+  private final ConcurrentMap<String, Counter> byRepository = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, Counter> byContentType = new ConcurrentHashMap<>();
+
+  /**
+   * Records the addition of a blob.
+   */
+  public void add(final Map<String, String> headers, final long size) {
+    record(headers.get(REPO_NAME_HEADER), headers.get(BlobStore.CONTENT_TYPE_HEADER), 1, size);
+  }
+
+  /**
+   * Records the removal of a blob.
+   */
+  public void remove(final Map<String, String> headers, final long size) {
+    record(headers.get(REPO_NAME_HEADER), headers.get(BlobStore.CONTENT_TYPE_HEADER), -1, -size);
+  }
+
+  void record(@Nullable final String repository,
+              @Nullable final String contentType,
+              final long countDelta,
+              final long sizeDelta)
+  {
+    total.add(countDelta, sizeDelta);
+    if (repository != null) {
+      byRepository.computeIfAbsent(repository, k -> new Counter()).add(countDelta, sizeDelta);
+    }
+    if (contentType != null) {
+      byContentType.computeIfAbsent(contentType, k -> new Counter()).add(countDelta, sizeDelta);
+    }
+  }
+
+  public BlobUsage getTotal() {
+    return total.usage();
+  }
+
+  public Map<String, BlobUsage> getByRepository() {
+    return usage(byRepository);
+  }
+
+  public Map<String, BlobUsage> getByContentType() {
+    return usage(byContentType);
+  }
+
+  private static Map<String, BlobUsage> usage(final Map<String, Counter> counters) {
+    ImmutableMap.Builder<String, BlobUsage> builder = ImmutableMap.builder();
+    for (Entry<String, Counter> entry : counters.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue().usage());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Writes all counters to the given properties.
+   */
+  void writeTo(final Properties properties) {
+    properties.setProperty(TOTAL_SIZE_PROP_NAME, Long.toString(total.size.sum()));
+    properties.setProperty(BLOB_COUNT_PROP_NAME, Long.toString(total.count.sum()));
+    writeTo(properties, REPOSITORY_PREFIX, byRepository);
+    writeTo(properties, CONTENT_TYPE_PREFIX, byContentType);
+  }
+
+  private static void writeTo(final Properties properties, final String prefix, final Map<String, Counter> counters) {
+    for (Entry<String, Counter> entry : counters.entrySet()) {
+      properties.setProperty(prefix + entry.getKey() + BLOB_COUNT_SUFFIX, Long.toString(entry.getValue().count.sum()));
+      properties.setProperty(prefix + entry.getKey() + TOTAL_SIZE_SUFFIX, Long.toString(entry.getValue().size.sum()));
+    }
+  }
+
+  /**
+   * Adds counters previously written with {@link #writeTo(Properties)}.
+   */
+  void readFrom(final Properties properties) {
+    total.add(parse(properties.getProperty(BLOB_COUNT_PROP_NAME)), parse(properties.getProperty(TOTAL_SIZE_PROP_NAME)));
+    for (String key : properties.stringPropertyNames()) {
+      if (key.startsWith(REPOSITORY_PREFIX)) {
+        readFrom(properties, key, REPOSITORY_PREFIX, byRepository);
+      }
+      else if (key.startsWith(CONTENT_TYPE_PREFIX)) {
+        readFrom(properties, key, CONTENT_TYPE_PREFIX, byContentType);
+      }
+    }
+  }
+
+  private static void readFrom(final Properties properties,
+                               final String key,
+                               final String prefix,
+                               final ConcurrentMap<String, Counter> counters)
+  {
+    long value = parse(properties.getProperty(key));
+    if (key.endsWith(BLOB_COUNT_SUFFIX)) {
+      String name = key.substring(prefix.length(), key.length() - BLOB_COUNT_SUFFIX.length());
+      counters.computeIfAbsent(name, k -> new Counter()).add(value, 0);
+    }
+    else if (key.endsWith(TOTAL_SIZE_SUFFIX)) {
+      String name = key.substring(prefix.length(), key.length() - TOTAL_SIZE_SUFFIX.length());
+      counters.computeIfAbsent(name, k -> new Counter()).add(0, value);
+    }
+  }
+
+  private static long parse(@Nullable final String value) {
+    return value != null ? Long.parseLong(value) : 0L;
+  }
+
+  private static class Counter
+  {
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder size = new LongAdder();
+
+    void add(final long countDelta, final long sizeDelta) {
+      count.add(countDelta);
+      size.add(sizeDelta);
+    }
+
+    BlobUsage usage() {
+      return new BlobUsage(count.sum(), size.sum());
+    }
+  }
+}
@@ -12,7 +12,9 @@
  */
 package org.sonatype.nexus.blobstore.file.internal;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 
 import org.sonatype.goodies.lifecycle.Lifecycle;
 import org.sonatype.nexus.blobstore.api.BlobStoreMetrics;
@@ -32,13 +34,55 @@ public interface BlobStoreMetricsStore
    */
   BlobStoreMetrics getMetrics();
 
+  /**
+   * Provide the current usage per repository. This is an estimate.
+   *
+   * @since 3.1
+   */
+  Map<String, BlobUsage> getRepositoryUsage();
+
+  /**
+   * Provide the current usage per content type. This is an estimate.
+   *
+   * @since 3.1
+   */
+  Map<String, BlobUsage> getContentTypeUsage();
+
   /**
    * Indicate that a blob of the given size has been added.
    */
   void recordAddition(long size);
 
+  /**
+   * Indicate that a blob with the given headers and size has been added.
+   *
+   * @since 3.1
+   */
+  void recordAddition(Map<String, String> headers, long size);
+
   /**
    * Indicate that a blob of the given size has been removed.
    */
   void recordDeletion(long size);
+
+  /**
+   * Indicate that a blob with the given headers and size has been removed.
+   *
+   * @since 3.1
+   */
+  void recordDeletion(Map<String, String> headers, long size);
+
+  /**
+   * Replace all current metrics, e.g. with counters recomputed from the blobs on disk.
+   *
+   * @since 3.1
+   */
+  void replace(BlobStoreMetricsCounters counters);
+
+  /**
+   * Delete the files holding the metrics, including any journals, once the store is stopped.
+   *
+   * @since 3.1
+   */
+  void remove() throws IOException;
 }
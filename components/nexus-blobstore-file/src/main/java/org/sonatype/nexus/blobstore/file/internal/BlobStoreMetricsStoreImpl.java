@@ -12,16 +12,31 @@
  */
 package org.sonatype.nexus.blobstore.file.internal;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.sonatype.goodies.lifecycle.LifecycleSupport;
-import org.sonatype.nexus.blobstore.api.BlobStoreException;
+import org.sonatype.nexus.blobstore.api.BlobStore;
 import org.sonatype.nexus.blobstore.api.BlobStoreMetrics;
 import org.sonatype.nexus.blobstore.file.PeriodicJobService;
 import org.sonatype.nexus.blobstore.file.PeriodicJobService.PeriodicJob;
@@ -35,8 +50,16 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 /**
- * A {@link BlobStoreMetricsStore} implementation that retains blobstore metrics in memory, periodically
- * writing them out to a file.
+ * A {@link BlobStoreMetricsStore} implementation that retains blobstore metrics in memory, recording every change in
+ * an append-only journal which is periodically checkpointed into a properties file.
+ *
+ * Each checkpoint starts a new journal generation and records it in the properties file, so on startup the journals
+ * at or after that generation hold exactly the changes not yet reflected in the checkpoint.
+ *
+ * Recording threads queue their changes without locking; whichever of them finds no append in progress writes out
+ * the queued changes of all threads with a single flush. The journal is flushed to the operating system but never
+ * synced, so it survives a crash of the process, apart from changes still queued at that moment, but not a crash of
+ * the operating system.
  *
  * @since 3.0
  */
@@ -49,18 +72,38 @@ public class BlobStoreMetricsStoreImpl
   static final String METRICS_FILENAME = "metrics.properties";
 
   @VisibleForTesting
-  static final String TOTAL_SIZE_PROP_NAME = "totalSize";
+  static final String JOURNAL_FILENAME_PREFIX = "metrics.journal.";
+
+  @VisibleForTesting
+  static final String TOTAL_SIZE_PROP_NAME = BlobStoreMetricsCounters.TOTAL_SIZE_PROP_NAME;
+
+  @VisibleForTesting
+  static final String BLOB_COUNT_PROP_NAME = BlobStoreMetricsCounters.BLOB_COUNT_PROP_NAME;
 
   @VisibleForTesting
-  static final String BLOB_COUNT_PROP_NAME = "blobCount";
+  static final String JOURNAL_PROP_NAME = "journal";
 
   private static final int METRICS_FLUSH_PERIOD_SECONDS = 2;
 
+  private static final byte ADDITION = 1;
+
+  private static final byte DELETION = 2;
+
   private final PeriodicJobService jobService;
 
-  private AtomicLong blobCount;
+  /**
+   * Recording and journal appends share the read lock; checkpoints and replacement take the write lock.
+   */
+  private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+
+  /**
+   * Changes applied to the counters but not yet appended to the journal.
+   */
+  private final Queue<JournalRecord> pendingRecords = new ConcurrentLinkedQueue<>();
 
-  private AtomicLong totalSize;
+  private final AtomicBoolean appending = new AtomicBoolean();
+
+  private volatile BlobStoreMetricsCounters counters;
 
   private AtomicBoolean dirty;
 
@@ -70,7 +113,9 @@ public class BlobStoreMetricsStoreImpl
 
   private Path metricsDataFile;
 
-  private PropertiesFile propertiesFile;
+  private long journalGeneration;
+
+  private DataOutputStream journal;
 
   @Inject
   public BlobStoreMetricsStoreImpl(final PeriodicJobService jobService) {
@@ -79,28 +124,36 @@ public class BlobStoreMetricsStoreImpl
 
   @Override
   protected void doStart() throws Exception {
-    blobCount = new AtomicLong();
-    totalSize = new AtomicLong();
+    counters = new BlobStoreMetricsCounters();
     dirty = new AtomicBoolean();
 
     metricsDataFile = storageDirectory.resolve(METRICS_FILENAME);
-    propertiesFile = new PropertiesFile(metricsDataFile.toFile());
+    PropertiesFile propertiesFile = new PropertiesFile(metricsDataFile.toFile());
     if (Files.exists(metricsDataFile)) {
       log.info("Loading blob store metrics file {}", metricsDataFile);
       propertiesFile.load();
-      readProperties();
+      counters.readFrom(propertiesFile);
     }
     else {
       log.info("Blob store metrics file {} not found - initializing at zero.", metricsDataFile);
-      updateProperties();
     }
 
+    String generation = propertiesFile.getProperty(JOURNAL_PROP_NAME);
+    journalGeneration = generation != null ? Long.parseLong(generation) : 0L;
+    for (Map.Entry<Long, Path> entry : journals().entrySet()) {
+      if (entry.getKey() >= journalGeneration) {
+        log.info("Replaying blob store metrics journal {}", entry.getValue());
+        replay(entry.getValue());
+        journalGeneration = entry.getKey();
+      }
+    }
+
+    checkpoint();
+
     metricsWritingJob = jobService.schedule(() -> {
       try {
         if (dirty.compareAndSet(true, false)) {
-          updateProperties();
-          log.trace("Writing blob store metrics to {}", metricsDataFile);
-          propertiesFile.store();
+          checkpoint();
         }
       }
       catch (Exception e) {
@@ -115,11 +168,21 @@ public class BlobStoreMetricsStoreImpl
     metricsWritingJob.cancel();
     metricsWritingJob = null;
 
-    blobCount = null;
-    totalSize = null;
-    dirty = null;
-
-    propertiesFile = null;
+    try {
+      checkpoint();
+    }
+    finally {
+      journalLock.writeLock().lock();
+      try {
+        pendingRecords.clear();
+        closeJournal();
+      }
+      finally {
+        journalLock.writeLock().unlock();
+      }
+      counters = null;
+      dirty = null;
+    }
   }
 
   @Override
@@ -136,12 +199,12 @@ public class BlobStoreMetricsStoreImpl
     {
       @Override
       public long getBlobCount() {
-        return blobCount.get();
+        return counters.getTotal().getBlobCount();
       }
 
       @Override
       public long getTotalSize() {
-        return totalSize.get();
+        return counters.getTotal().getTotalSize();
       }
 
       @Override
@@ -156,34 +219,239 @@ public class BlobStoreMetricsStoreImpl
     };
   }
 
+  @Override
+  public Map<String, BlobUsage> getRepositoryUsage() {
+    return counters.getByRepository();
+  }
+
+  @Override
+  public Map<String, BlobUsage> getContentTypeUsage() {
+    return counters.getByContentType();
+  }
+
   @Override
   public void recordAddition(final long size) {
-    blobCount.incrementAndGet();
-    totalSize.addAndGet(size);
-    dirty.set(true);
+    recordAddition(Collections.emptyMap(), size);
+  }
+
+  @Override
+  public void recordAddition(final Map<String, String> headers, final long size) {
+    record(ADDITION, headers.get(BlobStoreMetricsCounters.REPO_NAME_HEADER),
+        headers.get(BlobStore.CONTENT_TYPE_HEADER), size);
   }
 
   @Override
   public void recordDeletion(final long size) {
-    blobCount.decrementAndGet();
-    totalSize.addAndGet(-size);
+    recordDeletion(Collections.emptyMap(), size);
+  }
+
+  @Override
+  public void recordDeletion(final Map<String, String> headers, final long size) {
+    record(DELETION, headers.get(BlobStoreMetricsCounters.REPO_NAME_HEADER),
+        headers.get(BlobStore.CONTENT_TYPE_HEADER), size);
+  }
+
+  @Override
+  public void replace(final BlobStoreMetricsCounters counters) {
+    checkNotNull(counters);
+    journalLock.writeLock().lock();
+    try {
+      this.counters = counters;
+      checkpointLocked();
+    }
+    catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    finally {
+      journalLock.writeLock().unlock();
+    }
+  }
+
+  private void record(final byte direction, final String repository, final String contentType, final long size) {
+    journalLock.readLock().lock();
+    try {
+      apply(counters, direction, repository, contentType, size);
+      if (journal != null) {
+        pendingRecords.add(new JournalRecord(direction, size, repository, contentType));
+      }
+    }
+    finally {
+      journalLock.readLock().unlock();
+    }
+    appendPendingRecords();
     dirty.set(true);
   }
 
-  private void updateProperties() {
-    propertiesFile.setProperty(TOTAL_SIZE_PROP_NAME, totalSize.toString());
-    propertiesFile.setProperty(BLOB_COUNT_PROP_NAME, blobCount.toString());
+  /**
+   * Appends the queued changes to the journal, unless another thread is already doing so.
+   */
+  private void appendPendingRecords() {
+    while (!pendingRecords.isEmpty() && appending.compareAndSet(false, true)) {
+      journalLock.readLock().lock();
+      try {
+        if (journal != null) {
+          JournalRecord record;
+          while ((record = pendingRecords.poll()) != null) {
+            record.writeTo(journal);
+          }
+          journal.flush();
+        }
+      }
+      catch (IOException e) {
+        // the in-memory counters are still correct, and the next checkpoint persists them
+        log.warn("Cannot append to blob store metrics journal", e);
+      }
+      finally {
+        journalLock.readLock().unlock();
+        appending.set(false);
+      }
+    }
+  }
+
+  private static void apply(final BlobStoreMetricsCounters counters,
+                            final byte direction,
+                            final String repository,
+                            final String contentType,
+                            final long size)
+  {
+    String repositoryName = repository == null || repository.isEmpty() ? null : repository;
+    String contentTypeName = contentType == null || contentType.isEmpty() ? null : contentType;
+    if (direction == ADDITION) {
+      counters.record(repositoryName, contentTypeName, 1, size);
+    }
+    else {
+      counters.record(repositoryName, contentTypeName, -1, -size);
+    }
+  }
+
+  @Override
+  public void remove() throws IOException {
+    if (storageDirectory == null) {
+      return; // never started, nothing written
+    }
+    for (Path journalFile : journals().values()) {
+      Files.deleteIfExists(journalFile);
+    }
+    Files.deleteIfExists(storageDirectory.resolve(METRICS_FILENAME));
+  }
+
+  private void replay(final Path journalFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)))) {
+      while (true) {
+        byte direction;
+        long size;
+        String repository;
+        String contentType;
+        try {
+          direction = in.readByte();
+          size = in.readLong();
+          repository = in.readUTF();
+          contentType = in.readUTF();
+        }
+        catch (EOFException e) {
+          // end of journal, possibly a record cut short by a crash
+          return;
+        }
+        apply(counters, direction, repository, contentType, size);
+      }
+    }
+  }
+
+  /**
+   * Writes the current counters to the properties file and starts a new journal generation.
+   */
+  private void checkpoint() throws IOException {
+    journalLock.writeLock().lock();
+    try {
+      checkpointLocked();
+    }
+    finally {
+      journalLock.writeLock().unlock();
+    }
   }
 
-  private void readProperties() {
-    String size = propertiesFile.getProperty(TOTAL_SIZE_PROP_NAME);
-    if (size != null) {
-      totalSize.set(Long.parseLong(size));
+  private void checkpointLocked() throws IOException {
+    // queued changes are already in the counters about to be written
+    pendingRecords.clear();
+    closeJournal();
+
+    long nextGeneration = journalGeneration + 1;
+    journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalFile(nextGeneration),
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+
+    PropertiesFile propertiesFile = new PropertiesFile(metricsDataFile.toFile());
+    counters.writeTo(propertiesFile);
+    propertiesFile.setProperty(JOURNAL_PROP_NAME, Long.toString(nextGeneration));
+    log.trace("Writing blob store metrics to {}", metricsDataFile);
+    propertiesFile.store();
+    journalGeneration = nextGeneration;
+
+    for (Map.Entry<Long, Path> entry : journals().entrySet()) {
+      if (entry.getKey() < journalGeneration) {
+        Files.deleteIfExists(entry.getValue());
+      }
+    }
+  }
+
+  private void closeJournal() throws IOException {
+    if (journal != null) {
+      try {
+        journal.close();
+      }
+      finally {
+        journal = null;
+      }
+    }
+  }
+
+  private Path journalFile(final long generation) {
+    return storageDirectory.resolve(JOURNAL_FILENAME_PREFIX + generation);
+  }
+
+  /**
+   * Returns the journal files in the storage directory, ordered by generation.
+   */
+  private SortedMap<Long, Path> journals() throws IOException {
+    SortedMap<Long, Path> journals = new TreeMap<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(storageDirectory, JOURNAL_FILENAME_PREFIX + "*")) {
+      for (Path path : stream) {
+        String suffix = path.getFileName().toString().substring(JOURNAL_FILENAME_PREFIX.length());
+        try {
+          journals.put(Long.parseLong(suffix), path);
+        }
+        catch (NumberFormatException e) {
+          log.warn("Ignoring unexpected blob store metrics journal {}", path);
+        }
+      }
+    }
+    return journals;
+  }
+
+  /**
+   * A change queued for the journal.
+   */
+  private static final class JournalRecord
+  {
+    private final byte direction;
+
+    private final long size;
+
+    private final String repository;
+
+    private final String contentType;
+
+    private JournalRecord(final byte direction, final long size, final String repository, final String contentType) {
+      this.direction = direction;
+      this.size = size;
+      this.repository = repository;
+      this.contentType = contentType;
     }
 
-    String count = propertiesFile.getProperty(BLOB_COUNT_PROP_NAME);
-    if (count != null) {
-      blobCount.set(Long.parseLong(count));
+    private void writeTo(final DataOutputStream out) throws IOException {
+      out.writeByte(direction);
+      out.writeLong(size);
+      out.writeUTF(repository != null ? repository : "");
+      out.writeUTF(contentType != null ? contentType : "");
     }
   }
 }
@@ -0,0 +1,204 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.file.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.blobstore.api.BlobMetrics;
+
+import org.joda.time.DateTime;
+
+/**
+ * Reads and writes the compact binary attribute record that {@code file/2} blob stores append to each blob's
+ * content file, in place of a separate {@code .properties} file.
+ *
+ * The content file layout is {@code [content][record][flags][record length][magic]}, where the record holds the
+ * creation time, content size, SHA-1 and headers, and the fixed size footer allows the record to be found by reading
+ * the end of the file. Keeping the record after the content means blob content still starts at offset zero.
+ *
+ * @since 3.1
+ */
+public class BlobTrailer
+{
+  private static final int MAGIC = 0x4e584231; // NXB1
+
+  private static final int FOOTER_SIZE = 1 + 4 + 4;
+
+  private static final byte DELETED_FLAG = 0x01;
+
+  /**
+   * Largest record accepted when reading; guards against treating arbitrary content as a trailer.
+   */
+  private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+  private BlobTrailer() {
+    // empty
+  }
+
+  /**
+   * Appends a trailer to the given content file, which must already hold exactly the blob's content.
+   */
+  public static void append(final Path path, final Map<String, String> headers, final BlobMetrics metrics)
+      throws IOException
+  {
+    ByteArrayOutputStream buff = new ByteArrayOutputStream(256);
+    DataOutputStream out = new DataOutputStream(buff);
+    out.writeLong(metrics.getCreationTime().getMillis());
+    out.writeLong(metrics.getContentSize());
+    out.writeUTF(metrics.getSha1Hash());
+    out.writeInt(headers.size());
+    for (Entry<String, String> header : headers.entrySet()) {
+      out.writeUTF(header.getKey());
+      out.writeUTF(header.getValue());
+    }
+    int recordSize = buff.size();
+    out.writeByte(0);
+    out.writeInt(recordSize);
+    out.writeInt(MAGIC);
+    out.flush();
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      ByteBuffer bytes = ByteBuffer.wrap(buff.toByteArray());
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+    }
+  }
+
+  /**
+   * Reads the trailer of the given content file.
+   *
+   * @return {@code null} if the file does not exist or does not end with a valid trailer
+   */
+  @Nullable
+  public static BlobAttributes read(final Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      Footer footer = readFooter(channel);
+      if (footer == null) {
+        return null;
+      }
+      ByteBuffer record = ByteBuffer.allocate(footer.recordSize);
+      readFully(channel, record, footer.recordOffset);
+      return readRecord(record.array(), footer);
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static BlobAttributes readRecord(final byte[] record, final Footer footer) throws IOException {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+      long creationTime = in.readLong();
+      long contentSize = in.readLong();
+      if (contentSize != footer.recordOffset) {
+        return null;
+      }
+      String sha1 = in.readUTF();
+      int headerCount = in.readInt();
+      Map<String, String> headers = new HashMap<>();
+      for (int i = 0; i < headerCount; i++) {
+        headers.put(in.readUTF(), in.readUTF());
+      }
+      return new BlobAttributes(headers, new BlobMetrics(new DateTime(creationTime), sha1, contentSize),
+          (footer.flags & DELETED_FLAG) != 0);
+    }
+    catch (EOFException | UTFDataFormatException e) {
+      // content that merely happens to end like a trailer
+      return null;
+    }
+  }
+
+  /**
+   * Sets the deleted flag in the trailer of the given content file.
+   *
+   * @return {@code false} if the file does not exist or does not end with a valid trailer
+   */
+  public static boolean markDeleted(final Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      Footer footer = readFooter(channel);
+      if (footer == null) {
+        return false;
+      }
+      ByteBuffer flags = ByteBuffer.wrap(new byte[]{(byte) (footer.flags | DELETED_FLAG)});
+      channel.write(flags, channel.size() - FOOTER_SIZE);
+      return true;
+    }
+    catch (NoSuchFileException e) {
+      return false;
+    }
+  }
+
+  @Nullable
+  private static Footer readFooter(final FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < FOOTER_SIZE) {
+      return null;
+    }
+    ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+    readFully(channel, footer, size - FOOTER_SIZE);
+    footer.flip();
+    byte flags = footer.get();
+    int recordSize = footer.getInt();
+    int magic = footer.getInt();
+    if (magic != MAGIC || recordSize <= 0 || recordSize > MAX_RECORD_SIZE || recordSize > size - FOOTER_SIZE) {
+      return null;
+    }
+    return new Footer(flags, recordSize, size - FOOTER_SIZE - recordSize);
+  }
+
+  private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+      throws IOException
+  {
+    long offset = position;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, offset);
+      if (read < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+      offset += read;
+    }
+  }
+
+  private static class Footer
+  {
+    private final byte flags;
+
+    private final int recordSize;
+
+    private final long recordOffset;
+
+    private Footer(final byte flags, final int recordSize, final long recordOffset) {
+      this.flags = flags;
+      this.recordSize = recordSize;
+      this.recordOffset = recordOffset;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.file.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A read-only {@link SeekableByteChannel} that exposes only the first {@code limit} bytes of another channel.
+ *
+ * @since 3.1
+ */
+public class BoundedSeekableByteChannel
+    implements SeekableByteChannel
+{
+  private final SeekableByteChannel channel;
+
+  private final long limit;
+
+  public BoundedSeekableByteChannel(final SeekableByteChannel channel, final long limit) {
+    this.channel = checkNotNull(channel);
+    checkArgument(limit >= 0, "Negative limit: %s", limit);
+    this.limit = limit;
+  }
+
+  @Override
+  public int read(final ByteBuffer dst) throws IOException {
+    long remaining = limit - channel.position();
+    if (remaining <= 0) {
+      return -1;
+    }
+    if (dst.remaining() <= remaining) {
+      return channel.read(dst);
+    }
+    int originalLimit = dst.limit();
+    dst.limit(dst.position() + (int) remaining);
+    try {
+      return channel.read(dst);
+    }
+    finally {
+      dst.limit(originalLimit);
+    }
+  }
+
+  @Override
+  public int write(final ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public long position() throws IOException {
+    return channel.position();
+  }
+
+  @Override
+  public SeekableByteChannel position(final long newPosition) throws IOException {
+    channel.position(newPosition);
+    return this;
+  }
+
+  @Override
+  public long size() throws IOException {
+    return Math.min(limit, channel.size());
+  }
+
+  @Override
+  public SeekableByteChannel truncate(final long size) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.file.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a blob store compaction run, safe to read while the run is in progress.
+ *
+ * @since 3.1
+ */
+public class CompactionProgress
+{
+  private final long queued;
+
+  private final AtomicLong deleted = new AtomicLong();
+
+  private final AtomicLong requeued = new AtomicLong();
+
+  private final AtomicLong failed = new AtomicLong();
+
+  private final AtomicLong bytesReclaimed = new AtomicLong();
+
+  private volatile boolean finished;
+
+  public CompactionProgress(final long queued) {
+    this.queued = queued;
+  }
+
+  /**
+   * Number of soft-deleted blobs queued for compaction when the run started.
+   */
+  public long getQueued() {
+    return queued;
+  }
+
+  public long getProcessed() {
+    return deleted.get() + requeued.get() + failed.get();
+  }
+
+  public long getDeleted() {
+    return deleted.get();
+  }
+
+  /**
+   * Number of blobs which were still in use, and so were put back in the queue for the next run.
+   */
+  public long getRequeued() {
+    return requeued.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public long getBytesReclaimed() {
+    return bytesReclaimed.get();
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public void blobDeleted(final long size) {
+    deleted.incrementAndGet();
+    bytesReclaimed.addAndGet(size);
+  }
+
+  public void blobRequeued() {
+    requeued.incrementAndGet();
+  }
+
+  public void blobFailed() {
+    failed.incrementAndGet();
+  }
+
+  public void finish() {
+    finished = true;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" +
+        "queued=" + queued +
+        ", deleted=" + deleted +
+        ", requeued=" + requeued +
+        ", failed=" + failed +
+        ", bytesReclaimed=" + bytesReclaimed +
+        ", finished=" + finished +
+        '}';
+  }
+}
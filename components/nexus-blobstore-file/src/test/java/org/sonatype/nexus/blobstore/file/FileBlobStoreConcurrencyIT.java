@@ -35,6 +35,7 @@ import org.sonatype.nexus.blobstore.file.internal.BlobStoreMetricsStoreImpl;
 import org.sonatype.nexus.blobstore.file.internal.MetricsInputStream;
 import org.sonatype.nexus.common.app.ApplicationDirectories;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteStreams;
@@ -91,7 +92,8 @@ public class FileBlobStoreConcurrencyIT
         new SimpleFileOperations(),
         metricsStore,
         config,
-        applicationDirectories);
+        applicationDirectories,
+        new MetricRegistry());
     underTest.start();
   }
 
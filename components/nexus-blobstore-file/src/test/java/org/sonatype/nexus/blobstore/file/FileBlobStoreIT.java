@@ -15,28 +15,45 @@ package org.sonatype.nexus.blobstore.file;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.sonatype.goodies.testsupport.TestSupport;
 import org.sonatype.nexus.blobstore.api.Blob;
+import org.sonatype.nexus.blobstore.api.BlobId;
 import org.sonatype.nexus.blobstore.api.BlobMetrics;
 import org.sonatype.nexus.blobstore.api.BlobStoreConfiguration;
 import org.sonatype.nexus.blobstore.api.BlobStoreMetrics;
 import org.sonatype.nexus.blobstore.file.internal.BlobStoreMetricsStore;
 import org.sonatype.nexus.blobstore.file.internal.BlobStoreMetricsStoreImpl;
+import org.sonatype.nexus.blobstore.file.internal.CompactionProgress;
 import org.sonatype.nexus.common.app.ApplicationDirectories;
+import org.sonatype.nexus.common.collect.AutoClosableIterable;
 import org.sonatype.nexus.common.io.DirectoryHelper;
+import org.sonatype.nexus.common.property.PropertiesFile;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteStreams;
+import com.squareup.tape.QueueFile;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import static com.jayway.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
@@ -65,13 +82,19 @@ public class FileBlobStoreIT
 
   private Path blobStoreDirectory;
 
+  private ApplicationDirectories applicationDirectories;
+
+  private BlobStoreConfiguration config;
+
   private PeriodicJobServiceImpl jobService;
 
   private BlobStoreMetricsStore metricsStore;
 
+  private MetricRegistry metricRegistry;
+
   @Before
   public void setUp() throws Exception {
-    ApplicationDirectories applicationDirectories = mock(ApplicationDirectories.class);
+    applicationDirectories = mock(ApplicationDirectories.class);
     blobStoreDirectory = util.createTempDir().toPath();
     when(applicationDirectories.getWorkDirectory(anyString())).thenReturn(blobStoreDirectory.toFile());
 
@@ -80,12 +103,15 @@ public class FileBlobStoreIT
 
     metricsStore = new BlobStoreMetricsStoreImpl(jobService);
 
-    final BlobStoreConfiguration config = new BlobStoreConfiguration();
+    metricRegistry = new MetricRegistry();
+
+    config = new BlobStoreConfiguration();
     config.attributes(FileBlobStore.CONFIG_KEY).set(FileBlobStore.PATH_KEY, blobStoreDirectory.toString());
     underTest = new FileBlobStore(new VolumeChapterLocationStrategy(),
         new SimpleFileOperations(),
         applicationDirectories,
-        metricsStore);
+        metricsStore,
+        metricRegistry);
     underTest.init(config);
     underTest.start();
   }
@@ -199,6 +225,208 @@ public class FileBlobStoreIT
     assertThat(newBlob, is(nullValue()));
   }
 
+  @Test
+  public void compactionIsThrottledAndReportsProgress() throws Exception {
+    final byte[] content = new byte[TEST_DATA_LENGTH];
+    new Random().nextBytes(content);
+
+    config.attributes(FileBlobStore.CONFIG_KEY).set(FileBlobStore.COMPACT_OPS_PER_SECOND_KEY, 1000);
+    config.attributes(FileBlobStore.CONFIG_KEY).set(FileBlobStore.COMPACT_BYTES_PER_SECOND_KEY, 1024 * 1024);
+
+    for (int i = 0; i < 20; i++) {
+      final Blob blob = underTest.create(new ByteArrayInputStream(content), TEST_HEADERS);
+      underTest.delete(blob.getId());
+    }
+    final Blob live = underTest.create(new ByteArrayInputStream(content), TEST_HEADERS);
+
+    underTest.compact();
+
+    final CompactionProgress progress = underTest.getCompactionProgress();
+    assertThat(progress.isFinished(), is(true));
+    assertThat(progress.getQueued(), is(20L));
+    assertThat(progress.getDeleted(), is(20L));
+    assertThat(progress.getBytesReclaimed(), is(20L * TEST_DATA_LENGTH));
+
+    final String prefix = MetricRegistry.name(FileBlobStore.class, "compaction");
+    final Map<String, Gauge> gauges = metricRegistry.getGauges();
+    assertThat(gauges.get(MetricRegistry.name(prefix, "running")).getValue(), is(0L));
+    assertThat(gauges.get(MetricRegistry.name(prefix, "deleted")).getValue(), is(20L));
+    assertThat(gauges.get(MetricRegistry.name(prefix, "bytesReclaimed")).getValue(), is(20L * TEST_DATA_LENGTH));
+
+    final Set<BlobId> remaining = new HashSet<>();
+    try (AutoClosableIterable<BlobId> blobIds = underTest.iterator()) {
+      blobIds.forEach(remaining::add);
+    }
+    assertThat(remaining, is(equalTo(Collections.singleton(live.getId()))));
+  }
+
+  @Test
+  public void compactionBatchInterruptedByCrashIsRequeued() throws Exception {
+    final byte[] content = new byte[TEST_DATA_LENGTH];
+    new Random().nextBytes(content);
+
+    final Blob blob = underTest.create(new ByteArrayInputStream(content), TEST_HEADERS);
+    underTest.stop();
+
+    // simulate a crash after the entry was taken from the deletions index but before it was hard-deleted
+    final QueueFile compacting =
+        new QueueFile(blobStoreDirectory.resolve(FileBlobStore.COMPACTING_FILENAME).toFile());
+    try {
+      compacting.add(blob.getId().toString().getBytes(Charsets.UTF_8));
+    }
+    finally {
+      compacting.close();
+    }
+
+    metricsStore = new BlobStoreMetricsStoreImpl(jobService);
+    underTest = new FileBlobStore(new VolumeChapterLocationStrategy(),
+        new SimpleFileOperations(),
+        applicationDirectories,
+        metricsStore,
+        metricRegistry);
+    underTest.init(config);
+    underTest.start();
+
+    underTest.compact();
+
+    assertThat(underTest.getCompactionProgress().getDeleted(), is(1L));
+    assertThat(underTest.get(blob.getId()), is(nullValue()));
+  }
+
+  @Test
+  public void iterateBlobIds() throws Exception {
+    final byte[] content = new byte[TEST_DATA_LENGTH];
+    new Random().nextBytes(content);
+
+    final Set<BlobId> created = new HashSet<>();
+    for (int i = 0; i < 50; i++) {
+      created.add(underTest.create(new ByteArrayInputStream(content), TEST_HEADERS).getId());
+    }
+
+    final Set<BlobId> iterated = new HashSet<>();
+    final Set<BlobId> iteratedAgain = new HashSet<>();
+    try (AutoClosableIterable<BlobId> blobIds = underTest.iterator()) {
+      blobIds.forEach(iterated::add);
+      blobIds.forEach(iteratedAgain::add);
+    }
+    assertThat(iterated, is(equalTo(created)));
+    assertThat(iteratedAgain, is(equalTo(created)));
+
+    final Set<BlobId> walked = ConcurrentHashMap.newKeySet();
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      underTest.forEachBlobId(pool, walked::add);
+    }
+    finally {
+      pool.shutdown();
+    }
+    assertThat(walked, is(equalTo(created)));
+  }
+
+  @Test
+  public void migrateToV2Layout() throws Exception {
+    final byte[] content = new byte[TEST_DATA_LENGTH];
+    new Random().nextBytes(content);
+
+    final Blob kept = underTest.create(new ByteArrayInputStream(content), TEST_HEADERS);
+    final Blob deleted = underTest.create(new ByteArrayInputStream(content), TEST_HEADERS);
+    underTest.delete(deleted.getId());
+    underTest.stop();
+
+    config.attributes(FileBlobStore.CONFIG_KEY).set(FileBlobStore.LAYOUT_KEY, FileBlobStore.TYPE_V2);
+    metricsStore = new BlobStoreMetricsStoreImpl(jobService);
+    underTest = new FileBlobStore(new VolumeChapterLocationStrategy(),
+        new SimpleFileOperations(),
+        applicationDirectories,
+        metricsStore,
+        metricRegistry);
+    underTest.init(config);
+    underTest.start();
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> !metadata().containsKey(FileBlobStore.MIGRATING_KEY));
+
+    assertThat(metadata().getProperty(FileBlobStore.TYPE_KEY), is(FileBlobStore.TYPE_V2));
+    try (DirectoryStream<Path> attributeFiles = Files.newDirectoryStream(
+        blobStoreDirectory.resolve("content").resolve(new VolumeChapterLocationStrategy().location(kept.getId()))
+            .getParent(), "*" + FileBlobStore.BLOB_ATTRIBUTE_SUFFIX)) {
+      assertThat(attributeFiles.iterator().hasNext(), is(false));
+    }
+
+    final Blob migrated = underTest.get(kept.getId());
+    assertThat(migrated.getHeaders(), is(equalTo(TEST_HEADERS)));
+    assertThat(migrated.getMetrics().getContentSize(), is((long) TEST_DATA_LENGTH));
+    assertThat(extractContent(migrated), is(equalTo(content)));
+    assertThat(underTest.get(deleted.getId()), is(nullValue()));
+
+    final Blob created = underTest.create(new ByteArrayInputStream(content), TEST_HEADERS);
+    assertThat(extractContent(underTest.get(created.getId())), is(equalTo(content)));
+    assertThat(underTest.delete(created.getId()), is(true));
+    assertThat(underTest.get(created.getId()), is(nullValue()));
+  }
+
+  @Test
+  public void migrationReplacesTrailerOfInterruptedAttempt() throws Exception {
+    final byte[] content = new byte[TEST_DATA_LENGTH];
+    new Random().nextBytes(content);
+
+    final Blob blob = underTest.create(new ByteArrayInputStream(content), TEST_HEADERS);
+    underTest.stop();
+
+    // simulate a crash part way through appending the trailer
+    final Path contentFile = blobStoreDirectory.resolve("content")
+        .resolve(new VolumeChapterLocationStrategy().location(blob.getId()) + FileBlobStore.BLOB_CONTENT_SUFFIX);
+    Files.write(contentFile, new byte[]{0, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    config.attributes(FileBlobStore.CONFIG_KEY).set(FileBlobStore.LAYOUT_KEY, FileBlobStore.TYPE_V2);
+    metricsStore = new BlobStoreMetricsStoreImpl(jobService);
+    underTest = new FileBlobStore(new VolumeChapterLocationStrategy(),
+        new SimpleFileOperations(),
+        applicationDirectories,
+        metricsStore,
+        metricRegistry);
+    underTest.init(config);
+    underTest.start();
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> !metadata().containsKey(FileBlobStore.MIGRATING_KEY));
+
+    final Blob migrated = underTest.get(blob.getId());
+    assertThat(migrated.getHeaders(), is(equalTo(TEST_HEADERS)));
+    assertThat(migrated.getMetrics().getContentSize(), is((long) TEST_DATA_LENGTH));
+    assertThat(extractContent(migrated), is(equalTo(content)));
+  }
+
+  @Test
+  public void migrationLeavesHardLinkedSourceFileUnchanged() throws Exception {
+    final Path sourceFile = testFile();
+    final byte[] content = extractContent(sourceFile);
+
+    final Blob blob = underTest.create(sourceFile, TEST_HEADERS);
+    underTest.stop();
+
+    config.attributes(FileBlobStore.CONFIG_KEY).set(FileBlobStore.LAYOUT_KEY, FileBlobStore.TYPE_V2);
+    metricsStore = new BlobStoreMetricsStoreImpl(jobService);
+    underTest = new FileBlobStore(new VolumeChapterLocationStrategy(),
+        new SimpleFileOperations(),
+        applicationDirectories,
+        metricsStore,
+        metricRegistry);
+    underTest.init(config);
+    underTest.start();
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> !metadata().containsKey(FileBlobStore.MIGRATING_KEY));
+
+    assertThat(extractContent(sourceFile), is(equalTo(content)));
+    final Blob migrated = underTest.get(blob.getId());
+    assertThat(migrated.getHeaders(), is(equalTo(TEST_HEADERS)));
+    assertThat(extractContent(migrated), is(equalTo(content)));
+  }
+
+  private PropertiesFile metadata() throws IOException {
+    PropertiesFile metadata = new PropertiesFile(blobStoreDirectory.resolve(FileBlobStore.METADATA_FILENAME).toFile());
+    metadata.load();
+    return metadata;
+  }
+
   @Test
   public void blobstoreRemovalPreservesExternalFiles() throws Exception {
     final byte[] content = new byte[TEST_DATA_LENGTH];
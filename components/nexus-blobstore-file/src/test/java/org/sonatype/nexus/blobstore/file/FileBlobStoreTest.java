@@ -23,6 +23,7 @@ import org.sonatype.nexus.blobstore.file.FileBlobStore.FileBlob;
 import org.sonatype.nexus.blobstore.file.internal.BlobStoreMetricsStore;
 import org.sonatype.nexus.common.app.ApplicationDirectories;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Before;
@@ -71,7 +72,7 @@ public class FileBlobStoreTest
 
     underTest = new FileBlobStore(util.createTempDir().toPath(),
         locationStrategy, fileOperations, metrics, new BlobStoreConfiguration(),
-        appDirs);
+        appDirs, new MetricRegistry());
     when(loadingCache.getUnchecked(any())).thenReturn(underTest.new FileBlob(new BlobId("fakeid")));
     underTest.setLiveBlobs(loadingCache);
   }
@@ -12,20 +12,29 @@
  */
 package org.sonatype.nexus.blobstore.file.internal;
 
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.blobstore.api.BlobStore;
 import org.sonatype.nexus.blobstore.api.BlobStoreMetrics;
 import org.sonatype.nexus.blobstore.file.FileBlobStore;
 import org.sonatype.nexus.blobstore.file.PeriodicJobServiceImpl;
 import org.sonatype.nexus.common.property.PropertiesFile;
 
+import com.google.common.collect.ImmutableMap;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 /**
  * {@link FileBlobStore} integration tests.
@@ -84,4 +93,140 @@ public class BlobStoreMetricsStoreImplIT
     assertThat(metrics.getBlobCount(), is(32L));
     assertThat(metrics.getTotalSize(), is(200L));
   }
+
+  @Test
+  public void metricsAreBrokenDownByRepositoryAndContentType() throws Exception {
+    underTest.start();
+
+    underTest.recordAddition(headers("maven-central", "application/java-archive"), 1000);
+    underTest.recordAddition(headers("maven-central", "text/xml"), 10);
+    underTest.recordAddition(headers("npm-proxy", "text/xml"), 20);
+    underTest.recordDeletion(headers("maven-central", "text/xml"), 10);
+
+    assertThat(underTest.getMetrics().getBlobCount(), is(2L));
+    assertThat(underTest.getMetrics().getTotalSize(), is(1020L));
+
+    Map<String, BlobUsage> repositories = underTest.getRepositoryUsage();
+    assertThat(repositories.get("maven-central").getBlobCount(), is(1L));
+    assertThat(repositories.get("maven-central").getTotalSize(), is(1000L));
+    assertThat(repositories.get("npm-proxy").getTotalSize(), is(20L));
+
+    Map<String, BlobUsage> contentTypes = underTest.getContentTypeUsage();
+    assertThat(contentTypes.get("text/xml").getBlobCount(), is(1L));
+    assertThat(contentTypes.get("text/xml").getTotalSize(), is(20L));
+  }
+
+  @Test
+  public void journalIsReplayedAfterCrash() throws Exception {
+    underTest.start();
+    underTest.recordAddition(headers("maven-central", "text/xml"), 100);
+    underTest.recordAddition(headers("maven-central", "text/xml"), 200);
+
+    // simulate a crash by copying the files before the next checkpoint, then restarting from the copy
+    Path crashedDirectory = util.createTempDir().toPath();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(blobStoreDirectory)) {
+      for (Path file : files) {
+        Files.copy(file, crashedDirectory.resolve(file.getFileName()));
+      }
+    }
+
+    BlobStoreMetricsStoreImpl restarted = new BlobStoreMetricsStoreImpl(jobService);
+    restarted.setStorageDir(crashedDirectory);
+    restarted.start();
+    try {
+      assertThat(restarted.getMetrics().getBlobCount(), is(2L));
+      assertThat(restarted.getMetrics().getTotalSize(), is(300L));
+      assertThat(restarted.getRepositoryUsage().get("maven-central").getTotalSize(), is(300L));
+    }
+    finally {
+      restarted.stop();
+    }
+  }
+
+  @Test
+  public void concurrentRecordsAreAllJournaled() throws Exception {
+    underTest.start();
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (int i = 0; i < 1000; i++) {
+        executor.execute(() -> underTest.recordAddition(headers("maven-central", "text/xml"), 10));
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS), is(true));
+
+    Path crashedDirectory = util.createTempDir().toPath();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(blobStoreDirectory)) {
+      for (Path file : files) {
+        Files.copy(file, crashedDirectory.resolve(file.getFileName()));
+      }
+    }
+
+    BlobStoreMetricsStoreImpl restarted = new BlobStoreMetricsStoreImpl(jobService);
+    restarted.setStorageDir(crashedDirectory);
+    restarted.start();
+    try {
+      assertThat(restarted.getMetrics().getBlobCount(), is(1000L));
+      assertThat(restarted.getMetrics().getTotalSize(), is(10000L));
+    }
+    finally {
+      restarted.stop();
+    }
+  }
+
+  @Test
+  public void metricsSurviveRestart() throws Exception {
+    underTest.start();
+    underTest.recordAddition(headers("maven-central", "text/xml"), 100);
+    underTest.stop();
+    underTest = null;
+
+    BlobStoreMetricsStoreImpl restarted = new BlobStoreMetricsStoreImpl(jobService);
+    restarted.setStorageDir(blobStoreDirectory);
+    restarted.start();
+    try {
+      assertThat(restarted.getMetrics().getBlobCount(), is(1L));
+      assertThat(restarted.getRepositoryUsage().get("maven-central").getTotalSize(), is(100L));
+    }
+    finally {
+      restarted.stop();
+    }
+  }
+
+  @Test
+  public void replaceDiscardsPreviousMetrics() throws Exception {
+    underTest.start();
+    underTest.recordAddition(headers("maven-central", "text/xml"), 100);
+
+    BlobStoreMetricsCounters counters = new BlobStoreMetricsCounters();
+    counters.add(headers("npm-proxy", "application/json"), 50);
+    underTest.replace(counters);
+
+    assertThat(underTest.getMetrics().getTotalSize(), is(50L));
+    assertThat(underTest.getRepositoryUsage().get("maven-central"), is(nullValue()));
+    assertThat(underTest.getRepositoryUsage().get("npm-proxy").getTotalSize(), is(50L));
+  }
+
+  @Test
+  public void removeDeletesPropertiesAndJournals() throws Exception {
+    underTest.start();
+    underTest.recordAddition(headers("maven-central", "text/xml"), 100);
+    underTest.stop();
+    underTest.remove();
+    underTest = null;
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(blobStoreDirectory)) {
+      assertThat(files.iterator().hasNext(), is(false));
+    }
+  }
+
+  private static Map<String, String> headers(final String repository, final String contentType) {
+    return ImmutableMap.of(
+        BlobStoreMetricsCounters.REPO_NAME_HEADER, repository,
+        BlobStore.CONTENT_TYPE_HEADER, contentType
+    );
+  }
 }
@@ -0,0 +1,85 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.file.internal;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.blobstore.api.BlobMetrics;
+
+import com.google.common.collect.ImmutableMap;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests {@link BlobTrailer}.
+ */
+public class BlobTrailerTest
+    extends TestSupport
+{
+  private static final byte[] CONTENT = "some content".getBytes();
+
+  private Path contentFile;
+
+  @Before
+  public void setUp() throws Exception {
+    contentFile = util.createTempFile().toPath();
+    Files.write(contentFile, CONTENT);
+  }
+
+  @Test
+  public void roundTrip() throws Exception {
+    DateTime created = new DateTime(1234567890L);
+    BlobTrailer.append(contentFile, ImmutableMap.of("BlobStore.blob-name", "foo/bar.jar"),
+        new BlobMetrics(created, "cafebabe", CONTENT.length));
+
+    BlobAttributes attributes = BlobTrailer.read(contentFile);
+
+    assertThat(attributes, is(notNullValue()));
+    assertThat(attributes.getHeaders(), is(equalTo(ImmutableMap.of("BlobStore.blob-name", "foo/bar.jar"))));
+    assertThat(attributes.getMetrics().getCreationTime(), is(equalTo(created)));
+    assertThat(attributes.getMetrics().getSha1Hash(), is("cafebabe"));
+    assertThat(attributes.getMetrics().getContentSize(), is((long) CONTENT.length));
+    assertThat(attributes.isDeleted(), is(false));
+  }
+
+  @Test
+  public void markDeleted() throws Exception {
+    BlobTrailer.append(contentFile, ImmutableMap.of(), new BlobMetrics(new DateTime(), "cafebabe", CONTENT.length));
+
+    assertThat(BlobTrailer.markDeleted(contentFile), is(true));
+
+    assertThat(BlobTrailer.read(contentFile).isDeleted(), is(true));
+  }
+
+  @Test
+  public void plainContentHasNoTrailer() throws Exception {
+    assertThat(BlobTrailer.read(contentFile), is(nullValue()));
+    assertThat(BlobTrailer.markDeleted(contentFile), is(false));
+  }
+
+  @Test
+  public void missingFileHasNoTrailer() throws Exception {
+    Files.delete(contentFile);
+
+    assertThat(BlobTrailer.read(contentFile), is(nullValue()));
+  }
+}
@@ -15,10 +15,12 @@ package org.sonatype.nexus.common.hash;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 
@@ -31,6 +33,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * An {@link InputStream} that maintains multiple hashes and the number of bytes of data read from it.
  *
+ * Consumers further down an ingest pipeline can check {@link #algorithms()} and reuse the computed hashes rather than
+ * digesting the same bytes again.
+ *
  * @see HashingInputStream
  * @since 3.0
  */
@@ -41,6 +46,8 @@ public class MultiHashingInputStream
 
   private long count;
 
+  private Map<HashAlgorithm, HashCode> hashes;
+
   public MultiHashingInputStream(final Iterable<HashAlgorithm> algorithms, final InputStream inputStream) {
     super(checkNotNull(inputStream));
     checkNotNull(algorithms);
@@ -89,14 +96,27 @@ public class MultiHashingInputStream
   }
 
   /**
-   * Gets the {@link HashCode}s based on the data read from this stream.
+   * Gets the algorithms this stream is computing hashes for.
+   *
+   * @since 3.1
+   */
+  public Set<HashAlgorithm> algorithms() {
+    return Collections.unmodifiableSet(hashers.keySet());
+  }
+
+  /**
+   * Gets the {@link HashCode}s based on the data read from this stream. The hashes are finalized on the first call,
+   * so this should only be called once the stream has been fully consumed; later calls return the same values.
    */
   public Map<HashAlgorithm, HashCode> hashes() {
-    Map<HashAlgorithm, HashCode> hashes = new HashMap<>(hashers.size());
-    for (Entry<HashAlgorithm, Hasher> entry : hashers.entrySet()) {
-      hashes.put(entry.getKey(), entry.getValue().hash());
+    if (hashes == null) {
+      Map<HashAlgorithm, HashCode> result = new HashMap<>(hashers.size());
+      for (Entry<HashAlgorithm, Hasher> entry : hashers.entrySet()) {
+        result.put(entry.getKey(), entry.getValue().hash());
+      }
+      hashes = result;
     }
-    return hashes;
+    return new HashMap<>(hashes);
   }
 
   /**
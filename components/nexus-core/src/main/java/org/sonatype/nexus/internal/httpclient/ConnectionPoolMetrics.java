@@ -0,0 +1,119 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.internal.httpclient;
+
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Sets;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Exports leased, pending and available connection counts of a connection pool, in total and per route,
+ * to the {@link MetricRegistry}.
+ *
+ * Route gauges are registered lazily as routes appear in the pool, see {@link #update()}.
+ *
+ * @since 3.1
+ */
+class ConnectionPoolMetrics
+{
+  private final MetricRegistry metricRegistry;
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+
+  private final String prefix;
+
+  private final Set<HttpRoute> routes = Sets.newConcurrentHashSet();
+
+  private final Set<String> names = Sets.newConcurrentHashSet();
+
+  private volatile boolean removed;
+
+  ConnectionPoolMetrics(final MetricRegistry metricRegistry,
+                        final PoolingHttpClientConnectionManager connectionManager,
+                        final String poolName)
+  {
+    this.metricRegistry = checkNotNull(metricRegistry);
+    this.connectionManager = checkNotNull(connectionManager);
+    this.prefix = MetricRegistry.name("nexus.httpclient.pool", checkNotNull(poolName));
+
+    register(MetricRegistry.name(prefix, "total"), null);
+  }
+
+  /**
+   * Registers gauges for any routes that appeared in the pool since the last update.
+   */
+  void update() {
+    if (removed) {
+      return;
+    }
+    for (HttpRoute route : connectionManager.getRoutes()) {
+      if (routes.add(route)) {
+        register(MetricRegistry.name(prefix, "route", routeName(route)), route);
+      }
+    }
+  }
+
+  /**
+   * Removes all gauges of this pool. Only gauges registered by this instance are removed, as the pool name may be a
+   * prefix of another pool's name.
+   */
+  void remove() {
+    removed = true;
+    for (String name : names) {
+      metricRegistry.remove(name);
+    }
+    names.clear();
+    routes.clear();
+  }
+
+  private void register(final String name, @Nullable final HttpRoute route) {
+    register(MetricRegistry.name(name, "leased"), (Gauge<Integer>) () -> stats(route).getLeased());
+    register(MetricRegistry.name(name, "pending"), (Gauge<Integer>) () -> stats(route).getPending());
+    register(MetricRegistry.name(name, "available"), (Gauge<Integer>) () -> stats(route).getAvailable());
+    register(MetricRegistry.name(name, "max"), (Gauge<Integer>) () -> stats(route).getMax());
+  }
+
+  private void register(final String name, final Gauge<Integer> gauge) {
+    metricRegistry.register(name, gauge);
+    names.add(name);
+  }
+
+  private PoolStats stats(@Nullable final HttpRoute route) {
+    return route == null ? connectionManager.getTotalStats() : connectionManager.getStats(route);
+  }
+
+  /**
+   * Metric-friendly route name, ie. {@code https_repo1.maven.org_443} or {@code ..._via_proxy_8080}.
+   */
+  static String routeName(final HttpRoute route) {
+    StringBuilder buff = new StringBuilder();
+    buff.append(route.getTargetHost().getSchemeName()).append('_')
+        .append(route.getTargetHost().getHostName()).append('_')
+        .append(route.getTargetHost().getPort());
+    if (route.getProxyHost() != null) {
+      buff.append("_via_")
+          .append(route.getProxyHost().getHostName()).append('_')
+          .append(route.getProxyHost().getPort());
+    }
+    return buff.toString();
+  }
+}
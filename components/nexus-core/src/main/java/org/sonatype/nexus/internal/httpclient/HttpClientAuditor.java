@@ -65,6 +65,7 @@ public class HttpClientAuditor
         attributes.put("connection.maximumRetries", string(connection.getMaximumRetries()));
         attributes.put("connection.userAgentSuffix", string(connection.getUserAgentSuffix()));
         attributes.put("connection.useTrustStore", string(connection.getUseTrustStore()));
+        attributes.put("connection.connectionPoolSize", string(connection.getConnectionPoolSize()));
       }
 
       ProxyConfiguration proxy = configuration.getProxy();
@@ -213,7 +213,7 @@ public class HttpClientManagerImpl
     final HttpClientPlan plan = new HttpClientPlan();
 
     // attach connection manager early, so customizer has chance to replace it if needed
-    plan.getClient().setConnectionManager(sharedConnectionManager);
+    plan.setConnectionManager(sharedConnectionManager);
 
     // apply defaults
     defaultsCustomizer.customize(plan);
@@ -226,6 +226,14 @@ public class HttpClientManagerImpl
       customizer.customize(plan);
     }
 
+    // isolate named client from the shared pool if requested, unless the customizer brought its own connection
+    // manager; the client owns and shuts down its pool
+    if (plan.getConnectionPoolSize() != null && plan.getConnectionPoolName() != null
+        && plan.getConnectionManager() == sharedConnectionManager) {
+      plan.setConnectionManager(
+          sharedConnectionManager.createIsolated(plan.getConnectionPoolName(), plan.getConnectionPoolSize()));
+    }
+
     // apply plan to builder
     HttpClientBuilder builder = plan.getClient();
     builder.setDefaultConnectionConfig(plan.getConnection().build());
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.internal.httpclient;
 
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -23,6 +24,10 @@ import org.sonatype.goodies.common.Time;
 import org.sonatype.goodies.lifecycle.Lifecycle;
 import org.sonatype.nexus.httpclient.SSLContextSelector;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
@@ -32,6 +37,7 @@ import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.httpclient.HttpSchemes.HTTP;
 import static org.sonatype.nexus.httpclient.HttpSchemes.HTTPS;
@@ -41,6 +47,9 @@ import static org.sonatype.nexus.httpclient.HttpSchemes.HTTPS;
 /**
  * Shared {@link PoolingHttpClientConnectionManager}.
  *
+ * Also creates and maintains isolated pools for clients which must not compete for shared pool capacity,
+ * see {@link #createIsolated(String, int)}. Pool statistics are exported to the {@link MetricRegistry}.
+ *
  * @since 3.0
  */
 @Named("shared")
@@ -55,23 +64,49 @@ public class SharedHttpClientConnectionManager
 
   private final Time connectionPoolEvictingDelayTime;
 
+  private final Time connectionPoolValidateAfterInactivityTime;
+
+  private final Registry<ConnectionSocketFactory> socketFactoryRegistry;
+
+  private final MetricRegistry metricRegistry;
+
+  private final Set<IsolatedConnectionManager> isolatedManagers = Sets.newConcurrentHashSet();
+
   private ConnectionEvictionThread evictionThread;
 
+  private ConnectionPoolMetrics metrics;
+
   @Inject
   public SharedHttpClientConnectionManager(
       final List<SSLContextSelector> sslContextSelectors,
+      final MetricRegistry metricRegistry,
       @Named("${nexus.httpclient.connectionpool.size:-20}") final int connectionPoolSize,
       @Named("${nexus.httpclient.connectionpool.maxSize:-200}") final int connectionPoolMaxSize,
       @Named("${nexus.httpclient.connectionpool.idleTime:-30s}") final Time connectionPoolIdleTime,
       @Named("${nexus.httpclient.connectionpool.evictingDelayTime:-5s}") final Time connectionPoolEvictingDelayTime,
       @Named("${nexus.httpclient.connectionpool.validateAfterInactivityTime:-2s}") final Time connectionPoolValidateAfterInactivityTime)
+  {
+    this(createRegistry(sslContextSelectors), metricRegistry, connectionPoolSize, connectionPoolMaxSize,
+        connectionPoolIdleTime, connectionPoolEvictingDelayTime, connectionPoolValidateAfterInactivityTime);
+  }
+
+  private SharedHttpClientConnectionManager(
+      final Registry<ConnectionSocketFactory> socketFactoryRegistry,
+      final MetricRegistry metricRegistry,
+      final int connectionPoolSize,
+      final int connectionPoolMaxSize,
+      final Time connectionPoolIdleTime,
+      final Time connectionPoolEvictingDelayTime,
+      final Time connectionPoolValidateAfterInactivityTime)
   {
     super(
-        new DefaultHttpClientConnectionOperator(createRegistry(sslContextSelectors), null, null),
+        new DefaultHttpClientConnectionOperator(socketFactoryRegistry, null, null),
         null,
         connectionPoolIdleTime.toMillis(),
         TimeUnit.MILLISECONDS
     );
+    this.socketFactoryRegistry = socketFactoryRegistry;
+    this.metricRegistry = checkNotNull(metricRegistry);
 
     setMaxTotal(connectionPoolMaxSize);
     log.debug("Connection pool max-size: {}", connectionPoolMaxSize);
@@ -81,6 +116,7 @@ public class SharedHttpClientConnectionManager
 
     this.connectionPoolIdleTime = checkNotNull(connectionPoolIdleTime);
     this.connectionPoolEvictingDelayTime = checkNotNull(connectionPoolEvictingDelayTime);
+    this.connectionPoolValidateAfterInactivityTime = checkNotNull(connectionPoolValidateAfterInactivityTime);
     setValidateAfterInactivity(connectionPoolValidateAfterInactivityTime.toMillisI());
     log.debug("Connection pool idle-time: {}, evicting delay: {}, validate after inactivity: {}",
         connectionPoolIdleTime, connectionPoolEvictingDelayTime, connectionPoolValidateAfterInactivityTime);
@@ -93,6 +129,64 @@ public class SharedHttpClientConnectionManager
     return builder.build();
   }
 
+  /**
+   * Creates a connection manager with its own pool of given size, so the client using it neither competes with nor
+   * starves the shared pool. The returned manager is owned by the client and released on client close. Its metrics
+   * are named after the pool, taking them over from a previous pool of the same name which is not released yet.
+   *
+   * @since 3.1
+   */
+  public PoolingHttpClientConnectionManager createIsolated(final String poolName, final int poolSize) {
+    checkNotNull(poolName);
+    checkArgument(poolSize > 0, "Connection pool size must be greater than 0");
+    for (IsolatedConnectionManager previous : isolatedManagers) {
+      if (previous.name.equals(poolName)) {
+        previous.metrics.remove();
+      }
+    }
+    IsolatedConnectionManager manager = new IsolatedConnectionManager(poolName, poolSize);
+    isolatedManagers.add(manager);
+    log.debug("Created isolated connection pool {} of size {}", manager.name, poolSize);
+    return manager;
+  }
+
+  @VisibleForTesting
+  List<PoolingHttpClientConnectionManager> getIsolatedManagers() {
+    return ImmutableList.copyOf(isolatedManagers);
+  }
+
+  /**
+   * Closes expired connections of shared and isolated pools and registers gauges for newly seen routes.
+   */
+  @Override
+  public void closeExpiredConnections() {
+    super.closeExpiredConnections();
+    for (IsolatedConnectionManager manager : isolatedManagers) {
+      manager.closeExpiredConnections();
+    }
+    updateMetrics();
+  }
+
+  /**
+   * Closes idle connections of shared and isolated pools.
+   */
+  @Override
+  public void closeIdleConnections(final long idleTimeout, final TimeUnit tunit) {
+    super.closeIdleConnections(idleTimeout, tunit);
+    for (IsolatedConnectionManager manager : isolatedManagers) {
+      manager.closeIdleConnections(idleTimeout, tunit);
+    }
+  }
+
+  private void updateMetrics() {
+    if (metrics != null) {
+      metrics.update();
+    }
+    for (IsolatedConnectionManager manager : isolatedManagers) {
+      manager.metrics.update();
+    }
+  }
+
   /**
    * Do nothing in order to avoid unwanted shutdown of shared connection manager.
    *
@@ -111,6 +205,7 @@ public class SharedHttpClientConnectionManager
 
   @Override
   public void start() throws Exception {
+    metrics = new ConnectionPoolMetrics(metricRegistry, this, "shared");
     evictionThread = new ConnectionEvictionThread(this, connectionPoolIdleTime, connectionPoolEvictingDelayTime);
     evictionThread.start();
   }
@@ -120,6 +215,48 @@ public class SharedHttpClientConnectionManager
     evictionThread.interrupt();
     evictionThread = null;
 
+    for (IsolatedConnectionManager manager : isolatedManagers) {
+      manager.shutdown();
+    }
+    if (metrics != null) {
+      metrics.remove();
+      metrics = null;
+    }
+
     super.shutdown();
   }
+
+  /**
+   * Connection manager with its own pool, sharing socket factories and pool tuning with the shared manager.
+   */
+  private class IsolatedConnectionManager
+      extends PoolingHttpClientConnectionManager
+  {
+    private final String name;
+
+    private final ConnectionPoolMetrics metrics;
+
+    IsolatedConnectionManager(final String name, final int poolSize) {
+      super(
+          new DefaultHttpClientConnectionOperator(socketFactoryRegistry, null, null),
+          null,
+          connectionPoolIdleTime.toMillis(),
+          TimeUnit.MILLISECONDS
+      );
+      setMaxTotal(poolSize);
+      setDefaultMaxPerRoute(poolSize);
+      setValidateAfterInactivity(connectionPoolValidateAfterInactivityTime.toMillisI());
+      this.name = name;
+      this.metrics = new ConnectionPoolMetrics(metricRegistry, this, MetricRegistry.name("repository", name));
+    }
+
+    @Override
+    public void shutdown() {
+      if (isolatedManagers.remove(this)) {
+        metrics.remove();
+        log.debug("Released isolated connection pool {}", name);
+      }
+      super.shutdown();
+    }
+  }
 }
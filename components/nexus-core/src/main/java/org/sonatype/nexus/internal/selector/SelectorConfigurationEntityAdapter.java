@@ -14,14 +14,21 @@ package org.sonatype.nexus.internal.selector;
 
 import java.util.Map;
 
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.common.entity.EntityEvent;
+import org.sonatype.nexus.common.entity.EntityMetadata;
 import org.sonatype.nexus.orient.OClassNameBuilder;
 import org.sonatype.nexus.orient.OIndexNameBuilder;
+import org.sonatype.nexus.orient.entity.AttachedEntityMetadata;
 import org.sonatype.nexus.orient.entity.FieldCopier;
 import org.sonatype.nexus.orient.entity.IterableEntityAdapter;
 import org.sonatype.nexus.selector.SelectorConfiguration;
+import org.sonatype.nexus.selector.SelectorConfigurationCreatedEvent;
+import org.sonatype.nexus.selector.SelectorConfigurationDeletedEvent;
+import org.sonatype.nexus.selector.SelectorConfigurationUpdatedEvent;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
@@ -105,4 +112,28 @@ public class SelectorConfigurationEntityAdapter
     document.field(P_DESCRIPTION, entity.getDescription());
     document.field(P_ATTRIBUTES, entity.getAttributes());
   }
+
+  @Override
+  public boolean sendEvents() {
+    return true;
+  }
+
+  @Nullable
+  @Override
+  public EntityEvent newEvent(final ODocument document, final EventKind eventKind, final boolean isLocal) {
+    final EntityMetadata metadata = new AttachedEntityMetadata(this, document);
+    final String name = document.field(P_NAME);
+
+    log.trace("newEvent: eventKind: {}, name: {}, metadata: {}", eventKind, name, metadata);
+    switch (eventKind) {
+      case CREATE:
+        return new SelectorConfigurationCreatedEvent(metadata, isLocal, name);
+      case UPDATE:
+        return new SelectorConfigurationUpdatedEvent(metadata, isLocal, name);
+      case DELETE:
+        return new SelectorConfigurationDeletedEvent(metadata, isLocal, name);
+      default:
+        return null;
+    }
+  }
 }
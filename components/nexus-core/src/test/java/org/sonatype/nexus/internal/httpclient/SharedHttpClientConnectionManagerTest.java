@@ -0,0 +1,124 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.internal.httpclient;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests for {@link SharedHttpClientConnectionManager}.
+ */
+public class SharedHttpClientConnectionManagerTest
+    extends TestSupport
+{
+  private MetricRegistry metricRegistry;
+
+  private SharedHttpClientConnectionManager underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    metricRegistry = new MetricRegistry();
+    underTest = new SharedHttpClientConnectionManager(Collections.emptyList(), metricRegistry, 20, 200,
+        Time.seconds(30), Time.seconds(5), Time.seconds(2));
+    underTest.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    underTest.stop();
+  }
+
+  @Test
+  public void sharedPoolMetricsRegistered() {
+    assertThat(metricRegistry.getGauges().keySet(), hasItem("nexus.httpclient.pool.shared.total.leased"));
+    assertThat(gauge("nexus.httpclient.pool.shared.total.max"), equalTo(200));
+  }
+
+  @Test
+  public void isolatedPoolHasOwnLimits() {
+    PoolingHttpClientConnectionManager isolated = underTest.createIsolated("maven-central", 5);
+
+    assertThat(isolated.getMaxTotal(), equalTo(5));
+    assertThat(isolated.getDefaultMaxPerRoute(), equalTo(5));
+    assertThat(underTest.getMaxTotal(), equalTo(200));
+    assertThat(underTest.getIsolatedManagers(), contains(isolated));
+    assertThat(gauge("nexus.httpclient.pool.repository.maven-central.total.max"), equalTo(5));
+  }
+
+  @Test
+  public void isolatedPoolReleasedOnShutdown() {
+    PoolingHttpClientConnectionManager isolated = underTest.createIsolated("maven-central", 5);
+    isolated.shutdown();
+
+    assertThat(underTest.getIsolatedManagers(), empty());
+    assertThat(metricRegistry.getGauges().keySet(), not(hasItem("nexus.httpclient.pool.repository.maven-central.total.max")));
+  }
+
+  @Test
+  public void isolatedPoolOfSameNameTakesOverMetrics() {
+    PoolingHttpClientConnectionManager previous = underTest.createIsolated("maven-central", 5);
+    PoolingHttpClientConnectionManager isolated = underTest.createIsolated("maven-central", 10);
+    assertThat(gauge("nexus.httpclient.pool.repository.maven-central.total.max"), equalTo(10));
+
+    previous.shutdown();
+    assertThat(gauge("nexus.httpclient.pool.repository.maven-central.total.max"), equalTo(10));
+    assertThat(underTest.getIsolatedManagers(), contains(isolated));
+  }
+
+  @Test
+  public void isolatedPoolReleaseKeepsMetricsOfPoolWithLongerName() {
+    PoolingHttpClientConnectionManager isolated = underTest.createIsolated("maven", 5);
+    underTest.createIsolated("maven.central", 10);
+
+    isolated.shutdown();
+    assertThat(gauge("nexus.httpclient.pool.repository.maven.central.total.max"), equalTo(10));
+  }
+
+  @Test
+  public void routeMetricsRegisteredOnEviction() throws Exception {
+    HttpRoute route = new HttpRoute(new HttpHost("repo1.maven.org", 443, "https"));
+    HttpClientConnection connection = underTest.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+
+    underTest.closeExpiredConnections();
+
+    String prefix = "nexus.httpclient.pool.shared.route.https_repo1.maven.org_443";
+    assertThat(gauge(prefix + ".leased"), equalTo(1));
+    assertThat(gauge(prefix + ".max"), equalTo(20));
+
+    underTest.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+    assertThat(gauge(prefix + ".leased"), equalTo(0));
+  }
+
+  private int gauge(final String name) {
+    return (Integer) metricRegistry.getGauges().get(name).getValue();
+  }
+}
@@ -26,6 +26,7 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.ConnectionConfig;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.HttpClientBuilder;
 
@@ -55,6 +56,15 @@ public class HttpClientPlan
   @Nullable
   private String userAgent;
 
+  @Nullable
+  private Integer connectionPoolSize;
+
+  @Nullable
+  private String connectionPoolName;
+
+  @Nullable
+  private HttpClientConnectionManager connectionManager;
+
   public HttpClientPlan() {
     this.client = HttpClientBuilder.create();
     this.connection = ConnectionConfig.copy(ConnectionConfig.DEFAULT);
@@ -110,6 +120,62 @@ public class HttpClientPlan
     this.userAgent = userAgent;
   }
 
+  /**
+   * Size of the isolated connection pool the client should use instead of the shared one, if it has a
+   * {@link #getConnectionPoolName() pool name}.
+   *
+   * @since 3.1
+   */
+  @Nullable
+  public Integer getConnectionPoolSize() {
+    return connectionPoolSize;
+  }
+
+  /**
+   * @since 3.1
+   */
+  public void setConnectionPoolSize(@Nullable final Integer connectionPoolSize) {
+    this.connectionPoolSize = connectionPoolSize;
+  }
+
+  /**
+   * Name of the isolated connection pool, ie. the repository the client is for. Only named clients get an isolated
+   * pool, and only while they use the default connection manager.
+   *
+   * @since 3.1
+   */
+  @Nullable
+  public String getConnectionPoolName() {
+    return connectionPoolName;
+  }
+
+  /**
+   * @since 3.1
+   */
+  public void setConnectionPoolName(@Nullable final String connectionPoolName) {
+    this.connectionPoolName = connectionPoolName;
+  }
+
+  /**
+   * Connection manager set through {@link #setConnectionManager(HttpClientConnectionManager)}.
+   *
+   * @since 3.1
+   */
+  @Nullable
+  public HttpClientConnectionManager getConnectionManager() {
+    return connectionManager;
+  }
+
+  /**
+   * Sets the connection manager of the client, replacing the default one.
+   *
+   * @since 3.1
+   */
+  public void setConnectionManager(final HttpClientConnectionManager connectionManager) {
+    this.connectionManager = connectionManager;
+    client.setConnectionManager(connectionManager);
+  }
+
   //
   // Customizer
   //
@@ -145,6 +145,10 @@ public class ConfigurationCustomizer
     if (Boolean.TRUE.equals(connection.getUseTrustStore())) {
       plan.getAttributes().put(SSLContextSelector.USE_TRUST_STORE, Boolean.TRUE);
     }
+
+    if (connection.getConnectionPoolSize() != null) {
+      plan.setConnectionPoolSize(connection.getConnectionPoolSize());
+    }
   }
 
   /**
@@ -38,6 +38,9 @@ public class ConnectionConfiguration
   @Nullable
   private Boolean useTrustStore;
 
+  @Nullable
+  private Integer connectionPoolSize;
+
   @Nullable
   public Time getTimeout() {
     return timeout;
@@ -74,6 +77,23 @@ public class ConnectionConfiguration
     this.useTrustStore = useTrustStore;
   }
 
+  /**
+   * Size of the isolated connection pool to use, or {@code null} to use the shared pool.
+   *
+   * @since 3.1
+   */
+  @Nullable
+  public Integer getConnectionPoolSize() {
+    return connectionPoolSize;
+  }
+
+  /**
+   * @since 3.1
+   */
+  public void setConnectionPoolSize(@Nullable final Integer connectionPoolSize) {
+    this.connectionPoolSize = connectionPoolSize;
+  }
+
   public ConnectionConfiguration copy() {
     try {
       return (ConnectionConfiguration) clone();
@@ -90,6 +110,7 @@ public class ConnectionConfiguration
         ", maximumRetries=" + maximumRetries +
         ", userAgentSuffix=" + userAgentSuffix +
         ", useTrustStore=" + useTrustStore +
+        ", connectionPoolSize=" + connectionPoolSize +
         '}';
   }
 }
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.httpclient.config
 
 import org.sonatype.goodies.testsupport.TestSupport
+import org.sonatype.nexus.httpclient.HttpClientPlan
 import org.sonatype.nexus.httpclient.internal.NexusHttpRoutePlanner
 
 import org.apache.http.HttpHost
@@ -23,6 +24,7 @@ import org.junit.Test
 
 import static org.hamcrest.MatcherAssert.assertThat
 import static org.hamcrest.Matchers.equalTo
+import static org.hamcrest.Matchers.nullValue
 import static org.mockito.Mockito.mock
 import static org.sonatype.nexus.httpclient.HttpSchemes.HTTP
 import static org.sonatype.nexus.httpclient.HttpSchemes.HTTPS
@@ -125,4 +127,16 @@ class ConfigurationCustomizerTest
       assertThat(route.getHopTarget(0), equalTo(httpProxyHost))
     }
   }
+
+  @Test
+  void 'connection pool size is applied to plan'() {
+    HttpClientPlan plan = new HttpClientPlan()
+    new ConfigurationCustomizer(new HttpClientConfiguration(connection: new ConnectionConfiguration())).customize(plan)
+    assertThat(plan.connectionPoolSize, nullValue())
+
+    new ConfigurationCustomizer(new HttpClientConfiguration(
+        connection: new ConnectionConfiguration(connectionPoolSize: 50)
+    )).customize(plan)
+    assertThat(plan.connectionPoolSize, equalTo(50))
+  }
 }
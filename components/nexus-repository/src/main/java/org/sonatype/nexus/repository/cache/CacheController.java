@@ -73,4 +73,20 @@ public class CacheController
     }
     return false;
   }
+
+  /**
+   * Returns {@code true} if passed in cache info is stale by age only, by no more than the given number of seconds;
+   * content invalidated by cache token is never considered within the window.
+   *
+   * @since 3.1
+   */
+  public boolean isStaleWithin(final CacheInfo cacheInfo, final int staleSeconds) {
+    if (cacheToken != null && !cacheToken.equals(cacheInfo.getCacheToken())) {
+      return false;
+    }
+    if (contentMaxAgeSeconds < 0) {
+      return true;
+    }
+    return !cacheInfo.getLastVerified().isBefore(new DateTime().minusSeconds(contentMaxAgeSeconds + staleSeconds));
+  }
 }
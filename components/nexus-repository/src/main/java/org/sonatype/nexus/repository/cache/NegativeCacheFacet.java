@@ -63,6 +63,13 @@ public interface NegativeCacheFacet
    */
   void invalidate();
 
+  /**
+   * Returns hit, miss and eviction counts of the negative cache.
+   *
+   * @since 3.1
+   */
+  NegativeCacheMetrics getMetrics();
+
   /**
    * Retrieves the cache key based on context.
    *
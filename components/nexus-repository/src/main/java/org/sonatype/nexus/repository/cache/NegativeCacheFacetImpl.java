@@ -13,9 +13,10 @@
 package org.sonatype.nexus.repository.cache;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 
 import javax.cache.Cache;
-import javax.cache.Cache.Entry;
 import javax.cache.CacheManager;
 import javax.cache.configuration.MutableConfiguration;
 import javax.cache.expiry.CreatedExpiryPolicy;
@@ -34,6 +35,7 @@ import org.sonatype.nexus.repository.view.Context;
 import org.sonatype.nexus.repository.view.Status;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Striped;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.repository.FacetSupport.State.STARTED;
@@ -66,11 +68,19 @@ public class NegativeCacheFacetImpl
     @Min(0)
     public Integer timeToLive = Time.hours(24).toSecondsI();
 
+    /**
+     * Expected number of entries of the Bloom filter in front of the cache, {@code 0} disables the filter.
+     */
+    @NotNull
+    @Min(0)
+    public Integer bloomFilterSize = 0;
+
     @Override
     public String toString() {
       return getClass().getSimpleName() + "{" +
           "enabled=" + enabled +
           ", timeToLive=" + timeToLive +
+          ", bloomFilterSize=" + bloomFilterSize +
           '}';
     }
   }
@@ -79,6 +89,21 @@ public class NegativeCacheFacetImpl
 
   private Cache<NegativeCacheKey, Status> cache;
 
+  private NegativeCacheIndex index;
+
+  /**
+   * Keeps cache and index in step per key, so an entry is never cached without being indexed.
+   */
+  private final Striped<Lock> keyLocks = Striped.lock(64);
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  private final LongAdder bloomFilterSkipCount = new LongAdder();
+
+  private final LongAdder evictionCount = new LongAdder();
+
   @Inject
   public NegativeCacheFacetImpl(final CacheManager cacheManager) {
     this.cacheManager = checkNotNull(cacheManager);
@@ -112,7 +137,8 @@ public class NegativeCacheFacetImpl
 
     // re-create cache if enabled or cache settings changed
     if (config.enabled) {
-      if (!previous.enabled || !config.timeToLive.equals(previous.timeToLive)) {
+      if (!previous.enabled || !config.timeToLive.equals(previous.timeToLive)
+          || !config.bloomFilterSize.equals(previous.bloomFilterSize)) {
         maybeDestroyCache();
         maybeCreateCache();
       }
@@ -141,6 +167,11 @@ public class NegativeCacheFacetImpl
       cacheConfig.setManagementEnabled(true);
       cacheConfig.setStatisticsEnabled(true);
 
+      index = new NegativeCacheIndex(TimeUnit.SECONDS.toMillis(config.timeToLive), config.bloomFilterSize);
+      hitCount.reset();
+      missCount.reset();
+      bloomFilterSkipCount.reset();
+      evictionCount.reset();
       cache = cacheManager.createCache(getRepository().getName() + "#negative-cache", cacheConfig);
       log.debug("Created negative-cache: {}", cache);
     }
@@ -151,6 +182,7 @@ public class NegativeCacheFacetImpl
       log.debug("Destroying negative-cache for: {}", getRepository());
       cacheManager.destroyCache(cache.getName());
       cache = null;
+      index = null;
     }
   }
 
@@ -159,7 +191,30 @@ public class NegativeCacheFacetImpl
   public Status get(final NegativeCacheKey key) {
     checkNotNull(key);
     if (cache != null) {
-      return cache.get(key);
+      if (!index.mightContain(key)) {
+        bloomFilterSkipCount.increment();
+        missCount.increment();
+        return null;
+      }
+      Status status = cache.get(key);
+      if (status != null) {
+        hitCount.increment();
+      }
+      else {
+        missCount.increment();
+        Lock lock = keyLocks.get(key);
+        lock.lock();
+        try {
+          // not if put meanwhile
+          if (!cache.containsKey(key) && index.expire(key)) {
+            evictionCount.increment();
+          }
+        }
+        finally {
+          lock.unlock();
+        }
+      }
+      return status;
     }
     return null;
   }
@@ -171,7 +226,16 @@ public class NegativeCacheFacetImpl
     checkNotNull(status);
     if (cache != null) {
       log.debug("Adding {}={} to negative-cache of {}", key, status, getRepository());
-      cache.put(key, status);
+      Lock lock = keyLocks.get(key);
+      lock.lock();
+      try {
+        index.add(key);
+        cache.put(key, status);
+      }
+      finally {
+        lock.unlock();
+      }
+      evictionCount.add(index.maybeSweep());
     }
   }
 
@@ -181,7 +245,15 @@ public class NegativeCacheFacetImpl
     checkNotNull(key);
     if (cache != null) {
       log.debug("Removing {} from negative-cache of {}", key, getRepository());
-      cache.remove(key);
+      Lock lock = keyLocks.get(key);
+      lock.lock();
+      try {
+        cache.remove(key);
+        index.remove(key);
+      }
+      finally {
+        lock.unlock();
+      }
     }
   }
 
@@ -189,10 +261,9 @@ public class NegativeCacheFacetImpl
   public void invalidateSubset(final NegativeCacheKey key) {
     if (cache != null) {
       invalidate(key);
-      for (final Entry<NegativeCacheKey, Status> entry : cache) {
-        if (!key.equals(entry.getKey()) && key.isParentOf(entry.getKey())) {
-          invalidate(entry.getKey());
-        }
+      // use the index rather than iterating the whole cache
+      for (NegativeCacheKey child : index.children(key)) {
+        invalidate(child);
       }
     }
   }
@@ -202,10 +273,29 @@ public class NegativeCacheFacetImpl
   public void invalidate() {
     if (cache != null) {
       log.debug("Removing all from negative-cache of {}", getRepository());
-      cache.removeAll();
+      for (int i = 0; i < keyLocks.size(); i++) {
+        keyLocks.getAt(i).lock();
+      }
+      try {
+        cache.removeAll();
+        index.clear();
+      }
+      finally {
+        for (int i = 0; i < keyLocks.size(); i++) {
+          keyLocks.getAt(i).unlock();
+        }
+      }
     }
   }
 
+  @Override
+  @Guarded(by = STARTED)
+  public NegativeCacheMetrics getMetrics() {
+    NegativeCacheIndex current = index;
+    return new NegativeCacheMetrics(hitCount.sum(), missCount.sum(), bloomFilterSkipCount.sum(), evictionCount.sum(),
+        current != null ? current.size() : 0);
+  }
+
   @Override
   public NegativeCacheKey getCacheKey(final Context context) {
     return new PathNegativeCacheKey(context.getRequest().getPath());
@@ -21,6 +21,8 @@ import org.sonatype.nexus.repository.view.Context;
 import org.sonatype.nexus.repository.view.Handler;
 import org.sonatype.nexus.repository.view.Response;
 import org.sonatype.nexus.repository.view.Status;
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler;
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler.Outcome;
 
 /**
  * Handler that caches 404 responses.
@@ -57,6 +59,7 @@ public class NegativeCacheHandler
     }
     else {
       response = buildResponse(status, context);
+      MetricsHandler.outcome(context, Outcome.NEGATIVE_CACHE_HIT);
 
       log.debug("Found {} in negative cache, returning {}", key, response);
     }
@@ -0,0 +1,250 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Secondary index of the keys held in a negative cache, so subsets can be invalidated without iterating the cache.
+ *
+ * Path keys are kept sorted, making prefix invalidation proportional to the number of matching keys. An optional
+ * Bloom filter lets lookups of paths which were never negatively cached skip the cache altogether. Entries are dropped
+ * once their time-to-live has passed, which also covers keys the cache itself evicted earlier.
+ *
+ * @since 3.1
+ */
+class NegativeCacheIndex
+{
+  private static final double BLOOM_FILTER_FPP = 0.01;
+
+  private static final long SWEEP_INTERVAL_MILLIS = 60_000;
+
+  private final long timeToLiveMillis;
+
+  private final int minimumBloomFilterCapacity;
+
+  private final ConcurrentMap<NegativeCacheKey, Long> expiries = new ConcurrentHashMap<>();
+
+  private final NavigableSet<String> paths = new ConcurrentSkipListSet<>();
+
+  // guava bloom filters are not thread-safe
+  private final ReadWriteLock bloomFilterLock = new ReentrantReadWriteLock();
+
+  private BloomFilter<Integer> bloomFilter;
+
+  private int bloomFilterCapacity;
+
+  private int bloomFilterInsertions;
+
+  private volatile long nextSweep;
+
+  /**
+   * @param timeToLiveMillis    time-to-live of cache entries
+   * @param bloomFilterCapacity expected number of entries of the Bloom filter, {@code 0} disables it
+   */
+  NegativeCacheIndex(final long timeToLiveMillis, final int bloomFilterCapacity) {
+    checkArgument(timeToLiveMillis >= 0);
+    checkArgument(bloomFilterCapacity >= 0);
+    this.timeToLiveMillis = timeToLiveMillis;
+    this.minimumBloomFilterCapacity = bloomFilterCapacity;
+    this.nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL_MILLIS;
+    if (bloomFilterCapacity > 0) {
+      resetBloomFilter(bloomFilterCapacity);
+    }
+  }
+
+  /**
+   * Tracks a key about to be added to the cache.
+   */
+  void add(final NegativeCacheKey key) {
+    // track before filtering, so a concurrent rebuild of the Bloom filter cannot miss the key
+    expiries.put(key, System.currentTimeMillis() + timeToLiveMillis);
+    if (key instanceof PathNegativeCacheKey) {
+      paths.add(((PathNegativeCacheKey) key).getPath());
+    }
+    if (minimumBloomFilterCapacity > 0) {
+      bloomFilterLock.writeLock().lock();
+      try {
+        bloomFilter.put(key.hashCode());
+        bloomFilterInsertions++;
+      }
+      finally {
+        bloomFilterLock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Stops tracking a key removed from the cache.
+   */
+  void remove(final NegativeCacheKey key) {
+    expiries.remove(key);
+    if (key instanceof PathNegativeCacheKey) {
+      paths.remove(((PathNegativeCacheKey) key).getPath());
+    }
+  }
+
+  /**
+   * Returns {@code false} if the key is definitely not in the cache.
+   */
+  boolean mightContain(final NegativeCacheKey key) {
+    if (minimumBloomFilterCapacity == 0) {
+      return true;
+    }
+    bloomFilterLock.readLock().lock();
+    try {
+      return bloomFilter.mightContain(key.hashCode());
+    }
+    finally {
+      bloomFilterLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns {@code true} if the key was tracked but its time-to-live has passed, dropping it from the index.
+   */
+  boolean expire(final NegativeCacheKey key) {
+    Long expiry = expiries.get(key);
+    if (expiry != null && expiry <= System.currentTimeMillis() && expiries.remove(key, expiry)) {
+      if (key instanceof PathNegativeCacheKey) {
+        paths.remove(((PathNegativeCacheKey) key).getPath());
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the tracked keys which the given key is a parent of, excluding the key itself.
+   */
+  List<NegativeCacheKey> children(final NegativeCacheKey parent) {
+    List<NegativeCacheKey> children = new ArrayList<>();
+    if (parent instanceof PathNegativeCacheKey) {
+      String prefix = ((PathNegativeCacheKey) parent).getPath();
+      for (String path : paths.tailSet(prefix, false)) {
+        if (!path.startsWith(prefix)) {
+          break;
+        }
+        PathNegativeCacheKey child = new PathNegativeCacheKey(path);
+        if (parent.isParentOf(child)) {
+          children.add(child);
+        }
+      }
+    }
+    else if (!(parent instanceof ValueNegativeCacheKey)) {
+      // unknown key type, fall back to checking every tracked key
+      for (NegativeCacheKey key : expiries.keySet()) {
+        if (!parent.equals(key) && parent.isParentOf(key)) {
+          children.add(key);
+        }
+      }
+    }
+    return children;
+  }
+
+  /**
+   * Drops expired keys if the sweep interval has passed and rebuilds an overfilled Bloom filter.
+   *
+   * @return the number of keys dropped
+   */
+  int maybeSweep() {
+    long now = System.currentTimeMillis();
+    long sweepDue = nextSweep;
+    if (now < sweepDue) {
+      return 0;
+    }
+    synchronized (this) {
+      if (nextSweep != sweepDue) {
+        return 0; // another thread swept meanwhile
+      }
+      nextSweep = now + SWEEP_INTERVAL_MILLIS;
+    }
+
+    int dropped = 0;
+    for (Iterator<Entry<NegativeCacheKey, Long>> itr = expiries.entrySet().iterator(); itr.hasNext(); ) {
+      Entry<NegativeCacheKey, Long> entry = itr.next();
+      if (entry.getValue() <= now && expiries.remove(entry.getKey(), entry.getValue())) {
+        if (entry.getKey() instanceof PathNegativeCacheKey) {
+          paths.remove(((PathNegativeCacheKey) entry.getKey()).getPath());
+        }
+        dropped++;
+      }
+    }
+
+    if (minimumBloomFilterCapacity > 0) {
+      maybeRebuildBloomFilter();
+    }
+    return dropped;
+  }
+
+  /**
+   * Forgets all keys.
+   */
+  void clear() {
+    expiries.clear();
+    paths.clear();
+    if (minimumBloomFilterCapacity > 0) {
+      bloomFilterLock.writeLock().lock();
+      try {
+        resetBloomFilter(minimumBloomFilterCapacity);
+      }
+      finally {
+        bloomFilterLock.writeLock().unlock();
+      }
+    }
+  }
+
+  int size() {
+    return expiries.size();
+  }
+
+  /**
+   * Bloom filters cannot forget keys, so rebuild from the tracked keys once insertions exceed the filter's capacity.
+   * The lock is held for the duration so no key added meanwhile is missed.
+   */
+  private void maybeRebuildBloomFilter() {
+    bloomFilterLock.writeLock().lock();
+    try {
+      if (bloomFilterInsertions > bloomFilterCapacity) {
+        resetBloomFilter(Math.max(minimumBloomFilterCapacity, expiries.size() * 2));
+        for (NegativeCacheKey key : expiries.keySet()) {
+          bloomFilter.put(key.hashCode());
+          bloomFilterInsertions++;
+        }
+      }
+    }
+    finally {
+      bloomFilterLock.writeLock().unlock();
+    }
+  }
+
+  private void resetBloomFilter(final int capacity) {
+    bloomFilter = BloomFilter.create(Funnels.integerFunnel(), capacity, BLOOM_FILTER_FPP);
+    bloomFilterCapacity = capacity;
+    bloomFilterInsertions = 0;
+  }
+}
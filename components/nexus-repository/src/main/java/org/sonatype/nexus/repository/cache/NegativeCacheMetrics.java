@@ -0,0 +1,90 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.cache;
+
+/**
+ * Negative cache usage of a repository, counted since the cache was created.
+ *
+ * @since 3.1
+ */
+public class NegativeCacheMetrics
+{
+  private final long hitCount;
+
+  private final long missCount;
+
+  private final long bloomFilterSkipCount;
+
+  private final long evictionCount;
+
+  private final long size;
+
+  public NegativeCacheMetrics(final long hitCount,
+                              final long missCount,
+                              final long bloomFilterSkipCount,
+                              final long evictionCount,
+                              final long size)
+  {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.bloomFilterSkipCount = bloomFilterSkipCount;
+    this.evictionCount = evictionCount;
+    this.size = size;
+  }
+
+  /**
+   * Lookups which found a cached status.
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Lookups which found nothing, including those answered by the Bloom filter.
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Misses answered by the Bloom filter without consulting the cache.
+   */
+  public long getBloomFilterSkipCount() {
+    return bloomFilterSkipCount;
+  }
+
+  /**
+   * Entries which dropped out of the cache because their time-to-live passed or the cache evicted them.
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Approximate number of cached entries.
+   */
+  public long getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" +
+        "hitCount=" + hitCount +
+        ", missCount=" + missCount +
+        ", bloomFilterSkipCount=" + bloomFilterSkipCount +
+        ", evictionCount=" + evictionCount +
+        ", size=" + size +
+        '}';
+  }
+}
@@ -14,6 +14,8 @@ package org.sonatype.nexus.repository.group;
 
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.sonatype.nexus.repository.Facet;
 import org.sonatype.nexus.repository.Repository;
 
@@ -51,4 +53,26 @@ public interface GroupFacet
    */
   void invalidateGroupCaches();
 
+  /**
+   * Returns {@code true} if members should be queried concurrently instead of one after another.
+   *
+   * @since 3.1
+   */
+  boolean parallelDispatch();
+
+  /**
+   * Returns how long to wait for the other members before also querying proxy members, when dispatching in parallel.
+   *
+   * @since 3.1
+   */
+  long hedgingDelayMillis();
+
+  /**
+   * Returns the cache of which members serve which paths, or {@code null} if routing is not cached.
+   *
+   * @since 3.1
+   */
+  @Nullable
+  GroupRoutingCache routingCache();
+
 }
@@ -22,6 +22,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.validation.ConstraintViolation;
+import javax.validation.constraints.Min;
 
 import org.sonatype.nexus.common.stateguard.Guarded;
 import org.sonatype.nexus.repository.FacetSupport;
@@ -33,6 +34,9 @@ import org.sonatype.nexus.repository.cache.RepositoryCacheUtils;
 import org.sonatype.nexus.repository.config.Configuration;
 import org.sonatype.nexus.repository.config.ConfigurationFacet;
 import org.sonatype.nexus.repository.manager.RepositoryManager;
+import org.sonatype.nexus.repository.storage.AssetCreatedEvent;
+import org.sonatype.nexus.repository.storage.AssetDeletedEvent;
+import org.sonatype.nexus.repository.storage.AssetEvent;
 import org.sonatype.nexus.repository.types.GroupType;
 import org.sonatype.nexus.repository.view.Content;
 import org.sonatype.nexus.validation.ConstraintViolationFactory;
@@ -40,6 +44,8 @@ import org.sonatype.nexus.validation.ConstraintViolationFactory;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Iterables;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -67,6 +73,10 @@ public class GroupFacetImpl
   @VisibleForTesting
   static final String CONFIG_KEY = "group";
 
+  private static final long DEFAULT_HEDGING_DELAY_MILLIS = 100;
+
+  private static final int DEFAULT_ROUTING_CACHE_SIZE = 10_000;
+
   @VisibleForTesting
   static class Config
   {
@@ -74,10 +84,24 @@ public class GroupFacetImpl
     @JsonDeserialize(as = LinkedHashSet.class) // retain order
     public Set<String> memberNames;
 
+    public boolean parallelDispatch = false;
+
+    @Min(0)
+    public long hedgingDelayMillis = DEFAULT_HEDGING_DELAY_MILLIS;
+
+    /**
+     * Number of paths to remember member routing for, {@code 0} disables routing cache.
+     */
+    @Min(0)
+    public int routingCacheSize = DEFAULT_ROUTING_CACHE_SIZE;
+
     @Override
     public String toString() {
       return getClass().getSimpleName() + "{" +
           "memberNames=" + memberNames +
+          ", parallelDispatch=" + parallelDispatch +
+          ", hedgingDelayMillis=" + hedgingDelayMillis +
+          ", routingCacheSize=" + routingCacheSize +
           '}';
     }
   }
@@ -86,6 +110,8 @@ public class GroupFacetImpl
 
   private CacheController cacheController;
 
+  private GroupRoutingCache routingCache;
+
   @Inject
   public GroupFacetImpl(final RepositoryManager repositoryManager,
                         final ConstraintViolationFactory constraintViolationFactory,
@@ -138,6 +164,9 @@ public class GroupFacetImpl
 
     cacheController = new CacheController(-1, null);
 
+    // member changes replace the routing cache along with the configuration
+    routingCache = config.routingCacheSize > 0 ? new GroupRoutingCache(config.routingCacheSize) : null;
+
     log.debug("Config: {}", config);
   }
 
@@ -156,6 +185,7 @@ public class GroupFacetImpl
   @Override
   protected void doDestroy() throws Exception {
     config = null;
+    routingCache = null;
   }
 
   @Override
@@ -214,11 +244,55 @@ public class GroupFacetImpl
   public void invalidateGroupCaches() {
     log.info("Invalidating group caches of {}", getRepository().getName());
     cacheController.invalidateCache();
+    if (routingCache != null) {
+      routingCache.invalidateAll();
+    }
     for (Repository repository : members()) {
       RepositoryCacheUtils.invalidateCaches(repository);
     }
   }
 
+  @Override
+  @Guarded(by = STARTED)
+  public boolean parallelDispatch() {
+    return config.parallelDispatch;
+  }
+
+  @Override
+  @Guarded(by = STARTED)
+  public long hedgingDelayMillis() {
+    return config.hedgingDelayMillis;
+  }
+
+  @Override
+  @Nullable
+  @Guarded(by = STARTED)
+  public GroupRoutingCache routingCache() {
+    return routingCache;
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final AssetCreatedEvent event) {
+    maybeInvalidateRoute(event);
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final AssetDeletedEvent event) {
+    maybeInvalidateRoute(event);
+  }
+
+  /**
+   * Forgets the routing of the asset's path when it is added to or removed from a member.
+   */
+  private void maybeInvalidateRoute(final AssetEvent event) {
+    GroupRoutingCache cache = routingCache;
+    if (cache != null && member(event.getRepositoryName())) {
+      cache.invalidate(event.getAsset().name());
+    }
+  }
+
   /**
    * Returns {@code true} if the content is considered stale; otherwise {@code false}.
    */
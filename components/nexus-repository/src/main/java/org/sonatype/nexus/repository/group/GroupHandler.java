@@ -12,26 +12,42 @@
  */
 package org.sonatype.nexus.repository.group;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.group.GroupRoutingCache.Route;
 import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.types.ProxyType;
 import org.sonatype.nexus.repository.view.Context;
 import org.sonatype.nexus.repository.view.Handler;
 import org.sonatype.nexus.repository.view.Request;
 import org.sonatype.nexus.repository.view.Response;
 import org.sonatype.nexus.repository.view.ViewFacet;
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler;
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler.Outcome;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.repository.http.HttpMethods.GET;
 import static org.sonatype.nexus.repository.http.HttpMethods.HEAD;
 
@@ -51,12 +67,22 @@ public class GroupHandler
    */
   protected static class DispatchedRepositories
   {
-    private final Set<String> dispatched = Sets.newHashSet();
+    // members may be dispatched to concurrently, see GroupFacet#parallelDispatch()
+    private final Set<String> dispatched = Sets.newConcurrentHashSet();
 
     public void add(final Repository repository) {
       dispatched.add(repository.getName());
     }
 
+    /**
+     * Adds the repository, returning {@code false} if it had already been dispatched to.
+     *
+     * @since 3.1
+     */
+    public boolean addIfAbsent(final Repository repository) {
+      return dispatched.add(repository.getName());
+    }
+
     public boolean contains(final Repository repository) {
       return dispatched.contains(repository.getName());
     }
@@ -67,6 +93,16 @@ public class GroupHandler
     }
   }
 
+  private GroupMemberDispatcher memberDispatcher;
+
+  /**
+   * @since 3.1
+   */
+  @Inject
+  public void installDependencies(final GroupMemberDispatcher memberDispatcher) {
+    this.memberDispatcher = checkNotNull(memberDispatcher);
+  }
+
   @Nonnull
   @Override
   public Response handle(@Nonnull final Context context) throws Exception {
@@ -92,6 +128,9 @@ public class GroupHandler
       throws Exception
   {
     final GroupFacet groupFacet = context.getRepository().facet(GroupFacet.class);
+    if (groupFacet.parallelDispatch() && memberDispatcher != null) {
+      return getFirstParallel(context, groupFacet.members(), dispatched, groupFacet.hedgingDelayMillis());
+    }
     return getFirst(context, groupFacet.members(), dispatched);
   }
 
@@ -105,6 +144,7 @@ public class GroupHandler
       throws Exception
   {
     final Request request = context.getRequest();
+    final Route route = route(context);
     for (Repository member : members) {
       log.trace("Trying member: {}", member);
       // track repositories we have dispatched to, prevent circular dispatch for nested groups
@@ -112,18 +152,220 @@ public class GroupHandler
         log.trace("Skipping already dispatched member: {}", member);
         continue;
       }
+      if (route != null && route.isKnownMiss(member)) {
+        log.trace("Skipping member known not to have path: {}", member);
+        continue;
+      }
       dispatched.add(member);
 
+      final long stamp = route != null ? route.stamp() : 0;
       final ViewFacet view = member.facet(ViewFacet.class);
       final Response response = view.dispatch(request);
       log.trace("Member {} response {}", member, response.getStatus());
+      if (route != null) {
+        route.record(member, response, stamp);
+      }
       if (response.getStatus().isSuccessful()) {
+        MetricsHandler.outcome(context, Outcome.GROUP_MEMBER);
         return response;
       }
     }
     return notFoundResponse(context);
   }
 
+  /**
+   * Returns the same response as {@link #getFirst(Context, List, DispatchedRepositories)}, but queries members
+   * concurrently: the response of the first member in group order which responds OK wins, once all members before it
+   * have missed. Proxy members are only queried once the other members have all missed or the hedging delay has
+   * passed, so local content is served without going remote. Members which have not yet been queried when the winner
+   * is known are skipped, members still running are left to complete and their responses discarded. If the members
+   * have not decided within the {@link GroupMemberDispatcher#getTimeout() dispatch timeout}, the first OK response
+   * received so far in group order is returned, if any.
+   *
+   * @since 3.1
+   */
+  protected Response getFirstParallel(@Nonnull final Context context,
+                                      @Nonnull final List<Repository> members,
+                                      @Nonnull final DispatchedRepositories dispatched,
+                                      final long hedgingDelayMillis)
+      throws Exception
+  {
+    final Request request = context.getRequest();
+    final Route route = route(context);
+    final List<Repository> candidates = route == null ? members : members.stream()
+        .filter(member -> !route.isKnownMiss(member))
+        .collect(Collectors.toList());
+    final int size = candidates.size();
+    final List<CompletableFuture<Response>> futures = new ArrayList<>(Collections.nCopies(size, null));
+
+    // hosted members, nested groups and the proxy which last served the path go first, other proxies are hedged
+    final String servedBy = route != null ? route.getServedBy() : null;
+    boolean hedging = false;
+    for (int i = 0; i < size; i++) {
+      Repository member = candidates.get(i);
+      if (hedgingDelayMillis > 0 && member.getType() instanceof ProxyType && !member.getName().equals(servedBy)) {
+        hedging = true;
+      }
+      else {
+        futures.set(i, dispatchAsync(request, member, dispatched, route));
+      }
+    }
+    final long hedgeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hedgingDelayMillis);
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(memberDispatcher.getTimeout().toMillis());
+
+    try {
+      while (true) {
+        // walk the members in order until one is undecided or responded OK
+        boolean allStartedDone = true;
+        boolean decided = true;
+        for (int i = 0; i < size; i++) {
+          CompletableFuture<Response> future = futures.get(i);
+          if (future == null || !future.isDone()) {
+            decided = false;
+            break;
+          }
+          Response response = getResponse(future);
+          if (response.getStatus().isSuccessful()) {
+            log.trace("Member {} response {}", candidates.get(i), response.getStatus());
+            MetricsHandler.outcome(context, Outcome.GROUP_MEMBER);
+            return response;
+          }
+        }
+        if (decided) {
+          return notFoundResponse(context);
+        }
+
+        List<CompletableFuture<Response>> pending = new ArrayList<>(size);
+        for (CompletableFuture<Response> future : futures) {
+          if (future != null && !future.isDone()) {
+            pending.add(future);
+            allStartedDone = false;
+          }
+        }
+
+        if (hedging && (allStartedDone || System.nanoTime() >= hedgeDeadline)) {
+          log.trace("Dispatching to proxy members");
+          hedging = false;
+          for (int i = 0; i < size; i++) {
+            if (futures.get(i) == null) {
+              CompletableFuture<Response> future = dispatchAsync(request, candidates.get(i), dispatched, route);
+              futures.set(i, future);
+              if (!future.isDone()) {
+                pending.add(future);
+              }
+            }
+          }
+          if (pending.isEmpty()) {
+            continue;
+          }
+        }
+
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          log.warn("Timed out waiting for members of {} to respond to {}", context.getRepository().getName(),
+              request.getPath());
+          return getFirstCompleted(context, futures, candidates);
+        }
+
+        // wait for the next member to respond, or for the hedging delay to pass
+        CompletableFuture<Object> next = CompletableFuture.anyOf(pending.toArray(new CompletableFuture[pending.size()]));
+        try {
+          if (hedging) {
+            remaining = Math.min(remaining, Math.max(0, hedgeDeadline - System.nanoTime()));
+          }
+          next.get(remaining, TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException | ExecutionException e) {
+          // re-evaluate; failures are propagated in member order above
+        }
+      }
+    }
+    finally {
+      for (CompletableFuture<Response> future : futures) {
+        if (future != null) {
+          future.cancel(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the first OK response, in group order, of the members which have already responded.
+   */
+  private Response getFirstCompleted(final Context context,
+                                     final List<CompletableFuture<Response>> futures,
+                                     final List<Repository> candidates)
+  {
+    for (int i = 0; i < futures.size(); i++) {
+      CompletableFuture<Response> future = futures.get(i);
+      if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+        Response response = future.join();
+        if (response.getStatus().isSuccessful()) {
+          log.trace("Member {} response {}", candidates.get(i), response.getStatus());
+          MetricsHandler.outcome(context, Outcome.GROUP_MEMBER);
+          return response;
+        }
+      }
+    }
+    return notFoundResponse(context);
+  }
+
+  /**
+   * Dispatches the request to the member on the {@link GroupMemberDispatcher}, or in the calling thread if it is
+   * saturated or the caller is itself a member dispatch, ie. of a nested group. Members already dispatched to are
+   * answered with a miss.
+   */
+  private CompletableFuture<Response> dispatchAsync(final Request request,
+                                                   final Repository member,
+                                                   final DispatchedRepositories dispatched,
+                                                   @Nullable final Route route)
+  {
+    Callable<Response> task = () -> {
+      // track repositories we have dispatched to, prevent circular dispatch for nested groups
+      if (!dispatched.addIfAbsent(member)) {
+        log.trace("Skipping already dispatched member: {}", member);
+        return HttpResponses.notFound();
+      }
+      log.trace("Trying member: {}", member);
+      long stamp = route != null ? route.stamp() : 0;
+      Response response = member.facet(ViewFacet.class).dispatch(request);
+      if (route != null) {
+        route.record(member, response, stamp);
+      }
+      return response;
+    };
+    CompletableFuture<Response> future = memberDispatcher.submit(task);
+    if (future == null) {
+      future = new CompletableFuture<>();
+      try {
+        future.complete(task.call());
+      }
+      catch (Exception e) {
+        future.completeExceptionally(e);
+      }
+    }
+    return future;
+  }
+
+  /**
+   * Returns the routing state of the requested path, if the group caches routing.
+   */
+  @Nullable
+  private static Route route(final Context context) {
+    GroupRoutingCache routingCache = context.getRepository().facet(GroupFacet.class).routingCache();
+    return routingCache != null ? routingCache.route(context.getRequest().getPath()) : null;
+  }
+
+  private static Response getResponse(final CompletableFuture<Response> future) throws Exception {
+    try {
+      return future.get();
+    }
+    catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), Exception.class);
+      throw e;
+    }
+  }
+
   /**
    * Returns all responses from all members as a linked map, where order is group member order.
    */
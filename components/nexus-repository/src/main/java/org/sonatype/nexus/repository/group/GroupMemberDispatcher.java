@@ -0,0 +1,133 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.group;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+
+/**
+ * Bounded pool on which group members are queried concurrently, when a group is configured for parallel dispatch.
+ *
+ * Tasks submitted from a pool thread, ie. the members of a nested group, are not queued but left to the caller to run
+ * inline, so a pool thread never blocks waiting for a task queued behind it on the same pool.
+ *
+ * @since 3.1
+ */
+@Named
+@Singleton
+@ManagedLifecycle(phase = SERVICES)
+public class GroupMemberDispatcher
+    extends LifecycleSupport
+{
+  private final int threads;
+
+  private final int queueSize;
+
+  private final Time timeout;
+
+  private final ThreadLocal<Boolean> dispatchThread = new ThreadLocal<>();
+
+  private ThreadPoolExecutor executor;
+
+  @Inject
+  public GroupMemberDispatcher(@Named("${nexus.group.dispatch.threads:-32}") final int threads,
+                               @Named("${nexus.group.dispatch.queueSize:-256}") final int queueSize,
+                               @Named("${nexus.group.dispatch.timeout:-5m}") final Time timeout)
+  {
+    checkArgument(threads > 0);
+    checkArgument(queueSize > 0);
+    checkArgument(timeout.toMillis() > 0);
+    this.threads = threads;
+    this.queueSize = queueSize;
+    this.timeout = timeout;
+  }
+
+  /**
+   * Maximum time a group waits for its members to respond.
+   */
+  public Time getTimeout() {
+    return timeout;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("group-dispatch-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    executor.shutdownNow();
+    executor = null;
+  }
+
+  /**
+   * Runs the task on the pool as the current subject. Cancelling the returned future before the task has started
+   * means it never runs; a task which has already started is left to complete.
+   *
+   * @return future of the task's result, or {@code null} if the pool is saturated or not running, or if called from a
+   * pool thread, in which case the caller should run the task itself
+   */
+  @Nullable
+  public <T> CompletableFuture<T> submit(final Callable<T> task) {
+    ThreadPoolExecutor current = executor;
+    if (current == null || dispatchThread.get() != null) {
+      return null;
+    }
+    Subject subject = ThreadContext.getSubject();
+    Callable<T> callable = subject != null ? subject.associateWith(task) : task;
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      current.execute(() -> {
+        if (future.isDone()) {
+          return; // cancelled before it started
+        }
+        dispatchThread.set(Boolean.TRUE);
+        try {
+          future.complete(callable.call());
+        }
+        catch (Throwable e) {
+          future.completeExceptionally(e);
+        }
+        finally {
+          dispatchThread.remove();
+        }
+      });
+    }
+    catch (RuntimeException e) {
+      log.debug("Group dispatch pool saturated, dispatching in caller", e);
+      return null;
+    }
+    return future;
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.group;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.types.HostedType;
+import org.sonatype.nexus.repository.view.Response;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Remembers, per path, which group member last served it and which hosted members are known not to have it.
+ *
+ * Only hosted members are remembered as misses: their content only changes through asset events, which invalidate the
+ * path, whereas proxies and nested groups may start answering at any time and so are always asked.
+ *
+ * A miss is only recorded if no path was invalidated while the member was asked, as the invalidation may have been
+ * about the very content the member missed. Misses also expire, in case an event overtakes the change it announces.
+ *
+ * @since 3.1
+ */
+public class GroupRoutingCache
+{
+  public static final long DEFAULT_MISS_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  /**
+   * Routing state of a single path. Results recorded after the path was invalidated are discarded along with it.
+   */
+  public class Route
+  {
+    /**
+     * Time each member was recorded as missing the path.
+     */
+    private final Map<String, Long> misses = new ConcurrentHashMap<>();
+
+    private volatile String servedBy;
+
+    /**
+     * Returns the stamp to pass to {@link #record(Repository, Response, long)}, taken before asking a member.
+     */
+    public long stamp() {
+      return generation.get();
+    }
+
+    /**
+     * Returns {@code true} if the member is known not to have the path.
+     */
+    public boolean isKnownMiss(final Repository member) {
+      Long recorded = misses.get(member.getName());
+      if (recorded == null) {
+        return false;
+      }
+      if (System.currentTimeMillis() - recorded >= missTtlMillis) {
+        misses.remove(member.getName(), recorded);
+        return false;
+      }
+      return true;
+    }
+
+    /**
+     * Returns the name of the member which last served the path, if any.
+     */
+    @Nullable
+    public String getServedBy() {
+      return servedBy;
+    }
+
+    /**
+     * Records the response of the member for the path, asked after the given {@link #stamp()} was taken.
+     */
+    public void record(final Repository member, final Response response, final long stamp) {
+      String name = member.getName();
+      if (response.getStatus().isSuccessful()) {
+        servedBy = name;
+      }
+      else if (response.getStatus().getCode() == NOT_FOUND && member.getType() instanceof HostedType) {
+        if (name.equals(servedBy)) {
+          servedBy = null;
+        }
+        if (stamp == generation.get()) {
+          misses.put(name, System.currentTimeMillis());
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "{" +
+          "servedBy=" + servedBy +
+          ", misses=" + misses.keySet() +
+          '}';
+    }
+  }
+
+  private final Cache<String, Route> routes;
+
+  private final long missTtlMillis;
+
+  /**
+   * Bumped by every invalidation.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  public GroupRoutingCache(final int maximumSize) {
+    this(maximumSize, DEFAULT_MISS_TTL_MILLIS);
+  }
+
+  public GroupRoutingCache(final int maximumSize, final long missTtlMillis) {
+    checkArgument(maximumSize > 0);
+    checkArgument(missTtlMillis > 0);
+    this.routes = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    this.missTtlMillis = missTtlMillis;
+  }
+
+  /**
+   * Returns the route of the given request path, creating an empty one if needed.
+   */
+  public Route route(final String path) {
+    return routes.asMap().computeIfAbsent(key(path), k -> new Route());
+  }
+
+  /**
+   * Forgets the route of the given path, called when a member's content at that path changes.
+   */
+  public void invalidate(final String path) {
+    generation.incrementAndGet();
+    routes.invalidate(key(path));
+  }
+
+  /**
+   * Forgets all routes.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    routes.invalidateAll();
+  }
+
+  public long size() {
+    return routes.size();
+  }
+
+  /**
+   * Request paths and asset names only differ by the leading slash.
+   */
+  private static String key(final String path) {
+    checkNotNull(path);
+    return path.startsWith("/") ? path.substring(1) : path;
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.repository.view.ChannelPayload;
+import org.sonatype.nexus.repository.view.Payload;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Range;
+import com.google.common.io.ByteSource;
+import com.google.common.net.HttpHeaders;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.io.ByteStreams.limit;
+import static com.google.common.io.ByteStreams.skipFully;
+
+/**
+ * A wrapper {@link Payload} that returns several portions of the original payload as a {@code multipart/byteranges}
+ * body, as per RFC 7233 appendix A.
+ *
+ * The ranges must be in ascending order and must not overlap, so all parts are read from a single pass over the
+ * original payload, which is opened only once. When the original payload is a {@link ChannelPayload} each part is
+ * read by positioning its channel, otherwise the bytes between parts are skipped.
+ *
+ * @since 3.1
+ */
+class MultipartByteRangesPayload
+    implements Payload
+{
+  private static final String CRLF = "\r\n";
+
+  private final Payload payload;
+
+  private final String boundary;
+
+  private final List<Range<Long>> ranges;
+
+  private final List<ByteSource> headers;
+
+  private final ByteSource trailer;
+
+  private final long size;
+
+  /**
+   * The endpoints of each Range are interpreted as the first and last byte positions to send.
+   */
+  public MultipartByteRangesPayload(final Payload payload, final List<Range<Long>> rangesToSend) {
+    this.payload = payload;
+    this.boundary = UUID.randomUUID().toString().replace("-", "");
+    this.ranges = new ArrayList<>(rangesToSend);
+    this.headers = new ArrayList<>(rangesToSend.size());
+
+    long totalSize = 0;
+    long next = 0;
+    for (Range<Long> range : rangesToSend) {
+      checkArgument(range.lowerEndpoint() >= next, "Ranges must be ascending and must not overlap: %s", rangesToSend);
+      next = range.upperEndpoint() + 1;
+      ByteSource header = ByteSource.wrap(partHeader(payload, range).getBytes(Charsets.US_ASCII));
+      headers.add(header);
+      totalSize += headerSize(header) + partSize(range);
+    }
+    this.trailer = ByteSource.wrap((CRLF + "--" + boundary + "--" + CRLF).getBytes(Charsets.US_ASCII));
+    this.size = totalSize + headerSize(trailer);
+  }
+
+  private String partHeader(final Payload payload, final Range<Long> range) {
+    StringBuilder buff = new StringBuilder();
+    buff.append(CRLF).append("--").append(boundary).append(CRLF);
+    if (payload.getContentType() != null) {
+      buff.append(HttpHeaders.CONTENT_TYPE).append(": ").append(payload.getContentType()).append(CRLF);
+    }
+    buff.append(HttpHeaders.CONTENT_RANGE).append(": ")
+        .append(PartialFetchHandler.contentRange(range, payload.getSize())).append(CRLF);
+    buff.append(CRLF);
+    return buff.toString();
+  }
+
+  private static long partSize(final Range<Long> range) {
+    return 1 + range.upperEndpoint() - range.lowerEndpoint();
+  }
+
+  private static long headerSize(final ByteSource header) {
+    try {
+      return header.size();
+    }
+    catch (IOException e) {
+      // in-memory sources do not fail
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public InputStream openInputStream() throws IOException {
+    final SeekableByteChannel channel =
+        payload instanceof ChannelPayload ? ((ChannelPayload) payload).openChannel() : null;
+    final InputStream payloadStream = channel != null ? Channels.newInputStream(channel) : payload.openInputStream();
+    final long[] position = {0};
+    final List<ByteSource> parts = new ArrayList<>(ranges.size() * 2 + 1);
+    for (int i = 0; i < ranges.size(); i++) {
+      final Range<Long> range = ranges.get(i);
+      parts.add(headers.get(i));
+      parts.add(new ByteSource()
+      {
+        @Override
+        public InputStream openStream() throws IOException {
+          // parts are read one after the other, each to its end
+          if (channel != null) {
+            channel.position(range.lowerEndpoint());
+          }
+          else {
+            skipFully(payloadStream, range.lowerEndpoint() - position[0]);
+          }
+          position[0] = range.upperEndpoint() + 1;
+          return new FilterInputStream(limit(payloadStream, partSize(range)))
+          {
+            @Override
+            public void close() {
+              // the payload stream is shared by all parts
+            }
+          };
+        }
+      });
+    }
+    parts.add(trailer);
+
+    final InputStream body;
+    try {
+      body = ByteSource.concat(parts).openStream();
+    }
+    catch (IOException | RuntimeException e) {
+      payloadStream.close();
+      throw e;
+    }
+    return new FilterInputStream(body)
+    {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        }
+        finally {
+          payloadStream.close();
+        }
+      }
+    };
+  }
+
+  @Override
+  public long getSize() {
+    return size;
+  }
+
+  @Nullable
+  @Override
+  public String getContentType() {
+    return "multipart/byteranges; boundary=" + boundary;
+  }
+}
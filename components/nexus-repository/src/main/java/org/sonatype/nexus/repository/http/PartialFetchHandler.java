@@ -92,7 +92,7 @@ public class PartialFetchHandler
     }
 
     if (ranges.size() > 1) {
-      return HttpResponses.notImplemented("Multiple ranges not supported.");
+      return multipartResponse(response, payload, ranges);
     }
 
     Range<Long> requestedRange = ranges.get(0);
@@ -116,12 +116,35 @@ public class PartialFetchHandler
     builder.payload(partialPayload);
 
     // ResponseSender takes care of Content-Length header, via payload.size
-    builder.header(HttpHeaders.CONTENT_RANGE,
-        requestedRange.lowerEndpoint() + "-" + requestedRange.upperEndpoint() + "/" + payload.getSize());
+    builder.header(HttpHeaders.CONTENT_RANGE, contentRange(requestedRange, payload.getSize()));
 
     return builder.build();
   }
 
+  /**
+   * Mutate the response into a {@code multipart/byteranges} one that returns several parts of the payload.
+   */
+  private Response multipartResponse(final Response response,
+                                     final Payload payload,
+                                     final List<Range<Long>> requestedRanges)
+  {
+    Response.Builder builder = new Response.Builder()
+        .copy(response)
+        .status(Status.success(HttpStatus.PARTIAL_CONTENT));
+
+    // ResponseSender takes care of Content-Type and Content-Length headers, via the payload
+    builder.payload(new MultipartByteRangesPayload(payload, requestedRanges));
+
+    return builder.build();
+  }
+
+  /**
+   * Returns the value of a "Content-Range" header for the given range of a payload of given size.
+   */
+  static String contentRange(final Range<Long> range, final long size) {
+    return "bytes " + range.lowerEndpoint() + "-" + range.upperEndpoint() + "/" + size;
+  }
+
   private String getRangeHeader(final Context context) {
     final Request request = context.getRequest();
     return request.getHeaders().get(HttpHeaders.RANGE);
@@ -14,18 +14,25 @@ package org.sonatype.nexus.repository.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 
 import javax.annotation.Nullable;
 
+import org.sonatype.nexus.repository.view.ChannelPayload;
 import org.sonatype.nexus.repository.view.Payload;
 
 import com.google.common.collect.Range;
 
 import static com.google.common.io.ByteStreams.limit;
+import static com.google.common.io.ByteStreams.skipFully;
 
 /**
  * A wrapper {@link Payload} that returns only a portion of the original payload.
  *
+ * When the original payload is a {@link ChannelPayload} the range is read by positioning its channel, otherwise the
+ * leading bytes of its stream are skipped.
+ *
  * @since 3.0
  */
 class PartialPayload
@@ -48,8 +55,27 @@ class PartialPayload
 
   @Override
   public InputStream openInputStream() throws IOException {
+    if (payload instanceof ChannelPayload) {
+      final SeekableByteChannel channel = ((ChannelPayload) payload).openChannel();
+      if (channel != null) {
+        try {
+          channel.position(rangeToSend.lowerEndpoint());
+        }
+        catch (IOException | RuntimeException e) {
+          channel.close();
+          throw e;
+        }
+        return limit(Channels.newInputStream(channel), partialSize);
+      }
+    }
     final InputStream payloadStream = payload.openInputStream();
-    payloadStream.skip(rangeToSend.lowerEndpoint());
+    try {
+      skipFully(payloadStream, rangeToSend.lowerEndpoint());
+    }
+    catch (IOException | RuntimeException e) {
+      payloadStream.close();
+      throw e;
+    }
     return limit(payloadStream, partialSize);
   }
 
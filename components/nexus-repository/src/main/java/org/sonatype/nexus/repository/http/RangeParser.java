@@ -12,16 +12,18 @@
  */
 package org.sonatype.nexus.repository.http;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.sonatype.goodies.common.ComponentSupport;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Range;
 
-import static java.util.Collections.singletonList;
-
 /**
  * Parses the "Range" request header.
  *
@@ -36,6 +38,13 @@ class RangeParser
 
   public static final List<Range<Long>> WHOLE_RANGE = Collections.emptyList();
 
+  /**
+   * Maximum number of ranges honoured in a single request; requests asking for more get the complete content.
+   */
+  public static final int MAX_RANGES = 64;
+
+  private static final Range<Long> NONE = Range.closedOpen(-1L, -1L);
+
   /**
    * Returns a list of {@link Range}s, each indicating a range of byte indices (inclusive).
    *
@@ -43,40 +52,40 @@ class RangeParser
    * Range: bytes=500-999 (from byte 500 to byte 999)
    * Range: bytes=500- (from byte 500 to the end)
    * Range: bytes=-500 (the last 500 bytes, per the RFC)
+   * Range: bytes=0-10,500-999 (multiple ranges)
    *
-   * @return {@code null} if the requested range cannot be satisfied given the size of the content, or an empty list in
-   * the case of parsing errors
+   * Unsatisfiable ranges in a multi-range request are dropped. The others are returned in ascending order, with
+   * overlapping or adjacent ranges merged, so no byte of the content is ever sent twice (see CVE-2011-3192).
+   *
+   * @return {@code null} if none of the requested ranges can be satisfied given the size of the content, or an empty
+   * list in the case of parsing errors
    */
   public List<Range<Long>> parseRangeSpec(final String rangeHeader, long size) {
     Range<Long> content = Range.closed(0L, size - 1L);
 
-    // TODO: Current limitation: only one Range of bytes supported in forms of "-X", "X-Y" (where X<Y) and "X-".
     if (!Strings.isNullOrEmpty(rangeHeader)) {
       try {
-        if (rangeHeader.startsWith("bytes=") && rangeHeader.length() > 6 && !rangeHeader.contains(",")) {
-          final String rangeSpec = rangeHeader.substring(6, rangeHeader.length());
-          if (rangeSpec.startsWith("-")) {
-            final long byteCount = Long.parseLong(rangeSpec.substring(1));
-            if (byteCount > size) {
-              return UNSATISFIABLE;
-            }
-            final Range<Long> suffix = Range.atLeast(size - byteCount);
-            return ensureSatisfiable(suffix, content);
-          }
-          else if (rangeSpec.endsWith("-")) {
-            final Range<Long> requested = Range.atLeast(Long.parseLong(rangeSpec.substring(0, rangeSpec.length() - 1)));
-            return ensureSatisfiable(requested, content);
+        if (rangeHeader.startsWith("bytes=") && rangeHeader.length() > 6) {
+          final String[] rangeSpecs = rangeHeader.substring(6).split(",");
+          if (rangeSpecs.length > MAX_RANGES) {
+            log.warn("Too many HTTP Ranges ({}): {}; sending complete content", rangeSpecs.length, rangeHeader);
+            return WHOLE_RANGE;
           }
-          else if (rangeSpec.contains("-")) {
-            final String[] parts = rangeSpec.split("-");
-            return ensureSatisfiable(Range.closed(Long.parseLong(parts[0]), Long.parseLong(parts[1])), content);
-          }
-          else {
-            log.warn("Malformed HTTP Range value: {}, ignoring it", rangeHeader);
+          final List<Range<Long>> ranges = new ArrayList<>(rangeSpecs.length);
+          for (String rangeSpec : rangeSpecs) {
+            final Range<Long> range = parseSingleRange(rangeSpec.trim(), size);
+            if (range == null) {
+              log.warn("Malformed HTTP Range value: {}, ignoring it", rangeHeader);
+              return WHOLE_RANGE;
+            }
+            if (range.isConnected(content)) {
+              ranges.add(range.intersection(content));
+            }
           }
+          return ranges.isEmpty() ? UNSATISFIABLE : coalesce(ranges);
         }
         else {
-          log.warn("Unsupported non-byte or multiple HTTP Ranges: {}; sending complete content", rangeHeader);
+          log.warn("Unsupported non-byte HTTP Ranges: {}; sending complete content", rangeHeader);
         }
       }
       catch (Exception e) {
@@ -92,13 +101,47 @@ class RangeParser
     return WHOLE_RANGE;
   }
 
-  private List<Range<Long>> ensureSatisfiable(Range<Long> requested, Range<Long> content) {
-    if (requested.isConnected(content)) {
-      return singletonList(requested.intersection(content));
+  /**
+   * Parses one range spec in forms of "-X", "X-Y" (where X&lt;=Y) and "X-". Returns {@code null} if malformed, or an
+   * empty range if it can not be satisfied.
+   */
+  @Nullable
+  private Range<Long> parseSingleRange(final String rangeSpec, final long size) {
+    if (rangeSpec.startsWith("-")) {
+      final long byteCount = Long.parseLong(rangeSpec.substring(1));
+      if (byteCount > size) {
+        return NONE;
+      }
+      return Range.atLeast(size - byteCount);
     }
-    else {
-      return UNSATISFIABLE;
+    else if (rangeSpec.endsWith("-")) {
+      return Range.atLeast(Long.parseLong(rangeSpec.substring(0, rangeSpec.length() - 1)));
+    }
+    else if (rangeSpec.contains("-")) {
+      final String[] parts = rangeSpec.split("-");
+      return Range.closed(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+    }
+    return null;
+  }
+
+  /**
+   * Sorts the closed ranges and merges those which overlap or are adjacent.
+   */
+  private static List<Range<Long>> coalesce(final List<Range<Long>> ranges) {
+    ranges.sort(Comparator.comparing(Range::lowerEndpoint));
+    final List<Range<Long>> coalesced = new ArrayList<>(ranges.size());
+    Range<Long> current = ranges.get(0);
+    for (Range<Long> range : ranges.subList(1, ranges.size())) {
+      if (range.lowerEndpoint() <= current.upperEndpoint() + 1) {
+        current = Range.closed(current.lowerEndpoint(), Math.max(current.upperEndpoint(), range.upperEndpoint()));
+      }
+      else {
+        coalesced.add(current);
+        current = range;
+      }
     }
+    coalesced.add(current);
+    return coalesced;
   }
 
   private boolean isSatisfiable(final Range<Long> range, final long contentSize) {
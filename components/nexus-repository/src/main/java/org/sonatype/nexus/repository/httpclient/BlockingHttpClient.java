@@ -14,25 +14,25 @@ package org.sonatype.nexus.repository.httpclient;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
 import javax.net.ssl.SSLPeerUnverifiedException;
 
-import org.sonatype.goodies.common.Time;
-import org.sonatype.nexus.common.sequence.FibonacciNumberSequence;
-import org.sonatype.nexus.common.sequence.NumberSequence;
+import org.sonatype.nexus.repository.httpclient.CircuitBreaker.State;
 
 import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpHead;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.joda.time.DateTime;
-import org.joda.time.Duration;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Wraps an {@link HttpClient} with manual and automatic blocking functionality.
  *
+ * Automatic blocking is delegated to a {@link CircuitBreaker}, present only if auto-blocking is enabled.
+ *
  * @since 3.0
  */
 public class BlockingHttpClient
@@ -41,28 +41,21 @@ public class BlockingHttpClient
 {
   private final boolean blocked;
 
-  private HttpHost mainTarget;
-
-  private DateTime blockedUntil;
+  private final CircuitBreaker circuitBreaker;
 
-  private Thread checkThread;
-
-  private final boolean autoBlock;
-
-  private final NumberSequence autoBlockSequence;
+  private HttpHost mainTarget;
 
-  private RemoteConnectionStatus status;
+  private volatile RemoteConnectionStatus status;
 
   public BlockingHttpClient(final HttpClient delegate,
-                            final HttpClientFacetImpl.Config config)
+                            final HttpClientFacetImpl.Config config,
+                            @Nullable final CircuitBreaker circuitBreaker)
   {
     super(delegate);
     checkNotNull(config);
     blocked = config.blocked != null ? config.blocked : false;
-    autoBlock = config.autoBlock != null ? config.autoBlock : false;
+    this.circuitBreaker = circuitBreaker;
     status = new RemoteConnectionStatus(blocked ? "Remote Manually Blocked" : "Remote Connection Pending...");
-    // TODO shall we use config.getConnectionConfig().getTimeout() * 2 as in NX2?
-    autoBlockSequence = new FibonacciNumberSequence(Time.seconds(40).toMillis());
   }
 
   protected <T> T filter(final HttpHost target, final Filterable<T> filterable) throws IOException {
@@ -77,60 +70,58 @@ public class BlockingHttpClient
     if (blocked) {
       throw new IOException("Remote Manually Blocked");
     }
-    DateTime blockedUntilCopy = this.blockedUntil;
-    if (autoBlock && blockedUntilCopy != null && blockedUntilCopy.isAfterNow()) {
+    if (circuitBreaker == null) {
+      return call(filterable);
+    }
+    if (!circuitBreaker.tryAcquire()) {
       throw new IOException("Remote Auto Blocked");
     }
+    long start = System.nanoTime();
     try {
-      T result = filterable.call();
-      if (autoBlock) {
-        synchronized (this) {
-          if (blockedUntil != null) {
-            blockedUntil = null;
-            checkThread.interrupt();
-            checkThread = null;
-            autoBlockSequence.reset();
-          }
-        }
-      }
-      status = new RemoteConnectionStatus("Remote Available");
+      T result = call(filterable);
+      circuitBreaker.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
       return result;
     }
     catch (IOException e) {
       if (isRemoteUnavailable(e)) {
-        if (autoBlock) {
-          synchronized (this) {
-            // avoid some other thread already increased the sequence
-            if (blockedUntil == null || blockedUntil.isBeforeNow()) {
-              blockedUntil = DateTime.now().plus(autoBlockSequence.next());
-              if (checkThread != null) {
-                checkThread.interrupt();
-              }
-              String uri = target.toURI();
-              // TODO maybe find different means to schedule status checking
-              checkThread = new Thread(new CheckStatus(uri, blockedUntil), "Check Status " + uri);
-              checkThread.setDaemon(true);
-              checkThread.start();
-            }
-          }
+        circuitBreaker.onFailure(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), getReason(e));
+        if (circuitBreaker.getState() == State.OPEN) {
           status = new RemoteConnectionStatus("Remote Auto Blocked and Unavailable", getReason(e));
         }
-        else {
-          status = new RemoteConnectionStatus("Remote Unavailable", getReason(e));
-        }
+      }
+      else {
+        circuitBreaker.onIgnored();
       }
       throw e;
     }
+    catch (RuntimeException e) {
+      circuitBreaker.onIgnored();
+      throw e;
+    }
     finally {
-      blockedUntilCopy = blockedUntil;
+      boolean open = circuitBreaker.getState() == State.OPEN;
       log.debug(
           "Remote status: {} {}",
           status,
-          blockedUntilCopy != null ? "(blocked until " + blockedUntilCopy + ")" : ""
+          open ? "(blocked until " + new DateTime(circuitBreaker.getOpenUntil()) + ")" : ""
       );
     }
   }
 
+  private <T> T call(final Filterable<T> filterable) throws IOException {
+    try {
+      T result = filterable.call();
+      status = new RemoteConnectionStatus("Remote Available");
+      return result;
+    }
+    catch (IOException e) {
+      if (isRemoteUnavailable(e)) {
+        status = new RemoteConnectionStatus("Remote Unavailable", getReason(e));
+      }
+      throw e;
+    }
+  }
+
   public RemoteConnectionStatus getStatus() {
     return status;
   }
@@ -151,46 +142,9 @@ public class BlockingHttpClient
 
   @Override
   public void close() throws IOException {
-    if (checkThread != null) {
-      checkThread.interrupt();
+    if (circuitBreaker != null) {
+      circuitBreaker.close();
     }
     super.close();
   }
-
-  private class CheckStatus
-      implements Runnable
-  {
-
-    private final String uri;
-
-    private final DateTime fireAt;
-
-    private CheckStatus(final String uri, final DateTime fireAt) {
-      this.uri = uri;
-      this.fireAt = fireAt;
-    }
-
-    @Override
-    public void run() {
-      if (fireAt.isAfterNow()) {
-        try {
-          long durationTillFire = new Duration(DateTime.now(), fireAt).getMillis();
-          if (durationTillFire > 0) {
-            log.debug("Wait until {} to check status of {}", fireAt, uri);
-            Thread.sleep(durationTillFire);
-            log.debug("Time is up. Checking status of {}", uri);
-            execute(new HttpHead(uri));
-          }
-        }
-        catch (InterruptedException e) {
-          log.debug("Stopped checking status of {}", uri);
-        }
-        catch (IOException e) {
-          // ignore as we just want to access the host
-        }
-      }
-    }
-
-  }
-
 }
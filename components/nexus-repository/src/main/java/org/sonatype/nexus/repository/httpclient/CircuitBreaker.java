@@ -0,0 +1,291 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpclient;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.common.sequence.FibonacciNumberSequence;
+import org.sonatype.nexus.common.sequence.NumberSequence;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Circuit breaker guarding calls to a remote.
+ *
+ * While {@link State#CLOSED} outcomes of calls are recorded in a sliding window of the last calls, and the circuit
+ * opens once the rate of failed or, if enabled, slow calls in the window reaches its threshold. While {@link State#OPEN} calls are
+ * rejected; the shared scheduler of {@link CircuitBreakerManager} half-opens the circuit after a Fibonacci backoff.
+ * While {@link State#HALF_OPEN} a bounded number of real calls are permitted as trial: any failed or slow trial call
+ * opens the circuit again, the circuit closes once all trial calls succeeded.
+ *
+ * @since 3.1
+ */
+public class CircuitBreaker
+{
+  public enum State
+  {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  /**
+   * Notified of state changes, outside of the circuit breaker lock.
+   */
+  public interface Listener
+  {
+    void onStateChange(CircuitBreaker circuitBreaker, State from, State to, @Nullable String reason);
+  }
+
+  private final CircuitBreakerManager manager;
+
+  private final String name;
+
+  private final Listener listener;
+
+  private final NumberSequence openSequence;
+
+  private final boolean[] failedCalls;
+
+  private final boolean[] slowCalls;
+
+  private final AtomicLong rejectedCalls = new AtomicLong();
+
+  private int windowIndex;
+
+  private int windowCalls;
+
+  private int windowFailures;
+
+  private int windowSlowCalls;
+
+  private int halfOpenPermits;
+
+  private int halfOpenSuccesses;
+
+  private volatile State state = State.CLOSED;
+
+  private volatile long openUntil;
+
+  private ScheduledFuture<?> halfOpenTask;
+
+  private boolean closed;
+
+  CircuitBreaker(final CircuitBreakerManager manager, final String name, final Listener listener) {
+    this.manager = checkNotNull(manager);
+    this.name = checkNotNull(name);
+    this.listener = checkNotNull(listener);
+    this.openSequence = new FibonacciNumberSequence(manager.getOpenMillis());
+    this.failedCalls = new boolean[manager.getWindowSize()];
+    this.slowCalls = new boolean[manager.getWindowSize()];
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Time in millis until which the circuit stays open, only meaningful while {@link State#OPEN}.
+   */
+  public long getOpenUntil() {
+    return openUntil;
+  }
+
+  public long getRejectedCalls() {
+    return rejectedCalls.get();
+  }
+
+  /**
+   * Returns {@code true} if a call may proceed, in which case its outcome must be reported with exactly one of
+   * {@link #onSuccess(long)}, {@link #onFailure(long, String)} or {@link #onIgnored()}.
+   */
+  public boolean tryAcquire() {
+    // half-open here as well, in case the scheduler is not running or lagging behind
+    if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+      halfOpen();
+    }
+    synchronized (this) {
+      return acquire();
+    }
+  }
+
+  private boolean acquire() {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case HALF_OPEN:
+        if (halfOpenPermits > 0) {
+          halfOpenPermits--;
+          return true;
+        }
+        break;
+      default:
+        break;
+    }
+    rejectedCalls.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Records a call which completed, slow calls count against the circuit.
+   */
+  public void onSuccess(final long durationMillis) {
+    boolean slow = manager.isSlowCall(durationMillis);
+    record(false, slow, slow ? "Slow remote response: " + durationMillis + " ms" : null);
+  }
+
+  /**
+   * Records a call which failed because the remote was unavailable.
+   */
+  public void onFailure(final long durationMillis, @Nullable final String reason) {
+    record(true, manager.isSlowCall(durationMillis), reason);
+  }
+
+  /**
+   * Records a call whose outcome says nothing about the remote, returning its trial permit if half-open.
+   */
+  public synchronized void onIgnored() {
+    if (state == State.HALF_OPEN) {
+      halfOpenPermits++;
+    }
+  }
+
+  /**
+   * Stops the circuit breaker, cancelling any pending half-open timer.
+   */
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      cancelHalfOpenTask();
+    }
+    manager.closed(this);
+  }
+
+  private void record(final boolean failed, final boolean slow, @Nullable final String reason) {
+    State from;
+    State to;
+    synchronized (this) {
+      from = state;
+      to = from;
+      if (from == State.CLOSED) {
+        recordInWindow(failed, slow);
+        if (isAboveThreshold()) {
+          to = open();
+        }
+      }
+      else if (from == State.HALF_OPEN) {
+        if (failed || slow) {
+          to = open();
+        }
+        else if (++halfOpenSuccesses >= manager.getHalfOpenCalls()) {
+          to = reset();
+        }
+      }
+      // calls completing while open were acquired before the circuit opened, their outcome is stale
+    }
+    fire(from, to, reason);
+  }
+
+  private void recordInWindow(final boolean failed, final boolean slow) {
+    if (windowCalls == failedCalls.length) {
+      windowFailures -= failedCalls[windowIndex] ? 1 : 0;
+      windowSlowCalls -= slowCalls[windowIndex] ? 1 : 0;
+    }
+    else {
+      windowCalls++;
+    }
+    failedCalls[windowIndex] = failed;
+    slowCalls[windowIndex] = slow;
+    windowFailures += failed ? 1 : 0;
+    windowSlowCalls += slow ? 1 : 0;
+    windowIndex = (windowIndex + 1) % failedCalls.length;
+  }
+
+  private boolean isAboveThreshold() {
+    if (windowCalls < manager.getMinimumCalls()) {
+      return false;
+    }
+    int slowCallRateThreshold = manager.getSlowCallRateThreshold();
+    return windowFailures * 100 >= manager.getFailureRateThreshold() * windowCalls
+        || (slowCallRateThreshold > 0 && windowSlowCalls * 100 >= slowCallRateThreshold * windowCalls);
+  }
+
+  /**
+   * Opens the circuit and schedules it to half-open after the next backoff delay.
+   */
+  private State open() {
+    long delay = openSequence.next();
+    state = State.OPEN;
+    openUntil = System.currentTimeMillis() + delay;
+    cancelHalfOpenTask();
+    if (!closed) {
+      halfOpenTask = manager.schedule(this::halfOpen, delay);
+    }
+    return State.OPEN;
+  }
+
+  /**
+   * Closes the circuit with an empty window and the backoff reset.
+   */
+  private State reset() {
+    state = State.CLOSED;
+    windowIndex = 0;
+    windowCalls = 0;
+    windowFailures = 0;
+    windowSlowCalls = 0;
+    openSequence.reset();
+    return State.CLOSED;
+  }
+
+  private void halfOpen() {
+    State from;
+    synchronized (this) {
+      from = state;
+      cancelHalfOpenTask();
+      if (from != State.OPEN || closed) {
+        return;
+      }
+      state = State.HALF_OPEN;
+      halfOpenPermits = manager.getHalfOpenCalls();
+      halfOpenSuccesses = 0;
+    }
+    fire(from, State.HALF_OPEN, null);
+  }
+
+  private void cancelHalfOpenTask() {
+    if (halfOpenTask != null) {
+      halfOpenTask.cancel(false);
+      halfOpenTask = null;
+    }
+  }
+
+  private void fire(final State from, final State to, @Nullable final String reason) {
+    if (from != to) {
+      manager.transitioned(this, from, to);
+      listener.onStateChange(this, from, to, reason);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" +
+        "name='" + name + '\'' +
+        ", state=" + state +
+        '}';
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpclient;
+
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.jmx.reflect.ManagedAttribute;
+import org.sonatype.nexus.jmx.reflect.ManagedObject;
+import org.sonatype.nexus.repository.httpclient.CircuitBreaker.Listener;
+import org.sonatype.nexus.repository.httpclient.CircuitBreaker.State;
+
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+
+/**
+ * Creates {@link CircuitBreaker}s guarding remote repositories and runs their open-state timers on a single shared
+ * scheduler thread.
+ *
+ * The defaults keep the behaviour of blocking a remote on its first failure: the window holds a single call and slow
+ * calls are not counted. Enlarge {@code windowSize} and {@code minimumCalls} to open on a failure rate instead, and
+ * set {@code slowCallRateThreshold} above zero to count calls taking {@code slowCallTime} or longer.
+ *
+ * @since 3.1
+ */
+@Named
+@Singleton
+@ManagedLifecycle(phase = SERVICES)
+@ManagedObject
+public class CircuitBreakerManager
+    extends LifecycleSupport
+{
+  private final int windowSize;
+
+  private final int minimumCalls;
+
+  private final int failureRateThreshold;
+
+  private final int slowCallRateThreshold;
+
+  private final long slowCallMillis;
+
+  private final int halfOpenCalls;
+
+  private final long openMillis;
+
+  private final Set<CircuitBreaker> circuitBreakers = Sets.newConcurrentHashSet();
+
+  private final AtomicLong stateTransitions = new AtomicLong();
+
+  private ScheduledThreadPoolExecutor scheduler;
+
+  @Inject
+  public CircuitBreakerManager(
+      @Named("${nexus.httpclient.circuitBreaker.windowSize:-1}") final int windowSize,
+      @Named("${nexus.httpclient.circuitBreaker.minimumCalls:-1}") final int minimumCalls,
+      @Named("${nexus.httpclient.circuitBreaker.failureRateThreshold:-50}") final int failureRateThreshold,
+      @Named("${nexus.httpclient.circuitBreaker.slowCallRateThreshold:-0}") final int slowCallRateThreshold,
+      @Named("${nexus.httpclient.circuitBreaker.slowCallTime:-60s}") final Time slowCallTime,
+      @Named("${nexus.httpclient.circuitBreaker.halfOpenCalls:-3}") final int halfOpenCalls,
+      @Named("${nexus.httpclient.circuitBreaker.openTime:-40s}") final Time openTime)
+  {
+    checkArgument(windowSize > 0);
+    checkArgument(minimumCalls > 0 && minimumCalls <= windowSize);
+    checkArgument(failureRateThreshold > 0 && failureRateThreshold <= 100);
+    checkArgument(slowCallRateThreshold >= 0 && slowCallRateThreshold <= 100);
+    checkArgument(halfOpenCalls > 0);
+    this.windowSize = windowSize;
+    this.minimumCalls = minimumCalls;
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallMillis = checkNotNull(slowCallTime).toMillis();
+    this.halfOpenCalls = halfOpenCalls;
+    this.openMillis = checkNotNull(openTime).toMillis();
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    scheduler = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setNameFormat("circuit-breaker-%d").setDaemon(true).build());
+    scheduler.setRemoveOnCancelPolicy(true);
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    scheduler.shutdownNow();
+    scheduler = null;
+  }
+
+  /**
+   * Creates a new closed circuit breaker, which must be {@link CircuitBreaker#close() closed} once no longer used.
+   */
+  public CircuitBreaker create(final String name, final Listener listener) {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(this, name, listener);
+    circuitBreakers.add(circuitBreaker);
+    return circuitBreaker;
+  }
+
+  /**
+   * Schedules the task on the shared scheduler, returns {@code null} when not running.
+   */
+  ScheduledFuture<?> schedule(final Runnable task, final long delayMillis) {
+    ScheduledThreadPoolExecutor current = scheduler;
+    if (current == null) {
+      return null;
+    }
+    return current.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  void transitioned(final CircuitBreaker circuitBreaker, final State from, final State to) {
+    stateTransitions.incrementAndGet();
+    log.debug("Circuit breaker {} transitioned {} -> {}", circuitBreaker.getName(), from, to);
+  }
+
+  void closed(final CircuitBreaker circuitBreaker) {
+    circuitBreakers.remove(circuitBreaker);
+  }
+
+  int getWindowSize() {
+    return windowSize;
+  }
+
+  int getMinimumCalls() {
+    return minimumCalls;
+  }
+
+  int getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  /**
+   * Rate of slow calls opening the circuit, zero if slow calls are not counted.
+   */
+  int getSlowCallRateThreshold() {
+    return slowCallRateThreshold;
+  }
+
+  boolean isSlowCall(final long durationMillis) {
+    return slowCallRateThreshold > 0 && durationMillis >= slowCallMillis;
+  }
+
+  int getHalfOpenCalls() {
+    return halfOpenCalls;
+  }
+
+  long getOpenMillis() {
+    return openMillis;
+  }
+
+  @ManagedAttribute(description = "Number of circuit breakers in use")
+  public int getCircuitBreakers() {
+    return circuitBreakers.size();
+  }
+
+  @ManagedAttribute(description = "Number of open circuit breakers")
+  public int getOpenCircuitBreakers() {
+    return count(State.OPEN);
+  }
+
+  @ManagedAttribute(description = "Number of half-open circuit breakers")
+  public int getHalfOpenCircuitBreakers() {
+    return count(State.HALF_OPEN);
+  }
+
+  @ManagedAttribute(description = "Number of calls rejected by circuit breakers in use")
+  public long getRejectedCalls() {
+    long rejected = 0;
+    for (CircuitBreaker circuitBreaker : circuitBreakers) {
+      rejected += circuitBreaker.getRejectedCalls();
+    }
+    return rejected;
+  }
+
+  @ManagedAttribute(description = "Number of circuit breaker state transitions")
+  public long getStateTransitions() {
+    return stateTransitions.get();
+  }
+
+  private int count(final State state) {
+    int count = 0;
+    for (CircuitBreaker circuitBreaker : circuitBreakers) {
+      if (circuitBreaker.getState() == state) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpclient;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.RepositoryEvent;
+import org.sonatype.nexus.repository.httpclient.CircuitBreaker.State;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Emitted when the circuit breaker guarding the remote of a repository changes state.
+ *
+ * @since 3.1
+ */
+public class CircuitBreakerStateChangedEvent
+    extends RepositoryEvent
+{
+  private final State from;
+
+  private final State to;
+
+  private final String reason;
+
+  public CircuitBreakerStateChangedEvent(final Repository repository,
+                                         final State from,
+                                         final State to,
+                                         @Nullable final String reason)
+  {
+    super(repository);
+    this.from = checkNotNull(from);
+    this.to = checkNotNull(to);
+    this.reason = reason;
+  }
+
+  public State getFrom() {
+    return from;
+  }
+
+  public State getTo() {
+    return to;
+  }
+
+  @Nullable
+  public String getReason() {
+    return reason;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" +
+        "repository=" + getRepository() +
+        ", from=" + from +
+        ", to=" + to +
+        ", reason=" + reason +
+        '}';
+  }
+}
@@ -16,6 +16,8 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
 
+import javax.annotation.Nullable;
+
 import org.sonatype.goodies.common.ComponentSupport;
 
 import org.apache.http.HttpHost;
@@ -24,6 +26,8 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.Configurable;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIUtils;
 import org.apache.http.conn.ClientConnectionManager;
@@ -39,7 +43,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public abstract class FilteredHttpClientSupport
     extends ComponentSupport
-    implements HttpClient, Closeable
+    implements HttpClient, Configurable, Closeable
 {
   private final HttpClient delegate;
 
@@ -57,6 +61,15 @@ public abstract class FilteredHttpClientSupport
     return delegate.getConnectionManager();
   }
 
+  /**
+   * Returns the default request configuration of the delegate, if it has one.
+   */
+  @Nullable
+  @Override
+  public RequestConfig getConfig() {
+    return delegate instanceof Configurable ? ((Configurable) delegate).getConfig() : null;
+  }
+
   @Override
   public void close() throws IOException {
     if (delegate instanceof Closeable) {
@@ -29,6 +29,7 @@ import org.sonatype.nexus.httpclient.config.HttpClientConfiguration;
 import org.sonatype.nexus.repository.FacetSupport;
 import org.sonatype.nexus.repository.config.Configuration;
 import org.sonatype.nexus.repository.config.ConfigurationFacet;
+import org.sonatype.nexus.repository.httpclient.CircuitBreaker.State;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.eventbus.Subscribe;
@@ -49,6 +50,8 @@ public class HttpClientFacetImpl
 {
   private final HttpClientManager httpClientManager;
 
+  private final CircuitBreakerManager circuitBreakerManager;
+
   @VisibleForTesting
   static final String CONFIG_KEY = "httpclient";
 
@@ -75,8 +78,11 @@ public class HttpClientFacetImpl
   private BlockingHttpClient httpClient;
 
   @Inject
-  public HttpClientFacetImpl(final HttpClientManager httpClientManager) {
+  public HttpClientFacetImpl(final HttpClientManager httpClientManager,
+                             final CircuitBreakerManager circuitBreakerManager)
+  {
     this.httpClientManager = checkNotNull(httpClientManager);
+    this.circuitBreakerManager = checkNotNull(circuitBreakerManager);
   }
 
   @Override
@@ -125,13 +131,32 @@ public class HttpClientFacetImpl
     HttpClientConfiguration delegateConfig = new HttpClientConfiguration();
     delegateConfig.setConnection(config.connection);
     delegateConfig.setAuthentication(config.authentication);
-    HttpClient delegate = httpClientManager.create(new ConfigurationCustomizer(delegateConfig));
+    ConfigurationCustomizer customizer = new ConfigurationCustomizer(delegateConfig);
+    HttpClient delegate = httpClientManager.create(plan -> {
+      customizer.customize(plan);
+      // a pool size, configured here or globally, gives the repository a pool of its own
+      plan.setConnectionPoolName(getRepository().getName());
+    });
 
     // wrap delegate with auto-block aware client
-    httpClient = new BlockingHttpClient(delegate, config);
+    CircuitBreaker circuitBreaker = null;
+    if (Boolean.TRUE.equals(config.autoBlock)) {
+      circuitBreaker = circuitBreakerManager.create(getRepository().getName(), this::onCircuitBreakerStateChange);
+    }
+    httpClient = new BlockingHttpClient(delegate, config, circuitBreaker);
     log.debug("Created HTTP client: {}", httpClient);
   }
 
+  private void onCircuitBreakerStateChange(final CircuitBreaker circuitBreaker,
+                                           final State from,
+                                           final State to,
+                                           @Nullable final String reason)
+  {
+    log.info("Repository {} remote circuit {} -> {}{}", getRepository().getName(), from, to,
+        reason != null ? ": " + reason : "");
+    getEventBus().post(new CircuitBreakerStateChangedEvent(getRepository(), from, to, reason));
+  }
+
   private void closeHttpClient() throws IOException {
     log.debug("Closing HTTP client: {}", httpClient);
     httpClient.close();
@@ -0,0 +1,143 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.proxy;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.repository.view.Content;
+import org.sonatype.nexus.repository.view.payloads.StreamPayload;
+
+import com.google.common.base.Throwables;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A fetch of a URL in progress for one request, which concurrent requests for the same URL wait on.
+ *
+ * The fetching side reads the remote content through {@link #track(Content)}, so waiters give up once the fetch has
+ * stalled for a while rather than after a fixed time, however long the content takes to transfer. A fetch which is
+ * streamed through publishes its {@link StreamThroughDownload} so waiters can follow it instead.
+ *
+ * @since 3.1
+ */
+class InflightFetch
+{
+  private volatile long lastProgress = System.currentTimeMillis();
+
+  // guarded by this
+  private boolean done;
+
+  private Content stored;
+
+  private Throwable failure;
+
+  private StreamThroughDownload download;
+
+  /**
+   * Returns content reading the remote content, recording progress as it is read.
+   */
+  Content track(final Content remote) {
+    Content content = new Content(new StreamPayload(() -> new FilterInputStream(remote.openInputStream())
+    {
+      @Override
+      public int read() throws IOException {
+        progress();
+        return super.read();
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        progress();
+        return super.read(b, off, len);
+      }
+
+      @Override
+      public long skip(final long n) throws IOException {
+        progress();
+        return super.skip(n);
+      }
+    }, remote.getSize(), remote.getContentType()));
+    content.getAttributes().backing().putAll(remote.getAttributes().backing());
+    return content;
+  }
+
+  void progress() {
+    lastProgress = System.currentTimeMillis();
+  }
+
+  /**
+   * Completes the fetch with the stored content, or {@code null} if the remote had nothing new to offer.
+   */
+  synchronized void complete(@Nullable final Content storedContent) {
+    if (!done) {
+      done = true;
+      stored = storedContent;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Publishes the download the fetch is streaming through, waking waiters so they can attach to it.
+   */
+  synchronized void streaming(final StreamThroughDownload streamThroughDownload) {
+    download = checkNotNull(streamThroughDownload);
+    notifyAll();
+  }
+
+  /**
+   * Returns the download the fetch is streaming through, if any.
+   */
+  @Nullable
+  synchronized StreamThroughDownload download() {
+    return download;
+  }
+
+  synchronized void fail(final Throwable cause) {
+    if (!done) {
+      done = true;
+      failure = checkNotNull(cause);
+      notifyAll();
+    }
+  }
+
+  /**
+   * Waits for the fetch to complete, or to start streaming through, for as long as it keeps making progress.
+   *
+   * @return the stored content, or {@code null} if the remote had nothing new to offer or the fetch is streaming
+   * through, in which case {@link #download()} is set
+   * @throws TimeoutException if the fetch made no progress for the given time
+   */
+  @Nullable
+  synchronized Content await(final long idleTimeoutMillis) throws IOException, InterruptedException, TimeoutException {
+    while (!done && download == null) {
+      long remaining = lastProgress + idleTimeoutMillis - System.currentTimeMillis();
+      if (remaining <= 0) {
+        throw new TimeoutException("No progress for " + idleTimeoutMillis + " ms");
+      }
+      wait(remaining);
+    }
+    if (!done) {
+      return null;
+    }
+    if (failure != null) {
+      Throwables.propagateIfPossible(failure, IOException.class);
+      throw new IOException(failure);
+    }
+    return stored;
+  }
+}
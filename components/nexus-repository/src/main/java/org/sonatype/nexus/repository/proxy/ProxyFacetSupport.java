@@ -13,13 +13,21 @@
 package org.sonatype.nexus.repository.proxy;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.sonatype.goodies.common.Time;
+import org.sonatype.nexus.common.collect.AttributesMap;
 import org.sonatype.nexus.repository.FacetSupport;
 import org.sonatype.nexus.repository.InvalidContentException;
 import org.sonatype.nexus.repository.cache.CacheController;
@@ -29,9 +37,14 @@ import org.sonatype.nexus.repository.cache.NegativeCacheFacet;
 import org.sonatype.nexus.repository.config.Configuration;
 import org.sonatype.nexus.repository.config.ConfigurationFacet;
 import org.sonatype.nexus.repository.httpclient.HttpClientFacet;
+import org.sonatype.nexus.repository.storage.StorageFacet;
 import org.sonatype.nexus.repository.view.Content;
 import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler;
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler.Outcome;
 import org.sonatype.nexus.repository.view.payloads.HttpEntityPayload;
+import org.sonatype.nexus.transaction.UnitOfWork;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
@@ -42,6 +55,8 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.Configurable;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.DateUtils;
@@ -50,6 +65,7 @@ import org.joda.time.DateTime;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
 
 /**
  * A support class which implements basic payload logic; subclasses provide format-specific operations.
@@ -63,6 +79,12 @@ public abstract class ProxyFacetSupport
   @VisibleForTesting
   static final String CONFIG_KEY = "proxy";
 
+  /**
+   * How long an in-flight fetch may stall when the HTTP client does not expose its timeouts, matching the default
+   * connection request, connect and socket timeouts.
+   */
+  private static final long DEFAULT_INFLIGHT_TIMEOUT_MILLIS = Time.seconds(70).toMillis();
+
   @VisibleForTesting
   static class Config
   {
@@ -81,11 +103,26 @@ public abstract class ProxyFacetSupport
     @NotNull
     public Integer metadataMaxAge = Time.hours(24).toMinutesI();
 
+    /**
+     * Minutes past max-age during which stale content is served while it is revalidated in the background.
+     */
+    @NotNull
+    @Min(0)
+    public Integer staleWhileRevalidate = 0;
+
+    /**
+     * Serve missing content to clients while it is being stored, instead of after.
+     */
+    @NotNull
+    public Boolean streamThrough = Boolean.FALSE;
+
     @Override
     public String toString() {
       return getClass().getSimpleName() + "{" +
           "remoteUrl=" + remoteUrl +
           ", contentMaxAge=" + contentMaxAge +
+          ", staleWhileRevalidate=" + staleWhileRevalidate +
+          ", streamThrough=" + streamThrough +
           '}';
     }
   }
@@ -98,6 +135,31 @@ public abstract class ProxyFacetSupport
 
   protected CacheControllerHolder cacheControllerHolder;
 
+  private ProxyRefreshExecutor refreshExecutor;
+
+  private StreamThroughExecutor streamThroughExecutor;
+
+  /**
+   * Fetches currently in progress, keyed by request URL; concurrent misses on the same URL wait on the first one.
+   */
+  private final ConcurrentMap<String, InflightFetch> inflight = new ConcurrentHashMap<>();
+
+  /**
+   * @since 3.1
+   */
+  @Inject
+  public void installDependencies(final ProxyRefreshExecutor refreshExecutor) {
+    this.refreshExecutor = checkNotNull(refreshExecutor);
+  }
+
+  /**
+   * @since 3.1
+   */
+  @Inject
+  public void installDependencies(final StreamThroughExecutor streamThroughExecutor) {
+    this.streamThroughExecutor = checkNotNull(streamThroughExecutor);
+  }
+
   @Override
   protected void doValidate(final Configuration configuration) throws Exception {
     facet(ConfigurationFacet.class).validateSection(configuration, CONFIG_KEY, Config.class);
@@ -158,22 +220,267 @@ public abstract class ProxyFacetSupport
     checkNotNull(context);
 
     final Content content = getCachedContent(context);
+    if (content != null) {
+      MetricsHandler.outcome(context, Outcome.PROXY_HIT);
+    }
 
     if (isStale(context, content)) {
+      if (content != null && isWithinStaleWindow(context, content) && maybeRevalidateInBackground(context, content)) {
+        log.debug("Serving stale content while revalidating: {}", getUrl(context));
+        return content;
+      }
+      MetricsHandler.outcome(context, Outcome.PROXY_MISS);
+      final String url = getUrl(context);
+      final InflightFetch ours = new InflightFetch();
+      final InflightFetch theirs = inflight.putIfAbsent(url, ours);
+      if (theirs != null) {
+        return awaitInflight(context, url, theirs, content);
+      }
+      boolean handedOff = false;
       try {
-        final Content remote = fetch(context, content);
-        if (remote != null) {
-          return store(context, remote);
+        final Content stored;
+        if (content == null && isStreamThrough(context)) {
+          final Content remote = fetchRemote(context, null);
+          final Content streamed = remote != null ? streamThrough(context, url, remote, ours) : null;
+          if (streamed != null) {
+            handedOff = true;
+            return streamed;
+          }
+          stored = remote != null ? store(context, ours.track(remote)) : null;
+        }
+        else {
+          stored = fetchAndStore(context, content, ours);
+        }
+        ours.complete(stored);
+        if (stored != null) {
+          return stored;
         }
       }
-      catch (ProxyServiceException | IOException e) {
-        log.warn("Failed to fetch: {}", getUrl(context), e);
+      catch (IOException | RuntimeException | Error e) {
+        ours.fail(e);
         throw e;
       }
+      finally {
+        if (!handedOff) {
+          inflight.remove(url, ours);
+        }
+      }
     }
     return content;
   }
 
+  /**
+   * Returns {@code true} if a miss should be served while it is stored.
+   */
+  private boolean isStreamThrough(final Context context) {
+    return streamThroughExecutor != null && config.streamThrough && GET.equals(context.getRequest().getAction());
+  }
+
+  /**
+   * Stores the remote content on the {@link StreamThroughExecutor}, spooling it so the caller and any concurrent
+   * requests can be served as it arrives. The store takes over the in-flight slot, and on failure the partial blob is
+   * discarded by the blob store and clients still reading get an error. The store works on a {@link #detach detached}
+   * copy of the context, as the request carries on with the original.
+   *
+   * @return content following the download, or {@code null} if the pool is saturated and the caller should store
+   * the remote content itself
+   */
+  @Nullable
+  private Content streamThrough(final Context context,
+                                final String url,
+                                final Content remote,
+                                final InflightFetch ours)
+  {
+    final StreamThroughDownload download;
+    try {
+      download = new StreamThroughDownload(ours.track(remote), streamThroughExecutor.createSpool());
+    }
+    catch (IOException e) {
+      log.warn("Failed to create spool, storing before serving: {}", url, e);
+      return null;
+    }
+    final Content tee = new Content(download.teePayload());
+    tee.getAttributes().backing().putAll(remote.getAttributes().backing());
+
+    final Context detached = detach(context);
+    final boolean submitted = streamThroughExecutor.submit(() -> {
+      UnitOfWork.begin(facet(StorageFacet.class).txSupplier());
+      try {
+        final Content stored = store(detached, tee);
+        download.finish(stored);
+        ours.complete(stored);
+        return stored;
+      }
+      catch (Exception | Error e) {
+        log.warn("Failed to store: {}", url, e);
+        download.fail(e);
+        ours.fail(e);
+        throw e;
+      }
+      finally {
+        UnitOfWork.end();
+        inflight.remove(url, ours);
+      }
+    });
+    if (!submitted) {
+      download.abandon();
+      return null;
+    }
+    ours.streaming(download);
+    log.debug("Streaming through: {}", url);
+    return download.attach();
+  }
+
+  /**
+   * Returns a copy of the context, with its own context and request attributes, for use on another thread while the
+   * request thread carries on with the original.
+   */
+  private static Context detach(final Context context) {
+    final Request request = new Request.Builder()
+        .copy(context.getRequest())
+        .attributes(new AttributesMap(new HashMap<>(context.getRequest().getAttributes().backing())))
+        .build();
+    final Context detached = new Context(context.getRepository(), request);
+    detached.getAttributes().backing().putAll(context.getAttributes().backing());
+    return detached;
+  }
+
+  /**
+   * Revalidates the stale content on the {@link ProxyRefreshExecutor}, unless a fetch of the same URL is already in
+   * flight. The background fetch takes the in-flight slot, so requests which cannot be served stale wait on it, and
+   * works on a {@link #detach detached} copy of the context.
+   *
+   * @return {@code true} if the stale content may be served, {@code false} if the caller should fetch it itself
+   */
+  private boolean maybeRevalidateInBackground(final Context context, final Content stale) {
+    final ProxyRefreshExecutor executor = refreshExecutor;
+    if (executor == null) {
+      return false;
+    }
+    final String url = getUrl(context);
+    final InflightFetch ours = new InflightFetch();
+    if (inflight.putIfAbsent(url, ours) != null) {
+      return true; // already being fetched
+    }
+    final Context detached = detach(context);
+    final boolean submitted = executor.submit(() -> {
+      UnitOfWork.begin(facet(StorageFacet.class).txSupplier());
+      try {
+        final Content stored = fetchAndStore(detached, stale, ours);
+        ours.complete(stored);
+        return stored;
+      }
+      catch (Exception | Error e) {
+        ours.fail(e);
+        throw e;
+      }
+      finally {
+        UnitOfWork.end();
+        inflight.remove(url, ours);
+      }
+    });
+    if (!submitted) {
+      inflight.remove(url, ours);
+      ours.complete(null);
+    }
+    return submitted;
+  }
+
+  /**
+   * Fetches the content from the remote and stores it, returning the stored content or {@code null} if the remote
+   * had nothing new to offer. Reading the remote content counts as progress of the in-flight fetch.
+   */
+  @Nullable
+  private Content fetchAndStore(final Context context,
+                                @Nullable final Content stale,
+                                final InflightFetch fetch) throws IOException
+  {
+    try {
+      final Content remote = fetch(context, stale);
+      if (remote != null) {
+        return store(context, fetch.track(remote));
+      }
+      return null;
+    }
+    catch (ProxyServiceException | IOException e) {
+      log.warn("Failed to fetch: {}", getUrl(context), e);
+      throw e;
+    }
+  }
+
+  /**
+   * Fetches the content from the remote, logging failures.
+   */
+  @Nullable
+  private Content fetchRemote(final Context context, @Nullable final Content stale) throws IOException {
+    try {
+      return fetch(context, stale);
+    }
+    catch (ProxyServiceException | IOException e) {
+      log.warn("Failed to fetch: {}", getUrl(context), e);
+      throw e;
+    }
+  }
+
+  /**
+   * Waits for a fetch of the same URL started by another request, then serves what that fetch stored, or follows its
+   * download as soon as it starts streaming through. The stored content is re-read from cache so every waiter gets
+   * its own payload. The wait lasts as long as the fetch keeps
+   * reading from the remote; once it stalls for longer than the HTTP client would wait, stale content is served if
+   * there is any, otherwise the wait fails.
+   */
+  @Nullable
+  private Content awaitInflight(final Context context,
+                                final String url,
+                                final InflightFetch fetch,
+                                @Nullable final Content stale) throws IOException
+  {
+    log.debug("Waiting for in-flight fetch: {}", url);
+    final Content stored;
+    try {
+      stored = fetch.await(inflightTimeoutMillis());
+    }
+    catch (TimeoutException e) {
+      if (stale != null) {
+        log.debug("In-flight fetch stalled, serving stale content: {}", url);
+        return stale;
+      }
+      throw new IOException("In-flight fetch stalled: " + url, e);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for in-flight fetch: " + url);
+    }
+    final StreamThroughDownload download = fetch.download();
+    if (download != null) {
+      log.debug("Attaching to in-flight download: {}", url);
+      return download.attach();
+    }
+    if (stored == null) {
+      // remote had nothing (missing or not modified); behave as the fetching request did
+      return stale;
+    }
+    final Content cached = getCachedContent(context);
+    return cached != null ? cached : stale;
+  }
+
+  /**
+   * Returns how long an in-flight fetch may go without progress: the time the HTTP client may wait for a pooled
+   * connection, to connect and for the remote to send data.
+   */
+  @VisibleForTesting
+  long inflightTimeoutMillis() {
+    final HttpClientFacet client = httpClient;
+    if (client != null && client.getHttpClient() instanceof Configurable) {
+      final RequestConfig requestConfig = ((Configurable) client.getHttpClient()).getConfig();
+      if (requestConfig != null && requestConfig.getConnectTimeout() > 0 && requestConfig.getSocketTimeout() > 0) {
+        return Math.max(requestConfig.getConnectionRequestTimeout(), 0) + (long) requestConfig.getConnectTimeout()
+            + requestConfig.getSocketTimeout();
+      }
+    }
+    return DEFAULT_INFLIGHT_TIMEOUT_MILLIS;
+  }
+
   @Override
   public void invalidateProxyCaches() {
     log.info("Invalidating proxy caches of {}", getRepository().getName());
@@ -347,6 +654,18 @@ public abstract class ProxyFacetSupport
     return cacheControllerHolder.getContentCacheController();
   }
 
+  /**
+   * Returns {@code true} if stale content may still be served while it is revalidated.
+   */
+  private boolean isWithinStaleWindow(final Context context, final Content content) {
+    if (config.staleWhileRevalidate == 0) {
+      return false;
+    }
+    final CacheInfo cacheInfo = content.getAttributes().get(CacheInfo.class);
+    return cacheInfo != null
+        && getCacheController(context).isStaleWithin(cacheInfo, Time.minutes(config.staleWhileRevalidate).toSecondsI());
+  }
+
   private boolean isStale(final Context context, final Content content) {
     if (content == null) {
       // not in cache, consider it stale
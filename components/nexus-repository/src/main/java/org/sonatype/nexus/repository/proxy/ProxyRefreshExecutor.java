@@ -0,0 +1,152 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.proxy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.jmx.reflect.ManagedAttribute;
+import org.sonatype.nexus.jmx.reflect.ManagedObject;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+
+/**
+ * Bounded pool on which proxy repositories revalidate stale content in the background, while the stale copy is
+ * served.
+ *
+ * @since 3.1
+ */
+@Named
+@Singleton
+@ManagedLifecycle(phase = SERVICES)
+@ManagedObject
+public class ProxyRefreshExecutor
+    extends LifecycleSupport
+{
+  private final int threads;
+
+  private final int queueSize;
+
+  private final AtomicLong submittedRefreshes = new AtomicLong();
+
+  private final AtomicLong rejectedRefreshes = new AtomicLong();
+
+  private final AtomicLong completedRefreshes = new AtomicLong();
+
+  private final AtomicLong failedRefreshes = new AtomicLong();
+
+  private ThreadPoolExecutor executor;
+
+  @Inject
+  public ProxyRefreshExecutor(@Named("${nexus.proxy.refresh.threads:-8}") final int threads,
+                              @Named("${nexus.proxy.refresh.queueSize:-512}") final int queueSize)
+  {
+    checkArgument(threads > 0);
+    checkArgument(queueSize > 0);
+    this.threads = threads;
+    this.queueSize = queueSize;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("proxy-refresh-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    executor.shutdownNow();
+    executor = null;
+  }
+
+  /**
+   * Runs the refresh on the pool as the current subject.
+   *
+   * @return {@code false} if the pool is saturated or not running, in which case the refresh is dropped
+   */
+  public boolean submit(final Callable<?> refresh) {
+    ThreadPoolExecutor current = executor;
+    if (current == null) {
+      return false;
+    }
+    Subject subject = ThreadContext.getSubject();
+    Callable<?> callable = subject != null ? subject.associateWith(refresh) : refresh;
+    try {
+      current.execute(() -> {
+        try {
+          callable.call();
+          completedRefreshes.incrementAndGet();
+        }
+        catch (Exception e) {
+          // failures are logged by the refresh itself
+          log.debug("Proxy refresh failed", e);
+          failedRefreshes.incrementAndGet();
+        }
+      });
+    }
+    catch (RuntimeException e) {
+      log.debug("Proxy refresh pool saturated, dropping refresh", e);
+      rejectedRefreshes.incrementAndGet();
+      return false;
+    }
+    submittedRefreshes.incrementAndGet();
+    return true;
+  }
+
+  @ManagedAttribute(description = "Number of refreshes waiting for a thread")
+  public int getQueuedRefreshes() {
+    ThreadPoolExecutor current = executor;
+    return current != null ? current.getQueue().size() : 0;
+  }
+
+  @ManagedAttribute(description = "Number of refreshes currently executing")
+  public int getActiveRefreshes() {
+    ThreadPoolExecutor current = executor;
+    return current != null ? current.getActiveCount() : 0;
+  }
+
+  @ManagedAttribute(description = "Number of refreshes accepted by the pool")
+  public long getSubmittedRefreshes() {
+    return submittedRefreshes.get();
+  }
+
+  @ManagedAttribute(description = "Number of refreshes dropped because the pool was saturated")
+  public long getRejectedRefreshes() {
+    return rejectedRefreshes.get();
+  }
+
+  @ManagedAttribute(description = "Number of refreshes which completed")
+  public long getCompletedRefreshes() {
+    return completedRefreshes.get();
+  }
+
+  @ManagedAttribute(description = "Number of refreshes which failed")
+  public long getFailedRefreshes() {
+    return failedRefreshes.get();
+  }
+}
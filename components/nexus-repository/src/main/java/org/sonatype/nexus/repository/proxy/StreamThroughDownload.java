@@ -0,0 +1,344 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.proxy;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.annotation.Nonnull;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.nexus.repository.view.Content;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.payloads.StreamPayload;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A remote download which is stored and served to clients at the same time.
+ *
+ * The storing side reads the upstream through {@link #teePayload()}, which copies every chunk into a spool file.
+ * Clients read the spool through {@link #attach()}, following the download as it progresses. Once the download is
+ * over and no client is reading the spool any more it is deleted; clients attaching after that read the stored
+ * content instead.
+ *
+ * @since 3.1
+ */
+class StreamThroughDownload
+    extends ComponentSupport
+{
+  private final Content upstream;
+
+  private final Path spool;
+
+  private final FileChannel spoolOut;
+
+  private final Object lock = new Object();
+
+  // guarded by lock
+  private long written;
+
+  private boolean complete;
+
+  private IOException failure;
+
+  private Content stored;
+
+  private boolean teeOpened;
+
+  private boolean done;
+
+  private int references = 1; // the storing side
+
+  StreamThroughDownload(final Content upstream, final Path spool) throws IOException {
+    this.upstream = checkNotNull(upstream);
+    this.spool = checkNotNull(spool);
+    this.spoolOut = FileChannel.open(spool, WRITE);
+  }
+
+  /**
+   * Payload to store; it can be read once, copying the upstream into the spool as it goes.
+   */
+  Payload teePayload() {
+    return new StreamPayload(this::openTee, upstream.getSize(), upstream.getContentType());
+  }
+
+  /**
+   * Returns content following the download, with the upstream attributes.
+   */
+  Content attach() {
+    Content content = new Content(new StreamPayload(this::openReader, upstream.getSize(), upstream.getContentType()));
+    content.getAttributes().backing().putAll(upstream.getAttributes().backing());
+    return content;
+  }
+
+  /**
+   * Called by the storing side once the content is stored.
+   */
+  void finish(final Content storedContent) {
+    synchronized (lock) {
+      stored = checkNotNull(storedContent);
+      if (!complete && failure == null) {
+        failure = new IOException("Stored before end of upstream: " + spool);
+      }
+      lock.notifyAll();
+    }
+    done();
+  }
+
+  /**
+   * Called by the storing side if the content could not be stored; clients still reading get an exception.
+   */
+  void fail(final Throwable cause) {
+    recordFailure(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+    done();
+  }
+
+  /**
+   * Called if the download will not be stored after all; the upstream is left unread for the caller to use.
+   */
+  void abandon() {
+    synchronized (lock) {
+      teeOpened = true;
+    }
+    fail(new IOException("Download abandoned: " + spool));
+  }
+
+  private void recordFailure(final IOException cause) {
+    synchronized (lock) {
+      if (failure == null) {
+        failure = cause;
+      }
+      lock.notifyAll();
+    }
+  }
+
+  private void done() {
+    boolean closeUpstream;
+    synchronized (lock) {
+      if (done) {
+        return;
+      }
+      done = true;
+      closeUpstream = !teeOpened;
+      teeOpened = true;
+    }
+    if (closeUpstream) {
+      // never read, release the remote connection
+      try {
+        upstream.openInputStream().close();
+      }
+      catch (IOException e) {
+        log.debug("Failed to close upstream of {}", spool, e);
+      }
+    }
+    try {
+      spoolOut.close();
+    }
+    catch (IOException e) {
+      log.debug("Failed to close spool {}", spool, e);
+    }
+    release();
+  }
+
+  @Nonnull
+  private InputStream openTee() throws IOException {
+    synchronized (lock) {
+      checkState(!teeOpened, "Upstream already read");
+      teeOpened = true;
+    }
+    return new FilterInputStream(upstream.openInputStream())
+    {
+      @Override
+      public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xff;
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        int n;
+        try {
+          n = super.read(b, off, len);
+          if (n > 0) {
+            append(b, off, n);
+          }
+        }
+        catch (IOException e) {
+          recordFailure(e);
+          throw e;
+        }
+        if (n < 0) {
+          synchronized (lock) {
+            complete = true;
+            lock.notifyAll();
+          }
+        }
+        return n;
+      }
+
+      @Override
+      public long skip(final long n) throws IOException {
+        // skipped bytes must still reach the spool
+        if (n <= 0) {
+          return 0;
+        }
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        int read = read(buffer, 0, buffer.length);
+        return Math.max(read, 0);
+      }
+
+      @Override
+      public boolean markSupported() {
+        return false;
+      }
+    };
+  }
+
+  private void append(final byte[] b, final int off, final int len) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+    while (buffer.hasRemaining()) {
+      spoolOut.write(buffer);
+    }
+    synchronized (lock) {
+      written += len;
+      lock.notifyAll();
+    }
+  }
+
+  @Nonnull
+  private InputStream openReader() throws IOException {
+    Content storedContent = null;
+    IOException failed = null;
+    boolean spooled;
+    synchronized (lock) {
+      spooled = references > 0;
+      if (spooled) {
+        references++;
+      }
+      else {
+        storedContent = stored;
+        failed = failure;
+      }
+    }
+    if (!spooled) {
+      if (storedContent != null) {
+        log.trace("Spool of {} released, reading stored content", upstream);
+        return storedContent.openInputStream();
+      }
+      throw new IOException("Download failed: " + spool, failed);
+    }
+
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(spool, READ);
+    }
+    catch (IOException e) {
+      release();
+      throw e;
+    }
+    return new InputStream()
+    {
+      private long position;
+
+      private boolean closed;
+
+      @Override
+      public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xff;
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        long available = awaitAvailable(position);
+        if (available < 0) {
+          return -1;
+        }
+        int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, available)), position);
+        if (n > 0) {
+          position += n;
+        }
+        return n;
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (!closed) {
+          closed = true;
+          try {
+            channel.close();
+          }
+          finally {
+            release();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Waits until bytes past the position have been spooled, returning how many, or {@code -1} at the end.
+   */
+  private long awaitAvailable(final long position) throws IOException {
+    synchronized (lock) {
+      while (true) {
+        if (failure != null) {
+          throw new IOException("Download failed", failure);
+        }
+        if (written > position) {
+          return written - position;
+        }
+        if (complete) {
+          return -1;
+        }
+        try {
+          lock.wait();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted waiting for download: " + spool);
+        }
+      }
+    }
+  }
+
+  private void release() {
+    boolean delete;
+    synchronized (lock) {
+      delete = --references == 0;
+    }
+    if (delete) {
+      try {
+        Files.deleteIfExists(spool);
+      }
+      catch (IOException e) {
+        log.warn("Failed to delete spool {}", spool, e);
+      }
+    }
+  }
+}
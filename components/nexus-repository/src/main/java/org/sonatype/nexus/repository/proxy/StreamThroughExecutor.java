@@ -0,0 +1,160 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.proxy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ApplicationDirectories;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.jmx.reflect.ManagedAttribute;
+import org.sonatype.nexus.jmx.reflect.ManagedObject;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+
+/**
+ * Bounded pool on which proxy repositories store stream-through downloads while the content is served to clients.
+ *
+ * Downloads are not queued: a client would wait on a queued download, so when all threads are busy the download is
+ * stored by the requesting thread before serving, as without stream-through. Downloads are spooled to the
+ * application temporary directory.
+ *
+ * @since 3.1
+ */
+@Named
+@Singleton
+@ManagedLifecycle(phase = SERVICES)
+@ManagedObject
+public class StreamThroughExecutor
+    extends LifecycleSupport
+{
+  private final int threads;
+
+  private final File spoolDirectory;
+
+  private final AtomicLong submittedDownloads = new AtomicLong();
+
+  private final AtomicLong rejectedDownloads = new AtomicLong();
+
+  private final AtomicLong completedDownloads = new AtomicLong();
+
+  private final AtomicLong failedDownloads = new AtomicLong();
+
+  private ThreadPoolExecutor executor;
+
+  @Inject
+  public StreamThroughExecutor(final ApplicationDirectories applicationDirectories,
+                               @Named("${nexus.proxy.streamThrough.threads:-32}") final int threads)
+  {
+    checkArgument(threads > 0);
+    this.threads = threads;
+    this.spoolDirectory = checkNotNull(applicationDirectories).getTemporaryDirectory();
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    executor = new ThreadPoolExecutor(0, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+        new ThreadFactoryBuilder().setNameFormat("proxy-stream-through-%d").setDaemon(true).build());
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    executor.shutdownNow();
+    executor = null;
+  }
+
+  /**
+   * Creates an empty file to spool a download to.
+   */
+  public Path createSpool() throws IOException {
+    return Files.createTempFile(spoolDirectory.toPath(), "proxy-stream-through-", ".tmp");
+  }
+
+  /**
+   * Runs the download's store on the pool as the current subject.
+   *
+   * @return {@code false} if all threads are busy or the pool is not running
+   */
+  public boolean submit(final Callable<?> store) {
+    ThreadPoolExecutor current = executor;
+    if (current == null) {
+      return false;
+    }
+    Subject subject = ThreadContext.getSubject();
+    Callable<?> callable = subject != null ? subject.associateWith(store) : store;
+    try {
+      current.execute(() -> {
+        try {
+          callable.call();
+          completedDownloads.incrementAndGet();
+        }
+        catch (Exception e) {
+          // failures are logged by the store itself
+          log.debug("Stream-through store failed", e);
+          failedDownloads.incrementAndGet();
+        }
+      });
+    }
+    catch (RuntimeException e) {
+      log.debug("Stream-through pool saturated, storing in caller", e);
+      rejectedDownloads.incrementAndGet();
+      return false;
+    }
+    submittedDownloads.incrementAndGet();
+    return true;
+  }
+
+  @ManagedAttribute(description = "Number of downloads currently being stored")
+  public int getActiveDownloads() {
+    ThreadPoolExecutor current = executor;
+    return current != null ? current.getActiveCount() : 0;
+  }
+
+  @ManagedAttribute(description = "Number of downloads accepted by the pool")
+  public long getSubmittedDownloads() {
+    return submittedDownloads.get();
+  }
+
+  @ManagedAttribute(description = "Number of downloads stored before serving because the pool was saturated")
+  public long getRejectedDownloads() {
+    return rejectedDownloads.get();
+  }
+
+  @ManagedAttribute(description = "Number of downloads stored")
+  public long getCompletedDownloads() {
+    return completedDownloads.get();
+  }
+
+  @ManagedAttribute(description = "Number of downloads which failed to store")
+  public long getFailedDownloads() {
+    return failedDownloads.get();
+  }
+}
@@ -22,6 +22,7 @@ import org.sonatype.nexus.common.stateguard.Guarded;
 import org.sonatype.nexus.orient.entity.AttachedEntityHelper;
 import org.sonatype.nexus.repository.FacetSupport;
 import org.sonatype.nexus.repository.storage.Asset;
+import org.sonatype.nexus.repository.storage.AssetAccessTracker;
 import org.sonatype.nexus.repository.storage.Bucket;
 import org.sonatype.nexus.repository.storage.Component;
 import org.sonatype.nexus.repository.storage.ComponentEntityAdapter;
@@ -54,10 +55,14 @@ public class PurgeUnusedFacetImpl
 {
   private final ComponentEntityAdapter componentEntityAdapter;
 
+  private final AssetAccessTracker assetAccessTracker;
+
   @Inject
-  public PurgeUnusedFacetImpl(final ComponentEntityAdapter componentEntityAdapter)
+  public PurgeUnusedFacetImpl(final ComponentEntityAdapter componentEntityAdapter,
+                              final AssetAccessTracker assetAccessTracker)
   {
     this.componentEntityAdapter = checkNotNull(componentEntityAdapter);
+    this.assetAccessTracker = checkNotNull(assetAccessTracker);
   }
 
   @Override
@@ -68,6 +73,9 @@ public class PurgeUnusedFacetImpl
 
     Date olderThan = DateTime.now().minusDays(numberOfDays).withTimeAtStartOfDay().toDate();
 
+    // make sure recent accesses which are still pending are taken into account
+    assetAccessTracker.flush();
+
     UnitOfWork.beginBatch(facet(StorageFacet.class).txSupplier());
     try {
       deleteUnusedComponents(olderThan);
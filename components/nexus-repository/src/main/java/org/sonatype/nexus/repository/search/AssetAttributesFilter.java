@@ -0,0 +1,28 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.search;
+
+/**
+ * Allowlist of asset attributes to be indexed for a format.
+ *
+ * Implementations are named after the format they apply to. Assets of formats without one get all attributes indexed.
+ *
+ * @since 3.1
+ */
+public interface AssetAttributesFilter
+{
+  /**
+   * Returns {@code true} if the top level asset attribute (e.g. "checksum" or the format name) should be indexed.
+   */
+  boolean isIndexed(String attribute);
+}
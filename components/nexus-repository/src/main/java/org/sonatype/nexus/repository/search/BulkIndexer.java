@@ -0,0 +1,565 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.jmx.reflect.ManagedAttribute;
+import org.sonatype.nexus.jmx.reflect.ManagedObject;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+
+/**
+ * Feeds index and delete operations to Elasticsearch through a {@link BulkProcessor}.
+ *
+ * Operations wait in a bounded queue, where repeated operations on the same document are coalesced so only the
+ * latest is sent. The queue is drained once it holds a full batch, or its oldest operation has waited for the flush
+ * interval. Callers block while the queue is full, and the queue stops draining while the maximum number of bulk
+ * requests is in flight, so a slow cluster pushes back on producers instead of being flooded. An operation on a
+ * document which is part of a bulk request in flight is held back until that request completes, so concurrent bulk
+ * requests cannot apply operations on the same document out of order.
+ *
+ * @since 3.1
+ */
+@Named
+@Singleton
+@ManagedLifecycle(phase = SERVICES)
+@ManagedObject
+public class BulkIndexer
+    extends LifecycleSupport
+{
+  private final Provider<Client> client;
+
+  private final int queueCapacity;
+
+  private final int batchSize;
+
+  private final long flushIntervalMillis;
+
+  private final int concurrentRequests;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition notFull = lock.newCondition();
+
+  private final Condition batchReady = lock.newCondition();
+
+  private final Condition idle = lock.newCondition();
+
+  private final Map<String, Operation> pending = new LinkedHashMap<>();
+
+  /**
+   * Documents with an operation sent but not yet applied; further operations on them are held back.
+   */
+  private final Set<String> inFlightKeys = new HashSet<>();
+
+  /**
+   * Sequence numbers of operations queued or sent, but not yet applied.
+   */
+  private final NavigableSet<Long> unapplied = new TreeSet<>();
+
+  /**
+   * Number of failed operations per index since it was last flushed.
+   */
+  private final Map<String, Long> failuresSinceFlush = new HashMap<>();
+
+  /**
+   * Operations handed to the bulk processor, to tell which ones a bulk response is about.
+   */
+  private final Map<ActionRequest, Operation> submitted = Collections.synchronizedMap(new IdentityHashMap<>());
+
+  private final List<Consumer<Set<String>>> appliedListeners = new CopyOnWriteArrayList<>();
+
+  private long sequence;
+
+  private long oldestPendingNanos;
+
+  private int flushWaiters;
+
+  private final ConcurrentMap<Long, Long> bulkStartNanos = new ConcurrentHashMap<>();
+
+  private final AtomicInteger inFlightBulkRequests = new AtomicInteger();
+
+  private final AtomicLong completedActions = new AtomicLong();
+
+  private final AtomicLong failedActions = new AtomicLong();
+
+  private final AtomicLong coalescedActions = new AtomicLong();
+
+  private final AtomicLong bulkRequests = new AtomicLong();
+
+  private final AtomicLong totalBulkLatencyMillis = new AtomicLong();
+
+  private volatile long lastBulkLatencyMillis;
+
+  private volatile boolean draining;
+
+  private BulkProcessor bulkProcessor;
+
+  private Thread drainer;
+
+  @Inject
+  public BulkIndexer(final Provider<Client> client,
+                     @Named("${nexus.elasticsearch.bulk.queueCapacity:-10000}") final int queueCapacity,
+                     @Named("${nexus.elasticsearch.bulk.batchSize:-500}") final int batchSize,
+                     @Named("${nexus.elasticsearch.bulk.flushIntervalMillis:-1000}") final long flushIntervalMillis,
+                     @Named("${nexus.elasticsearch.bulk.concurrentRequests:-2}") final int concurrentRequests)
+  {
+    checkArgument(batchSize > 0 && queueCapacity >= batchSize, "Queue capacity must hold at least one batch");
+    checkArgument(flushIntervalMillis > 0);
+    checkArgument(concurrentRequests >= 0);
+    this.client = checkNotNull(client);
+    this.queueCapacity = queueCapacity;
+    this.batchSize = batchSize;
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.concurrentRequests = concurrentRequests;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    bulkProcessor = BulkProcessor.builder(client.get(), new Listener())
+        .setBulkActions(batchSize)
+        .setFlushInterval(TimeValue.timeValueMillis(flushIntervalMillis))
+        .setConcurrentRequests(concurrentRequests)
+        .build();
+
+    draining = true;
+    drainer = new Thread(this::drain, "search-bulk-indexer");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    lock.lock();
+    try {
+      draining = false;
+      batchReady.signalAll();
+    }
+    finally {
+      lock.unlock();
+    }
+    drainer.join(TimeUnit.SECONDS.toMillis(30));
+    if (drainer.isAlive()) {
+      log.warn("Failed to send {} queued search index updates in allotted time", getQueueDepth());
+    }
+    drainer = null;
+
+    if (!bulkProcessor.awaitClose(30, TimeUnit.SECONDS)) {
+      log.warn("Failed to complete pending search index updates in allotted time");
+    }
+    bulkProcessor = null;
+  }
+
+  /**
+   * Queues a document to be (re)indexed, replacing any operation on the same document which is still queued.
+   */
+  public void index(final String index, final String type, final String id, final String json) {
+    enqueue(new Operation(checkNotNull(index), checkNotNull(type), checkNotNull(id), checkNotNull(json)));
+  }
+
+  /**
+   * Queues a document to be deleted, replacing any operation on the same document which is still queued.
+   */
+  public void delete(final String index, final String type, final String id) {
+    enqueue(new Operation(checkNotNull(index), checkNotNull(type), checkNotNull(id), null));
+  }
+
+  /**
+   * Drops all queued operations on the given index, e.g. because it is about to be deleted.
+   */
+  public void discard(final String index) {
+    lock.lock();
+    try {
+      pending.values().removeIf(operation -> {
+        if (operation.index.equals(index)) {
+          unapplied.remove(operation.sequence);
+          return true;
+        }
+        return false;
+      });
+      failuresSinceFlush.remove(index);
+      notFull.signalAll();
+      idle.signalAll();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Registers a listener told which indexes had operations applied successfully, once a bulk request completes. It is
+   * called on the thread completing the request, so must not block.
+   */
+  public void addAppliedListener(final Consumer<Set<String>> listener) {
+    appliedListeners.add(checkNotNull(listener));
+  }
+
+  /**
+   * Waits until all operations queued so far have been applied, sending a partial batch straight away. Operations
+   * queued while waiting are not waited for.
+   *
+   * @return {@code false} if the operations were not applied within the timeout, the indexer is not running, or any
+   * operation on the given index failed since it was last flushed
+   */
+  public boolean flush(final String index, final long timeout, final TimeUnit unit) throws InterruptedException {
+    checkNotNull(index);
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    lock.lock();
+    try {
+      long ticket = sequence;
+      flushWaiters++;
+      batchReady.signal();
+      while (!unapplied.isEmpty() && unapplied.first() <= ticket) {
+        long remaining = deadline - System.nanoTime();
+        if (!draining || remaining <= 0) {
+          return false;
+        }
+        idle.awaitNanos(remaining);
+      }
+      Long failures = failuresSinceFlush.remove(index);
+      if (failures != null) {
+        log.warn("{} search index updates of {} failed since it was last flushed", failures, index);
+        return false;
+      }
+      return true;
+    }
+    finally {
+      flushWaiters--;
+      lock.unlock();
+    }
+  }
+
+  private void enqueue(final Operation operation) {
+    lock.lock();
+    try {
+      Operation replaced = pending.get(operation.key);
+      if (replaced != null) {
+        // takes over the place of the replaced operation, so flushes waiting for that one wait for this one
+        operation.sequence = replaced.sequence;
+        coalescedActions.incrementAndGet();
+      }
+      else {
+        // only block once draining, otherwise updates made during startup could wait forever
+        while (draining && pending.size() >= queueCapacity) {
+          try {
+            notFull.await();
+          }
+          catch (InterruptedException e) {
+            // rather exceed the capacity than lose an index update
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+        if (pending.isEmpty()) {
+          oldestPendingNanos = System.nanoTime();
+        }
+        operation.sequence = ++sequence;
+        unapplied.add(operation.sequence);
+      }
+      pending.put(operation.key, operation);
+      if (pending.size() >= batchSize) {
+        batchReady.signal();
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  private void drain() {
+    long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    while (true) {
+      List<Operation> batch;
+      lock.lock();
+      try {
+        while (draining && pending.size() < batchSize) {
+          long waitNanos = pending.isEmpty() ? flushIntervalNanos
+              : oldestPendingNanos + flushIntervalNanos - System.nanoTime();
+          if (!pending.isEmpty() && (waitNanos <= 0 || flushWaiters > 0)) {
+            break;
+          }
+          batchReady.awaitNanos(waitNanos);
+        }
+        if (!draining && pending.isEmpty()) {
+          return;
+        }
+        batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<Operation> itr = pending.values().iterator();
+        while (itr.hasNext() && batch.size() < batchSize) {
+          Operation operation = itr.next();
+          if (inFlightKeys.add(operation.key)) {
+            batch.add(operation);
+            itr.remove();
+          }
+        }
+        if (batch.isEmpty()) {
+          // everything queued is held back until bulk requests in flight complete
+          batchReady.awaitNanos(flushIntervalNanos);
+          continue;
+        }
+        oldestPendingNanos = System.nanoTime();
+        notFull.signalAll();
+      }
+      catch (InterruptedException e) {
+        // nothing but stopping ends draining, otherwise queued operations would be lost
+        log.warn("Search index updates interrupted, continuing with {} queued operations", pending.size());
+        continue;
+      }
+      finally {
+        lock.unlock();
+      }
+
+      int added = 0;
+      try {
+        // blocks while the maximum number of bulk requests is in flight
+        for (Operation operation : batch) {
+          ActionRequest request = operation.toRequest();
+          submitted.put(request, operation);
+          bulkProcessor.add(request);
+          added++;
+        }
+        if (batch.size() < batchSize) {
+          bulkProcessor.flush();
+        }
+      }
+      catch (Exception e) {
+        List<Operation> unsent = batch.subList(added, batch.size());
+        log.warn("Failed to submit {} search index updates", unsent.size(), e);
+        for (Operation operation : unsent) {
+          submitted.values().remove(operation);
+        }
+        applied(unsent, unsent);
+      }
+    }
+  }
+
+  /**
+   * Marks operations as applied, recording the failed ones against their index.
+   */
+  private void applied(final List<Operation> operations, final List<Operation> failed) {
+    lock.lock();
+    try {
+      for (Operation operation : operations) {
+        unapplied.remove(operation.sequence);
+        inFlightKeys.remove(operation.key);
+      }
+      for (Operation operation : failed) {
+        failuresSinceFlush.merge(operation.index, 1L, Long::sum);
+      }
+      idle.signalAll();
+      // operations held back for these documents may be sent now
+      batchReady.signal();
+    }
+    finally {
+      lock.unlock();
+    }
+    failedActions.addAndGet(failed.size());
+    completedActions.addAndGet(operations.size() - failed.size());
+
+    if (failed.size() < operations.size() && !appliedListeners.isEmpty()) {
+      Set<Operation> failedOperations = Collections.newSetFromMap(new IdentityHashMap<>());
+      failedOperations.addAll(failed);
+      Set<String> indexes = new HashSet<>();
+      for (Operation operation : operations) {
+        if (!failedOperations.contains(operation)) {
+          indexes.add(operation.index);
+        }
+      }
+      for (Consumer<Set<String>> listener : appliedListeners) {
+        try {
+          listener.accept(Collections.unmodifiableSet(indexes));
+        }
+        catch (Exception e) {
+          log.warn("Failed to notify {} of applied search index updates", listener, e);
+        }
+      }
+    }
+  }
+
+  @ManagedAttribute(description = "Number of operations waiting to be sent")
+  public int getQueueDepth() {
+    lock.lock();
+    try {
+      return pending.size();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  @ManagedAttribute(description = "Number of bulk requests currently executing")
+  public int getInFlightBulkRequests() {
+    return inFlightBulkRequests.get();
+  }
+
+  @ManagedAttribute(description = "Number of operations successfully applied")
+  public long getCompletedActions() {
+    return completedActions.get();
+  }
+
+  @ManagedAttribute(description = "Number of operations which failed")
+  public long getFailedActions() {
+    return failedActions.get();
+  }
+
+  @ManagedAttribute(description = "Number of operations replaced by a later operation on the same document")
+  public long getCoalescedActions() {
+    return coalescedActions.get();
+  }
+
+  @ManagedAttribute(description = "Duration of the most recent bulk request in milliseconds")
+  public long getLastBulkLatencyMillis() {
+    return lastBulkLatencyMillis;
+  }
+
+  @ManagedAttribute(description = "Average duration of bulk requests in milliseconds")
+  public long getAverageBulkLatencyMillis() {
+    long requests = bulkRequests.get();
+    return requests == 0 ? 0 : totalBulkLatencyMillis.get() / requests;
+  }
+
+  private class Listener
+      implements BulkProcessor.Listener
+  {
+    @Override
+    public void beforeBulk(final long executionId, final BulkRequest request) {
+      inFlightBulkRequests.incrementAndGet();
+      bulkStartNanos.put(executionId, System.nanoTime());
+    }
+
+    @Override
+    public void afterBulk(final long executionId, final BulkRequest request, final BulkResponse response) {
+      List<Operation> operations = operations(request);
+      List<Operation> failed = new ArrayList<>();
+      if (response.hasFailures()) {
+        for (BulkItemResponse item : response.getItems()) {
+          if (item.isFailed() && item.getItemId() < operations.size()) {
+            failed.add(operations.get(item.getItemId()));
+          }
+        }
+        log.warn("Failed to apply {} of {} search index updates: {}", failed.size(), request.numberOfActions(),
+            response.buildFailureMessage());
+      }
+      applied(operations, failed);
+      completed(executionId);
+    }
+
+    @Override
+    public void afterBulk(final long executionId, final BulkRequest request, final Throwable failure) {
+      log.warn("Failed to apply {} search index updates", request.numberOfActions(), failure);
+      List<Operation> operations = operations(request);
+      applied(operations, operations);
+      completed(executionId);
+    }
+
+    /**
+     * Returns the operations of the request, in the order of its items.
+     */
+    private List<Operation> operations(final BulkRequest request) {
+      List<Operation> operations = new ArrayList<>(request.requests().size());
+      for (ActionRequest action : request.requests()) {
+        Operation operation = submitted.remove(action);
+        if (operation != null) {
+          operations.add(operation);
+        }
+      }
+      return operations;
+    }
+
+    private void completed(final long executionId) {
+      inFlightBulkRequests.decrementAndGet();
+      Long startNanos = bulkStartNanos.remove(executionId);
+      if (startNanos != null) {
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        lastBulkLatencyMillis = latencyMillis;
+        totalBulkLatencyMillis.addAndGet(latencyMillis);
+        bulkRequests.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Queued index or delete operation on a single document.
+   */
+  private static class Operation
+  {
+    private final String index;
+
+    private final String type;
+
+    private final String id;
+
+    @Nullable
+    private final String json;
+
+    private final String key;
+
+    private long sequence;
+
+    Operation(final String index, final String type, final String id, @Nullable final String json) {
+      this.index = index;
+      this.type = type;
+      this.id = id;
+      this.json = json;
+      this.key = index + '/' + type + '/' + id;
+    }
+
+    ActionRequest toRequest() {
+      if (json == null) {
+        return new DeleteRequest(index, type, id);
+      }
+      return new IndexRequest(index, type, id).source(json);
+    }
+  }
+}
@@ -13,24 +13,28 @@
 package org.sonatype.nexus.repository.search;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.io.StringWriter;
 import java.util.Map;
+import java.util.Map.Entry;
 
+import javax.annotation.Nullable;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.nexus.repository.storage.Asset;
 import org.sonatype.nexus.repository.storage.Component;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.base.Throwables;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Default {@link ComponentMetadataProducer} implementation that uses all properties of a component & its assets as
- * metadata.
+ * metadata. Asset attributes can be narrowed down per format by an {@link AssetAttributesFilter}.
+ *
+ * The JSON is streamed straight from the entities, so no intermediate tree is built for components with many assets.
  *
  * @since 3.0
  */
@@ -56,6 +60,13 @@ public class DefaultComponentMetadataProducer
 
   public static final String ASSETS = "assets";
 
+  private final Map<String, AssetAttributesFilter> assetAttributesFilters;
+
+  @Inject
+  public DefaultComponentMetadataProducer(final Map<String, AssetAttributesFilter> assetAttributesFilters) {
+    this.assetAttributesFilters = checkNotNull(assetAttributesFilters);
+  }
+
   @Override
   public String getMetadata(final Component component,
                             final Iterable<Asset> assets,
@@ -65,39 +76,70 @@ public class DefaultComponentMetadataProducer
     checkNotNull(assets);
     checkNotNull(additional);
 
-    Map<String, Object> metadata = new HashMap<>();
-    put(metadata, FORMAT, component.format());
-    put(metadata, GROUP, component.group());
-    put(metadata, NAME, component.name());
-    put(metadata, VERSION, component.version());
-    put(metadata, ATTRIBUTES, component.attributes().backing());
-
-    List<Map<String, Object>> allAssetMetadata = new ArrayList<>();
-    for (Asset asset : assets) {
-      Map<String, Object> assetMetadata = new HashMap<>();
-      put(assetMetadata, NAME, asset.name());
-      put(assetMetadata, CONTENT_TYPE, asset.contentType());
-      put(assetMetadata, ATTRIBUTES, asset.attributes().backing());
-
-      allAssetMetadata.add(assetMetadata);
+    AssetAttributesFilter filter = assetAttributesFilters.get(component.format());
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = JsonUtils.generator(writer)) {
+      generator.writeStartObject();
+      // additional metadata takes precedence over properties of the same name
+      write(generator, additional, FORMAT, component.format());
+      write(generator, additional, GROUP, component.group());
+      write(generator, additional, NAME, component.name());
+      write(generator, additional, VERSION, component.version());
+      write(generator, additional, ATTRIBUTES, component.attributes().backing());
+
+      if (!additional.containsKey(ASSETS)) {
+        boolean hasAssets = false;
+        for (Asset asset : assets) {
+          if (!hasAssets) {
+            generator.writeArrayFieldStart(ASSETS);
+            hasAssets = true;
+          }
+          writeAsset(generator, asset, filter);
+        }
+        if (hasAssets) {
+          generator.writeEndArray();
+        }
+      }
+
+      for (Entry<String, Object> entry : additional.entrySet()) {
+        generator.writeObjectField(entry.getKey(), entry.getValue());
+      }
+      generator.writeEndObject();
     }
-    if (!allAssetMetadata.isEmpty()) {
-      metadata.put(ASSETS, allAssetMetadata);
+    catch (IOException e) {
+      throw Throwables.propagate(e);
     }
+    return writer.toString();
+  }
 
-    metadata.putAll(additional);
-
-    try {
-      return JsonUtils.from(metadata);
+  private static void writeAsset(final JsonGenerator generator,
+                                 final Asset asset,
+                                 @Nullable final AssetAttributesFilter filter) throws IOException
+  {
+    generator.writeStartObject();
+    if (asset.name() != null) {
+      generator.writeStringField(NAME, asset.name());
     }
-    catch (IOException e) {
-      throw Throwables.propagate(e);
+    if (asset.contentType() != null) {
+      generator.writeStringField(CONTENT_TYPE, asset.contentType());
+    }
+    generator.writeObjectFieldStart(ATTRIBUTES);
+    for (Entry<String, Object> entry : asset.attributes().backing().entrySet()) {
+      if (filter == null || filter.isIndexed(entry.getKey())) {
+        generator.writeObjectField(entry.getKey(), entry.getValue());
+      }
     }
+    generator.writeEndObject();
+    generator.writeEndObject();
   }
 
-  private static void put(final Map<String, Object> metadata, final String key, final Object value) {
-    if (value != null) {
-      metadata.put(key, value);
+  private static void write(final JsonGenerator generator,
+                            final Map<String, Object> additional,
+                            final String key,
+                            @Nullable final Object value) throws IOException
+  {
+    if (value != null && !additional.containsKey(key)) {
+      generator.writeObjectField(key, value);
     }
   }
 
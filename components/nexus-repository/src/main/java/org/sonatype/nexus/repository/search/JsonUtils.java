@@ -13,8 +13,10 @@
 package org.sonatype.nexus.repository.search;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.Iterator;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -42,6 +44,13 @@ class JsonUtils
     return objectWriter.writeValueAsString(value);
   }
 
+  /**
+   * Creates a generator streaming JSON to the writer, which is also able to write any object as value.
+   */
+  public static JsonGenerator generator(final Writer writer) throws IOException {
+    return objectMapper.getFactory().createGenerator(writer);
+  }
+
   /**
    * Merges json objects.
    */
@@ -37,8 +37,8 @@ public interface SearchFacet
   void delete(EntityId componentId);
 
   /**
-   * Forcefully rebuilds index of the {@link Repository} this facet is attached to. Rebuild happens by dropping current
-   * index and recreating it from scratch.
+   * Forcefully rebuilds index of the {@link Repository} this facet is attached to. The index is rebuilt from scratch
+   * into a fresh index, which replaces the current one once complete; an interrupted rebuild resumes where it left off.
    */
   void rebuildIndex();
 }
@@ -12,12 +12,25 @@
  */
 package org.sonatype.nexus.repository.search;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
+import org.sonatype.nexus.common.entity.DetachedEntityId;
 import org.sonatype.nexus.common.entity.EntityHelper;
 import org.sonatype.nexus.common.entity.EntityId;
 import org.sonatype.nexus.common.stateguard.Guarded;
@@ -25,12 +38,21 @@ import org.sonatype.nexus.repository.FacetSupport;
 import org.sonatype.nexus.repository.Format;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.storage.Asset;
+import org.sonatype.nexus.repository.storage.Bucket;
 import org.sonatype.nexus.repository.storage.Component;
 import org.sonatype.nexus.repository.storage.StorageFacet;
 import org.sonatype.nexus.repository.storage.StorageTx;
+import org.sonatype.nexus.scheduling.CancelableHelper;
+import org.sonatype.nexus.scheduling.TaskInterruptedException;
 import org.sonatype.nexus.transaction.Transactional;
 import org.sonatype.nexus.transaction.UnitOfWork;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static org.sonatype.nexus.repository.FacetSupport.State.STARTED;
@@ -48,23 +70,50 @@ public class SearchFacetImpl
     extends FacetSupport
     implements SearchFacet
 {
+  /**
+   * Bucket attributes recording the progress of an index rebuild.
+   */
+  private static final String REBUILD_ATTRIBUTES = "searchRebuild";
+
+  private static final String REBUILD_INDEX = "index";
+
+  private static final String REBUILD_AFTER = "after";
+
+  /**
+   * Whether updates are being applied to the index being rebuilt, until they are all flushed when the repository is
+   * stopped. If still set on start, updates may have been lost since the last checkpoint.
+   */
+  private static final String REBUILD_ATTACHED = "attached";
+
   private final SearchService searchService;
 
   private final Map<String, ComponentMetadataProducer> componentMetadataProducers;
 
+  private final int rebuildPageSize;
+
+  private final int rebuildThreads;
+
+  private final int rebuildCheckpointPages;
+
   @Inject
   public SearchFacetImpl(final SearchService searchService,
-                         final Map<String, ComponentMetadataProducer> componentMetadataProducers)
+                         final Map<String, ComponentMetadataProducer> componentMetadataProducers,
+                         @Named("${nexus.search.rebuild.pageSize:-1000}") final int rebuildPageSize,
+                         @Named("${nexus.search.rebuild.threads:-4}") final int rebuildThreads,
+                         @Named("${nexus.search.rebuild.checkpointPages:-10}") final int rebuildCheckpointPages)
   {
+    checkArgument(rebuildPageSize > 0 && rebuildThreads > 0 && rebuildCheckpointPages > 0);
     this.searchService = checkNotNull(searchService);
     this.componentMetadataProducers = checkNotNull(componentMetadataProducers);
+    this.rebuildPageSize = rebuildPageSize;
+    this.rebuildThreads = rebuildThreads;
+    this.rebuildCheckpointPages = rebuildCheckpointPages;
   }
 
   @Override
   @Guarded(by = STARTED)
   public void rebuildIndex() {
     log.info("Rebuilding index of repository {}", getRepository().getName());
-    searchService.rebuildIndex(getRepository());
     UnitOfWork.begin(facet(StorageFacet.class).txSupplier());
     try {
       rebuildComponentIndex();
@@ -74,18 +123,170 @@ public class SearchFacetImpl
     }
   }
 
-  @Transactional
+  /**
+   * Pages through the components in record order, producing their documents on a pool of threads. Progress is
+   * checkpointed in the bucket once the documents are indexed, so a rebuild which is interrupted resumes from there.
+   */
   protected void rebuildComponentIndex() {
+    final Repository repository = getRepository();
+    EntityId after = null;
+    String rebuildName = null;
+
+    NestedAttributesMap checkpoint = readCheckpoint();
+    String checkpointIndex = checkpoint.get(REBUILD_INDEX, String.class);
+    // only resume into an index which received all updates since the checkpoint, see reattachRebuild()
+    if (checkpointIndex != null && Boolean.TRUE.equals(checkpoint.get(REBUILD_ATTACHED, Boolean.class))
+        && searchService.resumeRebuild(repository, checkpointIndex)) {
+      rebuildName = checkpointIndex;
+      String checkpointAfter = checkpoint.get(REBUILD_AFTER, String.class);
+      after = checkpointAfter != null ? new DetachedEntityId(checkpointAfter) : null;
+      log.info("Resuming rebuild of index of repository {} after component {}", repository.getName(), after);
+    }
+    if (rebuildName == null) {
+      if (checkpointIndex != null) {
+        searchService.abortRebuild(repository, checkpointIndex);
+      }
+      rebuildName = searchService.startRebuild(repository);
+      saveCheckpoint(rebuildName, null);
+    }
+
+    ExecutorService producers = Executors.newFixedThreadPool(rebuildThreads,
+        new ThreadFactoryBuilder().setNameFormat("search-rebuild-" + repository.getName() + "-%d").setDaemon(true)
+            .build());
+    try {
+      List<Future<?>> previousPage = Collections.emptyList();
+      long pages = 0;
+      while (true) {
+        CancelableHelper.checkCancellation();
+        Map<Component, Iterable<Asset>> page = readPage(after);
+        if (page.isEmpty()) {
+          break;
+        }
+        // produce this page while the previous one completes and the next one is read
+        List<Future<?>> currentPage = produce(producers, page);
+        await(previousPage);
+        previousPage = currentPage;
+        after = EntityHelper.id(Iterables.getLast(page.keySet()));
+
+        if (++pages % rebuildCheckpointPages == 0) {
+          await(previousPage);
+          previousPage = Collections.emptyList();
+          if (flush()) {
+            saveCheckpoint(rebuildName, after);
+          }
+        }
+      }
+      await(previousPage);
+      checkState(flush(), "Failed or timed out indexing components of repository %s", repository.getName());
+    }
+    finally {
+      producers.shutdownNow();
+    }
+
+    searchService.finishRebuild(repository);
+    saveCheckpoint(null, null);
+    log.info("Rebuilt index of repository {}", repository.getName());
+  }
+
+  /**
+   * Reads the next page of components after the given one, with their assets.
+   */
+  @Transactional
+  protected Map<Component, Iterable<Asset>> readPage(@Nullable final EntityId after) {
     final StorageTx tx = UnitOfWork.currentTx();
-    for (Component component : tx.browseComponents(tx.findBucket(getRepository()))) {
-      try {
-        put(component, tx.browseAssets(component));
+    final Bucket bucket = tx.findBucket(getRepository());
+    final List<Component> components = tx.browseComponents(bucket, after, rebuildPageSize);
+    final Map<String, List<Asset>> assets = new HashMap<>();
+    if (!components.isEmpty()) {
+      for (Asset asset : tx.browseAssets(bucket, components)) {
+        assets.computeIfAbsent(asset.componentId().getValue(), id -> new ArrayList<>()).add(asset);
       }
-      catch (RuntimeException e) {
-        // one "bad" should not stop processing whole repository
-        log.warn("Could not reindex component: {}", component, e);
+    }
+    final Map<Component, Iterable<Asset>> page = new LinkedHashMap<>();
+    for (Component component : components) {
+      List<Asset> componentAssets = assets.get(EntityHelper.id(component).getValue());
+      page.put(component, componentAssets != null ? componentAssets : Collections.<Asset>emptyList());
+    }
+    return page;
+  }
+
+  @Transactional
+  protected NestedAttributesMap readCheckpoint() {
+    final StorageTx tx = UnitOfWork.currentTx();
+    return tx.findBucket(getRepository()).attributes().child(REBUILD_ATTRIBUTES);
+  }
+
+  /**
+   * Records progress of the rebuild into the given index, which receives updates from now on.
+   */
+  @Transactional
+  protected void saveCheckpoint(@Nullable final String rebuildName, @Nullable final EntityId after) {
+    final StorageTx tx = UnitOfWork.currentTx();
+    final Bucket bucket = tx.findBucket(getRepository());
+    NestedAttributesMap checkpoint = bucket.attributes().child(REBUILD_ATTRIBUTES);
+    checkpoint.set(REBUILD_INDEX, rebuildName);
+    checkpoint.set(REBUILD_AFTER, after != null ? after.getValue() : null);
+    checkpoint.set(REBUILD_ATTACHED, rebuildName != null ? true : null);
+    tx.saveBucket(bucket);
+  }
+
+  @Transactional
+  protected void saveAttached(final boolean attached) {
+    final StorageTx tx = UnitOfWork.currentTx();
+    final Bucket bucket = tx.findBucket(getRepository());
+    bucket.attributes().child(REBUILD_ATTRIBUTES).set(REBUILD_ATTACHED, attached);
+    tx.saveBucket(bucket);
+  }
+
+  private List<Future<?>> produce(final ExecutorService producers, final Map<Component, Iterable<Asset>> page) {
+    final Map<String, Object> additional = new HashMap<>();
+    additional.put(REPOSITORY_NAME, getRepository().getName());
+    final int chunkSize = Math.max(1, page.size() / rebuildThreads);
+    final List<Future<?>> futures = new ArrayList<>();
+    for (List<Entry<Component, Iterable<Asset>>> chunk : Lists.partition(new ArrayList<>(page.entrySet()), chunkSize)) {
+      futures.add(producers.submit(() -> {
+        for (Entry<Component, Iterable<Asset>> entry : chunk) {
+          Component component = entry.getKey();
+          try {
+            String json = producer(component).getMetadata(component, entry.getValue(), additional);
+            searchService.putRebuilt(getRepository(), EntityHelper.id(component).getValue(), json);
+          }
+          catch (RuntimeException e) {
+            // one "bad" should not stop processing whole repository
+            log.warn("Could not reindex component: {}", component, e);
+          }
+        }
+      }));
+    }
+    return futures;
+  }
+
+  private void await(final List<Future<?>> futures) {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
       }
     }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TaskInterruptedException("Interrupted rebuilding index of " + getRepository().getName(), false);
+    }
+    catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Waits for the documents produced so far to be indexed, returning {@code false} if any of them were not.
+   */
+  private boolean flush() {
+    try {
+      return searchService.flushRebuild(getRepository(), 5, TimeUnit.MINUTES);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TaskInterruptedException("Interrupted rebuilding index of " + getRepository().getName(), false);
+    }
   }
 
   @Guarded(by = STARTED)
@@ -109,6 +310,57 @@ public class SearchFacetImpl
   @Override
   protected void doStart() throws Exception {
     searchService.createIndex(getRepository());
+    reattachRebuild();
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    detachRebuild();
+  }
+
+  /**
+   * Has updates applied to an unfinished rebuild again, before any can be made, so the rebuild can be resumed. A
+   * rebuild which was not detached cleanly may have missed updates, so it is abandoned and starts over instead.
+   */
+  private void reattachRebuild() {
+    final Repository repository = getRepository();
+    UnitOfWork.begin(facet(StorageFacet.class).txSupplier());
+    try {
+      NestedAttributesMap checkpoint = readCheckpoint();
+      String rebuildName = checkpoint.get(REBUILD_INDEX, String.class);
+      if (rebuildName == null) {
+        return;
+      }
+      if (Boolean.TRUE.equals(checkpoint.get(REBUILD_ATTACHED, Boolean.class))
+          || !searchService.resumeRebuild(repository, rebuildName)) {
+        log.info("Abandoning interrupted rebuild of index of repository {}, it will start over", repository.getName());
+        searchService.abortRebuild(repository, rebuildName);
+        saveCheckpoint(null, null);
+      }
+      else {
+        saveAttached(true);
+      }
+    }
+    finally {
+      UnitOfWork.end();
+    }
+  }
+
+  /**
+   * Marks an unfinished rebuild as detached once all updates applied to it are flushed.
+   */
+  private void detachRebuild() throws InterruptedException {
+    final Repository repository = getRepository();
+    UnitOfWork.begin(facet(StorageFacet.class).txSupplier());
+    try {
+      NestedAttributesMap checkpoint = readCheckpoint();
+      if (checkpoint.get(REBUILD_INDEX) != null && searchService.flushRebuild(repository, 30, TimeUnit.SECONDS)) {
+        saveAttached(false);
+      }
+    }
+    finally {
+      UnitOfWork.end();
+    }
   }
 
   @Override
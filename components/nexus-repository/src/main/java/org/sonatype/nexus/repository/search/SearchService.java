@@ -13,6 +13,7 @@
 package org.sonatype.nexus.repository.search;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
@@ -46,6 +47,55 @@ public interface SearchService
    */
   void rebuildIndex(Repository repository);
 
+  /**
+   * Creates a fresh index for the repository to be rebuilt into, replacing any earlier unfinished one. Searches keep
+   * using the current index until {@link #finishRebuild(Repository)}, while updates are applied to both.
+   *
+   * @return the name of the fresh index
+   * @since 3.1
+   */
+  String startRebuild(Repository repository);
+
+  /**
+   * Continues an unfinished rebuild into the given index, see {@link #startRebuild(Repository)}.
+   *
+   * @return {@code false} if the index no longer exists, so the rebuild has to be started again
+   * @since 3.1
+   */
+  boolean resumeRebuild(Repository repository, String indexName);
+
+  /**
+   * Abandons an unfinished rebuild into the given index and deletes that index.
+   *
+   * @since 3.1
+   */
+  void abortRebuild(Repository repository, String indexName);
+
+  /**
+   * Puts data with given identifier into the index being rebuilt for the given repository, unless the document was
+   * updated or deleted since the rebuild started, as that update is applied to the index being rebuilt already and
+   * the rebuilt data may be older.
+   *
+   * @since 3.1
+   */
+  void putRebuilt(Repository repository, String identifier, String json);
+
+  /**
+   * Switches searches of the repository over to the rebuilt index in one step, and deletes the previous index.
+   *
+   * @since 3.1
+   */
+  void finishRebuild(Repository repository);
+
+  /**
+   * Waits until all updates made so far have been applied to the indexes, without waiting for updates made meanwhile.
+   *
+   * @return {@code false} if the updates were not applied within the timeout, or updates of the index being rebuilt
+   * for the repository failed since it was last flushed
+   * @since 3.1
+   */
+  boolean flushRebuild(Repository repository, long timeout, TimeUnit unit) throws InterruptedException;
+
   /**
    * Puts data with given identifier into index of given repository.
    */
@@ -62,17 +112,20 @@ public interface SearchService
   Iterable<SearchHit> browse(QueryBuilder query);
 
   /**
-   * Search component metadata and browse results (paged).
+   * Search component metadata and browse results (paged). Responses may be served from a short lived cache until the
+   * searched indexes change, so they must not be modified.
    */
   Iterable<SearchHit> browse(QueryBuilder query, int from, int size);
 
   /**
-   * Search component metadata and browse results (paged).
+   * Search component metadata and browse results (paged). Responses may be served from a short lived cache until the
+   * searched indexes change, so they must not be modified.
    */
   SearchResponse search(QueryBuilder query, @Nullable List<SortBuilder> sort, int from, int size);
 
   /**
-   * Count the number of results for a given query
+   * Count the number of results for a given query. Counts may be served from a short lived cache until the searched
+   * indexes change.
    */
   long count(QueryBuilder query);
 
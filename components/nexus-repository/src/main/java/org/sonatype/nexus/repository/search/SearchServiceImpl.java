@@ -15,14 +15,17 @@ package org.sonatype.nexus.repository.search;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -31,21 +34,42 @@ import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.goodies.common.Time;
+import org.sonatype.nexus.common.event.EventAware;
 import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.manager.RepositoryCreatedEvent;
+import org.sonatype.nexus.repository.manager.RepositoryDeletedEvent;
 import org.sonatype.nexus.repository.manager.RepositoryManager;
+import org.sonatype.nexus.repository.manager.RepositoryUpdatedEvent;
 import org.sonatype.nexus.repository.security.RepositoryViewPermission;
 import org.sonatype.nexus.security.BreadActions;
+import org.sonatype.nexus.security.SecurityConfigurationChanged;
 import org.sonatype.nexus.security.SecurityHelper;
-
+import org.sonatype.nexus.security.authz.AuthorizationConfigurationChanged;
+import org.sonatype.nexus.security.privilege.PrivilegeEvent;
+import org.sonatype.nexus.security.role.RoleEvent;
+import org.sonatype.nexus.security.user.UserRoleMappingEvent;
+import org.sonatype.nexus.selector.SelectorConfigurationEvent;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Charsets;
-import com.google.common.base.Function;
 import com.google.common.base.Throwables;
-import com.google.common.collect.Collections2;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
 import com.google.common.io.Resources;
-import org.elasticsearch.action.admin.indices.validate.query.QueryExplanation;
-import org.elasticsearch.action.admin.indices.validate.query.ValidateQueryResponse;
+import com.google.common.util.concurrent.Striped;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.alias.Alias;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
 import org.elasticsearch.action.count.CountRequestBuilder;
 import org.elasticsearch.action.count.CountResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
@@ -53,6 +77,10 @@ import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.ShardSearchFailure;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -60,12 +88,14 @@ import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.IndexNotFoundException;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.internal.InternalSearchResponse;
 import org.elasticsearch.search.profile.ProfileShardResult;
 import org.elasticsearch.search.sort.SortBuilder;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
 
 /**
@@ -78,10 +108,14 @@ import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
 @Singleton
 public class SearchServiceImpl
     extends ComponentSupport
-    implements SearchService
+    implements SearchService, EventAware
 {
   private static final String TYPE = "component";
 
+  private static final String REFRESH_INTERVAL = "index.refresh_interval";
+
+  private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+
   /**
    * Resource name of ElasticSearch mapping configuration.
    */
@@ -98,23 +132,96 @@ public class SearchServiceImpl
 
   private final List<IndexSettingsContributor> indexSettingsContributors;
 
+  private final BulkIndexer bulkIndexer;
+
   private final ConcurrentMap<String, String> repositoryNameMapping;
+
+  private final ConcurrentMap<String, String> rebuildNameMapping;
+
+  /**
+   * Documents updated or deleted since a rebuild started, per index being rebuilt; rebuilt documents of them are
+   * skipped so they cannot overwrite the fresher update.
+   */
+  private final ConcurrentMap<String, Set<String>> updatedDuringRebuild = Maps.newConcurrentMap();
+
+  /**
+   * Orders queueing of a rebuilt document against an update of the same document.
+   */
+  private final Striped<Lock> rebuildLocks = Striped.lock(64);
   
   private final boolean profile;
 
+  /**
+   * Searchable indexes per subject, as resolving them checks permissions of every repository.
+   */
+  private final Cache<PrincipalCollection, String[]> searchableIndexes;
+
+  /**
+   * Bumped on every invalidation, so a resolution racing with one is not cached.
+   */
+  private final AtomicLong searchableIndexesGeneration = new AtomicLong();
+
+  private final Meter searchableIndexesHits;
+
+  private final Meter searchableIndexesMisses;
+
+  /**
+   * Recent search responses and counts, keyed by query, page window and the generations of the searched indexes.
+   * Search responses are held serialized, as callers may modify the response they are given.
+   */
+  private final Cache<String, Object> results;
+
+  /**
+   * Generation per index, bumped whenever a change to its content becomes searchable so cached results of it are no
+   * longer looked up.
+   */
+  private final ConcurrentMap<String, AtomicLong> indexGenerations;
+
+  private final Meter resultsHits;
+
+  private final Meter resultsMisses;
+
   @Inject
   public SearchServiceImpl(final Provider<Client> client,
                            final RepositoryManager repositoryManager,
                            final SecurityHelper securityHelper,
                            final List<IndexSettingsContributor> indexSettingsContributors,
-                           @Named("${nexus.elasticsearch.profile:-false}") final boolean profile)
+                           final BulkIndexer bulkIndexer,
+                           @Named("${nexus.elasticsearch.profile:-false}") final boolean profile,
+                           final MetricRegistry metricRegistry,
+                           @Named("${nexus.search.indexCache.maxSize:-1000}") final int indexCacheMaxSize,
+                           @Named("${nexus.search.indexCache.ttl:-10m}") final Time indexCacheTtl,
+                           @Named("${nexus.search.resultCache.maxHits:-10000}") final long resultCacheMaxHits,
+                           @Named("${nexus.search.resultCache.ttl:-10s}") final Time resultCacheTtl)
   {
     this.client = checkNotNull(client);
     this.repositoryManager = checkNotNull(repositoryManager);
     this.securityHelper = checkNotNull(securityHelper);
     this.indexSettingsContributors = checkNotNull(indexSettingsContributors);
+    this.bulkIndexer = checkNotNull(bulkIndexer);
     this.repositoryNameMapping = Maps.newConcurrentMap();
+    this.rebuildNameMapping = Maps.newConcurrentMap();
     this.profile = checkNotNull(profile);
+    this.searchableIndexes = CacheBuilder.newBuilder()
+        .maximumSize(indexCacheMaxSize)
+        .expireAfterWrite(indexCacheTtl.toMillis(), TimeUnit.MILLISECONDS)
+        .build();
+    String indexCacheMetrics = MetricRegistry.name(SearchService.class, "indexCache");
+    this.searchableIndexesHits = metricRegistry.meter(MetricRegistry.name(indexCacheMetrics, "hits"));
+    this.searchableIndexesMisses = metricRegistry.meter(MetricRegistry.name(indexCacheMetrics, "misses"));
+
+    // bound memory by the number of hits held, counts weigh as much as an empty response
+    this.results = CacheBuilder.newBuilder()
+        .maximumWeight(resultCacheMaxHits)
+        .weigher((String key, Object value) ->
+            value instanceof CachedSearchResponse ? ((CachedSearchResponse) value).hits + 1 : 1)
+        .expireAfterWrite(resultCacheTtl.toMillis(), TimeUnit.MILLISECONDS)
+        .build();
+    this.indexGenerations = Maps.newConcurrentMap();
+    String resultCacheMetrics = MetricRegistry.name(SearchService.class, "resultCache");
+    this.resultsHits = metricRegistry.meter(MetricRegistry.name(resultCacheMetrics, "hits"));
+    this.resultsMisses = metricRegistry.meter(MetricRegistry.name(resultCacheMetrics, "misses"));
+    bulkIndexer.addAppliedListener(this::updatesApplied);
   }
 
   @Override
@@ -130,37 +237,64 @@ public class SearchServiceImpl
     // in case that they not match (settings changed) we should drop the index, recreate it and re-index all components
     IndicesAdminClient indices = indicesAdminClient();
     if (!indices.prepareExists(indexName).execute().actionGet().isExists()) {
-      // determine list of mapping configuration urls
-      List<URL> urls = Lists.newArrayListWithExpectedSize(indexSettingsContributors.size() + 1);
-      urls.add(Resources.getResource(getClass(), MAPPING_JSON)); // core mapping
-      for (IndexSettingsContributor contributor : indexSettingsContributors) {
-        URL url = contributor.getIndexSettings(repository);
-        if (url != null) {
-          urls.add(url);
-        }
-      }
+      // searches and updates go through an alias, so the index behind it can be swapped once rebuilt
+      indices.prepareCreate(versionedIndexName(indexName))
+          .setSource(indexSource(repository))
+          .addAlias(new Alias(indexName))
+          .execute()
+          .actionGet();
+    }
+    repositoryNameMapping.put(repository.getName(), indexName);
+    invalidateSearchableIndexes();
+    bumpGeneration(indexName);
+  }
 
-      try {
-        // merge all mapping configuration
-        String source = "{}";
-        for (URL url : urls) {
-          log.debug("Merging ElasticSearch mapping: {}", url);
-          String contributed = Resources.toString(url, Charsets.UTF_8);
-          log.trace("Contributed ElasticSearch mapping: {}", contributed);
-          source = JsonUtils.merge(source, contributed);
-        }
-        // update runtime configuration
-        log.trace("ElasticSearch mapping: {}", source);
-        indices.prepareCreate(indexName)
-            .setSource(source)
-            .execute()
-            .actionGet();
+  /**
+   * Returns the merged index settings and mappings for the repository.
+   */
+  private String indexSource(final Repository repository) {
+    // determine list of mapping configuration urls
+    List<URL> urls = Lists.newArrayListWithExpectedSize(indexSettingsContributors.size() + 1);
+    urls.add(Resources.getResource(getClass(), MAPPING_JSON)); // core mapping
+    for (IndexSettingsContributor contributor : indexSettingsContributors) {
+      URL url = contributor.getIndexSettings(repository);
+      if (url != null) {
+        urls.add(url);
       }
-      catch (IOException e) {
-        throw Throwables.propagate(e);
+    }
+
+    try {
+      // merge all mapping configuration
+      String source = "{}";
+      for (URL url : urls) {
+        log.debug("Merging ElasticSearch mapping: {}", url);
+        String contributed = Resources.toString(url, Charsets.UTF_8);
+        log.trace("Contributed ElasticSearch mapping: {}", contributed);
+        source = JsonUtils.merge(source, contributed);
       }
+      log.trace("ElasticSearch mapping: {}", source);
+      return source;
+    }
+    catch (IOException e) {
+      throw Throwables.propagate(e);
     }
-    repositoryNameMapping.put(repository.getName(), indexName);
+  }
+
+  private static String versionedIndexName(final String indexName) {
+    return indexName + '-' + System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the indexes behind the given alias, or the name itself for an index created before aliases were used.
+   */
+  private String[] concreteIndexes(final String indexName) {
+    ImmutableOpenMap<String, List<AliasMetaData>> aliases = indicesAdminClient().prepareGetAliases(indexName)
+        .execute().actionGet().getAliases();
+    if (aliases.isEmpty()) {
+      return new String[]{indexName};
+    }
+    List<String> indexes = Lists.newArrayList(aliases.keysIt());
+    return indexes.toArray(new String[indexes.size()]);
   }
 
   @Override
@@ -169,14 +303,23 @@ public class SearchServiceImpl
     String indexName = repositoryNameMapping.remove(repository.getName());
     if (indexName != null) {
       log.debug("Removing index of {}", repository);
+      invalidateSearchableIndexes();
       deleteIndex(indexName);
     }
+    String rebuildName = rebuildNameMapping.remove(repository.getName());
+    if (rebuildName != null) {
+      deleteIndex(rebuildName);
+    }
   }
 
   private void deleteIndex(final String indexName) {
+    updatedDuringRebuild.remove(indexName);
+    // queued updates would otherwise implicitly re-create the index
+    bulkIndexer.discard(indexName);
+    bumpGeneration(indexName);
     IndicesAdminClient indices = indicesAdminClient();
     if (indices.prepareExists(indexName).execute().actionGet().isExists()) {
-      indices.prepareDelete(indexName).execute().actionGet();
+      indices.prepareDelete(concreteIndexes(indexName)).execute().actionGet();
     }
   }
 
@@ -190,6 +333,122 @@ public class SearchServiceImpl
     }
   }
 
+  @Override
+  public String startRebuild(final Repository repository) {
+    checkNotNull(repository);
+    String indexName = repositoryNameMapping.get(repository.getName());
+    checkState(indexName != null, "Missing index of %s", repository);
+    String previous = rebuildNameMapping.remove(repository.getName());
+    if (previous != null) {
+      deleteIndex(previous);
+    }
+
+    String rebuildName = versionedIndexName(indexName);
+    log.debug("Creating index {} to rebuild {} into", rebuildName, repository);
+    IndicesAdminClient indices = indicesAdminClient();
+    indices.prepareCreate(rebuildName)
+        .setSource(indexSource(repository))
+        .execute()
+        .actionGet();
+    // nothing searches the index before it is finished, so skip refreshing it while it is loaded
+    indices.prepareUpdateSettings(rebuildName)
+        .setSettings(ImmutableMap.<String, Object>of(REFRESH_INTERVAL, "-1"))
+        .execute()
+        .actionGet();
+    rebuildNameMapping.put(repository.getName(), rebuildName);
+    return rebuildName;
+  }
+
+  @Override
+  public boolean resumeRebuild(final Repository repository, final String rebuildName) {
+    checkNotNull(repository);
+    checkNotNull(rebuildName);
+    if (!indicesAdminClient().prepareExists(rebuildName).execute().actionGet().isExists()) {
+      return false;
+    }
+    rebuildNameMapping.put(repository.getName(), rebuildName);
+    return true;
+  }
+
+  @Override
+  public void abortRebuild(final Repository repository, final String rebuildName) {
+    checkNotNull(repository);
+    checkNotNull(rebuildName);
+    rebuildNameMapping.remove(repository.getName(), rebuildName);
+    log.debug("Deleting index {} of abandoned rebuild of {}", rebuildName, repository);
+    deleteIndex(rebuildName);
+  }
+
+  @Override
+  public void putRebuilt(final Repository repository, final String identifier, final String json) {
+    checkNotNull(repository);
+    checkNotNull(identifier);
+    checkNotNull(json);
+    String rebuildName = rebuildNameMapping.get(repository.getName());
+    checkState(rebuildName != null, "No rebuild of %s in progress", repository);
+    Lock lock = rebuildLocks.get(identifier);
+    lock.lock();
+    try {
+      Set<String> updated = updatedDuringRebuild.get(rebuildName);
+      if (updated != null && updated.contains(identifier)) {
+        log.trace("Skipping rebuilt document {} of {}, updated meanwhile", identifier, repository);
+        return;
+      }
+      bulkIndexer.index(rebuildName, TYPE, identifier, json);
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void finishRebuild(final Repository repository) {
+    checkNotNull(repository);
+    String indexName = repositoryNameMapping.get(repository.getName());
+    String rebuildName = rebuildNameMapping.get(repository.getName());
+    checkState(indexName != null && rebuildName != null, "No rebuild of %s in progress", repository);
+
+    IndicesAdminClient indices = indicesAdminClient();
+    indices.prepareUpdateSettings(rebuildName)
+        .setSettings(ImmutableMap.<String, Object>of(REFRESH_INTERVAL, DEFAULT_REFRESH_INTERVAL))
+        .execute()
+        .actionGet();
+    indices.prepareRefresh(rebuildName).execute().actionGet();
+
+    String[] previous = concreteIndexes(indexName);
+    if (previous.length == 1 && previous[0].equals(indexName)) {
+      // an index created before aliases were used has to make way for the alias, updates queued for it are also
+      // queued for the rebuilt index
+      log.info("Replacing index {} of {} by an alias", indexName, repository);
+      bulkIndexer.discard(indexName);
+      indices.prepareDelete(indexName).execute().actionGet();
+      indices.prepareAliases().addAlias(rebuildName, indexName).execute().actionGet();
+    }
+    else {
+      // swap atomically, so searches never see a missing or partial index
+      IndicesAliasesRequestBuilder aliases = indices.prepareAliases().addAlias(rebuildName, indexName);
+      for (String index : previous) {
+        aliases.removeAlias(index, indexName);
+      }
+      aliases.execute().actionGet();
+      indices.prepareDelete(previous).execute().actionGet();
+    }
+    rebuildNameMapping.remove(repository.getName());
+    updatedDuringRebuild.remove(rebuildName);
+    bumpGeneration(indexName);
+    log.debug("Switched {} over to rebuilt index {}", repository, rebuildName);
+  }
+
+  @Override
+  public boolean flushRebuild(final Repository repository, final long timeout, final TimeUnit unit)
+      throws InterruptedException
+  {
+    checkNotNull(repository);
+    String rebuildName = rebuildNameMapping.get(repository.getName());
+    checkState(rebuildName != null, "No rebuild of %s in progress", repository);
+    return bulkIndexer.flush(rebuildName, timeout, unit);
+  }
+
   @Override
   public void put(final Repository repository, final String identifier, final String json) {
     checkNotNull(repository);
@@ -200,7 +459,11 @@ public class SearchServiceImpl
       return;
     }
     log.debug("Adding to index document {} from {}: {}", identifier, repository, json);
-    client.get().prepareIndex(indexName, TYPE, identifier).setSource(json).execute();
+    bulkIndexer.index(indexName, TYPE, identifier, json);
+    String rebuildName = rebuildNameMapping.get(repository.getName());
+    if (rebuildName != null) {
+      updateRebuild(rebuildName, identifier, json);
+    }
   }
 
   @Override
@@ -212,21 +475,36 @@ public class SearchServiceImpl
       return;
     }
     log.debug("Removing from index document {} from {}", identifier, repository);
-    client.get().prepareDelete(indexName, TYPE, identifier).execute();
+    bulkIndexer.delete(indexName, TYPE, identifier);
+    String rebuildName = rebuildNameMapping.get(repository.getName());
+    if (rebuildName != null) {
+      updateRebuild(rebuildName, identifier, null);
+    }
   }
 
-  @Override
-  public Iterable<SearchHit> browse(final QueryBuilder query) {
-    checkNotNull(query);
+  /**
+   * Applies an update to the index being rebuilt, recording the document so its rebuilt data is skipped from now on.
+   */
+  private void updateRebuild(final String rebuildName, final String identifier, @Nullable final String json) {
+    Lock lock = rebuildLocks.get(identifier);
+    lock.lock();
     try {
-      if (!indicesAdminClient().prepareValidateQuery().setQuery(query).execute().actionGet().isValid()) {
-        throw new IllegalArgumentException("Invalid query");
+      updatedDuringRebuild.computeIfAbsent(rebuildName, key -> ConcurrentHashMap.newKeySet()).add(identifier);
+      if (json != null) {
+        bulkIndexer.index(rebuildName, TYPE, identifier, json);
+      }
+      else {
+        bulkIndexer.delete(rebuildName, TYPE, identifier);
       }
     }
-    catch (IndexNotFoundException e) {
-      // no repositories were created yet, so there is no point in searching
-      return null;
+    finally {
+      lock.unlock();
     }
+  }
+
+  @Override
+  public Iterable<SearchHit> browse(final QueryBuilder query) {
+    checkNotNull(query);
     final String[] searchableIndexes = getSearchableIndexes();
     if (searchableIndexes.length == 0) {
       return Collections.emptyList();
@@ -249,13 +527,23 @@ public class SearchServiceImpl
               return false;
             }
             if (response == null) {
-              response = client.get().prepareSearch(searchableIndexes)
-                  .setTypes(TYPE)
-                  .setQuery(query)
-                  .setScroll(new TimeValue(1, TimeUnit.MINUTES))
-                  .setSize(100)
-                  .execute()
-                  .actionGet();
+              try {
+                response = client.get().prepareSearch(searchableIndexes)
+                    .setTypes(TYPE)
+                    .setQuery(query)
+                    .setScroll(new TimeValue(1, TimeUnit.MINUTES))
+                    .setSize(100)
+                    .execute()
+                    .actionGet();
+              }
+              catch (IndexNotFoundException e) {
+                // index was removed after resolving the searchable indexes
+                noMoreHits = true;
+                return false;
+              }
+              catch (ElasticsearchException e) {
+                throw translateFailure(e);
+              }
               iterator = Arrays.asList(response.getHits().getHits()).iterator();
               noMoreHits = !iterator.hasNext();
             }
@@ -299,13 +587,24 @@ public class SearchServiceImpl
                                final int from,
                                final int size)
   {
-    if(!validateQuery(query)) {
-      return EMPTY_SEARCH_RESPONSE;
-    }
+    checkNotNull(query);
     final String[] searchableIndexes = getSearchableIndexes();
     if (searchableIndexes.length == 0) {
       return EMPTY_SEARCH_RESPONSE;
     }
+    // profiling is about what the query costs, so always run it then
+    String resultKey = profile ? null : resultKey("search", searchableIndexes, query, sort, from, size);
+    if (resultKey != null) {
+      CachedSearchResponse cached = (CachedSearchResponse) cachedResult(resultKey);
+      if (cached != null) {
+        try {
+          return SearchResponse.readSearchResponse(cached.bytes.streamInput());
+        }
+        catch (IOException e) {
+          log.debug("Failed to read cached search response", e);
+        }
+      }
+    }
 
     SearchRequestBuilder searchRequestBuilder = client.get().prepareSearch(searchableIndexes)
         .setTypes(TYPE)
@@ -318,8 +617,28 @@ public class SearchServiceImpl
         searchRequestBuilder.addSort(entry);
       }
     }
-    SearchResponse searchResponse = searchRequestBuilder.execute().actionGet();
-    
+    SearchResponse searchResponse;
+    try {
+      searchResponse = searchRequestBuilder.execute().actionGet();
+    }
+    catch (IndexNotFoundException e) {
+      // index was removed after resolving the searchable indexes
+      return EMPTY_SEARCH_RESPONSE;
+    }
+    catch (ElasticsearchException e) {
+      throw translateFailure(e);
+    }
+    if (resultKey != null) {
+      try {
+        BytesStreamOutput out = new BytesStreamOutput();
+        searchResponse.writeTo(out);
+        results.put(resultKey, new CachedSearchResponse(out.bytes(), searchResponse.getHits().getHits().length));
+      }
+      catch (IOException e) {
+        log.debug("Failed to cache search response", e);
+      }
+    }
+
     if(profile) {
       logProfileResults(searchResponse);
     }
@@ -329,47 +648,146 @@ public class SearchServiceImpl
 
   @Override
   public long count(final QueryBuilder query) {
-    if(!validateQuery(query)) {
-      return 0;
-    }
+    checkNotNull(query);
     final String[] searchableIndexes = getSearchableIndexes();
     if (searchableIndexes.length == 0) {
       return 0;
     }
+    String resultKey = resultKey("count", searchableIndexes, query, null, 0, 0);
+    Long cached = (Long) cachedResult(resultKey);
+    if (cached != null) {
+      return cached;
+    }
     CountRequestBuilder count = client.get().prepareCount(searchableIndexes).setQuery(query);
-    CountResponse response = count.execute().actionGet();
-    return response.getCount();
+    try {
+      CountResponse response = count.execute().actionGet();
+      results.put(resultKey, response.getCount());
+      return response.getCount();
+    }
+    catch (IndexNotFoundException e) {
+      // index was removed after resolving the searchable indexes
+      return 0;
+    }
+    catch (ElasticsearchException e) {
+      throw translateFailure(e);
+    }
   }
 
-  private boolean validateQuery(QueryBuilder query) {
-    checkNotNull(query);
-    try {
-      ValidateQueryResponse validateQueryResponse = indicesAdminClient().prepareValidateQuery()
-          .setQuery(query).setExplain(true).execute().actionGet();
-      if (!validateQueryResponse.isValid()) {
-        if (log.isDebugEnabled()) {
-          Collection<String> explanations = Collections2.transform(validateQueryResponse.getQueryExplanation(),
-              new Function<QueryExplanation, String>()
-              {
-                @Nullable
-                @Override
-                public String apply(final QueryExplanation input) {
-                  return input.getExplanation() != null ? input.getExplanation() : input.getError();
-                }
-              });
-          log.debug("Invalid query explanation: {}", explanations);
-        }
-        throw new IllegalArgumentException("Invalid query");
+  /**
+   * Returns the key of a search or count result. As it includes the current generations of the searched indexes, any
+   * change to their content makes previous results unreachable until they expire.
+   */
+  private String resultKey(final String kind,
+                           final String[] indexes,
+                           final QueryBuilder query,
+                           @Nullable final List<SortBuilder> sort,
+                           final int from,
+                           final int size)
+  {
+    String[] sortedIndexes = indexes.clone();
+    Arrays.sort(sortedIndexes);
+    StringBuilder key = new StringBuilder(kind).append('\n');
+    for (String index : sortedIndexes) {
+      key.append(index).append(':').append(generation(index)).append(',');
+    }
+    key.append('\n').append(from).append(',').append(size).append('\n').append(query);
+    if (sort != null) {
+      for (SortBuilder entry : sort) {
+        key.append('\n').append(entry);
       }
     }
-    catch (IndexNotFoundException e) {
-      // no repositories were created yet, so there is no point in searching
-      return false;
+    return key.toString();
+  }
+
+  @Nullable
+  private Object cachedResult(final String key) {
+    Object result = results.getIfPresent(key);
+    if (result != null) {
+      resultsHits.mark();
     }
-    return true;
+    else {
+      resultsMisses.mark();
+    }
+    return result;
+  }
+
+  private long generation(final String indexName) {
+    AtomicLong generation = indexGenerations.get(indexName);
+    return generation != null ? generation.get() : 0;
+  }
+
+  private void bumpGeneration(final String indexName) {
+    indexGenerations.computeIfAbsent(indexName, key -> new AtomicLong()).incrementAndGet();
   }
 
+  /**
+   * Makes updates applied to live indexes searchable and only then bumps their generations, so a search racing with
+   * the updates cannot cache the old result under the new generation. Indexes being rebuilt are not searched, and
+   * are refreshed once finished.
+   */
+  private void updatesApplied(final Set<String> indexes) {
+    String[] live = indexes.stream().filter(repositoryNameMapping::containsValue).toArray(String[]::new);
+    if (live.length == 0) {
+      return;
+    }
+    indicesAdminClient().prepareRefresh(live).execute(new ActionListener<RefreshResponse>()
+    {
+      @Override
+      public void onResponse(final RefreshResponse response) {
+        bumpGenerations(live);
+      }
+
+      @Override
+      public void onFailure(final Throwable e) {
+        log.debug("Failed to refresh indexes {}", Arrays.toString(live), e);
+        bumpGenerations(live);
+      }
+    });
+  }
+
+  private void bumpGenerations(final String[] indexNames) {
+    for (String indexName : indexNames) {
+      bumpGeneration(indexName);
+    }
+  }
+
+  /**
+   * Queries are not validated up front, as that costs an extra round trip per request. Instead a query rejected by
+   * Elasticsearch is reported as {@link IllegalArgumentException}, any other failure is rethrown as is.
+   */
+  private RuntimeException translateFailure(final ElasticsearchException e) {
+    if (e.status() == RestStatus.BAD_REQUEST) {
+      log.debug("Invalid query", e);
+      return new IllegalArgumentException("Invalid query", e);
+    }
+    return e;
+  }
+
+  /**
+   * Returns the indexes the current subject may search, cached per subject until repositories, security or content
+   * selectors change.
+   */
   private String[] getSearchableIndexes() {
+    PrincipalCollection principals = securityHelper.subject().getPrincipals();
+    if (principals == null || principals.isEmpty()) {
+      searchableIndexesMisses.mark();
+      return resolveSearchableIndexes();
+    }
+    String[] indexes = searchableIndexes.getIfPresent(principals);
+    if (indexes != null) {
+      searchableIndexesHits.mark();
+      return indexes;
+    }
+    searchableIndexesMisses.mark();
+    long generation = searchableIndexesGeneration.get();
+    indexes = resolveSearchableIndexes();
+    if (generation == searchableIndexesGeneration.get()) {
+      searchableIndexes.put(principals, indexes);
+    }
+    return indexes;
+  }
+
+  private String[] resolveSearchableIndexes() {
     List<String> indexes = Lists.newArrayList();
     for (Repository repository : repositoryManager.browse()) {
       // check if search facet is available so avoid searching repositories without an index
@@ -385,6 +803,66 @@ public class SearchServiceImpl
     return indexes.toArray(new String[indexes.size()]);
   }
 
+  private void invalidateSearchableIndexes() {
+    searchableIndexesGeneration.incrementAndGet();
+    searchableIndexes.invalidateAll();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final RepositoryCreatedEvent event) {
+    invalidateSearchableIndexes();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final RepositoryUpdatedEvent event) {
+    // repository might have been taken offline or brought back online
+    invalidateSearchableIndexes();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final RepositoryDeletedEvent event) {
+    invalidateSearchableIndexes();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final AuthorizationConfigurationChanged event) {
+    invalidateSearchableIndexes();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final SecurityConfigurationChanged event) {
+    invalidateSearchableIndexes();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final RoleEvent event) {
+    invalidateSearchableIndexes();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final PrivilegeEvent event) {
+    invalidateSearchableIndexes();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final UserRoleMappingEvent event) {
+    invalidateSearchableIndexes();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final SelectorConfigurationEvent event) {
+    invalidateSearchableIndexes();
+  }
+
   /**
    * Returns the indixes admin client.
    */
@@ -408,4 +886,19 @@ public class SearchServiceImpl
       }
     }
   }
+
+  /**
+   * Serialized search response, with the number of hits it holds.
+   */
+  private static class CachedSearchResponse
+  {
+    private final BytesReference bytes;
+
+    private final int hits;
+
+    CachedSearchResponse(final BytesReference bytes, final int hits) {
+      this.bytes = bytes;
+      this.hits = hits;
+    }
+  }
 }
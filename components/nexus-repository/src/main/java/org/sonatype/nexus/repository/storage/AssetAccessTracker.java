@@ -0,0 +1,188 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.storage;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
+import org.sonatype.nexus.orient.DatabaseInstance;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.orientechnologies.common.concur.ONeedRetryException;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import org.joda.time.DateTime;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.P_LAST_ACCESSED;
+
+/**
+ * Write-behind tracker of {@link Asset#lastAccessed()} timestamps.
+ *
+ * Read paths record accesses in memory instead of saving the asset, so they stay read-only and cannot conflict with
+ * each other on hot assets. Pending timestamps are coalesced per asset and persisted in batched transactions by a
+ * background flusher.
+ *
+ * @since 3.1
+ */
+@Named
+@Singleton
+@ManagedLifecycle(phase = SERVICES)
+public class AssetAccessTracker
+    extends LifecycleSupport
+{
+  private static final int FLUSH_INTERVAL_SECONDS = SystemPropertiesHelper.getInteger(
+      AssetAccessTracker.class.getName() + ".flushIntervalSeconds", 10);
+
+  private static final int BATCH_SIZE = SystemPropertiesHelper.getInteger(
+      AssetAccessTracker.class.getName() + ".batchSize", 500);
+
+  private final Provider<DatabaseInstance> databaseInstanceProvider;
+
+  private final AssetEntityAdapter assetEntityAdapter;
+
+  private final ConcurrentMap<ORID, DateTime> pending = new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService flusher;
+
+  @Inject
+  public AssetAccessTracker(@Named(ComponentDatabase.NAME) final Provider<DatabaseInstance> databaseInstanceProvider,
+                            final AssetEntityAdapter assetEntityAdapter)
+  {
+    this.databaseInstanceProvider = checkNotNull(databaseInstanceProvider);
+    this.assetEntityAdapter = checkNotNull(assetEntityAdapter);
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    flusher = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("asset-access-tracker").setDaemon(true).build());
+    flusher.scheduleWithFixedDelay(() -> {
+      try {
+        flush();
+      }
+      catch (Exception e) {
+        // Don't propagate, as this stops subsequent executions
+        log.warn("Failed to persist asset access times", e);
+      }
+    }, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    flusher.shutdown();
+    if (!flusher.awaitTermination(FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS)) {
+      log.warn("Failed to terminate asset access flusher in allotted time");
+    }
+    flusher = null;
+    flush();
+  }
+
+  /**
+   * Marks the asset as accessed now, if it has been more than a minute, queueing the new timestamp to be persisted.
+   * The asset itself does not need to be saved.
+   *
+   * @return {@code true} if the timestamp was changed, otherwise {@code false}
+   */
+  public boolean markAsAccessed(final Asset asset) {
+    if (!asset.markAsAccessed()) {
+      return false;
+    }
+    pending.merge(assetEntityAdapter.recordIdentity(asset), asset.lastAccessed(),
+        (a, b) -> a.isAfter(b) ? a : b);
+    return true;
+  }
+
+  /**
+   * Persists all pending access timestamps. Called before work which queries {@link AssetEntityAdapter#P_LAST_ACCESSED}
+   * so it sees recent accesses.
+   */
+  public synchronized void flush() {
+    List<Entry<ORID, DateTime>> batch = new ArrayList<>(BATCH_SIZE);
+    Iterator<ORID> itr = pending.keySet().iterator();
+    while (itr.hasNext()) {
+      ORID rid = itr.next();
+      DateTime lastAccessed = pending.remove(rid);
+      if (lastAccessed != null) {
+        batch.add(new SimpleImmutableEntry<>(rid, lastAccessed));
+      }
+      if (batch.size() >= BATCH_SIZE || (!itr.hasNext() && !batch.isEmpty())) {
+        persist(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int pendingCount() {
+    return pending.size();
+  }
+
+  private void persist(final List<Entry<ORID, DateTime>> batch) {
+    try (ODatabaseDocumentTx db = databaseInstanceProvider.get().acquire()) {
+      db.begin();
+      try {
+        for (Entry<ORID, DateTime> entry : batch) {
+          ODocument document = db.load(entry.getKey());
+          if (document == null) {
+            continue; // deleted meanwhile
+          }
+          Date lastAccessed = document.field(P_LAST_ACCESSED, OType.DATETIME);
+          if (lastAccessed == null || lastAccessed.before(entry.getValue().toDate())) {
+            document.field(P_LAST_ACCESSED, entry.getValue().toDate());
+            document.save();
+          }
+        }
+        db.commit();
+        log.debug("Persisted {} asset access times", batch.size());
+      }
+      catch (ONeedRetryException e) {
+        db.rollback();
+        log.debug("Conflict persisting asset access times, will retry", e);
+        requeue(batch);
+      }
+      catch (RuntimeException e) {
+        db.rollback();
+        requeue(batch);
+        throw e;
+      }
+    }
+  }
+
+  private void requeue(final List<Entry<ORID, DateTime>> batch) {
+    for (Entry<ORID, DateTime> entry : batch) {
+      pending.merge(entry.getKey(), entry.getValue(), (a, b) -> a.isAfter(b) ? a : b);
+    }
+  }
+}
@@ -12,7 +12,10 @@
  */
 package org.sonatype.nexus.repository.storage;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
@@ -206,6 +209,32 @@ public class AssetEntityAdapter
     return first != null ? readEntity(first) : null;
   }
 
+  /**
+   * @since 3.1
+   */
+  Iterable<Asset> browseByComponents(final ODatabaseDocumentTx db,
+                                     final Bucket bucket,
+                                     final Collection<Component> components)
+  {
+    checkNotNull(bucket);
+    checkNotNull(components);
+
+    List<ORID> componentIds = new ArrayList<>(components.size());
+    for (Component component : components) {
+      componentIds.add(componentEntityAdapter.recordIdentity(component));
+    }
+    Map<String, Object> parameters = ImmutableMap.<String, Object>of(
+        "bucket", bucketEntityAdapter.recordIdentity(bucket),
+        "components", componentIds
+    );
+    String query = String.format(
+        "select from %s where %s = :bucket and %s in :components",
+        DB_CLASS, P_BUCKET, P_COMPONENT
+    );
+    Iterable<ODocument> docs = db.command(new OCommandSQL(query)).execute(parameters);
+    return readEntities(docs);
+  }
+
   Iterable<Asset> browseByComponent(final ODatabaseDocumentTx db, final Component component) {
     checkNotNull(component);
     checkState(EntityHelper.hasMetadata(component));
@@ -29,6 +29,8 @@ import org.sonatype.nexus.common.hash.MultiHashingInputStream;
 import org.sonatype.nexus.common.node.LocalNodeAccess;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashCode;
 import com.google.common.io.ByteStreams;
@@ -36,6 +38,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Predicates.in;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
 
 /**
  * Keeps track of added and to-be-deleted blobs so they can be deleted as appropriate when the transaction ends,
@@ -65,10 +69,14 @@ class BlobTx
                           final Iterable<HashAlgorithm> hashAlgorithms,
                           final String contentType)
   {
-    final MultiHashingInputStream hashingStream = new MultiHashingInputStream(hashAlgorithms, inputStream);
+    // always include SHA-1 so the blob store can reuse it for its own metrics instead of hashing the content again
+    final Set<HashAlgorithm> requested = ImmutableSet.copyOf(hashAlgorithms);
+    final MultiHashingInputStream hashingStream = new MultiHashingInputStream(
+        ImmutableSet.<HashAlgorithm>builder().addAll(requested).add(SHA1).build(), inputStream);
     Blob blob = blobStore.create(hashingStream, headers);
     BlobRef blobRef = new BlobRef(localNodeAccess.getId(), blobStore.getBlobStoreConfiguration().getName(), blob.getId().asUniqueString());
-    AssetBlob assetBlob = new AssetBlob(blobRef, blob, hashingStream.count(), contentType, hashingStream.hashes());
+    Map<HashAlgorithm, HashCode> hashes = Maps.newHashMap(Maps.filterKeys(hashingStream.hashes(), in(requested)));
+    AssetBlob assetBlob = new AssetBlob(blobRef, blob, hashingStream.count(), contentType, hashes);
     newlyCreatedBlobs.add(assetBlob);
     return assetBlob;
   }
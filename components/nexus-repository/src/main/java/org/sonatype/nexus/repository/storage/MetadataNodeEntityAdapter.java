@@ -13,6 +13,7 @@
 package org.sonatype.nexus.repository.storage;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +37,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.OCommandSQL;
 import org.joda.time.DateTime;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
@@ -128,6 +130,33 @@ public abstract class MetadataNodeEntityAdapter<T extends MetadataNode<?>>
     return readEntities(docs);
   }
 
+  /**
+   * Reads up to {@code limit} entities of the bucket in record order, starting after the given record.
+   *
+   * @since 3.1
+   */
+  List<T> browseByBucket(final ODatabaseDocumentTx db,
+                         final Bucket bucket,
+                         @Nullable final ORID after,
+                         final int limit)
+  {
+    checkNotNull(bucket);
+    checkState(EntityHelper.hasMetadata(bucket));
+    checkArgument(limit > 0);
+
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("bucket", bucketEntityAdapter.recordIdentity(bucket));
+    if (after != null) {
+      parameters.put("after", after);
+    }
+    String query = String.format(
+        "select from %s where %s = :bucket%s order by @rid limit %d",
+        getTypeName(), P_BUCKET, after != null ? " and @rid > :after" : "", limit
+    );
+    Iterable<ODocument> docs = db.command(new OCommandSQL(query)).execute(parameters);
+    return Lists.newArrayList(readEntities(docs));
+  }
+
   T findByProperty(final ODatabaseDocumentTx db,
                    final String propName, final Object propValue,
                    final Bucket bucket)
@@ -15,6 +15,8 @@ package org.sonatype.nexus.repository.storage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
@@ -105,6 +107,13 @@ public interface StorageTx
    */
   Iterable<Asset> browseAssets(Component component);
 
+  /**
+   * Gets all assets owned by the specified components of the bucket, with a single query.
+   *
+   * @since 3.1
+   */
+  Iterable<Asset> browseAssets(Bucket bucket, Collection<Component> components);
+
   /**
    * Gets first asset owned by the specified component.
    */
@@ -119,6 +128,14 @@ public interface StorageTx
    */
   Iterable<Component> browseComponents(Bucket bucket);
 
+  /**
+   * Gets up to {@code limit} components owned by the specified bucket in record order, starting after the given
+   * component or from the first if {@code null}. Unlike skipping, the cost of a page does not grow with its offset.
+   *
+   * @since 3.1
+   */
+  List<Component> browseComponents(Bucket bucket, @Nullable EntityId after, int limit);
+
   /**
    * Gets an asset by id, owned by the specified bucket, or {@code null} if not found.
    */
@@ -15,7 +15,9 @@ package org.sonatype.nexus.repository.storage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -261,6 +263,12 @@ public class StorageTxImpl
     return assetEntityAdapter.browseByComponent(db, component);
   }
 
+  @Override
+  @Guarded(by = ACTIVE)
+  public Iterable<Asset> browseAssets(final Bucket bucket, final Collection<Component> components) {
+    return assetEntityAdapter.browseByComponents(db, bucket, components);
+  }
+
   @Override
   @Guarded(by = ACTIVE)
   public Asset firstAsset(final Component component) {
@@ -273,6 +281,13 @@ public class StorageTxImpl
     return componentEntityAdapter.browseByBucket(db, bucket);
   }
 
+  @Override
+  @Guarded(by = ACTIVE)
+  public List<Component> browseComponents(final Bucket bucket, @Nullable final EntityId after, final int limit) {
+    return componentEntityAdapter.browseByBucket(db, bucket,
+        after != null ? componentEntityAdapter.recordIdentity(after) : null, limit);
+  }
+
   @Nullable
   @Override
   @Guarded(by = ACTIVE)
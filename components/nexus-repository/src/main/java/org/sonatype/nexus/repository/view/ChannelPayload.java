@@ -0,0 +1,34 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.view;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+
+import javax.annotation.Nullable;
+
+/**
+ * {@link Payload} which may also be read through a {@link SeekableByteChannel}.
+ *
+ * @since 3.1
+ */
+public interface ChannelPayload
+    extends Payload
+{
+  /**
+   * Opens a channel to the payload content, or returns {@code null} if this payload instance cannot be read as a
+   * channel, in which case callers should fall back to {@link #openInputStream()}.
+   */
+  @Nullable
+  SeekableByteChannel openChannel() throws IOException;
+}
@@ -14,6 +14,7 @@ package org.sonatype.nexus.repository.view;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
 import java.util.Date;
 import java.util.Map;
 
@@ -44,7 +45,7 @@ import static org.sonatype.nexus.common.time.DateHelper.toDateTime;
  * @since 3.0
  */
 public class Content
-    implements Payload
+    implements ChannelPayload
 {
   /**
    * Key of {@link Asset} nested map of content related properties.
@@ -86,6 +87,15 @@ public class Content
     return payload.openInputStream();
   }
 
+  @Nullable
+  @Override
+  public SeekableByteChannel openChannel() throws IOException {
+    if (payload instanceof ChannelPayload) {
+      return ((ChannelPayload) payload).openChannel();
+    }
+    return null;
+  }
+
   @Override
   public long getSize() {
     return payload.getSize();
@@ -0,0 +1,41 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.view;
+
+import javax.annotation.Nullable;
+
+/**
+ * {@link Matcher} which the {@link Router} may index by request path, skipping it for paths it cannot match.
+ *
+ * Implementations must not have side effects on the {@link Context} when they do not match.
+ *
+ * @since 3.1
+ */
+public interface IndexableMatcher
+    extends Matcher
+{
+  /**
+   * Returns the literal, case-sensitive prefix of every request path this matcher can match, the empty string if there
+   * is no such prefix, or {@code null} if this matcher can not be indexed.
+   */
+  @Nullable
+  String getPathPrefix();
+
+  /**
+   * Returns the path prefix of the given matcher, or {@code null} if it can not be indexed.
+   */
+  @Nullable
+  static String pathPrefix(final Matcher matcher) {
+    return matcher instanceof IndexableMatcher ? ((IndexableMatcher) matcher).getPathPrefix() : null;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.view;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Path trie over the {@link IndexableMatcher#getPathPrefix() path prefixes} of routes, used by {@link Router} to
+ * skip routes which can not match a request path.
+ *
+ * Routes with opaque matchers are always candidates, so that evaluating candidates in route order gives exactly the
+ * same result as evaluating all routes.
+ *
+ * @since 3.1
+ */
+class RouteIndex
+{
+  private static class Node
+  {
+    private final Map<Character, Node> children = new HashMap<>(4);
+
+    private final BitSet routes = new BitSet();
+  }
+
+  private final Node root = new Node();
+
+  private final BitSet opaque = new BitSet();
+
+  RouteIndex(final List<Route> routes) {
+    for (int i = 0; i < routes.size(); i++) {
+      String prefix = IndexableMatcher.pathPrefix(routes.get(i).getMatcher());
+      if (prefix == null) {
+        opaque.set(i);
+      }
+      else {
+        Node node = root;
+        for (int c = 0; c < prefix.length(); c++) {
+          node = node.children.computeIfAbsent(prefix.charAt(c), key -> new Node());
+        }
+        node.routes.set(i);
+      }
+    }
+  }
+
+  /**
+   * Returns the indexes of routes which may match the given path.
+   */
+  BitSet candidates(final String path) {
+    BitSet candidates = (BitSet) opaque.clone();
+    Node node = root;
+    int c = 0;
+    while (node != null) {
+      candidates.or(node.routes);
+      node = c < path.length() ? node.children.get(path.charAt(c++)) : null;
+    }
+    return candidates;
+  }
+}
@@ -13,12 +13,14 @@
 package org.sonatype.nexus.repository.view;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.Repository;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -36,9 +38,12 @@ public class Router
 
   private final DefaultRoute defaultRoute;
 
+  private final RouteIndex routeIndex;
+
   public Router(final List<Route> routes, final DefaultRoute defaultRoute) {
-    this.routes = checkNotNull(routes, "Missing routes");
+    this.routes = ImmutableList.copyOf(checkNotNull(routes, "Missing routes"));
     this.defaultRoute = checkNotNull(defaultRoute, "Missing default route");
+    this.routeIndex = new RouteIndex(this.routes);
   }
 
   /**
@@ -119,10 +124,12 @@ public class Router
   }
 
   /**
-   * Find the first matching route for the given context.
+   * Find the first matching route for the given context, only evaluating routes which may match the request path.
    */
   private Route findRoute(final Context context) {
-    for (Route route : routes) {
+    BitSet candidates = routeIndex.candidates(context.getRequest().getPath());
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      Route route = routes.get(i);
       if (route.getMatcher().matches(context)) {
         return route;
       }
@@ -0,0 +1,246 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.view.handlers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.nexus.common.event.EventAware;
+import org.sonatype.nexus.repository.IllegalOperationException;
+import org.sonatype.nexus.repository.InvalidContentException;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.RepositoryDestroyedEvent;
+import org.sonatype.nexus.repository.http.HttpStatus;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Handler;
+import org.sonatype.nexus.repository.view.Response;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import org.apache.shiro.authz.AuthorizationException;
+import org.apache.shiro.authz.UnauthenticatedException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.http.HttpMethods.DELETE;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
+import static org.sonatype.nexus.repository.http.HttpMethods.HEAD;
+import static org.sonatype.nexus.repository.http.HttpMethods.POST;
+import static org.sonatype.nexus.repository.http.HttpMethods.PUT;
+
+/**
+ * Records per-repository request metrics in the {@link MetricRegistry}.
+ *
+ * Metrics are named {@code nexus.repository.<format>.<repository>.<metric>}: a {@code requests} timer, meters per
+ * request method, per response status class and per {@link Outcome} reported by handlers further down the chain.
+ * Names are bounded by the set of repositories, resolved once per repository and removed when it is destroyed.
+ * Requests failing with an exception are counted under the status the exception is eventually mapped to, as this
+ * handler sits ahead of the security and exception handlers.
+ *
+ * @since 3.1
+ */
+@Named
+@Singleton
+public class MetricsHandler
+    extends ComponentSupport
+    implements Handler, EventAware
+{
+  /**
+   * Request outcome, reported by handlers with {@link #outcome(Context, Outcome)}.
+   */
+  public enum Outcome
+  {
+    PROXY_HIT("proxyHit"),
+    PROXY_MISS("proxyMiss"),
+    NEGATIVE_CACHE_HIT("negativeCacheHit"),
+    GROUP_MEMBER("groupMember"),
+    NOT_FOUND("notFound");
+
+    private final String metricName;
+
+    Outcome(final String metricName) {
+      this.metricName = metricName;
+    }
+  }
+
+  private static final String PREFIX = "nexus.repository";
+
+  private static final String[] METHODS = {GET, HEAD, PUT, POST, DELETE};
+
+  private static final String OTHER = "other";
+
+  private static final Outcome[] OUTCOMES = Outcome.values();
+
+  private final MetricRegistry metricRegistry;
+
+  private final ConcurrentMap<String, RepositoryMetrics> repositories = new ConcurrentHashMap<>();
+
+  @Inject
+  public MetricsHandler(final MetricRegistry metricRegistry) {
+    this.metricRegistry = checkNotNull(metricRegistry);
+  }
+
+  /**
+   * Reports the outcome of the request being handled, replacing any outcome reported earlier.
+   */
+  public static void outcome(final Context context, final Outcome outcome) {
+    context.getAttributes().set(Outcome.class, outcome);
+  }
+
+  @Nonnull
+  @Override
+  public Response handle(@Nonnull final Context context) throws Exception {
+    RepositoryMetrics metrics = metrics(context.getRepository());
+    metrics.method(context.getRequest().getAction()).mark();
+
+    Timer.Context timer = metrics.requests.time();
+    Response response = null;
+    Exception failure = null;
+    try {
+      response = context.proceed();
+      return response;
+    }
+    catch (Exception e) {
+      failure = e;
+      throw e;
+    }
+    finally {
+      timer.stop();
+      int code = response != null ? response.getStatus().getCode() : failureStatus(context, failure);
+      metrics.status(code).mark();
+      Outcome outcome = resolveOutcome(context, code);
+      if (outcome != null) {
+        metrics.outcomes[outcome.ordinal()].mark();
+      }
+    }
+  }
+
+  /**
+   * Returns the status an exception escaping the handler chain is turned into, matching {@link ExceptionHandler} and
+   * the security filter.
+   */
+  private static int failureStatus(final Context context, @Nullable final Exception failure) {
+    if (failure instanceof UnauthenticatedException) {
+      return HttpStatus.UNAUTHORIZED;
+    }
+    if (failure instanceof AuthorizationException) {
+      return HttpStatus.FORBIDDEN;
+    }
+    if (failure instanceof IllegalOperationException) {
+      return HttpStatus.BAD_REQUEST;
+    }
+    if (failure instanceof InvalidContentException) {
+      return PUT.equals(context.getRequest().getAction()) ? HttpStatus.BAD_REQUEST : HttpStatus.NOT_FOUND;
+    }
+    return HttpStatus.INTERNAL_SERVER_ERROR;
+  }
+
+  /**
+   * Returns the reported outcome; any 404 which was not served from the negative cache counts as not found.
+   */
+  @Nullable
+  private static Outcome resolveOutcome(final Context context, final int code) {
+    Outcome outcome = context.getAttributes().get(Outcome.class);
+    if (code == HttpStatus.NOT_FOUND && outcome != Outcome.NEGATIVE_CACHE_HIT) {
+      return Outcome.NOT_FOUND;
+    }
+    return outcome;
+  }
+
+  private RepositoryMetrics metrics(final Repository repository) {
+    RepositoryMetrics metrics = repositories.get(repository.getName());
+    if (metrics == null) {
+      metrics = repositories.computeIfAbsent(repository.getName(), name -> new RepositoryMetrics(repository));
+    }
+    return metrics;
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryDestroyedEvent event) {
+    RepositoryMetrics metrics = repositories.remove(event.getRepository().getName());
+    if (metrics != null) {
+      metrics.names.forEach(metricRegistry::remove);
+    }
+  }
+
+  @VisibleForTesting
+  static String name(final Repository repository, final String... names) {
+    return MetricRegistry.name(MetricRegistry.name(PREFIX, repository.getFormat().getValue(), repository.getName()),
+        names);
+  }
+
+  /**
+   * Metrics of a repository, resolved up front so recording a request needs no lookups.
+   */
+  private class RepositoryMetrics
+  {
+    private final List<String> names = new ArrayList<>();
+
+    private final Timer requests;
+
+    private final Meter[] methods = new Meter[METHODS.length + 1];
+
+    private final Meter[] statuses = new Meter[6];
+
+    private final Meter[] outcomes = new Meter[OUTCOMES.length];
+
+    RepositoryMetrics(final Repository repository) {
+      requests = metricRegistry.timer(register(repository, "requests"));
+      for (int i = 0; i < METHODS.length; i++) {
+        methods[i] = metricRegistry.meter(register(repository, "methods", METHODS[i].toLowerCase(Locale.ENGLISH)));
+      }
+      methods[METHODS.length] = metricRegistry.meter(register(repository, "methods", OTHER));
+      for (int i = 1; i < statuses.length; i++) {
+        statuses[i] = metricRegistry.meter(register(repository, "responses", i + "xx"));
+      }
+      statuses[0] = metricRegistry.meter(register(repository, "responses", OTHER));
+      for (Outcome outcome : OUTCOMES) {
+        outcomes[outcome.ordinal()] = metricRegistry.meter(register(repository, "outcomes", outcome.metricName));
+      }
+    }
+
+    private String register(final Repository repository, final String... names) {
+      String name = name(repository, names);
+      this.names.add(name);
+      return name;
+    }
+
+    Meter method(final String action) {
+      for (int i = 0; i < METHODS.length; i++) {
+        if (METHODS[i].equals(action)) {
+          return methods[i];
+        }
+      }
+      return methods[METHODS.length];
+    }
+
+    Meter status(final int code) {
+      int statusClass = code / 100;
+      return statusClass > 0 && statusClass < statuses.length ? statuses[statusClass] : statuses[0];
+    }
+  }
+}
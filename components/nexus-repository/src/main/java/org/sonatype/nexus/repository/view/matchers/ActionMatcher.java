@@ -16,7 +16,7 @@ import java.util.List;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.view.Context;
-import org.sonatype.nexus.repository.view.Matcher;
+import org.sonatype.nexus.repository.view.IndexableMatcher;
 import org.sonatype.nexus.repository.view.Request;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -30,7 +30,7 @@ import static java.util.Arrays.asList;
  */
 public class ActionMatcher
     extends ComponentSupport
-    implements Matcher
+    implements IndexableMatcher
 {
   private final List<String> allowedActions;
 
@@ -45,4 +45,9 @@ public class ActionMatcher
     final String action = context.getRequest().getAction();
     return allowedActions.contains(action);
   }
+
+  @Override
+  public String getPathPrefix() {
+    return "";
+  }
 }
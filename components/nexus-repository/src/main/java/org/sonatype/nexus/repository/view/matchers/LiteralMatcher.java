@@ -14,7 +14,7 @@ package org.sonatype.nexus.repository.view.matchers;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.view.Context;
-import org.sonatype.nexus.repository.view.Matcher;
+import org.sonatype.nexus.repository.view.IndexableMatcher;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -25,7 +25,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class LiteralMatcher
   extends ComponentSupport
-  implements Matcher
+  implements IndexableMatcher
 {
   private final String literal;
 
@@ -53,6 +53,11 @@ public class LiteralMatcher
     }
   }
 
+  @Override
+  public String getPathPrefix() {
+    return ignoreCase ? "" : literal;
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName() + "{" +
@@ -13,7 +13,7 @@
 package org.sonatype.nexus.repository.view.matchers;
 
 import org.sonatype.nexus.repository.view.Context;
-import org.sonatype.nexus.repository.view.Matcher;
+import org.sonatype.nexus.repository.view.IndexableMatcher;
 
 /**
  * Never matcher.
@@ -21,10 +21,15 @@ import org.sonatype.nexus.repository.view.Matcher;
  * @since 3.0
  */
 public class NeverMatcher
-  implements Matcher
+  implements IndexableMatcher
 {
   @Override
   public boolean matches(final Context context) {
     return false;
   }
+
+  @Override
+  public String getPathPrefix() {
+    return "";
+  }
 }
@@ -15,7 +15,7 @@ package org.sonatype.nexus.repository.view.matchers;
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.common.text.Strings2;
 import org.sonatype.nexus.repository.view.Context;
-import org.sonatype.nexus.repository.view.Matcher;
+import org.sonatype.nexus.repository.view.IndexableMatcher;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -28,7 +28,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class PrefixMatcher
     extends ComponentSupport
-    implements Matcher
+    implements IndexableMatcher
 {
   private final String prefix;
 
@@ -61,6 +61,11 @@ public class PrefixMatcher
     }
   }
 
+  @Override
+  public String getPathPrefix() {
+    return ignoreCase ? "" : prefix;
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName() + "{" +
@@ -17,7 +17,7 @@ import java.util.regex.Pattern;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.view.Context;
-import org.sonatype.nexus.repository.view.Matcher;
+import org.sonatype.nexus.repository.view.IndexableMatcher;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -28,7 +28,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class RegexMatcher
   extends ComponentSupport
-  implements Matcher
+  implements IndexableMatcher
 {
   public interface State
   {
@@ -75,6 +75,11 @@ public class RegexMatcher
     return false;
   }
 
+  @Override
+  public String getPathPrefix() {
+    return "";
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName() + "{" +
@@ -14,8 +14,11 @@ package org.sonatype.nexus.repository.view.matchers.logic;
 
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.IndexableMatcher;
 import org.sonatype.nexus.repository.view.Matcher;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -32,7 +35,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class AndMatcher
     extends ComponentSupport
-    implements Matcher
+    implements IndexableMatcher
 {
   private final List<Matcher> matchers;
 
@@ -56,6 +59,25 @@ public class AndMatcher
     return true;
   }
 
+  /**
+   * Longest prefix of all matchers, if all are indexable.
+   */
+  @Nullable
+  @Override
+  public String getPathPrefix() {
+    String longest = "";
+    for (Matcher matcher : matchers) {
+      String prefix = IndexableMatcher.pathPrefix(matcher);
+      if (prefix == null) {
+        return null;
+      }
+      if (prefix.length() > longest.length()) {
+        longest = prefix;
+      }
+    }
+    return longest;
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName() + "{" +
@@ -12,8 +12,11 @@
  */
 package org.sonatype.nexus.repository.view.matchers.logic;
 
+import javax.annotation.Nullable;
+
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.IndexableMatcher;
 import org.sonatype.nexus.repository.view.Matcher;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -29,7 +32,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class NotMatcher
   extends ComponentSupport
-  implements Matcher
+  implements IndexableMatcher
 {
   private final Matcher matcher;
 
@@ -45,6 +48,15 @@ public class NotMatcher
     return !matcher.matches(context);
   }
 
+  /**
+   * Indexable without a prefix, if the negated matcher has no side effects.
+   */
+  @Nullable
+  @Override
+  public String getPathPrefix() {
+    return IndexableMatcher.pathPrefix(matcher) != null ? "" : null;
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName() + "{" +
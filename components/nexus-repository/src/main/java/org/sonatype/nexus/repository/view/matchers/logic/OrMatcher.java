@@ -14,12 +14,16 @@ package org.sonatype.nexus.repository.view.matchers.logic;
 
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.IndexableMatcher;
 import org.sonatype.nexus.repository.view.Matcher;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -32,7 +36,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class OrMatcher
     extends ComponentSupport
-    implements Matcher
+    implements IndexableMatcher
 {
   private final List<Matcher> matchers;
 
@@ -56,6 +60,23 @@ public class OrMatcher
     return false;
   }
 
+  /**
+   * Common prefix of all matchers, if all are indexable.
+   */
+  @Nullable
+  @Override
+  public String getPathPrefix() {
+    String common = null;
+    for (Matcher matcher : matchers) {
+      String prefix = IndexableMatcher.pathPrefix(matcher);
+      if (prefix == null) {
+        return null;
+      }
+      common = common == null ? prefix : Strings.commonPrefix(common, prefix);
+    }
+    return common;
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName() + "{" +
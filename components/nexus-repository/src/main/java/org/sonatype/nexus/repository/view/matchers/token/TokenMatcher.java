@@ -16,6 +16,7 @@ import java.util.Map;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.IndexableMatcher;
 import org.sonatype.nexus.repository.view.Matcher;
 import org.sonatype.nexus.repository.view.Request;
 
@@ -31,7 +32,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class TokenMatcher
     extends ComponentSupport
-    implements Matcher
+    implements IndexableMatcher
 {
   public interface State
   {
@@ -76,4 +77,9 @@ public class TokenMatcher
     });
     return true;
   }
+
+  @Override
+  public String getPathPrefix() {
+    return parser.getLiteralPrefix();
+  }
 }
@@ -53,11 +53,23 @@ public class TokenParser
 
   private final Pattern pattern;
 
+  private final String literalPrefix;
+
   public TokenParser(final String templatePattern) {
     final List<Token> tokens = new PatternParser(templatePattern).getTokens();
     pattern = Pattern.compile(regexp(tokens));
     log.trace("Pattern: {}", pattern);
 
+    // Leading literal tokens, which every matching path must start with
+    StringBuilder prefix = new StringBuilder();
+    for (Token token : tokens) {
+      if (!(token instanceof LiteralToken)) {
+        break;
+      }
+      prefix.append(token.value);
+    }
+    literalPrefix = prefix.toString();
+
     // Separate the variable tokens
     variables = new ArrayList<>();
     for (Token token : tokens) {
@@ -106,6 +118,15 @@ public class TokenParser
     return pattern.toString();
   }
 
+  /**
+   * Returns the literal prefix of the template pattern, the empty string if it starts with a variable.
+   *
+   * @since 3.1
+   */
+  public String getLiteralPrefix() {
+    return literalPrefix;
+  }
+
   private String regexp(final List<Token> tokens) {
     StringBuilder b = new StringBuilder();
     for (Token token : tokens) {
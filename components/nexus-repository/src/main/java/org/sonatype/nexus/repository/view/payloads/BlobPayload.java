@@ -14,11 +14,13 @@ package org.sonatype.nexus.repository.view.payloads;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
 
 import javax.annotation.Nullable;
 
 import org.sonatype.nexus.blobstore.api.Blob;
-import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.blobstore.api.ChannelBlob;
+import org.sonatype.nexus.repository.view.ChannelPayload;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -28,7 +30,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * @since 3.0
  */
 public class BlobPayload
-    implements Payload
+    implements ChannelPayload
 {
   private final Blob blob;
 
@@ -44,6 +46,15 @@ public class BlobPayload
     return blob.getInputStream();
   }
 
+  @Nullable
+  @Override
+  public SeekableByteChannel openChannel() throws IOException {
+    if (blob instanceof ChannelBlob) {
+      return ((ChannelBlob) blob).openChannel();
+    }
+    return null;
+  }
+
   @Override
   public long getSize() {
     return blob.getMetrics().getContentSize();
@@ -277,43 +277,72 @@ class NegativeCacheFacetImplTest
   void 'invalidate subset removes key and all child keys'() {
     NegativeCacheKey key1 = mock(NegativeCacheKey)
     NegativeCacheKey key2 = mock(NegativeCacheKey)
-    Cache.Entry<NegativeCacheKey, Status> entry1 = mock(Cache.Entry)
-    Cache.Entry<NegativeCacheKey, Status> entry2 = mock(Cache.Entry)
-    when(entry1.key).thenReturn(key1)
-    when(entry2.key).thenReturn(key2)
-    mockIterable(cache, entry1, entry2)
     when(key.isParentOf(key1)).thenReturn(false)
     when(key.isParentOf(key2)).thenReturn(true)
     config.enabled = true
     underTest.attach(repository)
     underTest.init()
     underTest.start()
+    underTest.put(key1, status)
+    underTest.put(key2, status)
     underTest.invalidateSubset(key)
     verify(cache).remove(key)
     verify(cache, never()).remove(key1)
     verify(cache).remove(key2)
   }
 
-  static void mockIterable(Cache<?,?> iterable, Object... values) {
-    Iterator<?> mockIterator = mock(Iterator)
-    when(iterable.iterator()).thenReturn(mockIterator)
-
-    if (values.length == 0) {
-      when(mockIterator.hasNext()).thenReturn(false)
-    }
-    else if (values.length == 1) {
-      when(mockIterator.hasNext()).thenReturn(true, false)
-      when(mockIterator.next()).thenReturn(values[0])
-    }
-    else {
-      Boolean[] hasNextResponses = new Boolean[values.length]
-      for (int i = 0; i < hasNextResponses.length-1; i++) {
-        hasNextResponses[i] = true
-      }
-      hasNextResponses[hasNextResponses.length - 1] = false
-      when(mockIterator.hasNext()).thenReturn(true, hasNextResponses)
-      Object[] valuesMinusTheFirst = Arrays.copyOfRange(values, 1, values.length)
-      when(mockIterator.next()).thenReturn(values[0], valuesMinusTheFirst)
+  /**
+   * Given:
+   * - configuration present
+   * - enabled = true
+   * - cached path entries
+   * Then:
+   * - invalidate subset removes only the paths under the prefix, without iterating the cache
+   */
+  @Test
+  void 'invalidate subset uses path index'() {
+    config.enabled = true
+    underTest.attach(repository)
+    underTest.init()
+    underTest.start()
+    ['/foo/a.jar', '/foo/bar/b.jar', '/foo-bar/c.jar', '/fop/d.jar'].each {
+      underTest.put(new PathNegativeCacheKey(it), status)
     }
+    underTest.invalidateSubset(new PathNegativeCacheKey('/foo/'))
+    verify(cache).remove(new PathNegativeCacheKey('/foo/'))
+    verify(cache).remove(new PathNegativeCacheKey('/foo/a.jar'))
+    verify(cache).remove(new PathNegativeCacheKey('/foo/bar/b.jar'))
+    verify(cache, never()).remove(new PathNegativeCacheKey('/foo-bar/c.jar'))
+    verify(cache, never()).remove(new PathNegativeCacheKey('/fop/d.jar'))
+    verify(cache, never()).iterator()
+    assert underTest.metrics.size == 2
+  }
+
+  /**
+   * Given:
+   * - configuration present
+   * - enabled = true
+   * - bloom filter enabled
+   * Then:
+   * - lookups of keys never cached skip the cache
+   * - hits and misses are counted
+   */
+  @Test
+  void 'bloom filter skips cache for keys never cached'() {
+    config.enabled = true
+    config.bloomFilterSize = 1000
+    underTest.attach(repository)
+    underTest.init()
+    underTest.start()
+    def cached = new PathNegativeCacheKey('/foo/missing.jar')
+    underTest.put(cached, status)
+    when(cache.get(cached)).thenReturn(status)
+    assert underTest.get(cached) == status
+    assert underTest.get(new PathNegativeCacheKey('/foo/present.jar')) == null
+    verify(cache, never()).get(new PathNegativeCacheKey('/foo/present.jar'))
+    def metrics = underTest.metrics
+    assert metrics.hitCount == 1
+    assert metrics.missCount == 1
+    assert metrics.bloomFilterSkipCount == 1
   }
 }
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.repository.cache
 
 import org.sonatype.goodies.testsupport.TestSupport
+import org.sonatype.nexus.common.collect.AttributesMap
 import org.sonatype.nexus.repository.Repository
 import org.sonatype.nexus.repository.http.HttpMethods
 import org.sonatype.nexus.repository.http.HttpResponses
@@ -21,6 +22,7 @@ import org.sonatype.nexus.repository.view.Context
 import org.sonatype.nexus.repository.view.Request
 import org.sonatype.nexus.repository.view.Response
 import org.sonatype.nexus.repository.view.Status
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler.Outcome
 
 import org.junit.Before
 import org.junit.Test
@@ -54,6 +56,7 @@ extends TestSupport
     repository = mock(Repository)
     when(context.getRequest()).thenReturn(request)
     when(context.getRepository()).thenReturn(repository)
+    when(context.getAttributes()).thenReturn(new AttributesMap())
     when(request.getAction()).thenReturn(HttpMethods.GET)
     when(repository.facet(NegativeCacheFacet)).thenReturn(facet)
     when(facet.getCacheKey(context)).thenReturn(key)
@@ -115,6 +118,7 @@ extends TestSupport
     when(facet.get(key)).thenReturn(cachedStatus)
     Response response = underTest.handle(context)
     assert response.getStatus() == cachedStatus
+    assert context.attributes.get(Outcome) == Outcome.NEGATIVE_CACHE_HIT
     verify(context, never()).proceed()
     verify(facet, never()).put(any(NegativeCacheKey), any(Status))
     verify(facet, never()).invalidate(any(NegativeCacheKey))
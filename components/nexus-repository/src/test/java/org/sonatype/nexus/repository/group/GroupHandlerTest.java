@@ -0,0 +1,237 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.group;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.Type;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.types.HostedType;
+import org.sonatype.nexus.repository.types.ProxyType;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.ViewFacet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
+
+/**
+ * Tests for parallel dispatch in {@link GroupHandler}.
+ */
+public class GroupHandlerTest
+    extends TestSupport
+{
+  private GroupMemberDispatcher dispatcher;
+
+  private GroupHandler underTest;
+
+  private GroupFacet groupFacet;
+
+  private Repository group;
+
+  private Context context;
+
+  @Before
+  public void setUp() throws Exception {
+    underTest = new GroupHandler();
+    startDispatcher(4, Time.seconds(30));
+
+    groupFacet = mock(GroupFacet.class);
+    when(groupFacet.parallelDispatch()).thenReturn(true);
+    group = mock(Repository.class);
+    when(group.facet(GroupFacet.class)).thenReturn(groupFacet);
+    context = newContext();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    dispatcher.stop();
+  }
+
+  @Test
+  public void higherPriorityMemberWinsTieEvenWhenSlower() throws Exception {
+    Response first = HttpResponses.ok("first");
+    Response second = HttpResponses.ok("second");
+    Repository member1 = member("member1", new HostedType(), () -> {
+      Thread.sleep(200);
+      return first;
+    });
+    Repository member2 = member("member2", new HostedType(), () -> second);
+    when(groupFacet.members()).thenReturn(Arrays.asList(member1, member2));
+
+    assertThat(underTest.handle(context), is(sameInstance(first)));
+  }
+
+  @Test
+  public void missesFallThroughInMemberOrder() throws Exception {
+    Response second = HttpResponses.ok("second");
+    Response third = HttpResponses.ok("third");
+    Repository member1 = member("member1", new HostedType(), HttpResponses::notFound);
+    Repository member2 = member("member2", new HostedType(), () -> {
+      Thread.sleep(100);
+      return second;
+    });
+    Repository member3 = member("member3", new HostedType(), () -> third);
+    when(groupFacet.members()).thenReturn(Arrays.asList(member1, member2, member3));
+
+    assertThat(underTest.handle(context), is(sameInstance(second)));
+  }
+
+  @Test
+  public void allMissesReturnNotFound() throws Exception {
+    Repository member1 = member("member1", new HostedType(), HttpResponses::notFound);
+    Repository member2 = member("member2", new ProxyType(), HttpResponses::notFound);
+    when(groupFacet.members()).thenReturn(Arrays.asList(member1, member2));
+
+    assertThat(underTest.handle(context).getStatus().getCode(), is(404));
+  }
+
+  @Test
+  public void higherPriorityProxyIsDispatchedOnceStartedMembersFinish() throws Exception {
+    when(groupFacet.hedgingDelayMillis()).thenReturn(10_000L);
+    Response hosted = HttpResponses.ok("hosted");
+    Repository proxy = member("proxy", new ProxyType(), () -> HttpResponses.ok("proxy"));
+    Repository member = member("hosted", new HostedType(), () -> {
+      Thread.sleep(50);
+      return hosted;
+    });
+    when(groupFacet.members()).thenReturn(Arrays.asList(proxy, member));
+
+    // the proxy has priority, so it is dispatched as soon as the hosted member has answered
+    long start = System.nanoTime();
+    assertThat(underTest.handle(context).getStatus().getCode(), is(200));
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(5_000L)));
+    verify(proxy.facet(ViewFacet.class)).dispatch(any(Request.class));
+  }
+
+  @Test
+  public void lowerPriorityProxyIsNotDispatchedOnceWinnerIsKnown() throws Exception {
+    when(groupFacet.hedgingDelayMillis()).thenReturn(10_000L);
+    Response hosted = HttpResponses.ok("hosted");
+    Repository member = member("hosted", new HostedType(), () -> hosted);
+    Repository proxy = member("proxy", new ProxyType(), () -> HttpResponses.ok("proxy"));
+    when(groupFacet.members()).thenReturn(Arrays.asList(member, proxy));
+
+    long start = System.nanoTime();
+    assertThat(underTest.handle(context), is(sameInstance(hosted)));
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(5_000L)));
+    verify(proxy.facet(ViewFacet.class), never()).dispatch(any(Request.class));
+  }
+
+  @Test
+  public void proxyIsDispatchedEarlyWhenOtherMembersMiss() throws Exception {
+    when(groupFacet.hedgingDelayMillis()).thenReturn(10_000L);
+    Response remote = HttpResponses.ok("remote");
+    Repository member = member("hosted", new HostedType(), HttpResponses::notFound);
+    Repository proxy = member("proxy", new ProxyType(), () -> remote);
+    when(groupFacet.members()).thenReturn(Arrays.asList(member, proxy));
+
+    long start = System.nanoTime();
+    assertThat(underTest.handle(context), is(sameInstance(remote)));
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(5_000L)));
+  }
+
+  @Test
+  public void knownHostedMissesAreSkippedOnRepeatRequests() throws Exception {
+    when(groupFacet.parallelDispatch()).thenReturn(false);
+    when(groupFacet.routingCache()).thenReturn(new GroupRoutingCache(100));
+    Response found = HttpResponses.ok("found");
+    Repository member1 = member("member1", new HostedType(), HttpResponses::notFound);
+    Repository member2 = member("member2", new HostedType(), () -> found);
+    when(groupFacet.members()).thenReturn(Arrays.asList(member1, member2));
+
+    assertThat(underTest.handle(context), is(sameInstance(found)));
+    assertThat(underTest.handle(newContext()), is(sameInstance(found)));
+    verify(member1.facet(ViewFacet.class), times(1)).dispatch(any(Request.class));
+    verify(member2.facet(ViewFacet.class), times(2)).dispatch(any(Request.class));
+  }
+
+  @Test
+  public void nestedGroupMembersAreDispatchedInlineOnPoolThreads() throws Exception {
+    startDispatcher(1, Time.seconds(30));
+    Response found = HttpResponses.ok("found");
+    Repository nestedMember = member("nestedMember", new HostedType(), () -> found);
+    GroupFacet nestedFacet = mock(GroupFacet.class);
+    when(nestedFacet.parallelDispatch()).thenReturn(true);
+    when(nestedFacet.members()).thenReturn(Arrays.asList(nestedMember));
+    Repository nested = mock(Repository.class);
+    when(nested.facet(GroupFacet.class)).thenReturn(nestedFacet);
+    Repository nestedGroup = member("nested", new HostedType(),
+        () -> underTest.handle(new Context(nested, context.getRequest())));
+    when(groupFacet.members()).thenReturn(Arrays.asList(nestedGroup));
+
+    // the only pool thread runs the nested group, which must not wait on its members being queued behind it
+    long start = System.nanoTime();
+    assertThat(underTest.handle(context), is(sameInstance(found)));
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(5_000L)));
+  }
+
+  @Test
+  public void membersNotRespondingWithinTimeoutAreGivenUpOn() throws Exception {
+    startDispatcher(4, Time.millis(200));
+    Repository member1 = member("member1", new HostedType(), () -> {
+      Thread.sleep(10_000);
+      return HttpResponses.ok("slow");
+    });
+    Repository member2 = member("member2", new HostedType(), () -> HttpResponses.ok("fast"));
+    when(groupFacet.members()).thenReturn(Arrays.asList(member1, member2));
+
+    long start = System.nanoTime();
+    assertThat(underTest.handle(context).getStatus().getCode(), is(200));
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(5_000L)));
+  }
+
+  private void startDispatcher(final int threads, final Time timeout) throws Exception {
+    if (dispatcher != null) {
+      dispatcher.stop();
+    }
+    dispatcher = new GroupMemberDispatcher(threads, 16, timeout);
+    dispatcher.start();
+    underTest.installDependencies(dispatcher);
+  }
+
+  private Context newContext() {
+    return new Context(group, new Request.Builder().action(GET).path("/some/path").build());
+  }
+
+  private static Repository member(final String name, final Type type, final Callable<Response> answer)
+      throws Exception
+  {
+    Repository repository = mock(Repository.class);
+    when(repository.getName()).thenReturn(name);
+    when(repository.getType()).thenReturn(type);
+    ViewFacet viewFacet = mock(ViewFacet.class);
+    when(viewFacet.dispatch(any(Request.class))).thenAnswer(invocation -> answer.call());
+    when(repository.facet(ViewFacet.class)).thenReturn(viewFacet);
+    return repository;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.group;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.Type;
+import org.sonatype.nexus.repository.group.GroupRoutingCache.Route;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.types.HostedType;
+import org.sonatype.nexus.repository.types.ProxyType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link GroupRoutingCache}.
+ */
+public class GroupRoutingCacheTest
+    extends TestSupport
+{
+  private GroupRoutingCache underTest;
+
+  private Repository hosted;
+
+  private Repository proxy;
+
+  @Before
+  public void setUp() {
+    underTest = new GroupRoutingCache(100);
+    hosted = repository("hosted", new HostedType());
+    proxy = repository("proxy", new ProxyType());
+  }
+
+  @Test
+  public void recordsHostedMissesAndServingMember() {
+    Route route = underTest.route("/foo/bar.jar");
+    route.record(hosted, HttpResponses.notFound(), route.stamp());
+    route.record(proxy, HttpResponses.ok(), route.stamp());
+
+    assertThat(route.isKnownMiss(hosted), is(true));
+    assertThat(route.isKnownMiss(proxy), is(false));
+    assertThat(route.getServedBy(), is("proxy"));
+    assertThat(underTest.route("/foo/bar.jar"), is(sameInstance(route)));
+  }
+
+  @Test
+  public void proxyMissesAndOtherFailuresAreNotRemembered() {
+    Route route = underTest.route("/foo/bar.jar");
+    route.record(proxy, HttpResponses.notFound(), route.stamp());
+    route.record(hosted, HttpResponses.serviceUnavailable(), route.stamp());
+
+    assertThat(route.isKnownMiss(proxy), is(false));
+    assertThat(route.isKnownMiss(hosted), is(false));
+  }
+
+  @Test
+  public void invalidationByAssetNameDropsRoute() {
+    Route route = underTest.route("/foo/bar.jar");
+    route.record(hosted, HttpResponses.notFound(), route.stamp());
+
+    underTest.invalidate("foo/bar.jar");
+
+    Route fresh = underTest.route("/foo/bar.jar");
+    assertThat(fresh, is(not(sameInstance(route))));
+    assertThat(fresh.isKnownMiss(hosted), is(false));
+    assertThat(fresh.getServedBy(), is(nullValue()));
+  }
+
+  @Test
+  public void servingMemberIsForgottenWhenItMisses() {
+    Route route = underTest.route("/foo/bar.jar");
+    route.record(hosted, HttpResponses.ok(), route.stamp());
+    route.record(hosted, HttpResponses.notFound(), route.stamp());
+
+    assertThat(route.getServedBy(), is(nullValue()));
+  }
+
+  @Test
+  public void missIsDroppedWhenInvalidatedWhileAsking() {
+    Route route = underTest.route("/foo/bar.jar");
+    long stamp = route.stamp();
+
+    // content deployed to the member while it was being asked
+    underTest.invalidate("foo/bar.jar");
+    route.record(hosted, HttpResponses.notFound(), stamp);
+    Route fresh = underTest.route("/foo/bar.jar");
+    fresh.record(hosted, HttpResponses.notFound(), stamp);
+
+    assertThat(route.isKnownMiss(hosted), is(false));
+    assertThat(fresh.isKnownMiss(hosted), is(false));
+  }
+
+  @Test
+  public void missesExpire() throws Exception {
+    underTest = new GroupRoutingCache(100, 1);
+    Route route = underTest.route("/foo/bar.jar");
+    route.record(hosted, HttpResponses.notFound(), route.stamp());
+
+    Thread.sleep(10);
+
+    assertThat(route.isKnownMiss(hosted), is(false));
+  }
+
+  private static Repository repository(final String name, final Type type) {
+    Repository repository = mock(Repository.class);
+    when(repository.getName()).thenReturn(name);
+    when(repository.getType()).thenReturn(type);
+    return repository;
+  }
+}
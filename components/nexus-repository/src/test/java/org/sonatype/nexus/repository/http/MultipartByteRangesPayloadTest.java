@@ -0,0 +1,133 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.view.ChannelPayload;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.payloads.BytesPayload;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link MultipartByteRangesPayload}.
+ */
+public class MultipartByteRangesPayloadTest
+    extends TestSupport
+{
+  private final BytesPayload bytesPayload = new BytesPayload("0123456789".getBytes(Charsets.US_ASCII), "text/plain");
+
+  @Test
+  public void twoRanges() throws IOException {
+    MultipartByteRangesPayload payload = new MultipartByteRangesPayload(bytesPayload,
+        ImmutableList.of(Range.closed(0L, 1L), Range.closed(7L, 9L)));
+
+    assertThat(payload.getContentType(), startsWith("multipart/byteranges; boundary="));
+    String boundary = payload.getContentType().substring("multipart/byteranges; boundary=".length());
+
+    byte[] body = ByteStreams.toByteArray(payload.openInputStream());
+    assertThat(new String(body, Charsets.US_ASCII), is(
+        "\r\n--" + boundary + "\r\n" +
+            "Content-Type: text/plain\r\n" +
+            "Content-Range: bytes 0-1/10\r\n" +
+            "\r\n" +
+            "01" +
+            "\r\n--" + boundary + "\r\n" +
+            "Content-Type: text/plain\r\n" +
+            "Content-Range: bytes 7-9/10\r\n" +
+            "\r\n" +
+            "789" +
+            "\r\n--" + boundary + "--\r\n"));
+    assertThat(payload.getSize(), is((long) body.length));
+  }
+
+  @Test
+  public void singleUsePayloadIsOpenedOnce() throws IOException {
+    Payload singleUse = new Payload()
+    {
+      private final AtomicBoolean opened = new AtomicBoolean();
+
+      @Override
+      public InputStream openInputStream() throws IOException {
+        if (opened.getAndSet(true)) {
+          throw new IOException("Already opened");
+        }
+        return bytesPayload.openInputStream();
+      }
+
+      @Override
+      public long getSize() {
+        return bytesPayload.getSize();
+      }
+
+      @Nullable
+      @Override
+      public String getContentType() {
+        return bytesPayload.getContentType();
+      }
+    };
+    MultipartByteRangesPayload payload = new MultipartByteRangesPayload(singleUse,
+        ImmutableList.of(Range.closed(1L, 2L), Range.closed(4L, 4L), Range.closed(8L, 9L)));
+
+    String body = new String(ByteStreams.toByteArray(payload.openInputStream()), Charsets.US_ASCII);
+    assertThat(body, containsString("\r\n\r\n12\r\n"));
+    assertThat(body, containsString("\r\n\r\n4\r\n"));
+    assertThat(body, containsString("\r\n\r\n89\r\n"));
+    assertThat(payload.getSize(), is((long) body.length()));
+  }
+
+  @Test
+  public void channelIsPositionedForEachPart() throws IOException {
+    Path file = util.createTempFile().toPath();
+    Files.write(file, "0123456789".getBytes(Charsets.US_ASCII));
+    ChannelPayload channelPayload = mock(ChannelPayload.class);
+    when(channelPayload.openChannel()).thenReturn(FileChannel.open(file, StandardOpenOption.READ));
+    when(channelPayload.getSize()).thenReturn(10L);
+    MultipartByteRangesPayload payload = new MultipartByteRangesPayload(channelPayload,
+        ImmutableList.of(Range.closed(1L, 2L), Range.closed(8L, 9L)));
+
+    String body = new String(ByteStreams.toByteArray(payload.openInputStream()), Charsets.US_ASCII);
+    assertThat(body, containsString("Content-Range: bytes 1-2/10\r\n\r\n12\r\n"));
+    assertThat(body, containsString("Content-Range: bytes 8-9/10\r\n\r\n89\r\n"));
+    assertThat(payload.getSize(), is((long) body.length()));
+    verify(channelPayload, never()).openInputStream();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void overlappingRangesAreRejected() {
+    new MultipartByteRangesPayload(bytesPayload, ImmutableList.of(Range.closed(0L, 5L), Range.closed(3L, 9L)));
+  }
+}
@@ -13,8 +13,13 @@
 package org.sonatype.nexus.repository.http;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.view.ChannelPayload;
 import org.sonatype.nexus.repository.view.payloads.BytesPayload;
 
 import com.google.common.collect.Range;
@@ -25,6 +30,10 @@ import org.junit.Test;
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests {@link PartialPayload}.
@@ -57,6 +66,20 @@ public class PartialPayloadTest
     assertThat(output, is(input));
   }
 
+  @Test
+  public void channelIsPositioned() throws IOException {
+    Path file = util.createTempFile().toPath();
+    Files.write(file, input);
+    ChannelPayload channelPayload = mock(ChannelPayload.class);
+    when(channelPayload.openChannel()).thenReturn(FileChannel.open(file, StandardOpenOption.READ));
+
+    final PartialPayload partial = new PartialPayload(channelPayload, Range.closed(7L, 8L));
+    final byte[] output = ByteStreams.toByteArray(partial.openInputStream());
+
+    assertThat(output, is(Bytes.toArray(asList(7, 8))));
+    verify(channelPayload, never()).openInputStream();
+  }
+
   private byte[] partial(final BytesPayload bytes, final Range<Long> closed) throws IOException {
     final PartialPayload partial = new PartialPayload(bytes, closed);
     return ByteStreams.toByteArray(partial.openInputStream());
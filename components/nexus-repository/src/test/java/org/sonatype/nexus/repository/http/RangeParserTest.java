@@ -86,4 +86,48 @@ public class RangeParserTest
     final List<Range<Long>> ranges = parser.parseRangeSpec("bytes=5-100", 10L);
     assertThat(ranges.get(0), is(Range.closed(5L, 9L)));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void multipleRanges() {
+    final List<Range<Long>> ranges = parser.parseRangeSpec("bytes=0-1, 5-6,-2", 10L);
+    assertThat(ranges.size(), is(3));
+    assertThat(ranges.get(0), is(Range.closed(0L, 1L)));
+    assertThat(ranges.get(1), is(Range.closed(5L, 6L)));
+    assertThat(ranges.get(2), is(Range.closed(8L, 9L)));
+  }
+
+  @Test
+  public void unsatisfiableRangesAreDropped() {
+    final List<Range<Long>> ranges = parser.parseRangeSpec("bytes=0-1,20-30", 10L);
+    assertThat(ranges.size(), is(1));
+    assertThat(ranges.get(0), is(Range.closed(0L, 1L)));
+  }
+
+  @Test
+  public void allRangesUnsatisfiable() {
+    final List<Range<Long>> ranges = parser.parseRangeSpec("bytes=10-,20-30", 5L);
+    assertThat(ranges, is(nullValue()));
+  }
+
+  @Test
+  public void overlappingRangesAreMerged() {
+    final List<Range<Long>> ranges = parser.parseRangeSpec("bytes=0-,0-,0-,-5", 10L);
+    assertThat(ranges.size(), is(1));
+    assertThat(ranges.get(0), is(Range.closed(0L, 9L)));
+  }
+
+  @Test
+  public void rangesAreSortedAndAdjacentOnesMerged() {
+    final List<Range<Long>> ranges = parser.parseRangeSpec("bytes=8-9,2-3,0-1,5-6", 10L);
+    assertThat(ranges.size(), is(3));
+    assertThat(ranges.get(0), is(Range.closed(0L, 3L)));
+    assertThat(ranges.get(1), is(Range.closed(5L, 6L)));
+    assertThat(ranges.get(2), is(Range.closed(8L, 9L)));
+  }
+
+  @Test
+  public void malformedRangeIgnoresHeader() {
+    final List<Range<Long>> ranges = parser.parseRangeSpec("bytes=0-1,foo", 10L);
+    assertThat(ranges.isEmpty(), is(true));
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpclient;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.httpclient.CircuitBreaker.Listener;
+import org.sonatype.nexus.repository.httpclient.CircuitBreaker.State;
+
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link CircuitBreaker}.
+ */
+public class CircuitBreakerTest
+    extends TestSupport
+{
+  @Mock
+  private Listener listener;
+
+  private CircuitBreakerManager manager(final Time openTime) {
+    return new CircuitBreakerManager(4, 2, 50, 50, Time.seconds(1), 2, openTime);
+  }
+
+  @Test
+  public void opensOnFailureRate() {
+    CircuitBreaker underTest = manager(Time.hours(1)).create("test", listener);
+
+    assertThat(underTest.tryAcquire(), is(true));
+    underTest.onSuccess(10);
+    assertThat(underTest.tryAcquire(), is(true));
+    underTest.onFailure(10, "Connection refused");
+
+    assertThat(underTest.getState(), is(State.OPEN));
+    assertThat(underTest.tryAcquire(), is(false));
+    assertThat(underTest.getRejectedCalls(), is(1L));
+    verify(listener).onStateChange(underTest, State.CLOSED, State.OPEN, "Connection refused");
+  }
+
+  @Test
+  public void staysClosedBelowMinimumCalls() {
+    CircuitBreaker underTest = manager(Time.hours(1)).create("test", listener);
+
+    underTest.onFailure(10, "Connection refused");
+
+    assertThat(underTest.getState(), is(State.CLOSED));
+    assertThat(underTest.tryAcquire(), is(true));
+  }
+
+  @Test
+  public void failureRateIsOverSlidingWindow() {
+    CircuitBreaker underTest = manager(Time.hours(1)).create("test", listener);
+
+    underTest.onSuccess(10);
+    underTest.onSuccess(10);
+    underTest.onSuccess(10);
+    underTest.onFailure(10, "Connection refused");
+    assertThat(underTest.getState(), is(State.CLOSED));
+
+    // 2 of all 5 calls failed, but 2 of the last 4
+    underTest.onFailure(10, "Connection refused");
+    assertThat(underTest.getState(), is(State.OPEN));
+  }
+
+  @Test
+  public void opensOnSlowCallRate() {
+    CircuitBreaker underTest = manager(Time.hours(1)).create("test", listener);
+
+    underTest.onSuccess(10);
+    underTest.onSuccess(2000);
+
+    assertThat(underTest.getState(), is(State.OPEN));
+    verify(listener).onStateChange(eq(underTest), eq(State.CLOSED), eq(State.OPEN), anyString());
+  }
+
+  @Test
+  public void defaultsOpenOnFirstFailureAndIgnoreSlowCalls() {
+    CircuitBreaker underTest = new CircuitBreakerManager(1, 1, 50, 0, Time.seconds(60), 3, Time.hours(1))
+        .create("test", listener);
+
+    for (int i = 0; i < 20; i++) {
+      underTest.onSuccess(10);
+    }
+    underTest.onSuccess(120_000);
+    assertThat(underTest.getState(), is(State.CLOSED));
+
+    underTest.onFailure(10, "Connection refused");
+    assertThat(underTest.getState(), is(State.OPEN));
+  }
+
+  @Test
+  public void halfOpenPermitsBoundedTrialCallsAndCloses() {
+    CircuitBreaker underTest = manager(Time.millis(0)).create("test", listener);
+    underTest.onFailure(10, "Connection refused");
+    underTest.onFailure(10, "Connection refused");
+
+    assertThat(underTest.tryAcquire(), is(true));
+    assertThat(underTest.getState(), is(State.HALF_OPEN));
+    assertThat(underTest.tryAcquire(), is(true));
+    assertThat(underTest.tryAcquire(), is(false));
+
+    underTest.onSuccess(10);
+    assertThat(underTest.getState(), is(State.HALF_OPEN));
+    underTest.onSuccess(10);
+    assertThat(underTest.getState(), is(State.CLOSED));
+    verify(listener).onStateChange(underTest, State.HALF_OPEN, State.CLOSED, null);
+  }
+
+  @Test
+  public void halfOpenFailureReopens() {
+    CircuitBreaker underTest = manager(Time.millis(0)).create("test", listener);
+    underTest.onFailure(10, "Connection refused");
+    underTest.onFailure(10, "Connection refused");
+
+    assertThat(underTest.tryAcquire(), is(true));
+    underTest.onFailure(10, "Connection reset");
+
+    assertThat(underTest.getState(), is(State.OPEN));
+    verify(listener).onStateChange(underTest, State.HALF_OPEN, State.OPEN, "Connection reset");
+  }
+
+  @Test
+  public void ignoredCallReturnsHalfOpenPermit() {
+    CircuitBreaker underTest = manager(Time.millis(0)).create("test", listener);
+    underTest.onFailure(10, "Connection refused");
+    underTest.onFailure(10, "Connection refused");
+
+    assertThat(underTest.tryAcquire(), is(true));
+    assertThat(underTest.tryAcquire(), is(true));
+    underTest.onIgnored();
+
+    assertThat(underTest.tryAcquire(), is(true));
+    assertThat(underTest.tryAcquire(), is(false));
+  }
+
+  @Test
+  public void schedulerHalfOpens() throws Exception {
+    CircuitBreakerManager manager = manager(Time.millis(10));
+    manager.start();
+    try {
+      CircuitBreaker underTest = manager.create("test", listener);
+      underTest.onFailure(10, "Connection refused");
+      underTest.onFailure(10, "Connection refused");
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (underTest.getState() != State.HALF_OPEN && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertThat(underTest.getState(), is(State.HALF_OPEN));
+      verify(listener).onStateChange(underTest, State.OPEN, State.HALF_OPEN, null);
+      assertThat(manager.getHalfOpenCircuitBreakers(), is(1));
+
+      underTest.close();
+      assertThat(manager.getCircuitBreakers(), is(0));
+    }
+    finally {
+      manager.stop();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.view.Content;
+import org.sonatype.nexus.repository.view.payloads.BytesPayload;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link InflightFetch}.
+ */
+public class InflightFetchTest
+    extends TestSupport
+{
+  private ExecutorService executor;
+
+  private InflightFetch underTest;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+    underTest = new InflightFetch();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void waitLastsWhileFetchProgresses() throws Exception {
+    Content remote = new Content(new BytesPayload(new byte[10], "application/octet-stream"));
+    Content stored = new Content(new BytesPayload(new byte[0], null));
+
+    Future<Content> waiter = executor.submit(() -> underTest.await(200));
+
+    // read slowly, taking well over the idle timeout in total
+    try (InputStream in = underTest.track(remote).openInputStream()) {
+      while (in.read() != -1) {
+        Thread.sleep(50);
+      }
+    }
+    underTest.complete(stored);
+
+    assertThat(waiter.get(5, TimeUnit.SECONDS), sameInstance(stored));
+  }
+
+  @Test
+  public void waitEndsWhenFetchStalls() throws Exception {
+    try {
+      underTest.await(100);
+      fail();
+    }
+    catch (TimeoutException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void failureIsPropagatedToWaiters() throws Exception {
+    IOException failure = new IOException("boom");
+    underTest.fail(failure);
+    try {
+      underTest.await(100);
+      fail();
+    }
+    catch (IOException e) {
+      assertThat(e, sameInstance(failure));
+    }
+  }
+
+  @Test
+  public void trackedContentKeepsAttributes() throws Exception {
+    Content remote = new Content(new BytesPayload(new byte[3], "text/plain"));
+    remote.getAttributes().set("key", "value");
+
+    Content tracked = underTest.track(remote);
+    assertThat(tracked.getAttributes().get("key", String.class), is("value"));
+    assertThat(tracked.getSize(), is(3L));
+    assertThat(tracked.getContentType(), is("text/plain"));
+  }
+}
@@ -0,0 +1,378 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.app.ApplicationDirectories;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.cache.CacheController;
+import org.sonatype.nexus.repository.cache.CacheInfo;
+import org.sonatype.nexus.repository.config.Configuration;
+import org.sonatype.nexus.repository.config.ConfigurationFacet;
+import org.sonatype.nexus.repository.storage.StorageFacet;
+import org.sonatype.nexus.repository.storage.StorageTx;
+import org.sonatype.nexus.repository.view.Content;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler.Outcome;
+import org.sonatype.nexus.repository.view.payloads.BytesPayload;
+
+import com.google.common.io.ByteStreams;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
+
+/**
+ * Tests for {@link ProxyFacetSupport}.
+ */
+public class ProxyFacetSupportTest
+    extends TestSupport
+{
+  private ExecutorService executor;
+
+  private TestProxyFacet underTest;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+    underTest = new TestProxyFacet();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void concurrentMissesShareSingleFetch() throws Exception {
+    Context context = newContext();
+
+    Future<Content> first = executor.submit(() -> underTest.get(context));
+    assertThat(underTest.fetchStarted.await(5, TimeUnit.SECONDS), is(true));
+    Future<Content> second = executor.submit(() -> underTest.get(context));
+    Future<Content> third = executor.submit(() -> underTest.get(context));
+
+    // both found nothing cached while the fetch was held, so must be waiting on it
+    long deadline = System.currentTimeMillis() + 5000;
+    while (underTest.lookups.get() < 3 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(underTest.lookups.get(), is(3));
+    Thread.sleep(100);
+    assertThat(second.isDone(), is(false));
+    assertThat(third.isDone(), is(false));
+
+    underTest.releaseFetch.countDown();
+
+    assertThat(first.get(5, TimeUnit.SECONDS), notNullValue());
+    assertThat(second.get(5, TimeUnit.SECONDS), sameInstance(underTest.cached));
+    assertThat(third.get(5, TimeUnit.SECONDS), sameInstance(underTest.cached));
+    assertThat(underTest.fetchCount.get(), is(1));
+  }
+
+  @Test
+  public void missBeforeRemoteRespondsAttachesToStreamThroughDownload() throws Exception {
+    StreamThroughExecutor streamThroughExecutor = startStreamThroughExecutor();
+    try {
+      configure(0, true);
+      Context context = newContext();
+
+      Future<Content> first = executor.submit(() -> underTest.get(context));
+      assertThat(underTest.fetchStarted.await(5, TimeUnit.SECONDS), is(true));
+      Future<Content> second = executor.submit(() -> underTest.get(context));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (underTest.lookups.get() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(second.isDone(), is(false));
+
+      underTest.releaseFetch.countDown();
+
+      // the waiter follows the download rather than waiting for the store and reading the cache
+      Content followed = second.get(5, TimeUnit.SECONDS);
+      assertThat(followed, not(sameInstance(underTest.cached)));
+      assertThat(read(followed), is(TestProxyFacet.DATA));
+      assertThat(read(first.get(5, TimeUnit.SECONDS)), is(TestProxyFacet.DATA));
+      assertThat(underTest.fetchCount.get(), is(1));
+    }
+    finally {
+      streamThroughExecutor.stop();
+    }
+  }
+
+  @Test
+  public void failedFetchIsNotRemembered() throws Exception {
+    Context context = newContext();
+    underTest.releaseFetch.countDown();
+    underTest.failure = new IOException("boom");
+
+    try {
+      underTest.get(context);
+      fail();
+    }
+    catch (IOException e) {
+      assertThat(e, sameInstance(underTest.failure));
+    }
+
+    underTest.failure = null;
+    assertThat(underTest.get(context), notNullValue());
+    assertThat(underTest.fetchCount.get(), is(2));
+  }
+
+  @Test
+  public void waitForInflightFetchIsBounded() throws Exception {
+    configure(0);
+    underTest.cacheController = new CacheController(60, null);
+    Content stale = staleContent(10);
+    underTest.cached = stale;
+    underTest.inflightTimeoutMillis = 100;
+
+    Future<Content> first = executor.submit(() -> underTest.get(newContext()));
+    assertThat(underTest.fetchStarted.await(5, TimeUnit.SECONDS), is(true));
+
+    // waiters serve stale content if they have any
+    assertThat(underTest.get(newContext()), sameInstance(stale));
+
+    // otherwise they fail
+    underTest.cached = null;
+    try {
+      underTest.get(newContext());
+      fail();
+    }
+    catch (IOException e) {
+      // expected
+    }
+
+    underTest.releaseFetch.countDown();
+    assertThat(first.get(5, TimeUnit.SECONDS), notNullValue());
+    assertThat(underTest.fetchCount.get(), is(1));
+  }
+
+  @Test
+  public void staleContentWithinWindowIsServedWhileRevalidatedInBackground() throws Exception {
+    ProxyRefreshExecutor refreshExecutor = startRefreshExecutor();
+    try {
+      configure(5);
+      underTest.cacheController = new CacheController(60, null);
+      Content stale = staleContent(2);
+      underTest.cached = stale;
+      Context context = newContext();
+
+      assertThat(underTest.get(context), sameInstance(stale));
+      assertThat(context.getAttributes().get(Outcome.class), is(Outcome.PROXY_HIT));
+      assertThat(underTest.fetchStarted.await(5, TimeUnit.SECONDS), is(true));
+
+      // the background fetch does not share the request's attributes
+      context.getAttributes().set("late", true);
+      context.getRequest().getAttributes().set("late", true);
+      assertThat(underTest.fetchContext, not(sameInstance(context)));
+      assertThat(underTest.fetchContext.getAttributes().get(Outcome.class), is(Outcome.PROXY_HIT));
+      assertThat(underTest.fetchContext.getAttributes().contains("late"), is(false));
+      assertThat(underTest.fetchContext.getRequest().getAttributes().contains("late"), is(false));
+
+      // revalidation already in flight, so serve stale again without another fetch
+      assertThat(underTest.get(context), sameInstance(stale));
+
+      underTest.releaseFetch.countDown();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (refreshExecutor.getCompletedRefreshes() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(refreshExecutor.getCompletedRefreshes(), is(1L));
+      assertThat(underTest.cached, not(sameInstance(stale)));
+      assertThat(underTest.fetchCount.get(), is(1));
+    }
+    finally {
+      refreshExecutor.stop();
+    }
+  }
+
+  @Test
+  public void staleContentOutsideWindowIsFetchedInline() throws Exception {
+    ProxyRefreshExecutor refreshExecutor = startRefreshExecutor();
+    try {
+      configure(5);
+      underTest.cacheController = new CacheController(60, null);
+      Content stale = staleContent(10);
+      underTest.cached = stale;
+      underTest.releaseFetch.countDown();
+
+      Context context = newContext();
+      Content content = underTest.get(context);
+      assertThat(content, not(sameInstance(stale)));
+      assertThat(context.getAttributes().get(Outcome.class), is(Outcome.PROXY_MISS));
+      assertThat(content, sameInstance(underTest.cached));
+      assertThat(refreshExecutor.getSubmittedRefreshes(), is(0L));
+    }
+    finally {
+      refreshExecutor.stop();
+    }
+  }
+
+  private ProxyRefreshExecutor startRefreshExecutor() throws Exception {
+    ProxyRefreshExecutor refreshExecutor = new ProxyRefreshExecutor(1, 1);
+    refreshExecutor.start();
+    underTest.installDependencies(refreshExecutor);
+    return refreshExecutor;
+  }
+
+  private StreamThroughExecutor startStreamThroughExecutor() throws Exception {
+    ApplicationDirectories applicationDirectories = mock(ApplicationDirectories.class);
+    when(applicationDirectories.getTemporaryDirectory())
+        .thenReturn(Files.createTempDirectory("stream-through-").toFile());
+    StreamThroughExecutor streamThroughExecutor = new StreamThroughExecutor(applicationDirectories, 1);
+    streamThroughExecutor.start();
+    underTest.installDependencies(streamThroughExecutor);
+    return streamThroughExecutor;
+  }
+
+  private void configure(final int staleWhileRevalidateMinutes) throws Exception {
+    configure(staleWhileRevalidateMinutes, false);
+  }
+
+  private void configure(final int staleWhileRevalidateMinutes, final boolean streamThrough) throws Exception {
+    ProxyFacetSupport.Config config = new ProxyFacetSupport.Config();
+    config.remoteUrl = URI.create("http://example.com/");
+    config.staleWhileRevalidate = staleWhileRevalidateMinutes;
+    config.streamThrough = streamThrough;
+    ConfigurationFacet configurationFacet = mock(ConfigurationFacet.class);
+    when(configurationFacet.readSection(any(Configuration.class), eq(ProxyFacetSupport.CONFIG_KEY),
+        eq(ProxyFacetSupport.Config.class))).thenReturn(config);
+    StorageFacet storageFacet = mock(StorageFacet.class);
+    when(storageFacet.txSupplier()).thenReturn(() -> mock(StorageTx.class));
+    Repository repository = mock(Repository.class);
+    when(repository.facet(ConfigurationFacet.class)).thenReturn(configurationFacet);
+    when(repository.facet(StorageFacet.class)).thenReturn(storageFacet);
+    underTest.attach(repository);
+    underTest.init();
+  }
+
+  private static Context newContext() {
+    return new Context(mock(Repository.class), new Request.Builder().action(GET).path("/some/path").build());
+  }
+
+  private static byte[] read(final Content content) throws IOException {
+    try (InputStream in = content.openInputStream()) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+
+  private static Content staleContent(final int verifiedMinutesAgo) {
+    Content content = new Content(mock(Payload.class));
+    content.getAttributes().set(CacheInfo.class, new CacheInfo(DateTime.now().minusMinutes(verifiedMinutesAgo), null));
+    return content;
+  }
+
+  private static class TestProxyFacet
+      extends ProxyFacetSupport
+  {
+    static final byte[] DATA = {1, 2, 3};
+
+    final CountDownLatch fetchStarted = new CountDownLatch(1);
+
+    final CountDownLatch releaseFetch = new CountDownLatch(1);
+
+    final AtomicInteger fetchCount = new AtomicInteger();
+
+    final AtomicInteger lookups = new AtomicInteger();
+
+    volatile CacheController cacheController = new CacheController(-1, null);
+
+    volatile IOException failure;
+
+    volatile Content cached;
+
+    volatile Context fetchContext;
+
+    volatile long inflightTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+
+    @Override
+    protected Content getCachedContent(final Context context) {
+      lookups.incrementAndGet();
+      return cached;
+    }
+
+    @Override
+    protected Content fetch(final Context context, final Content stale) throws IOException {
+      fetchCount.incrementAndGet();
+      fetchContext = context;
+      fetchStarted.countDown();
+      try {
+        releaseFetch.await();
+      }
+      catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return new Content(new BytesPayload(DATA, null));
+    }
+
+    @Override
+    protected Content store(final Context context, final Content content) throws IOException {
+      Content stored = new Content(new BytesPayload(read(content), null));
+      stored.getAttributes().set(CacheInfo.class, cacheController.current());
+      cached = stored;
+      return stored;
+    }
+
+    @Override
+    protected void indicateVerified(final Context context, final Content content, final CacheInfo cacheInfo) {
+      // no-op
+    }
+
+    @Override
+    long inflightTimeoutMillis() {
+      return inflightTimeoutMillis;
+    }
+
+    @Override
+    protected String getUrl(@Nonnull final Context context) {
+      return "some/path";
+    }
+
+    @Nonnull
+    @Override
+    protected CacheController getCacheController(@Nonnull final Context context) {
+      return cacheController;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.proxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.view.Content;
+import org.sonatype.nexus.repository.view.payloads.BytesPayload;
+import org.sonatype.nexus.repository.view.payloads.StreamPayload;
+
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link StreamThroughDownload}.
+ */
+public class StreamThroughDownloadTest
+    extends TestSupport
+{
+  private static final byte[] DATA = new byte[1024 * 1024];
+
+  static {
+    for (int i = 0; i < DATA.length; i++) {
+      DATA[i] = (byte) i;
+    }
+  }
+
+  private ExecutorService executor;
+
+  private Path spool;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newFixedThreadPool(2);
+    spool = Files.createTempFile("stream-through-", ".tmp");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    Files.deleteIfExists(spool);
+  }
+
+  @Test
+  public void clientsFollowTheDownloadAndSpoolIsDeleted() throws Exception {
+    StreamThroughDownload underTest = new StreamThroughDownload(upstream(new ByteArrayInputStream(DATA)), spool);
+
+    Content client = underTest.attach();
+    Future<byte[]> served = executor.submit(() -> read(client));
+
+    byte[] stored;
+    try (InputStream tee = underTest.teePayload().openInputStream()) {
+      stored = ByteStreams.toByteArray(tee);
+    }
+    underTest.finish(new Content(new BytesPayload(stored, null)));
+
+    assertThat(Arrays.equals(stored, DATA), is(true));
+    assertThat(Arrays.equals(served.get(5, TimeUnit.SECONDS), DATA), is(true));
+    assertThat(Files.exists(spool), is(false));
+
+    // attaching once the spool is gone reads the stored content
+    assertThat(Arrays.equals(read(underTest.attach()), DATA), is(true));
+  }
+
+  @Test
+  public void upstreamFailureIsPropagatedToClients() throws Exception {
+    InputStream broken = new InputStream()
+    {
+      private int count;
+
+      @Override
+      public int read() throws IOException {
+        if (count++ < 1000) {
+          return 42;
+        }
+        throw new IOException("connection reset");
+      }
+    };
+    StreamThroughDownload underTest = new StreamThroughDownload(upstream(broken), spool);
+    Content client = underTest.attach();
+    Future<byte[]> served = executor.submit(() -> read(client));
+
+    try (InputStream tee = underTest.teePayload().openInputStream()) {
+      ByteStreams.toByteArray(tee);
+      fail();
+    }
+    catch (IOException e) {
+      underTest.fail(e);
+    }
+
+    try {
+      served.get(5, TimeUnit.SECONDS);
+      fail();
+    }
+    catch (ExecutionException e) {
+      assertThat(e.getCause() instanceof IOException, is(true));
+    }
+    assertThat(Files.exists(spool), is(false));
+  }
+
+  private static Content upstream(final InputStream stream) {
+    return new Content(new StreamPayload(() -> stream, -1, "application/octet-stream"));
+  }
+
+  private static byte[] read(final Content content) throws IOException {
+    try (InputStream in = content.openInputStream()) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.search;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import org.elasticsearch.client.Client;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link BulkIndexer} queueing, which does not need a running cluster.
+ */
+public class BulkIndexerTest
+    extends TestSupport
+{
+  @Mock
+  private Provider<Client> client;
+
+  private BulkIndexer underTest;
+
+  @Before
+  public void setUp() {
+    underTest = new BulkIndexer(client, 10, 5, 1000, 1);
+  }
+
+  @Test
+  public void repeatedOperationsOnSameDocumentAreCoalesced() {
+    underTest.index("index1", "component", "a", "{\"v\":1}");
+    underTest.index("index1", "component", "a", "{\"v\":2}");
+    underTest.delete("index1", "component", "a");
+    underTest.index("index1", "component", "b", "{\"v\":1}");
+    underTest.index("index2", "component", "a", "{\"v\":1}");
+
+    assertThat(underTest.getQueueDepth(), is(3));
+    assertThat(underTest.getCoalescedActions(), is(2L));
+  }
+
+  @Test
+  public void discardDropsOperationsOnIndex() {
+    underTest.index("index1", "component", "a", "{}");
+    underTest.delete("index1", "component", "b");
+    underTest.index("index2", "component", "a", "{}");
+
+    underTest.discard("index1");
+
+    assertThat(underTest.getQueueDepth(), is(1));
+  }
+
+  @Test
+  public void flushWithNothingQueuedReturnsImmediately() throws Exception {
+    assertThat(underTest.flush("index1", 0, TimeUnit.SECONDS), is(true));
+  }
+
+  @Test
+  public void flushFailsWhileNotDraining() throws Exception {
+    underTest.index("index1", "component", "a", "{}");
+
+    assertThat(underTest.flush("index1", 1, TimeUnit.SECONDS), is(false));
+  }
+
+  @Test
+  public void flushDoesNotWaitForDiscardedOperations() throws Exception {
+    underTest.index("index1", "component", "a", "{}");
+    underTest.index("index1", "component", "a", "{\"v\":2}");
+
+    underTest.discard("index1");
+
+    assertThat(underTest.flush("index1", 0, TimeUnit.SECONDS), is(true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queueMustHoldBatch() {
+    new BulkIndexer(client, 10, 20, 1000, 1);
+  }
+}
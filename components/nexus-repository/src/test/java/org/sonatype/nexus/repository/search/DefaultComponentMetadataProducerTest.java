@@ -0,0 +1,129 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.search;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
+import org.sonatype.nexus.repository.storage.Asset;
+import org.sonatype.nexus.repository.storage.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.when;
+
+public class DefaultComponentMetadataProducerTest
+    extends TestSupport
+{
+  @Mock
+  private Component component;
+
+  @Mock
+  private Asset asset;
+
+  private Map<String, AssetAttributesFilter> filters;
+
+  private DefaultComponentMetadataProducer underTest;
+
+  @Before
+  public void setUp() {
+    when(component.format()).thenReturn("test");
+    when(component.group()).thenReturn("group");
+    when(component.name()).thenReturn("name");
+    when(component.version()).thenReturn("1.0");
+    when(component.attributes()).thenReturn(attributes(ImmutableMap.<String, Object>of("test", "value")));
+    when(asset.name()).thenReturn("group/name/1.0/name-1.0.jar");
+    when(asset.contentType()).thenReturn("application/java-archive");
+    when(asset.attributes()).thenReturn(attributes(ImmutableMap.<String, Object>of(
+        "checksum", ImmutableMap.of("sha1", "abc"),
+        "test", ImmutableMap.of("packaging", "jar"))));
+
+    filters = Maps.newHashMap();
+    underTest = new DefaultComponentMetadataProducer(filters);
+  }
+
+  @Test
+  public void metadataOfComponentAndAssets() throws Exception {
+    Map<String, Object> metadata = parse(underTest.getMetadata(component, asList(asset),
+        ImmutableMap.<String, Object>of("repository_name", "repo")));
+
+    assertThat(metadata.get("format"), equalTo((Object) "test"));
+    assertThat(metadata.get("group"), equalTo((Object) "group"));
+    assertThat(metadata.get("name"), equalTo((Object) "name"));
+    assertThat(metadata.get("version"), equalTo((Object) "1.0"));
+    assertThat(metadata.get("repository_name"), equalTo((Object) "repo"));
+    assertThat(metadata.get("attributes"), equalTo((Object) ImmutableMap.of("test", "value")));
+
+    Map<String, Object> assetMetadata = onlyAsset(metadata);
+    assertThat(assetMetadata.get("name"), equalTo((Object) "group/name/1.0/name-1.0.jar"));
+    assertThat(assetMetadata.get("content_type"), equalTo((Object) "application/java-archive"));
+    assertThat(assetMetadata.get("attributes"), equalTo((Object) ImmutableMap.of(
+        "checksum", ImmutableMap.of("sha1", "abc"),
+        "test", ImmutableMap.of("packaging", "jar"))));
+  }
+
+  @Test
+  public void additionalMetadataTakesPrecedence() throws Exception {
+    Map<String, Object> metadata = parse(underTest.getMetadata(component, Collections.<Asset>emptyList(),
+        ImmutableMap.<String, Object>of("version", "2.0")));
+
+    assertThat(metadata.get("version"), equalTo((Object) "2.0"));
+    assertThat(metadata, not(hasKey("assets")));
+  }
+
+  @Test
+  public void assetAttributesAreFilteredPerFormat() throws Exception {
+    filters.put("test", new AssetAttributesFilter()
+    {
+      @Override
+      public boolean isIndexed(final String attribute) {
+        return "checksum".equals(attribute);
+      }
+    });
+
+    Map<String, Object> metadata = parse(underTest.getMetadata(component, asList(asset),
+        Collections.<String, Object>emptyMap()));
+
+    assertThat(onlyAsset(metadata).get("attributes"), equalTo((Object) ImmutableMap.of(
+        "checksum", ImmutableMap.of("sha1", "abc"))));
+  }
+
+  private static NestedAttributesMap attributes(final Map<String, Object> backing) {
+    return new NestedAttributesMap("attributes", Maps.newHashMap(backing));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> parse(final String json) throws Exception {
+    return new ObjectMapper().readValue(json, Map.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> onlyAsset(final Map<String, Object> metadata) {
+    List<Map<String, Object>> assets = (List<Map<String, Object>>) metadata.get("assets");
+    assertThat(assets.size(), equalTo(1));
+    return assets.get(0);
+  }
+}
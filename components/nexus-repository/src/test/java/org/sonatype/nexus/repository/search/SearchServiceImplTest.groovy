@@ -12,32 +12,58 @@
  */
 package org.sonatype.nexus.repository.search
 
+import java.util.function.Consumer
+
 import javax.inject.Provider
 
+import org.sonatype.goodies.common.Time
 import org.sonatype.goodies.testsupport.TestSupport
 import org.sonatype.nexus.common.event.EventBus
 import org.sonatype.nexus.repository.Format
 import org.sonatype.nexus.repository.Repository
+import org.sonatype.nexus.repository.config.Configuration
 import org.sonatype.nexus.repository.manager.RepositoryImpl
 import org.sonatype.nexus.repository.manager.RepositoryManager
+import org.sonatype.nexus.repository.security.RepositoryViewPermission
 import org.sonatype.nexus.repository.types.HostedType
+import org.sonatype.nexus.security.BreadActions
 import org.sonatype.nexus.security.SecurityHelper
+import org.sonatype.nexus.security.authz.AuthorizationConfigurationChanged
 
+import com.codahale.metrics.MetricRegistry
 import com.google.common.base.Charsets
+import org.apache.shiro.subject.SimplePrincipalCollection
+import org.apache.shiro.subject.Subject
+import org.elasticsearch.ElasticsearchParseException
+import org.elasticsearch.action.ActionListener
 import org.elasticsearch.action.ListenableActionFuture
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequestBuilder
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse
+import org.elasticsearch.action.count.CountRequestBuilder
+import org.elasticsearch.action.count.CountResponse
 import org.elasticsearch.client.AdminClient
 import org.elasticsearch.client.Client
 import org.elasticsearch.client.IndicesAdminClient
+import org.elasticsearch.index.query.QueryBuilder
+import org.elasticsearch.index.query.QueryBuilders
 import org.junit.Before
 import org.junit.Test
 import org.mockito.ArgumentCaptor
 import org.mockito.InjectMocks
 import org.mockito.Mock
+import org.mockito.stubbing.Answer
 
 import static org.hamcrest.MatcherAssert.assertThat
 import static org.hamcrest.Matchers.contains
+import static org.hamcrest.Matchers.equalTo
+import static org.mockito.Matchers.any
+import static org.mockito.Mockito.doAnswer
+import static org.mockito.Mockito.mock
+import static org.mockito.Mockito.never
+import static org.mockito.Mockito.times
+import static org.mockito.Mockito.verify
 import static org.powermock.api.mockito.PowerMockito.when
 import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1
 
@@ -75,15 +101,21 @@ class SearchServiceImplTest
   @Mock
   List<IndexSettingsContributor> indexSettingsContributors
 
+  @Mock
+  BulkIndexer bulkIndexer
+
   @Mock
   EventBus eventBus
+
+  @Mock
+  Subject subject
   
   SearchServiceImpl searchService
 
   @Before
   public void setup() {
     searchService = new SearchServiceImpl(clientProvider, repositoryManager, securityHelper, indexSettingsContributors,
-        false)
+        bulkIndexer, false, new MetricRegistry(), 10, Time.minutes(10), 100, Time.minutes(1))
     when(clientProvider.get()).thenReturn(client);
     when(client.admin()).thenReturn(adminClient)
     when(adminClient.indices()).thenReturn(indicesAdminClient)
@@ -115,6 +147,147 @@ class SearchServiceImplTest
     assertThat(varArgs.getAllValues(), contains(SHA1.function().hashUnencodedChars('UPPERCASE').toString()))
   }
 
+  @Test
+  public void testUpdatesAreAppliedToIndexBeingRebuilt() throws Exception {
+    captureRepoNameArg()
+
+    Repository repository = new RepositoryImpl(eventBus, new HostedType(), new TestFormat('test'))
+    repository.name = 'test'
+    searchService.createIndex(repository)
+    String indexName = SHA1.function().hashUnencodedChars('test').toString()
+    assert searchService.resumeRebuild(repository, indexName + '-1')
+
+    searchService.put(repository, 'a', '{}')
+    searchService.delete(repository, 'b')
+
+    verify(bulkIndexer).index(indexName, 'component', 'a', '{}')
+    verify(bulkIndexer).index(indexName + '-1', 'component', 'a', '{}')
+    verify(bulkIndexer).delete(indexName, 'component', 'b')
+    verify(bulkIndexer).delete(indexName + '-1', 'component', 'b')
+  }
+
+  @Test
+  public void testRebuiltDocumentsDoNotOverwriteUpdatesMadeDuringRebuild() throws Exception {
+    captureRepoNameArg()
+
+    Repository repository = new RepositoryImpl(eventBus, new HostedType(), new TestFormat('test'))
+    repository.name = 'test'
+    searchService.createIndex(repository)
+    String indexName = SHA1.function().hashUnencodedChars('test').toString()
+    assert searchService.resumeRebuild(repository, indexName + '-1')
+
+    searchService.put(repository, 'a', '{"v":2}')
+    searchService.delete(repository, 'b')
+    searchService.putRebuilt(repository, 'a', '{"v":1}')
+    searchService.putRebuilt(repository, 'b', '{"v":1}')
+    searchService.putRebuilt(repository, 'c', '{"v":1}')
+
+    verify(bulkIndexer, never()).index(indexName + '-1', 'component', 'a', '{"v":1}')
+    verify(bulkIndexer, never()).index(indexName + '-1', 'component', 'b', '{"v":1}')
+    verify(bulkIndexer).index(indexName + '-1', 'component', 'c', '{"v":1}')
+  }
+
+  @Test
+  public void testSearchableIndexesAreCachedPerSubjectUntilInvalidated() throws Exception {
+    searchableRepository()
+    String[] expected = [SHA1.function().hashUnencodedChars('test').toString()]
+
+    assertThat(searchService.getSearchableIndexes(), equalTo(expected))
+    assertThat(searchService.getSearchableIndexes(), equalTo(expected))
+    verify(repositoryManager, times(1)).browse()
+
+    searchService.on(new AuthorizationConfigurationChanged())
+
+    assertThat(searchService.getSearchableIndexes(), equalTo(expected))
+    verify(repositoryManager, times(2)).browse()
+  }
+
+  @Test
+  public void testCountDoesNotValidateQueryUpFront() throws Exception {
+    searchableRepository()
+    ListenableActionFuture<CountResponse> countFuture = stubCount()
+    CountResponse countResponse = mock(CountResponse)
+    when(countFuture.actionGet()).thenReturn(countResponse)
+    when(countResponse.getCount()).thenReturn(42L)
+
+    assertThat(searchService.count(QueryBuilders.matchAllQuery()), equalTo(42L))
+    verify(indicesAdminClient, never()).prepareValidateQuery()
+  }
+
+  @Test(expected = IllegalArgumentException)
+  public void testRejectedQueryIsInvalid() throws Exception {
+    searchableRepository()
+    ListenableActionFuture<CountResponse> countFuture = stubCount()
+    when(countFuture.actionGet()).thenThrow(new ElasticsearchParseException('failed to parse query'))
+
+    searchService.count(QueryBuilders.queryStringQuery('name:'))
+  }
+
+  @Test
+  public void testCountIsCachedUntilIndexChanges() throws Exception {
+    Repository repository = searchableRepository()
+    String indexName = SHA1.function().hashUnencodedChars('test').toString()
+    ListenableActionFuture<CountResponse> countFuture = stubCount()
+    CountResponse countResponse = mock(CountResponse)
+    when(countFuture.actionGet()).thenReturn(countResponse)
+    when(countResponse.getCount()).thenReturn(1L)
+
+    assertThat(searchService.count(QueryBuilders.termQuery('name', 'foo')), equalTo(1L))
+    assertThat(searchService.count(QueryBuilders.termQuery('name', 'foo')), equalTo(1L))
+    verify(client, times(1)).prepareCount(indexName)
+
+    assertThat(searchService.count(QueryBuilders.termQuery('name', 'bar')), equalTo(1L))
+    verify(client, times(2)).prepareCount(indexName)
+
+    when(countResponse.getCount()).thenReturn(2L)
+    searchService.put(repository, 'a', '{}')
+
+    // the update is not searchable until applied and refreshed, so a result cached meanwhile must not outlive it
+    assertThat(searchService.count(QueryBuilders.termQuery('name', 'bar')), equalTo(1L))
+    verify(client, times(2)).prepareCount(indexName)
+
+    RefreshRequestBuilder refreshBuilder = mock(RefreshRequestBuilder)
+    when(indicesAdminClient.prepareRefresh(indexName)).thenReturn(refreshBuilder)
+    doAnswer({ invocation ->
+      ((ActionListener<RefreshResponse>) invocation.arguments[0]).onResponse(mock(RefreshResponse))
+      null
+    } as Answer).when(refreshBuilder).execute(any(ActionListener))
+    ArgumentCaptor<Consumer> appliedListener = ArgumentCaptor.forClass(Consumer)
+    verify(bulkIndexer).addAppliedListener(appliedListener.capture())
+    appliedListener.value.accept([indexName] as Set)
+
+    assertThat(searchService.count(QueryBuilders.termQuery('name', 'foo')), equalTo(2L))
+    assertThat(searchService.count(QueryBuilders.termQuery('name', 'bar')), equalTo(2L))
+    verify(client, times(4)).prepareCount(indexName)
+  }
+
+  private ListenableActionFuture<CountResponse> stubCount() {
+    CountRequestBuilder countBuilder = mock(CountRequestBuilder)
+    ListenableActionFuture<CountResponse> countFuture = mock(ListenableActionFuture)
+    when(client.prepareCount(SHA1.function().hashUnencodedChars('test').toString())).thenReturn(countBuilder)
+    when(countBuilder.setQuery(any(QueryBuilder))).thenReturn(countBuilder)
+    when(countBuilder.execute()).thenReturn(countFuture)
+    countFuture
+  }
+
+  private Repository searchableRepository() {
+    captureRepoNameArg()
+
+    Repository repository = mock(Repository)
+    Configuration configuration = mock(Configuration)
+    when(repository.getName()).thenReturn('test')
+    when(repository.getFormat()).thenReturn(new TestFormat('test'))
+    when(repository.getConfiguration()).thenReturn(configuration)
+    when(repository.optionalFacet(SearchFacet)).thenReturn(Optional.of(mock(SearchFacet)))
+    when(configuration.isOnline()).thenReturn(true)
+    when(repositoryManager.browse()).thenReturn([repository])
+    when(securityHelper.subject()).thenReturn(subject)
+    when(subject.getPrincipals()).thenReturn(new SimplePrincipalCollection('admin', 'test-realm'))
+    when(securityHelper.allPermitted(new RepositoryViewPermission(repository, BreadActions.BROWSE))).thenReturn(true)
+    searchService.createIndex(repository)
+    repository
+  }
+
   private ArgumentCaptor<String> captureRepoNameArg() {
     ArgumentCaptor<String> varArgs = ArgumentCaptor.forClass(String.class);
     when(indicesAdminClient.prepareExists(varArgs.capture())).thenReturn(indicesExistsRequestBuilder)
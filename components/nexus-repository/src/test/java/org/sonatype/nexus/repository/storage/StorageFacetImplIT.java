@@ -798,6 +798,43 @@ public class StorageFacetImplIT
     }
   }
 
+  @Test
+  public void assetLastAccessedWriteBehind() throws Exception {
+    final String ASSET_NAME = "assetLastAccessedWriteBehind";
+    AssetAccessTracker tracker = new AssetAccessTracker(Providers.of(database.getInstance()), assetEntityAdapter);
+    try (StorageTx tx = beginTX()) {
+      Bucket bucket = tx.findBucket(testRepository1);
+      Asset asset = tx.createAsset(bucket, testFormat).name(ASSET_NAME);
+      tx.saveAsset(asset);
+      tx.commit();
+    }
+
+    try (StorageTx tx = beginTX()) {
+      Bucket bucket = tx.findBucket(testRepository1);
+      Asset asset = tx.findAssetWithProperty(P_NAME, ASSET_NAME, bucket);
+      assertThat(tracker.markAsAccessed(asset), is(true));
+      assertThat(tracker.markAsAccessed(asset), is(false));
+      tx.commit();
+    }
+    assertThat(tracker.pendingCount(), is(1));
+
+    try (StorageTx tx = beginTX()) {
+      Bucket bucket = tx.findBucket(testRepository1);
+      Asset asset = tx.findAssetWithProperty(P_NAME, ASSET_NAME, bucket);
+      assertThat("not persisted until flushed", asset.lastAccessed(), nullValue());
+    }
+
+    tracker.flush();
+    assertThat(tracker.pendingCount(), is(0));
+
+    try (StorageTx tx = beginTX()) {
+      Bucket bucket = tx.findBucket(testRepository1);
+      Asset asset = tx.findAssetWithProperty(P_NAME, ASSET_NAME, bucket);
+      assertThat(asset.lastAccessed(), notNullValue());
+      assertThat(asset.markAsAccessed(), is(false));
+    }
+  }
+
   private StorageTx beginTX() {
     final StorageTx tx = underTest.txSupplier().get();
     tx.begin();
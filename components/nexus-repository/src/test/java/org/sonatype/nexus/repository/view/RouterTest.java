@@ -0,0 +1,133 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.view;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.view.matchers.ActionMatcher;
+import org.sonatype.nexus.repository.view.matchers.LiteralMatcher;
+import org.sonatype.nexus.repository.view.matchers.PrefixMatcher;
+import org.sonatype.nexus.repository.view.matchers.SuffixMatcher;
+import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.view.matchers.logic.LogicMatchers.and;
+import static org.sonatype.nexus.repository.view.matchers.logic.LogicMatchers.not;
+import static org.sonatype.nexus.repository.view.matchers.logic.LogicMatchers.or;
+
+/**
+ * Tests for {@link Router} route selection.
+ */
+public class RouterTest
+    extends TestSupport
+{
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private Matcher opaqueMatcher;
+
+  private Router underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    underTest = new Router.Builder()
+        .route(route("metadata", and(new ActionMatcher("GET"), new TokenMatcher("/{path:.+}/maven-metadata.xml"))))
+        .route(route("index", new LiteralMatcher("/.index/nexus-maven-repository-index.gz", false)))
+        .route(route("opaque", opaqueMatcher))
+        .route(route("content", or(new TokenMatcher("/content/{name:.+}"), new PrefixMatcher("/cont"))))
+        .route(route("directory", and(new ActionMatcher("GET"), new SuffixMatcher("/"))))
+        .route(route("not-index", not(new PrefixMatcher("/.index"))))
+        .defaultHandlers(handler("default"))
+        .create();
+  }
+
+  private static Route route(final String name, final Matcher matcher) {
+    return new Route.Builder().matcher(matcher).handler(handler(name)).create();
+  }
+
+  private static Handler handler(final String name) {
+    return context -> HttpResponses.ok(name);
+  }
+
+  private String dispatch(final String path) throws Exception {
+    Request request = new Request.Builder().action("GET").path(path).build();
+    return underTest.dispatch(repository, request).getStatus().getMessage();
+  }
+
+  @Test
+  public void pathPrefixes() {
+    assertThat(new TokenMatcher("/{path:.+}/maven-metadata.xml").getPathPrefix(), is("/"));
+    assertThat(IndexableMatcher.pathPrefix(and(new ActionMatcher("GET"), new TokenMatcher("/content/{name}"))),
+        is("/content/"));
+    assertThat(IndexableMatcher.pathPrefix(or(new PrefixMatcher("/content"), new PrefixMatcher("/cont/x"))),
+        is("/cont"));
+    assertThat(IndexableMatcher.pathPrefix(new LiteralMatcher("/foo")), is(""));
+    assertThat(IndexableMatcher.pathPrefix(and(new ActionMatcher("GET"), opaqueMatcher)), nullValue());
+    assertThat(IndexableMatcher.pathPrefix(not(opaqueMatcher)), nullValue());
+  }
+
+  @Test
+  public void firstMatchingRouteInOrder() throws Exception {
+    when(opaqueMatcher.matches(any(Context.class))).thenReturn(false);
+
+    assertThat(dispatch("/org/foo/maven-metadata.xml"), equalTo("metadata"));
+    assertThat(dispatch("/.index/nexus-maven-repository-index.gz"), equalTo("index"));
+    assertThat(dispatch("/content/foo.jar"), equalTo("content"));
+    assertThat(dispatch("/contents"), equalTo("content"));
+    assertThat(dispatch("/.index/"), equalTo("directory"));
+    assertThat(dispatch("/other"), equalTo("not-index"));
+    assertThat(dispatch("/.index/foo"), equalTo("default"));
+  }
+
+  @Test
+  public void opaqueRouteAlwaysEvaluated() throws Exception {
+    when(opaqueMatcher.matches(any(Context.class))).thenReturn(true);
+
+    assertThat(dispatch("/org/foo/maven-metadata.xml"), equalTo("metadata"));
+    assertThat(dispatch("/.index/nexus-maven-repository-index.gz"), equalTo("index"));
+    assertThat(dispatch("/content/foo.jar"), equalTo("opaque"));
+    assertThat(dispatch("x"), equalTo("opaque"));
+  }
+
+  @Test
+  public void routesWhichCanNotMatchAreSkipped() throws Exception {
+    Matcher content = new TokenMatcher("/content/{name:.+}")
+    {
+      @Override
+      public boolean matches(final Context context) {
+        throw new AssertionError("Must not be evaluated for " + context.getRequest().getPath());
+      }
+    };
+    underTest = new Router.Builder()
+        .route(route("content", content))
+        .route(route("opaque", opaqueMatcher))
+        .defaultHandlers(handler("default"))
+        .create();
+    when(opaqueMatcher.matches(any(Context.class))).thenReturn(false);
+
+    assertThat(dispatch("/other/foo.jar"), equalTo("default"));
+    verify(opaqueMatcher).matches(any(Context.class));
+  }
+}
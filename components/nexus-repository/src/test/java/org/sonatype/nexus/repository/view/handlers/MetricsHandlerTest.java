@@ -0,0 +1,153 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.view.handlers;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.collect.AttributesMap;
+import org.sonatype.nexus.repository.Format;
+import org.sonatype.nexus.repository.IllegalOperationException;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.RepositoryDestroyedEvent;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler.Outcome;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.shiro.authz.AuthorizationException;
+import org.apache.shiro.authz.UnauthenticatedException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
+import static org.sonatype.nexus.repository.http.HttpMethods.PROPFIND;
+
+/**
+ * Tests for {@link MetricsHandler}.
+ */
+public class MetricsHandlerTest
+    extends TestSupport
+{
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private Context context;
+
+  @Mock
+  private Request request;
+
+  private AttributesMap attributes;
+
+  private MetricRegistry metricRegistry;
+
+  private MetricsHandler underTest;
+
+  @Before
+  public void setUp() {
+    attributes = new AttributesMap();
+    when(repository.getName()).thenReturn("central");
+    when(repository.getFormat()).thenReturn(new Format("maven2") { });
+    when(context.getRepository()).thenReturn(repository);
+    when(context.getRequest()).thenReturn(request);
+    when(context.getAttributes()).thenReturn(attributes);
+    when(request.getAction()).thenReturn(GET);
+
+    metricRegistry = new MetricRegistry();
+    underTest = new MetricsHandler(metricRegistry);
+  }
+
+  @Test
+  public void recordsRequestsByMethodStatusAndOutcome() throws Exception {
+    when(context.proceed()).thenAnswer(invocation -> {
+      MetricsHandler.outcome(context, Outcome.PROXY_HIT);
+      return HttpResponses.ok();
+    });
+    underTest.handle(context);
+    underTest.handle(context);
+
+    assertThat(metricRegistry.timer("nexus.repository.maven2.central.requests").getCount(), is(2L));
+    assertThat(meter("methods.get"), is(2L));
+    assertThat(meter("responses.2xx"), is(2L));
+    assertThat(meter("outcomes.proxyHit"), is(2L));
+    assertThat(meter("outcomes.proxyMiss"), is(0L));
+  }
+
+  @Test
+  public void notFoundUnlessServedFromNegativeCache() throws Exception {
+    when(context.proceed()).thenReturn(HttpResponses.notFound());
+    MetricsHandler.outcome(context, Outcome.PROXY_MISS);
+    underTest.handle(context);
+
+    MetricsHandler.outcome(context, Outcome.NEGATIVE_CACHE_HIT);
+    underTest.handle(context);
+
+    assertThat(meter("responses.4xx"), is(2L));
+    assertThat(meter("outcomes.notFound"), is(1L));
+    assertThat(meter("outcomes.negativeCacheHit"), is(1L));
+    assertThat(meter("outcomes.proxyMiss"), is(0L));
+  }
+
+  @Test
+  public void failuresAndUnknownMethodsAreBounded() throws Exception {
+    when(request.getAction()).thenReturn(PROPFIND);
+    when(context.proceed()).thenThrow(new IllegalStateException("boom"));
+    try {
+      underTest.handle(context);
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+
+    assertThat(meter("methods.other"), is(1L));
+    assertThat(meter("responses.5xx"), is(1L));
+  }
+
+  @Test
+  public void failuresAreRecordedUnderTheirMappedStatus() throws Exception {
+    when(context.proceed())
+        .thenThrow(new UnauthenticatedException())
+        .thenThrow(new AuthorizationException())
+        .thenThrow(new IllegalOperationException("read-only"));
+    for (int i = 0; i < 3; i++) {
+      try {
+        underTest.handle(context);
+      }
+      catch (Exception e) {
+        // expected
+      }
+    }
+
+    assertThat(meter("responses.4xx"), is(3L));
+    assertThat(meter("responses.5xx"), is(0L));
+  }
+
+  @Test
+  public void metricsRemovedWhenRepositoryDestroyed() throws Exception {
+    when(context.proceed()).thenReturn(HttpResponses.ok());
+    underTest.handle(context);
+
+    underTest.on(new RepositoryDestroyedEvent(repository));
+
+    assertThat(metricRegistry.getNames(), is(empty()));
+  }
+
+  private long meter(final String name) {
+    return metricRegistry.meter("nexus.repository.maven2.central." + name).getCount();
+  }
+}
@@ -138,4 +138,12 @@ public class TokenParserTest
     assertThat(tokens.get("version"), is(equalTo("8.1.16.v20140903")));
     assertThat(tokens.get("ext"), is(equalTo("pom")));
   }
+
+  @Test
+  public void literalPrefix() {
+    assertThat(new TokenParser("/{a}/{b}").getLiteralPrefix(), is(equalTo("/")));
+    assertThat(new TokenParser("/content/{name:.+}").getLiteralPrefix(), is(equalTo("/content/")));
+    assertThat(new TokenParser("{a}/b").getLiteralPrefix(), is(equalTo("")));
+    assertThat(new TokenParser("/static/index.html").getLiteralPrefix(), is(equalTo("/static/index.html")));
+  }
 }
@@ -0,0 +1,98 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpbridge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Non-blocking payload writer, copying the payload stream to the response only while the container reports the
+ * output ready, so no thread is held while a slow client drains the socket.
+ *
+ * @since 3.1
+ */
+class AsyncPayloadWriter
+    implements WriteListener
+{
+  private static final Logger log = LoggerFactory.getLogger(AsyncPayloadWriter.class);
+
+  private static final int BUFFER_SIZE = 32 * 1024;
+
+  private final AsyncContext asyncContext;
+
+  private final InputStream input;
+
+  private final ServletOutputStream output;
+
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  private final AtomicBoolean done = new AtomicBoolean();
+
+  AsyncPayloadWriter(final AsyncContext asyncContext, final InputStream input, final ServletOutputStream output) {
+    this.asyncContext = checkNotNull(asyncContext);
+    this.input = checkNotNull(input);
+    this.output = checkNotNull(output);
+  }
+
+  /**
+   * Registers with the output, the container then calls back whenever the output can accept more data.
+   */
+  void start() {
+    output.setWriteListener(this);
+  }
+
+  @Override
+  public void onWritePossible() throws IOException {
+    try {
+      while (output.isReady()) {
+        int read = input.read(buffer);
+        if (read < 0) {
+          complete();
+          return;
+        }
+        output.write(buffer, 0, read);
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      onError(e);
+    }
+  }
+
+  @Override
+  public void onError(final Throwable t) {
+    log.debug("Failed to write payload", t);
+    complete();
+  }
+
+  private void complete() {
+    if (done.compareAndSet(false, true)) {
+      try {
+        input.close();
+      }
+      catch (IOException e) {
+        log.debug("Failed to close payload", e);
+      }
+      asyncContext.complete();
+    }
+  }
+}
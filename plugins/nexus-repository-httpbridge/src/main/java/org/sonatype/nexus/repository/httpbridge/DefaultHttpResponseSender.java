@@ -15,26 +15,38 @@ package org.sonatype.nexus.repository.httpbridge;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
 import java.util.Map;
 
 import javax.annotation.Nullable;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.http.HttpMethods;
+import org.sonatype.nexus.repository.view.ChannelPayload;
 import org.sonatype.nexus.repository.view.Payload;
 import org.sonatype.nexus.repository.view.Request;
 import org.sonatype.nexus.repository.view.Response;
 import org.sonatype.nexus.repository.view.Status;
 
 import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.util.Callback;
 
 /**
  * Default {@link HttpResponseSender}.
  *
+ * When {@code nexus.httpbridge.asyncWrites} is enabled and the request supports it, payloads are written
+ * asynchronously once the response has been produced, releasing the request thread while the client drains the
+ * content.
+ *
  * @since 3.0
  */
 @Named
@@ -43,9 +55,47 @@ public class DefaultHttpResponseSender
     extends ComponentSupport
     implements HttpResponseSender
 {
+  private final boolean asyncWrites;
+
+  public DefaultHttpResponseSender() {
+    this(false);
+  }
+
+  /**
+   * @since 3.1
+   */
+  @Inject
+  public DefaultHttpResponseSender(@Named("${nexus.httpbridge.asyncWrites:-false}") final boolean asyncWrites) {
+    this.asyncWrites = asyncWrites;
+  }
+
   @Override
   public void send(@Nullable final Request request, final Response response, final HttpServletResponse httpResponse)
       throws ServletException, IOException
+  {
+    doSend(request, response, null, httpResponse);
+  }
+
+  @Override
+  public void send(@Nullable final Request request,
+                   final Response response,
+                   @Nullable final HttpServletRequest httpRequest,
+                   final HttpServletResponse httpResponse)
+      throws ServletException, IOException
+  {
+    if (httpRequest == null || !asyncWrites || !httpRequest.isAsyncSupported()) {
+      send(request, response, httpResponse);
+    }
+    else {
+      doSend(request, response, httpRequest, httpResponse);
+    }
+  }
+
+  private void doSend(@Nullable final Request request,
+                      final Response response,
+                      @Nullable final HttpServletRequest asyncRequest,
+                      final HttpServletResponse httpResponse)
+      throws ServletException, IOException
   {
     log.trace("Sending response: {}", response);
 
@@ -71,8 +121,11 @@ public class DefaultHttpResponseSender
         }
 
         if (request != null && !HttpMethods.HEAD.equals(request.getAction())) {
-          try (InputStream input = payload.openInputStream(); OutputStream output = httpResponse.getOutputStream()) {
-            ByteStreams.copy(input, output);
+          if (asyncRequest != null) {
+            sendPayloadAsync(payload, asyncRequest, httpResponse);
+          }
+          else {
+            sendPayload(payload, httpResponse);
           }
         }
       }
@@ -81,4 +134,93 @@ public class DefaultHttpResponseSender
       httpResponse.sendError(status.getCode(), status.getMessage());
     }
   }
+
+  /**
+   * Writes the payload to the response. Channel-capable payloads are handed to Jetty directly so the content is read
+   * into its direct buffers rather than copied through an intermediate stream.
+   */
+  private void sendPayload(final Payload payload, final HttpServletResponse httpResponse) throws IOException {
+    OutputStream output = httpResponse.getOutputStream();
+    if (payload instanceof ChannelPayload && output instanceof HttpOutput) {
+      SeekableByteChannel channel = ((ChannelPayload) payload).openChannel();
+      if (channel != null) {
+        log.trace("Sending payload via channel: {}", channel);
+        try (SeekableByteChannel input = channel) {
+          ((HttpOutput) output).sendContent(input);
+        }
+        return;
+      }
+    }
+    try (InputStream input = payload.openInputStream(); OutputStream out = output) {
+      ByteStreams.copy(input, out);
+    }
+  }
+
+  /**
+   * Writes the payload to the response without holding the request thread. Channel-capable payloads are handed to
+   * Jetty's asynchronous content sending, other payloads are copied as the output becomes ready.
+   */
+  private void sendPayloadAsync(final Payload payload,
+                                final HttpServletRequest httpRequest,
+                                final HttpServletResponse httpResponse)
+      throws IOException
+  {
+    AsyncContext asyncContext = httpRequest.startAsync();
+    // slow clients are bounded by the connector idle timeout, not the async timeout
+    asyncContext.setTimeout(0);
+    try {
+      ServletOutputStream output = httpResponse.getOutputStream();
+      if (payload instanceof ChannelPayload && output instanceof HttpOutput) {
+        SeekableByteChannel channel = ((ChannelPayload) payload).openChannel();
+        if (channel != null) {
+          log.trace("Sending payload asynchronously via channel: {}", channel);
+          ((HttpOutput) output).sendContent(channel, new ChannelCallback(channel, asyncContext));
+          return;
+        }
+      }
+      log.trace("Sending payload asynchronously: {}", payload);
+      new AsyncPayloadWriter(asyncContext, payload.openInputStream(), output).start();
+    }
+    catch (IOException | RuntimeException e) {
+      asyncContext.complete();
+      throw e;
+    }
+  }
+
+  /**
+   * Closes the channel and completes the request once Jetty finished sending it.
+   */
+  private class ChannelCallback
+      implements Callback
+  {
+    private final SeekableByteChannel channel;
+
+    private final AsyncContext asyncContext;
+
+    private ChannelCallback(final SeekableByteChannel channel, final AsyncContext asyncContext) {
+      this.channel = channel;
+      this.asyncContext = asyncContext;
+    }
+
+    @Override
+    public void succeeded() {
+      done();
+    }
+
+    @Override
+    public void failed(final Throwable x) {
+      log.debug("Failed to send payload via channel", x);
+      done();
+    }
+
+    private void done() {
+      try {
+        channel.close();
+      }
+      catch (IOException e) {
+        log.debug("Failed to close channel", e);
+      }
+      asyncContext.complete();
+    }
+  }
 }
@@ -16,6 +16,7 @@ import java.io.IOException;
 
 import javax.annotation.Nullable;
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.sonatype.nexus.repository.view.Request;
@@ -30,4 +31,18 @@ public interface HttpResponseSender
 {
   void send(@Nullable Request request, Response response, HttpServletResponse httpServletResponse)
       throws ServletException, IOException;
+
+  /**
+   * Send with access to the servlet request, allowing senders to write the payload asynchronously.
+   *
+   * @since 3.1
+   */
+  default void send(@Nullable Request request,
+                    Response response,
+                    HttpServletRequest httpServletRequest,
+                    HttpServletResponse httpServletResponse)
+      throws ServletException, IOException
+  {
+    send(request, response, httpServletResponse);
+  }
 }
@@ -157,7 +157,7 @@ public class ViewServlet
 
     // Dispatch the request
     Request request = buildRequest(httpRequest, path.getRemainingPath());
-    dispatchAndSend(request, facet, httpResponseSenderSelector.sender(repo), httpResponse);
+    dispatchAndSend(request, facet, httpResponseSenderSelector.sender(repo), httpRequest, httpResponse);
   }
 
   /**
@@ -189,6 +189,7 @@ public class ViewServlet
   void dispatchAndSend(final Request request,
                        final ViewFacet facet,
                        final HttpResponseSender sender,
+                       final HttpServletRequest httpRequest,
                        final HttpServletResponse httpResponse)
       throws Exception
   {
@@ -211,7 +212,7 @@ public class ViewServlet
         throw failure;
       }
       log.debug("HTTP response sender: {}", sender);
-      sender.send(request, response, httpResponse);
+      sender.send(request, response, httpRequest, httpResponse);
     }
   }
 
@@ -0,0 +1,150 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpbridge;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link AsyncPayloadWriter}.
+ */
+public class AsyncPayloadWriterTest
+    extends TestSupport
+{
+  private static final int CLIENTS = 1000;
+
+  private static final int PAYLOAD_SIZE = 32 * 1024;
+
+  private static final int BYTES_PER_TICK = 4 * 1024;
+
+  /**
+   * Output of a slow client, accepting a limited number of bytes each time its socket becomes writable.
+   */
+  private static class SlowClientOutput
+      extends ServletOutputStream
+  {
+    private final AsyncContext asyncContext = mock(AsyncContext.class);
+
+    private WriteListener listener;
+
+    private int budget;
+
+    private long received;
+
+    private long checksum;
+
+    private boolean completed;
+
+    SlowClientOutput() {
+      doAnswer(invocation -> completed = true).when(asyncContext).complete();
+    }
+
+    @Override
+    public boolean isReady() {
+      return budget > 0;
+    }
+
+    @Override
+    public void setWriteListener(final WriteListener writeListener) {
+      this.listener = writeListener;
+    }
+
+    @Override
+    public void write(final int b) {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      for (int i = off; i < off + len; i++) {
+        checksum = checksum * 31 + b[i];
+      }
+      received += len;
+      budget -= len;
+    }
+
+    void writable() throws IOException {
+      budget = BYTES_PER_TICK;
+      listener.onWritePossible();
+    }
+  }
+
+  @Test
+  public void thousandSlowClientsServedByOneThread() throws Exception {
+    byte[] payload = new byte[PAYLOAD_SIZE];
+    new Random(42).nextBytes(payload);
+    long expectedChecksum = 0;
+    for (byte b : payload) {
+      expectedChecksum = expectedChecksum * 31 + b;
+    }
+
+    List<SlowClientOutput> clients = new ArrayList<>(CLIENTS);
+    for (int i = 0; i < CLIENTS; i++) {
+      SlowClientOutput client = new SlowClientOutput();
+      new AsyncPayloadWriter(client.asyncContext, new ByteArrayInputStream(payload), client).start();
+      clients.add(client);
+    }
+
+    // the test thread plays the container, calling back each client whenever its socket drained
+    int ticks = 0;
+    boolean pending = true;
+    while (pending) {
+      pending = false;
+      for (SlowClientOutput client : clients) {
+        if (!client.completed) {
+          client.writable();
+          pending = true;
+        }
+      }
+      ticks++;
+    }
+
+    assertThat(ticks > PAYLOAD_SIZE / BYTES_PER_TICK, is(true));
+    for (SlowClientOutput client : clients) {
+      assertThat(client.received, is((long) PAYLOAD_SIZE));
+      assertThat(client.checksum, is(expectedChecksum));
+      verify(client.asyncContext, times(1)).complete();
+    }
+  }
+
+  @Test
+  public void completesOnError() throws Exception {
+    SlowClientOutput client = new SlowClientOutput();
+    AsyncPayloadWriter underTest = new AsyncPayloadWriter(client.asyncContext, new ByteArrayInputStream(new byte[8]),
+        client);
+    underTest.start();
+
+    underTest.onError(new IOException("Broken pipe"));
+    underTest.onError(new IOException("Broken pipe"));
+
+    verify(client.asyncContext, times(1)).complete();
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpbridge;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.http.HttpMethods;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.Status;
+import org.sonatype.nexus.repository.view.payloads.StreamPayload;
+
+import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * {@link DefaultHttpResponseSender} integration tests against Jetty, with the sender driven from a filter the way
+ * the nexus filter dispatches to the repository bridge.
+ */
+public class DefaultHttpResponseSenderIT
+    extends TestSupport
+{
+  private static final byte[] CONTENT = "payload".getBytes();
+
+  private final CountDownLatch requestReturned = new CountDownLatch(1);
+
+  private final CountDownLatch payloadReleased = new CountDownLatch(1);
+
+  private Server server;
+
+  private ExecutorService client;
+
+  @Before
+  public void setUp() {
+    client = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    payloadReleased.countDown();
+    client.shutdownNow();
+    if (server != null) {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void asyncSupportedFilterReleasesRequestThread() throws Exception {
+    Future<byte[]> download = client.submit(() -> download(startServer(true)));
+
+    // the request thread returns while the payload is still blocked
+    assertThat(requestReturned.await(10, TimeUnit.SECONDS), is(true));
+
+    payloadReleased.countDown();
+    assertThat(download.get(10, TimeUnit.SECONDS), is(equalTo(CONTENT)));
+  }
+
+  @Test
+  public void filterWithoutAsyncSupportHoldsRequestThread() throws Exception {
+    Future<byte[]> download = client.submit(() -> download(startServer(false)));
+
+    assertThat(requestReturned.await(500, TimeUnit.MILLISECONDS), is(false));
+
+    payloadReleased.countDown();
+    assertThat(download.get(10, TimeUnit.SECONDS), is(equalTo(CONTENT)));
+    assertThat(requestReturned.await(10, TimeUnit.SECONDS), is(true));
+  }
+
+  private URL startServer(final boolean asyncSupported) throws Exception {
+    server = new Server();
+    ServerConnector connector = new ServerConnector(server);
+    server.addConnector(connector);
+
+    ServletContextHandler context = new ServletContextHandler();
+    FilterHolder holder = new FilterHolder(new SendingFilter());
+    holder.setAsyncSupported(asyncSupported);
+    context.addFilter(holder, "/*", EnumSet.of(DispatcherType.REQUEST));
+    server.setHandler(context);
+    server.start();
+
+    return new URL("http://localhost:" + connector.getLocalPort() + "/repository/test/content");
+  }
+
+  private byte[] download(final URL url) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try (InputStream in = connection.getInputStream()) {
+      return ByteStreams.toByteArray(in);
+    }
+    finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Content which can only be read once the test releases it.
+   */
+  private class BlockingInputStream
+      extends FilterInputStream
+  {
+    private BlockingInputStream() {
+      super(new ByteArrayInputStream(CONTENT));
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      try {
+        payloadReleased.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+      return super.read(b, off, len);
+    }
+  }
+
+  /**
+   * Sends a payload which blocks until the test releases it, then records the request thread returning.
+   */
+  private class SendingFilter
+      implements Filter
+  {
+    private final DefaultHttpResponseSender sender = new DefaultHttpResponseSender(true);
+
+    @Override
+    public void init(final FilterConfig filterConfig) {
+      // no-op
+    }
+
+    @Override
+    public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
+        throws IOException, ServletException
+    {
+      StreamPayload payload = new StreamPayload(BlockingInputStream::new, CONTENT.length, "text/plain");
+
+      Request viewRequest = new Request.Builder().action(HttpMethods.GET).path("/content").build();
+      Response viewResponse = new Response.Builder().status(Status.success(200)).payload(payload).build();
+      sender.send(viewRequest, viewResponse, (HttpServletRequest) request, (HttpServletResponse) response);
+      requestReturned.countDown();
+    }
+
+    @Override
+    public void destroy() {
+      // no-op
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpbridge;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.SeekableByteChannel;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.http.HttpMethods;
+import org.sonatype.nexus.repository.view.ChannelPayload;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.Status;
+
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.util.Callback;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DefaultHttpResponseSender}.
+ */
+public class DefaultHttpResponseSenderTest
+    extends TestSupport
+{
+  @Mock
+  private Request request;
+
+  @Mock
+  private HttpServletRequest httpRequest;
+
+  @Mock
+  private HttpServletResponse httpResponse;
+
+  @Mock
+  private AsyncContext asyncContext;
+
+  @Mock
+  private ChannelPayload payload;
+
+  @Mock
+  private SeekableByteChannel channel;
+
+  private Response response;
+
+  private DefaultHttpResponseSender underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    when(request.getAction()).thenReturn(HttpMethods.GET);
+    when(payload.getSize()).thenReturn(3L);
+    when(payload.openInputStream()).thenReturn(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+    response = new Response.Builder().status(Status.success(200)).payload(payload).build();
+    when(httpRequest.isAsyncSupported()).thenReturn(true);
+    when(httpRequest.startAsync()).thenReturn(asyncContext);
+    underTest = new DefaultHttpResponseSender();
+  }
+
+  @Test
+  public void channelIsHandedToJetty() throws Exception {
+    HttpOutput output = mock(HttpOutput.class);
+    when(httpResponse.getOutputStream()).thenReturn(output);
+    when(payload.openChannel()).thenReturn(channel);
+
+    underTest.send(request, response, httpResponse);
+
+    verify(output).sendContent(channel);
+    verify(channel).close();
+    verify(payload, never()).openInputStream();
+  }
+
+  @Test
+  public void streamUsedWhenPayloadHasNoChannel() throws Exception {
+    HttpOutput output = mock(HttpOutput.class);
+    when(httpResponse.getOutputStream()).thenReturn(output);
+    when(payload.openChannel()).thenReturn(null);
+
+    underTest.send(request, response, httpResponse);
+
+    verify(payload).openInputStream();
+    verify(output).close();
+  }
+
+  @Test
+  public void streamUsedWhenOutputIsNotJetty() throws Exception {
+    ServletOutputStream output = mock(ServletOutputStream.class);
+    when(httpResponse.getOutputStream()).thenReturn(output);
+
+    underTest.send(request, response, httpResponse);
+
+    verify(payload, never()).openChannel();
+    verify(payload).openInputStream();
+    verify(output).close();
+  }
+
+  @Test
+  public void asyncWritesDisabledByDefault() throws Exception {
+    ServletOutputStream output = mock(ServletOutputStream.class);
+    when(httpResponse.getOutputStream()).thenReturn(output);
+
+    underTest.send(request, response, httpRequest, httpResponse);
+
+    verify(httpRequest, never()).startAsync();
+    verify(output).close();
+  }
+
+  @Test
+  public void asyncChannelHandedToJetty() throws Exception {
+    underTest = new DefaultHttpResponseSender(true);
+    HttpOutput output = mock(HttpOutput.class);
+    when(httpResponse.getOutputStream()).thenReturn(output);
+    when(payload.openChannel()).thenReturn(channel);
+
+    underTest.send(request, response, httpRequest, httpResponse);
+
+    ArgumentCaptor<Callback> callback = ArgumentCaptor.forClass(Callback.class);
+    verify(output).sendContent(eq(channel), callback.capture());
+    verify(asyncContext, never()).complete();
+
+    callback.getValue().succeeded();
+    verify(channel).close();
+    verify(asyncContext).complete();
+  }
+
+  @Test
+  public void asyncStreamWrittenWhenOutputReady() throws Exception {
+    underTest = new DefaultHttpResponseSender(true);
+    ServletOutputStream output = mock(ServletOutputStream.class);
+    when(httpResponse.getOutputStream()).thenReturn(output);
+    when(output.isReady()).thenReturn(true);
+
+    underTest.send(request, response, httpRequest, httpResponse);
+
+    ArgumentCaptor<WriteListener> listener = ArgumentCaptor.forClass(WriteListener.class);
+    verify(output).setWriteListener(listener.capture());
+    verify(output, never()).write(any(byte[].class), eq(0), eq(3));
+
+    listener.getValue().onWritePossible();
+    verify(output).write(any(byte[].class), eq(0), eq(3));
+    verify(asyncContext).complete();
+  }
+
+  @Test
+  public void blockingWhenAsyncNotSupported() throws Exception {
+    underTest = new DefaultHttpResponseSender(true);
+    ServletOutputStream output = mock(ServletOutputStream.class);
+    when(httpResponse.getOutputStream()).thenReturn(output);
+    when(httpRequest.isAsyncSupported()).thenReturn(false);
+
+    underTest.send(request, response, httpRequest, httpResponse);
+
+    verify(httpRequest, never()).startAsync();
+    verify(output).close();
+  }
+}
@@ -14,6 +14,7 @@ package org.sonatype.nexus.repository.httpbridge.internal;
 
 import java.util.Collections;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.sonatype.goodies.testsupport.TestSupport;
@@ -56,6 +57,9 @@ public class ViewServletDescribeTest
   @Mock
   private ViewFacet facet;
 
+  @Mock
+  private HttpServletRequest servletRequest;
+
   @Mock(answer = RETURNS_DEEP_STUBS)
   private HttpServletResponse servletResponse;
 
@@ -110,7 +114,7 @@ public class ViewServletDescribeTest
     descriptionRequested(null);
     facetThrowsException(false);
 
-    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletResponse);
+    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletRequest, servletResponse);
 
     verify(underTest, never()).describe(
         any(Request.class),
@@ -126,7 +130,7 @@ public class ViewServletDescribeTest
     descriptionRequested("HTML");
     facetThrowsException(false);
 
-    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletResponse);
+    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletRequest, servletResponse);
 
     verify(underTest).describe(request, facetResponse, null, "HTML");
     verify(underTest).send(eq(request), any(Response.class), eq(servletResponse));
@@ -138,7 +142,7 @@ public class ViewServletDescribeTest
     descriptionRequested("JSON");
     facetThrowsException(false);
 
-    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletResponse);
+    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletRequest, servletResponse);
 
     verify(underTest).describe(request, facetResponse, null, "JSON");
     verify(underTest).send(eq(request), any(Response.class), eq(servletResponse));
@@ -150,7 +154,7 @@ public class ViewServletDescribeTest
     descriptionRequested(null);
     facetThrowsException(true);
 
-    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletResponse);
+    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletRequest, servletResponse);
   }
 
   @Test
@@ -158,7 +162,7 @@ public class ViewServletDescribeTest
     descriptionRequested("HTML");
     facetThrowsException(true);
 
-    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletResponse);
+    underTest.dispatchAndSend(request, facet, defaultResponseSender, servletRequest, servletResponse);
 
     // The exception got described
     verify(underTest).describe(request, null, facetException, "HTML");
@@ -39,6 +39,7 @@ import org.sonatype.nexus.repository.maven.MavenPathParser;
 import org.sonatype.nexus.repository.maven.LayoutPolicy;
 import org.sonatype.nexus.repository.maven.VersionPolicy;
 import org.sonatype.nexus.repository.storage.Asset;
+import org.sonatype.nexus.repository.storage.AssetAccessTracker;
 import org.sonatype.nexus.repository.storage.AssetBlob;
 import org.sonatype.nexus.repository.storage.Bucket;
 import org.sonatype.nexus.repository.storage.Component;
@@ -88,6 +89,8 @@ public class MavenFacetImpl
 {
   private final Map<String, MavenPathParser> mavenPathParsers;
 
+  private final AssetAccessTracker assetAccessTracker;
+
   @VisibleForTesting
   static final String CONFIG_KEY = "maven";
 
@@ -116,8 +119,11 @@ public class MavenFacetImpl
   private StorageFacet storageFacet;
 
   @Inject
-  public MavenFacetImpl(final Map<String, MavenPathParser> mavenPathParsers) {
+  public MavenFacetImpl(final Map<String, MavenPathParser> mavenPathParsers,
+                        final AssetAccessTracker assetAccessTracker)
+  {
     this.mavenPathParsers = checkNotNull(mavenPathParsers);
+    this.assetAccessTracker = checkNotNull(assetAccessTracker);
   }
 
   @Override
@@ -175,9 +181,7 @@ public class MavenFacetImpl
     if (asset == null) {
       return null;
     }
-    if (asset.markAsAccessed()) {
-      tx.saveAsset(asset);
-    }
+    assetAccessTracker.markAsAccessed(asset);
 
     final Blob blob = tx.requireBlob(asset.requireBlobRef());
     return toContent(asset, blob);
@@ -38,6 +38,7 @@ import org.sonatype.nexus.repository.view.handlers.BrowseUnsupportedHandler
 import org.sonatype.nexus.repository.view.handlers.ConditionalRequestHandler
 import org.sonatype.nexus.repository.view.handlers.ContentHeadersHandler
 import org.sonatype.nexus.repository.view.handlers.ExceptionHandler
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler
 import org.sonatype.nexus.repository.view.handlers.TimingHandler
 import org.sonatype.nexus.repository.view.matchers.ActionMatcher
 import org.sonatype.nexus.repository.view.matchers.logic.LogicMatchers
@@ -68,6 +69,9 @@ abstract class MavenRecipeSupport
   @Inject
   TimingHandler timingHandler
 
+  @Inject
+  MetricsHandler metricsHandler
+
   @Inject
   SecurityHandler securityHandler
 
@@ -99,6 +103,7 @@ abstract class MavenRecipeSupport
   Builder newMavenPathRouteBuilder() {
     return new Builder()
         .matcher(new MavenPathMatcher(mavenPathParser))
+        .handler(metricsHandler)
         .handler(timingHandler)
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -108,6 +113,7 @@ abstract class MavenRecipeSupport
   Builder newMetadataRouteBuilder() {
     return new Builder()
         .matcher(new MavenRepositoryMetadataMatcher(mavenPathParser))
+        .handler(metricsHandler)
         .handler(timingHandler)
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -128,6 +134,7 @@ abstract class MavenRecipeSupport
                 )
             )
         )
+        .handler(metricsHandler)
         .handler(timingHandler)
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -137,6 +144,7 @@ abstract class MavenRecipeSupport
   Builder newArchetypeCatalogRouteBuilder() {
     return new Builder()
         .matcher(new MavenArchetypeCatalogMatcher(mavenPathParser))
+        .handler(metricsHandler)
         .handler(timingHandler)
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -18,6 +18,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import javax.annotation.Nullable;
+import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.sonatype.nexus.blobstore.api.Blob;
@@ -31,6 +32,7 @@ import org.sonatype.nexus.repository.config.Configuration;
 import org.sonatype.nexus.repository.raw.RawContentFacet;
 import org.sonatype.nexus.repository.raw.RawCoordinatesHelper;
 import org.sonatype.nexus.repository.storage.Asset;
+import org.sonatype.nexus.repository.storage.AssetAccessTracker;
 import org.sonatype.nexus.repository.storage.AssetBlob;
 import org.sonatype.nexus.repository.storage.Bucket;
 import org.sonatype.nexus.repository.storage.Component;
@@ -46,6 +48,7 @@ import com.google.common.base.Supplier;
 import com.orientechnologies.common.concur.ONeedRetryException;
 import com.orientechnologies.orient.core.storage.ORecordDuplicatedException;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.common.hash.HashAlgorithm.MD5;
 import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
 import static org.sonatype.nexus.repository.storage.MetadataNodeEntityAdapter.P_NAME;
@@ -62,6 +65,13 @@ public class RawContentFacetImpl
 {
   private static final List<HashAlgorithm> hashAlgorithms = Arrays.asList(MD5, SHA1);
 
+  private final AssetAccessTracker assetAccessTracker;
+
+  @Inject
+  public RawContentFacetImpl(final AssetAccessTracker assetAccessTracker) {
+    this.assetAccessTracker = checkNotNull(assetAccessTracker);
+  }
+
   // TODO: raw does not have config, this method is here only to have this bundle do Import-Package org.sonatype.nexus.repository.config
   // TODO: as FacetSupport subclass depends on it. Actually, this facet does not need any kind of configuration
   // TODO: it's here only to circumvent this OSGi/maven-bundle-plugin issue.
@@ -80,9 +90,7 @@ public class RawContentFacetImpl
     if (asset == null) {
       return null;
     }
-    if (asset.markAsAccessed()) {
-      tx.saveAsset(asset);
-    }
+    assetAccessTracker.markAsAccessed(asset);
 
     final Blob blob = tx.requireBlob(asset.requireBlobRef());
     return toContent(asset, blob);
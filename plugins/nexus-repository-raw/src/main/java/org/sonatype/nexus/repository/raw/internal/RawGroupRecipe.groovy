@@ -33,6 +33,7 @@ import org.sonatype.nexus.repository.view.handlers.ExceptionHandler
 import org.sonatype.nexus.repository.view.Route
 import org.sonatype.nexus.repository.view.Router
 import org.sonatype.nexus.repository.view.ViewFacet
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler
 import org.sonatype.nexus.repository.view.handlers.TimingHandler
 import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher
 
@@ -66,6 +67,9 @@ class RawGroupRecipe
   @Inject
   TimingHandler timingHandler
 
+  @Inject
+  MetricsHandler metricsHandler
+
   @Inject
   SecurityHandler securityHandler
 
@@ -95,6 +99,7 @@ class RawGroupRecipe
 
     builder.route(new Route.Builder()
         .matcher(new TokenMatcher('/{name:.+}'))
+        .handler(metricsHandler)
         .handler(timingHandler)
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -40,6 +40,7 @@ import org.sonatype.nexus.repository.view.handlers.ConditionalRequestHandler
 import org.sonatype.nexus.repository.view.handlers.ContentHeadersHandler
 import org.sonatype.nexus.repository.view.handlers.ExceptionHandler
 import org.sonatype.nexus.repository.view.handlers.IndexHtmlForwardHandler
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler
 import org.sonatype.nexus.repository.view.handlers.TimingHandler
 import org.sonatype.nexus.repository.view.matchers.ActionMatcher
 import org.sonatype.nexus.repository.view.matchers.SuffixMatcher
@@ -86,6 +87,9 @@ class RawHostedRecipe
   @Inject
   TimingHandler timingHandler
 
+  @Inject
+  MetricsHandler metricsHandler
+
   @Inject
   IndexHtmlForwardHandler indexHtmlForwardHandler
 
@@ -142,6 +146,7 @@ class RawHostedRecipe
 
     builder.route(new Route.Builder()
         .matcher(new TokenMatcher('/{name:.+}'))
+        .handler(metricsHandler)
         .handler(timingHandler)
         .handler(securityHandler)
         .handler(exceptionHandler)
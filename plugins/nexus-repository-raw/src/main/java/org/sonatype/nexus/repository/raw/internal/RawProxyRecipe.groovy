@@ -42,6 +42,7 @@ import org.sonatype.nexus.repository.view.ViewFacet
 import org.sonatype.nexus.repository.view.handlers.ConditionalRequestHandler
 import org.sonatype.nexus.repository.view.handlers.ContentHeadersHandler
 import org.sonatype.nexus.repository.view.handlers.ExceptionHandler
+import org.sonatype.nexus.repository.view.handlers.MetricsHandler
 import org.sonatype.nexus.repository.view.handlers.TimingHandler
 import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher
 
@@ -98,6 +99,9 @@ class RawProxyRecipe
   @Inject
   TimingHandler timingHandler
 
+  @Inject
+  MetricsHandler metricsHandler
+
   @Inject
   SecurityHandler securityHandler
 
@@ -149,6 +153,7 @@ class RawProxyRecipe
 
     builder.route(new Route.Builder()
         .matcher(new TokenMatcher('/{name:.+}'))
+        .handler(metricsHandler)
         .handler(timingHandler)
         .handler(securityHandler)
         .handler(exceptionHandler)
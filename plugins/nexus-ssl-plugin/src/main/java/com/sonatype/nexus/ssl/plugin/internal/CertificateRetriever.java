@@ -113,7 +113,7 @@ public class CertificateRetriever
         @Override
         public void customize(final HttpClientPlan plan) {
           // replace connection-manager with customized version needed to fetch SSL certificates
-          plan.getClient().setConnectionManager(connectionManager);
+          plan.setConnectionManager(connectionManager);
 
           // add interceptor to grab peer-certificates
           plan.getClient().addInterceptorFirst(new HttpResponseInterceptor()